@@ -0,0 +1,298 @@
+package com.iris.common.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Base of the binary message flyweights. A message is a 6-byte header (magic, schema
+ * version, template ID, block length), a fixed block of primitives at known offsets, then
+ * variable-length strings in a fixed order, each a 2-byte length and its UTF-8 bytes.
+ *
+ * A flyweight holds no message state of its own: encoders write straight into a buffer and
+ * decoders read fields where they lie, so one instance per thread serves every message.
+ * Decoders accept a longer block or more strings than they know of, which lets a newer
+ * schema version add fields at the end without breaking older readers.
+ */
+public abstract class BinaryFlyweight {
+    public static final byte MAGIC = (byte) 0xB1;
+    public static final byte SCHEMA_VERSION = 1;
+    public static final int HEADER_LENGTH = 6;
+
+    // Length written for a null string
+    private static final int NULL_LENGTH = 0xFFFF;
+    private static final int INITIAL_CAPACITY = 512;
+
+    // Code 0 is null; codes from 1 index the value table; anything else is written out as a string
+    protected static final byte OTHER = (byte) 0xFF;
+
+    protected ByteBuffer buffer;
+    // Grown and reused by encoders that are not given a buffer
+    private ByteBuffer ownBuffer;
+    protected int offset;
+    protected int blockLength;
+    // Encoding: where the next string goes; decoding: end of the message
+    protected int limit;
+
+    private final int templateId;
+    private final int varCount;
+    private final int[] varOffsets;
+    private int varIndex;
+    private byte[] scratch = new byte[64];
+
+    protected BinaryFlyweight(int templateId, int blockLength, int varCount) {
+        this.templateId = templateId;
+        this.blockLength = blockLength;
+        this.varCount = varCount;
+        this.varOffsets = new int[varCount];
+    }
+
+    /**
+     * Check whether a payload is a binary message rather than JSON
+     * @param payload Encoded message
+     * @return True if it starts with the binary header
+     */
+    public static boolean isBinary(byte[] payload) {
+        return payload != null && payload.length >= HEADER_LENGTH && payload[0] == MAGIC;
+    }
+
+    public int getTemplateId() {
+        return templateId;
+    }
+
+    // ---- Encoding
+
+    /**
+     * Start a message at the beginning of this flyweight's own buffer, which grows as needed
+     */
+    protected void wrapForEncode() {
+        if (ownBuffer == null) {
+            ownBuffer = ByteBuffer.allocate(INITIAL_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        wrapForEncode(ownBuffer, 0);
+    }
+
+    /**
+     * Start a message in a caller's buffer, which must have room for all of it
+     * @param target Buffer to write into
+     * @param at Offset of the message in the buffer
+     */
+    protected void wrapForEncode(ByteBuffer target, int at) {
+        this.buffer = target.order(ByteOrder.LITTLE_ENDIAN);
+        this.offset = at;
+        buffer.put(at, MAGIC);
+        buffer.put(at + 1, SCHEMA_VERSION);
+        buffer.putShort(at + 2, (short) templateId);
+        buffer.putShort(at + 4, (short) blockLength);
+        // Fixed fields left unset read as zero
+        for (int i = at + HEADER_LENGTH; i < at + HEADER_LENGTH + blockLength; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        this.limit = at + HEADER_LENGTH + blockLength;
+        this.varIndex = 0;
+    }
+
+    /**
+     * Append the next string; strings must be written in schema order
+     * @param index Position of the string in the schema
+     * @param value String, or null
+     */
+    protected void putVar(int index, String value) {
+        if (index != varIndex) {
+            throw new IllegalStateException("String " + index + " written out of order, expected " + varIndex);
+        }
+        varIndex++;
+        if (value == null) {
+            ensureCapacity(2);
+            buffer.putShort(limit, (short) NULL_LENGTH);
+            limit += 2;
+            return;
+        }
+
+        int length = value.length();
+        ensureCapacity(2 + length);
+        int start = limit + 2;
+        int position = start;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                // Rare outside free text, so only then go through the charset
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                ensureCapacity(2 + bytes.length);
+                for (int j = 0; j < bytes.length; j++) {
+                    buffer.put(start + j, bytes[j]);
+                }
+                position = start + bytes.length;
+                break;
+            }
+            buffer.put(position++, (byte) c);
+        }
+        if (position - start >= NULL_LENGTH) {
+            throw new IllegalArgumentException("String of " + (position - start) + " bytes is too long");
+        }
+        buffer.putShort(limit, (short) (position - start));
+        limit = position;
+    }
+
+    /**
+     * Write a value from a known set as a one-byte code
+     * @param at Offset of the code in the block
+     * @param value The value, or null
+     * @param table Known values; the code is the index plus one
+     * @return True if the value is not in the table and must also be written as a string
+     */
+    protected boolean putCode(int at, String value, String[] table) {
+        byte code = 0;
+        if (value != null) {
+            code = OTHER;
+            for (int i = 0; i < table.length; i++) {
+                if (table[i].equals(value)) {
+                    code = (byte) (i + 1);
+                    break;
+                }
+            }
+        }
+        buffer.put(offset + HEADER_LENGTH + at, code);
+        return code == OTHER;
+    }
+
+    protected void putLong(int at, long value) {
+        buffer.putLong(offset + HEADER_LENGTH + at, value);
+    }
+
+    protected void putDouble(int at, double value) {
+        buffer.putDouble(offset + HEADER_LENGTH + at, value);
+    }
+
+    /**
+     * Write an optional decimal; NaN stands for null
+     */
+    protected void putNullableDouble(int at, Double value) {
+        putDouble(at, value != null ? value : Double.NaN);
+    }
+
+    /**
+     * Check that every string was written
+     */
+    protected void checkComplete() {
+        if (varIndex != varCount) {
+            throw new IllegalStateException("Only " + varIndex + " of " + varCount + " strings written");
+        }
+    }
+
+    public int encodedLength() {
+        return limit - offset;
+    }
+
+    /**
+     * Copy the encoded message out, for transports that take byte arrays
+     * @return The message bytes
+     */
+    public byte[] toBytes() {
+        checkComplete();
+        byte[] bytes = new byte[limit - offset];
+        buffer.get(offset, bytes);
+        return bytes;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (limit + extra <= buffer.capacity()) {
+            return;
+        }
+        if (buffer != ownBuffer) {
+            throw new IllegalStateException("Message does not fit in the buffer");
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, limit + extra)).order(ByteOrder.LITTLE_ENDIAN);
+        grown.put(0, buffer, 0, limit);
+        buffer = grown;
+        ownBuffer = grown;
+    }
+
+    // ---- Decoding
+
+    /**
+     * Point the flyweight at a message and find its strings
+     * @param source Buffer holding the message
+     * @param at Offset of the message in the buffer
+     * @param length Length of the message
+     */
+    protected void wrapForDecode(ByteBuffer source, int at, int length) {
+        this.buffer = source.order(ByteOrder.LITTLE_ENDIAN);
+        this.offset = at;
+        this.limit = at + length;
+        if (length < HEADER_LENGTH || buffer.get(at) != MAGIC) {
+            throw new IllegalArgumentException("Not a binary message");
+        }
+        int template = buffer.getShort(at + 2) & 0xFFFF;
+        if (template != templateId) {
+            throw new IllegalArgumentException("Expected template " + templateId + " but got " + template);
+        }
+        this.blockLength = buffer.getShort(at + 4) & 0xFFFF;
+
+        int position = at + HEADER_LENGTH + blockLength;
+        for (int i = 0; i < varCount; i++) {
+            if (position >= limit) {
+                // Written by an older schema without this string
+                varOffsets[i] = -1;
+                continue;
+            }
+            varOffsets[i] = position;
+            int varLength = buffer.getShort(position) & 0xFFFF;
+            position += 2 + (varLength == NULL_LENGTH ? 0 : varLength);
+        }
+    }
+
+    protected void wrapForDecode(byte[] payload) {
+        wrapForDecode(ByteBuffer.wrap(payload), 0, payload.length);
+    }
+
+    protected String getVar(int index) {
+        int position = varOffsets[index];
+        if (position < 0) {
+            return null;
+        }
+        int length = buffer.getShort(position) & 0xFFFF;
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + position + 2, length, StandardCharsets.UTF_8);
+        }
+        if (scratch.length < length) {
+            scratch = new byte[length];
+        }
+        buffer.get(position + 2, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a one-byte code written by {@link #putCode}
+     * @param at Offset of the code in the block
+     * @param table Known values
+     * @param otherIndex String holding the value when it was not in the table
+     * @return The value, or null
+     */
+    protected String getCode(int at, String[] table, int otherIndex) {
+        int code = buffer.get(offset + HEADER_LENGTH + at) & 0xFF;
+        if (code == 0) {
+            return null;
+        }
+        if (code <= table.length) {
+            return table[code - 1];
+        }
+        return getVar(otherIndex);
+    }
+
+    protected long getLong(int at) {
+        return at + 8 <= blockLength ? buffer.getLong(offset + HEADER_LENGTH + at) : 0;
+    }
+
+    protected double getDouble(int at) {
+        return at + 8 <= blockLength ? buffer.getDouble(offset + HEADER_LENGTH + at) : 0;
+    }
+
+    protected Double getNullableDouble(int at) {
+        double value = getDouble(at);
+        return Double.isNaN(value) ? null : value;
+    }
+}
@@ -0,0 +1,148 @@
+package com.iris.common.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.common.model.ClientInfo;
+import com.iris.common.model.Execution;
+import com.iris.common.model.NewOrder;
+import com.iris.common.model.messages.CancelOrderMessage;
+import com.iris.common.model.messages.CancelOrderRequest;
+import com.iris.common.model.messages.ExecutionReportMessage;
+import com.iris.common.model.messages.MassCancelMessage;
+import com.iris.common.model.messages.MassCancelRequest;
+import com.iris.common.model.messages.NewOrderMessage;
+import com.iris.common.model.messages.ReplaceOrderMessage;
+import com.iris.common.model.messages.ReplaceOrderRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Reads the commands the engine receives and writes the execution reports it sends.
+ * Binary and JSON payloads are told apart by their first byte, so journals and topics
+ * holding JSON from before the switch still read back.
+ */
+@Component
+@RequiredArgsConstructor
+public class EngineMessageCodec {
+    private final ObjectMapper objectMapper;
+
+    @Value("${iris.codec.format:BINARY}")
+    private WireFormat format;
+
+    // Flyweights hold no message state, so one per thread serves every message
+    private final ThreadLocal<NewOrderCodec.Decoder> newOrderDecoder = ThreadLocal.withInitial(NewOrderCodec.Decoder::new);
+    private final ThreadLocal<CancelOrderCodec.Decoder> cancelDecoder = ThreadLocal.withInitial(CancelOrderCodec.Decoder::new);
+    private final ThreadLocal<ReplaceOrderCodec.Decoder> replaceDecoder = ThreadLocal.withInitial(ReplaceOrderCodec.Decoder::new);
+    private final ThreadLocal<MassCancelCodec.Decoder> massCancelDecoder = ThreadLocal.withInitial(MassCancelCodec.Decoder::new);
+    private final ThreadLocal<ExecutionReportCodec.Encoder> executionEncoder = ThreadLocal.withInitial(ExecutionReportCodec.Encoder::new);
+
+    public NewOrderMessage decodeNewOrder(byte[] payload) throws IOException {
+        if (!BinaryFlyweight.isBinary(payload)) {
+            return objectMapper.readValue(payload, NewOrderMessage.class);
+        }
+        NewOrderCodec.Decoder in = newOrderDecoder.get().wrap(payload);
+        ClientInfo clientInfo = in.account() == null && in.userId() == null ? null
+                : new ClientInfo(in.account(), in.userId());
+        NewOrder order = NewOrder.builder()
+                .orderId(in.orderId())
+                .clOrdId(in.clOrdId())
+                .instrumentId(in.instrumentId())
+                .side(in.side())
+                .quantity(in.quantity())
+                .orderType(in.orderType())
+                .price(in.price())
+                .timeInForce(in.timeInForce())
+                .sourceIpAddress(in.sourceIpAddress())
+                .clientInfo(clientInfo)
+                .build();
+        return new NewOrderMessage(NewOrderCodec.MESSAGE_TYPE, in.messageId(), in.timestamp(), in.clientId(), order);
+    }
+
+    public CancelOrderMessage decodeCancel(byte[] payload) throws IOException {
+        if (!BinaryFlyweight.isBinary(payload)) {
+            return objectMapper.readValue(payload, CancelOrderMessage.class);
+        }
+        CancelOrderCodec.Decoder in = cancelDecoder.get().wrap(payload);
+        CancelOrderRequest cancel = CancelOrderRequest.builder()
+                .origOrderId(in.origOrderId())
+                .origClOrdId(in.origClOrdId())
+                .clOrdId(in.clOrdId())
+                .instrumentId(in.instrumentId())
+                .side(in.side())
+                .sourceIpAddress(in.sourceIpAddress())
+                .build();
+        return new CancelOrderMessage(CancelOrderCodec.MESSAGE_TYPE, in.messageId(), in.timestamp(), in.clientId(), cancel);
+    }
+
+    public ReplaceOrderMessage decodeReplace(byte[] payload) throws IOException {
+        if (!BinaryFlyweight.isBinary(payload)) {
+            return objectMapper.readValue(payload, ReplaceOrderMessage.class);
+        }
+        ReplaceOrderCodec.Decoder in = replaceDecoder.get().wrap(payload);
+        ReplaceOrderRequest replace = ReplaceOrderRequest.builder()
+                .origOrderId(in.origOrderId())
+                .origClOrdId(in.origClOrdId())
+                .newOrderId(in.newOrderId())
+                .clOrdId(in.clOrdId())
+                .instrumentId(in.instrumentId())
+                .side(in.side())
+                .quantity(in.quantity())
+                .orderType(in.orderType())
+                .price(in.price())
+                .timeInForce(in.timeInForce())
+                .sourceIpAddress(in.sourceIpAddress())
+                .build();
+        return new ReplaceOrderMessage(ReplaceOrderCodec.MESSAGE_TYPE, in.messageId(), in.timestamp(), in.clientId(), replace);
+    }
+
+    public MassCancelMessage decodeMassCancel(byte[] payload) throws IOException {
+        if (!BinaryFlyweight.isBinary(payload)) {
+            return objectMapper.readValue(payload, MassCancelMessage.class);
+        }
+        MassCancelCodec.Decoder in = massCancelDecoder.get().wrap(payload);
+        MassCancelRequest massCancel = MassCancelRequest.builder()
+                .clOrdId(in.clOrdId())
+                .cancelType(in.cancelType())
+                .instrumentId(in.instrumentId())
+                .side(in.side())
+                .sourceIpAddress(in.sourceIpAddress())
+                .build();
+        return new MassCancelMessage(MassCancelCodec.MESSAGE_TYPE, in.messageId(), in.timestamp(), in.clientId(), massCancel);
+    }
+
+    /**
+     * Encode an execution report in the configured format
+     * @param message The report
+     * @return Payload to send
+     */
+    public byte[] encodeExecutionReport(ExecutionReportMessage message) throws IOException {
+        if (format == WireFormat.JSON) {
+            return objectMapper.writeValueAsBytes(message);
+        }
+        Execution execution = message.getExecution();
+        return executionEncoder.get().wrap()
+                .timestamp(message.getTimestamp())
+                .filledQuantity(execution.getFilledQuantity())
+                .remainingQuantity(execution.getRemainingQuantity())
+                .price(execution.getPrice())
+                .lastPrice(execution.getLastPrice())
+                .lastQuantity(execution.getLastQuantity())
+                .avgPrice(execution.getAvgPrice())
+                .side(execution.getSide())
+                .execType(execution.getExecType())
+                .orderStatus(execution.getOrderStatus())
+                .messageId(message.getMessageId())
+                .clientId(message.getClientId())
+                .orderId(execution.getOrderId())
+                .clOrdId(execution.getClOrdId())
+                .execId(execution.getExecId())
+                .instrumentId(execution.getInstrumentId())
+                .text(execution.getText())
+                .tradeId(execution.getTradeId())
+                .contraParty(execution.getContraParty())
+                .finish()
+                .toBytes();
+    }
+}
@@ -0,0 +1,116 @@
+package com.iris.common.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Binary layout of a batch of execution reports: the reports one command produced for one
+ * client, sent as a single record. The header is the same as every binary message's, the
+ * block holds the report count, and each report follows as a 4-byte length and its encoded
+ * bytes, in either wire format.
+ */
+public final class ExecutionReportBatchCodec {
+    public static final int TEMPLATE_ID = 6;
+
+    private static final int COUNT = 0;
+    private static final int BLOCK_LENGTH = 4;
+    private static final int LENGTH_PREFIX = 4;
+
+    private ExecutionReportBatchCodec() {
+    }
+
+    /**
+     * Check whether a payload is a batch rather than a single report
+     * @param payload Record value
+     * @return True if it is a batch
+     */
+    public static boolean isBatch(byte[] payload) {
+        return BinaryFlyweight.isBinary(payload)
+                && ((payload[2] & 0xFF) | (payload[3] & 0xFF) << 8) == TEMPLATE_ID;
+    }
+
+    /**
+     * Frame encoded reports as one batch
+     * @param reports Encoded reports, in the order they are to be handled
+     * @return The batch bytes
+     */
+    public static byte[] encode(List<byte[]> reports) {
+        int length = BinaryFlyweight.HEADER_LENGTH + BLOCK_LENGTH;
+        for (byte[] report : reports) {
+            length += LENGTH_PREFIX + report.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(BinaryFlyweight.MAGIC)
+                .put(BinaryFlyweight.SCHEMA_VERSION)
+                .putShort((short) TEMPLATE_ID)
+                .putShort((short) BLOCK_LENGTH)
+                .putInt(reports.size());
+        for (byte[] report : reports) {
+            buffer.putInt(report.length).put(report);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Walks the reports of a batch in place. Call {@link #next} before reading each one.
+     */
+    public static final class Decoder {
+        private ByteBuffer buffer;
+        private int count;
+        private int index;
+        private int position;
+        private int reportOffset;
+        private int reportLength;
+
+        public Decoder wrap(byte[] payload) {
+            if (!isBatch(payload)) {
+                throw new IllegalArgumentException("Not an execution report batch");
+            }
+            this.buffer = ByteBuffer.wrap(payload).order(ByteOrder.LITTLE_ENDIAN);
+            int blockLength = buffer.getShort(4) & 0xFFFF;
+            if (blockLength < BLOCK_LENGTH || payload.length < BinaryFlyweight.HEADER_LENGTH + blockLength) {
+                throw new IllegalArgumentException("Batch ends inside its block of " + blockLength + " bytes");
+            }
+            this.count = buffer.getInt(BinaryFlyweight.HEADER_LENGTH + COUNT);
+            this.index = 0;
+            // A newer schema may grow the block, so skip whatever it holds
+            this.position = BinaryFlyweight.HEADER_LENGTH + blockLength;
+            return this;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Move to the next report
+         * @return False when there are no more
+         */
+        public boolean next() {
+            if (index == count) {
+                return false;
+            }
+            if (position + LENGTH_PREFIX > buffer.capacity()) {
+                throw new IllegalArgumentException("Batch ends after " + index + " of " + count + " reports");
+            }
+            int length = buffer.getInt(position);
+            if (length < 0 || length > buffer.capacity() - position - LENGTH_PREFIX) {
+                throw new IllegalArgumentException("Report " + index + " of " + length + " bytes overruns the batch");
+            }
+            reportOffset = position + LENGTH_PREFIX;
+            reportLength = length;
+            position = reportOffset + length;
+            index++;
+            return true;
+        }
+
+        public int offset() {
+            return reportOffset;
+        }
+
+        public int length() {
+            return reportLength;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.iris.common.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary layout of an execution report
+ */
+public final class ExecutionReportCodec {
+    public static final int TEMPLATE_ID = 5;
+    public static final String MESSAGE_TYPE = "EXECUTION_REPORT";
+
+    private static final int TIMESTAMP = 0;
+    private static final int FILLED_QUANTITY = 8;
+    private static final int REMAINING_QUANTITY = 16;
+    private static final int PRICE = 24;
+    private static final int LAST_PRICE = 32;
+    private static final int LAST_QUANTITY = 40;
+    private static final int AVG_PRICE = 48;
+    private static final int SIDE = 56;
+    private static final int EXEC_TYPE = 57;
+    private static final int ORDER_STATUS = 58;
+    private static final int BLOCK_LENGTH = 59;
+
+    private static final int MESSAGE_ID = 0;
+    private static final int CLIENT_ID = 1;
+    private static final int ORDER_ID = 2;
+    private static final int CL_ORD_ID = 3;
+    private static final int EXEC_ID = 4;
+    private static final int INSTRUMENT_ID = 5;
+    private static final int TEXT = 6;
+    private static final int TRADE_ID = 7;
+    private static final int CONTRA_PARTY = 8;
+    private static final int SIDE_OTHER = 9;
+    private static final int EXEC_TYPE_OTHER = 10;
+    private static final int ORDER_STATUS_OTHER = 11;
+    private static final int VAR_COUNT = 12;
+
+    private ExecutionReportCodec() {
+    }
+
+    /**
+     * Writes an execution report. Fixed fields may be set in any order; strings must follow the
+     * order of the setters below, and {@link #finish} completes the message.
+     */
+    public static final class Encoder extends BinaryFlyweight {
+        private String sideOther;
+        private String execTypeOther;
+        private String orderStatusOther;
+
+        public Encoder() {
+            super(TEMPLATE_ID, BLOCK_LENGTH, VAR_COUNT);
+        }
+
+        public Encoder wrap() {
+            wrapForEncode();
+            return this;
+        }
+
+        public Encoder wrap(ByteBuffer target, int at) {
+            wrapForEncode(target, at);
+            return this;
+        }
+
+        public Encoder timestamp(long value) {
+            putLong(TIMESTAMP, value);
+            return this;
+        }
+
+        public Encoder filledQuantity(double value) {
+            putDouble(FILLED_QUANTITY, value);
+            return this;
+        }
+
+        public Encoder remainingQuantity(double value) {
+            putDouble(REMAINING_QUANTITY, value);
+            return this;
+        }
+
+        public Encoder price(Double value) {
+            putNullableDouble(PRICE, value);
+            return this;
+        }
+
+        public Encoder lastPrice(Double value) {
+            putNullableDouble(LAST_PRICE, value);
+            return this;
+        }
+
+        public Encoder lastQuantity(Double value) {
+            putNullableDouble(LAST_QUANTITY, value);
+            return this;
+        }
+
+        public Encoder avgPrice(double value) {
+            putDouble(AVG_PRICE, value);
+            return this;
+        }
+
+        public Encoder side(String value) {
+            sideOther = putCode(SIDE, value, WireCodes.SIDES) ? value : null;
+            return this;
+        }
+
+        public Encoder execType(String value) {
+            execTypeOther = putCode(EXEC_TYPE, value, WireCodes.EXEC_TYPES) ? value : null;
+            return this;
+        }
+
+        public Encoder orderStatus(String value) {
+            orderStatusOther = putCode(ORDER_STATUS, value, WireCodes.ORDER_STATUSES) ? value : null;
+            return this;
+        }
+
+        public Encoder messageId(String value) {
+            putVar(MESSAGE_ID, value);
+            return this;
+        }
+
+        public Encoder clientId(String value) {
+            putVar(CLIENT_ID, value);
+            return this;
+        }
+
+        public Encoder orderId(String value) {
+            putVar(ORDER_ID, value);
+            return this;
+        }
+
+        public Encoder clOrdId(String value) {
+            putVar(CL_ORD_ID, value);
+            return this;
+        }
+
+        public Encoder execId(String value) {
+            putVar(EXEC_ID, value);
+            return this;
+        }
+
+        public Encoder instrumentId(String value) {
+            putVar(INSTRUMENT_ID, value);
+            return this;
+        }
+
+        public Encoder text(String value) {
+            putVar(TEXT, value);
+            return this;
+        }
+
+        public Encoder tradeId(String value) {
+            putVar(TRADE_ID, value);
+            return this;
+        }
+
+        public Encoder contraParty(String value) {
+            putVar(CONTRA_PARTY, value);
+            return this;
+        }
+
+        public Encoder finish() {
+            putVar(SIDE_OTHER, sideOther);
+            putVar(EXEC_TYPE_OTHER, execTypeOther);
+            putVar(ORDER_STATUS_OTHER, orderStatusOther);
+            checkComplete();
+            return this;
+        }
+    }
+
+    /**
+     * Reads an execution report in place
+     */
+    public static final class Decoder extends BinaryFlyweight {
+        public Decoder() {
+            super(TEMPLATE_ID, BLOCK_LENGTH, VAR_COUNT);
+        }
+
+        public Decoder wrap(byte[] payload) {
+            wrapForDecode(payload);
+            return this;
+        }
+
+        public Decoder wrap(ByteBuffer source, int at, int length) {
+            wrapForDecode(source, at, length);
+            return this;
+        }
+
+        public long timestamp() {
+            return getLong(TIMESTAMP);
+        }
+
+        public double filledQuantity() {
+            return getDouble(FILLED_QUANTITY);
+        }
+
+        public double remainingQuantity() {
+            return getDouble(REMAINING_QUANTITY);
+        }
+
+        public Double price() {
+            return getNullableDouble(PRICE);
+        }
+
+        public Double lastPrice() {
+            return getNullableDouble(LAST_PRICE);
+        }
+
+        public Double lastQuantity() {
+            return getNullableDouble(LAST_QUANTITY);
+        }
+
+        public double avgPrice() {
+            return getDouble(AVG_PRICE);
+        }
+
+        public String side() {
+            return getCode(SIDE, WireCodes.SIDES, SIDE_OTHER);
+        }
+
+        public String execType() {
+            return getCode(EXEC_TYPE, WireCodes.EXEC_TYPES, EXEC_TYPE_OTHER);
+        }
+
+        public String orderStatus() {
+            return getCode(ORDER_STATUS, WireCodes.ORDER_STATUSES, ORDER_STATUS_OTHER);
+        }
+
+        public String messageId() {
+            return getVar(MESSAGE_ID);
+        }
+
+        public String clientId() {
+            return getVar(CLIENT_ID);
+        }
+
+        public String orderId() {
+            return getVar(ORDER_ID);
+        }
+
+        public String clOrdId() {
+            return getVar(CL_ORD_ID);
+        }
+
+        public String execId() {
+            return getVar(EXEC_ID);
+        }
+
+        public String instrumentId() {
+            return getVar(INSTRUMENT_ID);
+        }
+
+        public String text() {
+            return getVar(TEXT);
+        }
+
+        public String tradeId() {
+            return getVar(TRADE_ID);
+        }
+
+        public String contraParty() {
+            return getVar(CONTRA_PARTY);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.iris.common.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary layout of a mass cancel command
+ */
+public final class MassCancelCodec {
+    public static final int TEMPLATE_ID = 4;
+    public static final String MESSAGE_TYPE = "MassCancel";
+
+    private static final int TIMESTAMP = 0;
+    private static final int SIDE = 8;
+    private static final int BLOCK_LENGTH = 9;
+
+    private static final int MESSAGE_ID = 0;
+    private static final int CLIENT_ID = 1;
+    private static final int CL_ORD_ID = 2;
+    private static final int CANCEL_TYPE = 3;
+    private static final int INSTRUMENT_ID = 4;
+    private static final int SOURCE_IP = 5;
+    private static final int SIDE_OTHER = 6;
+    private static final int VAR_COUNT = 7;
+
+    private MassCancelCodec() {
+    }
+
+    /**
+     * Writes a mass cancel. Fixed fields may be set in any order; strings must follow the
+     * order of the setters below, and {@link #finish} completes the message.
+     */
+    public static final class Encoder extends BinaryFlyweight {
+        private String sideOther;
+
+        public Encoder() {
+            super(TEMPLATE_ID, BLOCK_LENGTH, VAR_COUNT);
+        }
+
+        public Encoder wrap() {
+            wrapForEncode();
+            return this;
+        }
+
+        public Encoder wrap(ByteBuffer target, int at) {
+            wrapForEncode(target, at);
+            return this;
+        }
+
+        public Encoder timestamp(long value) {
+            putLong(TIMESTAMP, value);
+            return this;
+        }
+
+        public Encoder side(String value) {
+            sideOther = putCode(SIDE, value, WireCodes.SIDES) ? value : null;
+            return this;
+        }
+
+        public Encoder messageId(String value) {
+            putVar(MESSAGE_ID, value);
+            return this;
+        }
+
+        public Encoder clientId(String value) {
+            putVar(CLIENT_ID, value);
+            return this;
+        }
+
+        public Encoder clOrdId(String value) {
+            putVar(CL_ORD_ID, value);
+            return this;
+        }
+
+        public Encoder cancelType(String value) {
+            putVar(CANCEL_TYPE, value);
+            return this;
+        }
+
+        public Encoder instrumentId(String value) {
+            putVar(INSTRUMENT_ID, value);
+            return this;
+        }
+
+        public Encoder sourceIpAddress(String value) {
+            putVar(SOURCE_IP, value);
+            return this;
+        }
+
+        public Encoder finish() {
+            putVar(SIDE_OTHER, sideOther);
+            checkComplete();
+            return this;
+        }
+    }
+
+    /**
+     * Reads a mass cancel in place
+     */
+    public static final class Decoder extends BinaryFlyweight {
+        public Decoder() {
+            super(TEMPLATE_ID, BLOCK_LENGTH, VAR_COUNT);
+        }
+
+        public Decoder wrap(byte[] payload) {
+            wrapForDecode(payload);
+            return this;
+        }
+
+        public Decoder wrap(ByteBuffer source, int at, int length) {
+            wrapForDecode(source, at, length);
+            return this;
+        }
+
+        public long timestamp() {
+            return getLong(TIMESTAMP);
+        }
+
+        public String side() {
+            return getCode(SIDE, WireCodes.SIDES, SIDE_OTHER);
+        }
+
+        public String messageId() {
+            return getVar(MESSAGE_ID);
+        }
+
+        public String clientId() {
+            return getVar(CLIENT_ID);
+        }
+
+        public String clOrdId() {
+            return getVar(CL_ORD_ID);
+        }
+
+        public String cancelType() {
+            return getVar(CANCEL_TYPE);
+        }
+
+        public String instrumentId() {
+            return getVar(INSTRUMENT_ID);
+        }
+
+        public String sourceIpAddress() {
+            return getVar(SOURCE_IP);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.iris.common.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary layout of a new order command
+ */
+public final class NewOrderCodec {
+    public static final int TEMPLATE_ID = 1;
+    public static final String MESSAGE_TYPE = "NewOrder";
+
+    private static final int TIMESTAMP = 0;
+    private static final int QUANTITY = 8;
+    private static final int PRICE = 16;
+    private static final int SIDE = 24;
+    private static final int ORDER_TYPE = 25;
+    private static final int BLOCK_LENGTH = 26;
+
+    private static final int MESSAGE_ID = 0;
+    private static final int CLIENT_ID = 1;
+    private static final int ORDER_ID = 2;
+    private static final int CL_ORD_ID = 3;
+    private static final int INSTRUMENT_ID = 4;
+    private static final int TIME_IN_FORCE = 5;
+    private static final int SOURCE_IP = 6;
+    private static final int ACCOUNT = 7;
+    private static final int USER_ID = 8;
+    private static final int SIDE_OTHER = 9;
+    private static final int ORDER_TYPE_OTHER = 10;
+    private static final int VAR_COUNT = 11;
+
+    private NewOrderCodec() {
+    }
+
+    /**
+     * Writes a new order. Fixed fields may be set in any order; strings must follow the
+     * order of the setters below, and {@link #finish} completes the message.
+     */
+    public static final class Encoder extends BinaryFlyweight {
+        private String sideOther;
+        private String orderTypeOther;
+
+        public Encoder() {
+            super(TEMPLATE_ID, BLOCK_LENGTH, VAR_COUNT);
+        }
+
+        public Encoder wrap() {
+            wrapForEncode();
+            return this;
+        }
+
+        public Encoder wrap(ByteBuffer target, int at) {
+            wrapForEncode(target, at);
+            return this;
+        }
+
+        public Encoder timestamp(long value) {
+            putLong(TIMESTAMP, value);
+            return this;
+        }
+
+        public Encoder quantity(double value) {
+            putDouble(QUANTITY, value);
+            return this;
+        }
+
+        public Encoder price(Double value) {
+            putNullableDouble(PRICE, value);
+            return this;
+        }
+
+        public Encoder side(String value) {
+            sideOther = putCode(SIDE, value, WireCodes.SIDES) ? value : null;
+            return this;
+        }
+
+        public Encoder orderType(String value) {
+            orderTypeOther = putCode(ORDER_TYPE, value, WireCodes.ORDER_TYPES) ? value : null;
+            return this;
+        }
+
+        public Encoder messageId(String value) {
+            putVar(MESSAGE_ID, value);
+            return this;
+        }
+
+        public Encoder clientId(String value) {
+            putVar(CLIENT_ID, value);
+            return this;
+        }
+
+        public Encoder orderId(String value) {
+            putVar(ORDER_ID, value);
+            return this;
+        }
+
+        public Encoder clOrdId(String value) {
+            putVar(CL_ORD_ID, value);
+            return this;
+        }
+
+        public Encoder instrumentId(String value) {
+            putVar(INSTRUMENT_ID, value);
+            return this;
+        }
+
+        public Encoder timeInForce(String value) {
+            putVar(TIME_IN_FORCE, value);
+            return this;
+        }
+
+        public Encoder sourceIpAddress(String value) {
+            putVar(SOURCE_IP, value);
+            return this;
+        }
+
+        public Encoder account(String value) {
+            putVar(ACCOUNT, value);
+            return this;
+        }
+
+        public Encoder userId(String value) {
+            putVar(USER_ID, value);
+            return this;
+        }
+
+        public Encoder finish() {
+            putVar(SIDE_OTHER, sideOther);
+            putVar(ORDER_TYPE_OTHER, orderTypeOther);
+            checkComplete();
+            return this;
+        }
+    }
+
+    /**
+     * Reads a new order in place
+     */
+    public static final class Decoder extends BinaryFlyweight {
+        public Decoder() {
+            super(TEMPLATE_ID, BLOCK_LENGTH, VAR_COUNT);
+        }
+
+        public Decoder wrap(byte[] payload) {
+            wrapForDecode(payload);
+            return this;
+        }
+
+        public Decoder wrap(ByteBuffer source, int at, int length) {
+            wrapForDecode(source, at, length);
+            return this;
+        }
+
+        public long timestamp() {
+            return getLong(TIMESTAMP);
+        }
+
+        public double quantity() {
+            return getDouble(QUANTITY);
+        }
+
+        public Double price() {
+            return getNullableDouble(PRICE);
+        }
+
+        public String side() {
+            return getCode(SIDE, WireCodes.SIDES, SIDE_OTHER);
+        }
+
+        public String orderType() {
+            return getCode(ORDER_TYPE, WireCodes.ORDER_TYPES, ORDER_TYPE_OTHER);
+        }
+
+        public String messageId() {
+            return getVar(MESSAGE_ID);
+        }
+
+        public String clientId() {
+            return getVar(CLIENT_ID);
+        }
+
+        public String orderId() {
+            return getVar(ORDER_ID);
+        }
+
+        public String clOrdId() {
+            return getVar(CL_ORD_ID);
+        }
+
+        public String instrumentId() {
+            return getVar(INSTRUMENT_ID);
+        }
+
+        public String timeInForce() {
+            return getVar(TIME_IN_FORCE);
+        }
+
+        public String sourceIpAddress() {
+            return getVar(SOURCE_IP);
+        }
+
+        public String account() {
+            return getVar(ACCOUNT);
+        }
+
+        public String userId() {
+            return getVar(USER_ID);
+        }
+    }
+}
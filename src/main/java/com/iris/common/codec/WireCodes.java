@@ -0,0 +1,17 @@
+package com.iris.common.codec;
+
+/**
+ * Values of the low-cardinality string fields that binary messages carry as one-byte codes.
+ * Codes are positions in these tables, so values may only ever be appended.
+ */
+final class WireCodes {
+    static final String[] SIDES = {"BUY", "SELL"};
+    static final String[] ORDER_TYPES = {"LIMIT", "MARKET"};
+    static final String[] EXEC_TYPES = {"NEW", "CANCELED", "REPLACED", "REJECTED", "FILL", "PARTIAL_FILL", "TRADE",
+            "CANCELED_REJECTED", "REPLACE_REJECTED"};
+    static final String[] ORDER_STATUSES = {"NEW", "PARTIALLY_FILLED", "FILLED", "CANCELED", "REPLACED", "REJECTED",
+            "UNKNOWN"};
+
+    private WireCodes() {
+    }
+}
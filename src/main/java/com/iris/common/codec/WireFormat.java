@@ -0,0 +1,10 @@
+package com.iris.common.codec;
+
+/**
+ * Encoding of the commands and execution reports exchanged with the engine. Readers
+ * accept either, so the setting only decides what a node writes.
+ */
+public enum WireFormat {
+    JSON,
+    BINARY
+}
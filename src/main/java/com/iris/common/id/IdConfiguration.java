@@ -0,0 +1,46 @@
+package com.iris.common.id;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetAddress;
+
+@Slf4j
+@Configuration
+public class IdConfiguration {
+
+    /**
+     * Shared ID generator. Every gateway and engine instance needs its own iris.node-id;
+     * without one a gateway derives it from host and process, which can collide. An engine
+     * refuses to start without one: its IDs are replayed from the journal, so the node ID
+     * must stay the same across restarts and be shared only with its own standby.
+     */
+    @Bean
+    public IdGenerator idGenerator(@Value("${iris.node-id:-1}") int nodeId,
+                                   @Value("${app.mode:appserver}") String appMode) {
+        if (nodeId < 0) {
+            if ("matchingengine".equals(appMode)) {
+                throw new IllegalStateException("iris.node-id must be set on every matching engine instance, "
+                        + "unique per engine node and shared by a primary and its standby");
+            }
+            nodeId = deriveNodeId();
+            log.warn("iris.node-id is not set, using derived node ID {}; set it explicitly so instances cannot collide",
+                    nodeId);
+        }
+        log.info("ID generator using node ID {}", nodeId);
+        return new IdGenerator(nodeId);
+    }
+
+    private static int deriveNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        int hash = 31 * host.hashCode() + Long.hashCode(ProcessHandle.current().pid());
+        return Math.floorMod(hash, IdGenerator.MAX_NODE_ID + 1);
+    }
+}
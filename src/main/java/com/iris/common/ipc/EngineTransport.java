@@ -0,0 +1,61 @@
+package com.iris.common.ipc;
+
+import com.iris.common.kafka.CommandType;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Carries commands to the engine and execution reports back without Kafka, for a gateway
+ * and engine on one host or in one process. Each direction keeps its messages in the order
+ * they were sent and has a single consumer thread.
+ */
+public interface EngineTransport {
+
+    /**
+     * Receives the commands taken by the command poller
+     */
+    @FunctionalInterface
+    interface CommandHandler {
+        /**
+         * @param type Command type
+         * @param payload Encoded command
+         * @param position Where the command sits in the transport, growing with every command;
+         *                 -1 if the transport does not keep commands across restarts
+         */
+        void onCommand(CommandType type, byte[] payload, long position);
+    }
+
+    /**
+     * Send a command to the engine
+     * @param type Command type
+     * @param payload Encoded command
+     */
+    void sendCommand(CommandType type, byte[] payload);
+
+    /**
+     * Send an execution report to the gateway
+     * @param payload Encoded report
+     */
+    void sendExecutionReport(byte[] payload);
+
+    /**
+     * Start the thread that hands commands to the engine. After each poll that took
+     * commands it asks whether to release them; a transport that keeps commands across
+     * restarts hands those not yet released to the next engine to poll it.
+     * @param handler Receives each command, in order
+     * @param release Called after each poll that took commands; true to release them
+     */
+    void startCommandPoller(CommandHandler handler, BooleanSupplier release);
+
+    /**
+     * Stop handing commands to the engine, leaving those not released to be taken again
+     */
+    void stopCommandPoller();
+
+    /**
+     * Start the thread that hands execution reports to the gateway
+     * @param handler Receives each report, in order
+     */
+    void startExecutionPoller(Consumer<byte[]> handler);
+}
@@ -0,0 +1,68 @@
+package com.iris.common.ipc;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What a polling thread does when a poll found nothing to do
+ */
+public class IdleStrategy {
+    public enum Type {
+        // Spin on the ring; lowest latency, burns a core per poller
+        BUSY_SPIN,
+        // Give the core to other threads between polls
+        YIELDING,
+        // Spin, then yield, then park for longer and longer up to a limit
+        BACKOFF
+    }
+
+    private static final int MAX_SPINS = 100;
+    private static final int MAX_YIELDS = 100;
+    private static final long MIN_PARK_NANOS = 1_000;
+
+    private final Type type;
+    private final long maxParkNanos;
+
+    // Empty polls in a row
+    private int idleCount;
+    private long parkNanos = MIN_PARK_NANOS;
+
+    /**
+     * @param type Strategy
+     * @param maxParkNanos Longest park between polls under BACKOFF
+     */
+    public IdleStrategy(Type type, long maxParkNanos) {
+        this.type = type;
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    /**
+     * Called after every poll
+     * @param workCount Number of messages the poll handled
+     */
+    public void idle(int workCount) {
+        if (workCount > 0) {
+            idleCount = 0;
+            parkNanos = MIN_PARK_NANOS;
+            return;
+        }
+        switch (type) {
+            case BUSY_SPIN:
+                Thread.onSpinWait();
+                break;
+            case YIELDING:
+                Thread.yield();
+                break;
+            case BACKOFF:
+                if (idleCount < MAX_SPINS) {
+                    Thread.onSpinWait();
+                } else if (idleCount < MAX_SPINS + MAX_YIELDS) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(parkNanos);
+                    parkNanos = Math.min(parkNanos * 2, maxParkNanos);
+                }
+                idleCount++;
+                break;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.iris.common.ipc;
+
+import com.iris.common.kafka.CommandType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Carries everything the gateway, engine and DB writer exchange when they run in one JVM:
+ * commands, execution reports, market data and the engine's events for the database. Each
+ * stream is a bounded queue drained by one thread, so it keeps the order it was sent in,
+ * and a full queue holds the sender back as a full ring does.
+ *
+ * Commands, reports and market data are passed encoded, as on Kafka, since the gateway
+ * and engine have their own message classes. Database events are passed as they are.
+ */
+@Slf4j
+public class InProcessTransport implements EngineTransport {
+
+    private record Command(CommandType type, byte[] payload) {
+    }
+
+    private final Channel<Command> commands;
+    private final Channel<byte[]> executions;
+    private final Channel<byte[]> marketData;
+    private final Channel<Object> dbEvents;
+
+    private final IdleStrategy.Type idleStrategy;
+    private final long maxParkNanos;
+    private final long sendTimeoutMs;
+    private final List<Thread> pollers = new CopyOnWriteArrayList<>();
+    private volatile boolean stopped;
+
+    /**
+     * @param capacity Messages each queue holds before senders wait
+     * @param idleStrategy What pollers do when their queue is empty
+     * @param maxParkNanos Longest park between polls under BACKOFF
+     * @param sendTimeoutMs How long a send waits for room before giving up
+     */
+    public InProcessTransport(int capacity, IdleStrategy.Type idleStrategy, long maxParkNanos, long sendTimeoutMs) {
+        this.commands = new Channel<>("in-process-commands", capacity);
+        this.executions = new Channel<>("in-process-executions", capacity);
+        this.marketData = new Channel<>("in-process-market-data", capacity);
+        this.dbEvents = new Channel<>("in-process-db-events", capacity);
+        this.idleStrategy = idleStrategy;
+        this.maxParkNanos = maxParkNanos;
+        this.sendTimeoutMs = sendTimeoutMs;
+    }
+
+    @Override
+    public void sendCommand(CommandType type, byte[] payload) {
+        commands.send(new Command(type, payload));
+    }
+
+    @Override
+    public void sendExecutionReport(byte[] payload) {
+        executions.send(payload);
+    }
+
+    /**
+     * Send a market data update to the gateway
+     * @param payload Encoded update
+     */
+    public void sendMarketData(byte[] payload) {
+        marketData.send(payload);
+    }
+
+    /**
+     * Send an order, trade or book state to the DB writer
+     * @param event The entity to save
+     */
+    public void sendDbEvent(Object event) {
+        dbEvents.send(event);
+    }
+
+    /**
+     * Commands are gone once drained, so they carry no position
+     */
+    @Override
+    public void startCommandPoller(CommandHandler handler, BooleanSupplier release) {
+        commands.start(command -> handler.onCommand(command.type(), command.payload(), -1), release);
+    }
+
+    @Override
+    public void stopCommandPoller() {
+        commands.stop();
+    }
+
+    @Override
+    public void startExecutionPoller(Consumer<byte[]> handler) {
+        executions.start(handler, () -> true);
+    }
+
+    public void startMarketDataPoller(Consumer<byte[]> handler) {
+        marketData.start(handler, () -> true);
+    }
+
+    public void startDbEventPoller(Consumer<Object> handler) {
+        dbEvents.start(handler, () -> true);
+    }
+
+    public void close() {
+        stopped = true;
+        for (Thread poller : pollers) {
+            try {
+                poller.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * One stream: a bounded queue and the thread that drains it
+     */
+    private class Channel<T> {
+        private final String name;
+        private final BlockingQueue<T> queue;
+        private volatile boolean halted;
+
+        Channel(String name, int capacity) {
+            this.name = name;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void send(T message) {
+            try {
+                if (!queue.offer(message, sendTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new IllegalStateException(name + " full for " + sendTimeoutMs + " ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted sending on " + name, e);
+            }
+        }
+
+        void stop() {
+            halted = true;
+        }
+
+        /**
+         * @param done Called after each batch, as a ring's release would be
+         */
+        void start(Consumer<T> handler, BooleanSupplier done) {
+            Thread poller = new Thread(() -> {
+                IdleStrategy idle = new IdleStrategy(idleStrategy, maxParkNanos);
+                List<T> batch = new ArrayList<>();
+                while (!stopped && !halted) {
+                    int count = queue.drainTo(batch);
+                    for (T message : batch) {
+                        try {
+                            handler.accept(message);
+                        } catch (Exception e) {
+                            // Skip the poison message so the queue keeps moving
+                            log.error("Error handling message from {}", name, e);
+                        }
+                    }
+                    batch.clear();
+                    if (count > 0) {
+                        done.getAsBoolean();
+                    }
+                    idle.idle(count);
+                }
+            }, name);
+            poller.setDaemon(true);
+            poller.start();
+            pollers.add(poller);
+            log.info("Started {} poller", name);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.iris.common.ipc;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Single-producer single-consumer ring of messages in a memory-mapped file, shared by two
+ * processes on one host.
+ *
+ * The file starts with a header holding the ring size and the producer and consumer
+ * positions, each on its own cache line. Positions only grow; a position's offset in the
+ * ring is its value modulo the size. The producer writes a record and then publishes its
+ * new position with a release store, and the consumer reads up to the position it loads
+ * with an acquire load, so a record is never seen half written. The consumer hands space
+ * back the same way, once it has done with the records it read. Positions live in the
+ * file, so either side can restart and carry on where it left off; a consumer that restarts
+ * reads again the records it had not released.
+ *
+ * A new ring starts its positions at its creation time in nanoseconds, rounded down to the
+ * ring size, so a ring created again after its file was lost (/dev/shm does not survive a
+ * reboot) goes on from above the positions of the old one, unless the old one averaged
+ * more than a byte per nanosecond. A record's position can so stand for it across restarts.
+ *
+ * Record layout, 8-byte aligned: payload length (int), message type (int), payload. A
+ * record never wraps; when it does not fit before the end of the ring, a padding marker
+ * fills the rest and the record starts over at the beginning.
+ *
+ * Not thread-safe; one thread produces and one thread consumes at a time.
+ */
+@Slf4j
+public class MappedRing implements Closeable {
+    private static final int MAGIC = 0x49524E47; // "IRNG"
+    private static final int MAGIC_OFFSET = 0;
+    private static final int SIZE_OFFSET = 4;
+    private static final int PRODUCER_OFFSET = 64;
+    private static final int CONSUMER_OFFSET = 128;
+    private static final int HEADER_SIZE = 192;
+
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int PADDING = -1;
+
+    private static final VarHandle POSITION =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Receives the records read by {@link #read} and {@link #poll}
+     */
+    @FunctionalInterface
+    public interface Handler {
+        void onRecord(int type, byte[] payload, long position);
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final int mask;
+
+    // Producer side: own position, and the consumer's as last seen
+    private long producerPosition;
+    private long consumerLimit;
+
+    // Consumer side: position read up to, and position released up to
+    private long consumerPosition;
+    private long releasedPosition;
+
+    /**
+     * Map a ring file, creating it if needed
+     * @param path Ring file
+     * @param size Ring size in bytes, a power of two; must match the file if it exists
+     */
+    public MappedRing(Path path, int size) throws IOException {
+        if (Integer.bitCount(size) != 1 || size < 1024) {
+            throw new IllegalArgumentException("Ring size must be a power of two of at least 1024: " + size);
+        }
+        this.path = path;
+        this.size = size;
+        this.mask = size - 1;
+        Files.createDirectories(path.getParent());
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        // Whichever side opens a new file first lays out the header, under a lock so the other waits for it
+        try (FileLock lock = channel.lock(0, HEADER_SIZE, false)) {
+            if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+                long start = System.currentTimeMillis() * 1_000_000 & -size;
+                buffer.putInt(SIZE_OFFSET, size);
+                POSITION.setRelease(buffer, PRODUCER_OFFSET, start);
+                POSITION.setRelease(buffer, CONSUMER_OFFSET, start);
+                buffer.putInt(MAGIC_OFFSET, MAGIC);
+                log.info("Created ring {} of {} bytes at position {}", path, size, start);
+            }
+        }
+        if (buffer.getInt(SIZE_OFFSET) != size) {
+            channel.close();
+            throw new IOException("Ring " + path + " has size " + buffer.getInt(SIZE_OFFSET) + ", expected " + size);
+        }
+
+        producerPosition = (long) POSITION.getAcquire(buffer, PRODUCER_OFFSET);
+        consumerPosition = (long) POSITION.getAcquire(buffer, CONSUMER_OFFSET);
+        releasedPosition = consumerPosition;
+        consumerLimit = consumerPosition;
+        log.info("Mapped ring {} at producer position {}, consumer position {}", path, producerPosition, consumerPosition);
+    }
+
+    /**
+     * Largest payload a record can hold
+     * @return Bytes
+     */
+    public int maxPayloadLength() {
+        return size / 2 - RECORD_HEADER_SIZE;
+    }
+
+    /**
+     * Append a record if there is room
+     * @param type Message type, passed back to the consumer
+     * @param payload Record payload
+     * @return False if the ring is full
+     */
+    public boolean offer(int type, byte[] payload) {
+        if (payload.length > maxPayloadLength()) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit ring " + path);
+        }
+        int recordLength = align(RECORD_HEADER_SIZE + payload.length);
+        int index = (int) (producerPosition & mask);
+        int toEnd = size - index;
+        int required = recordLength <= toEnd ? recordLength : toEnd + recordLength;
+        if (producerPosition + required - consumerLimit > size) {
+            consumerLimit = (long) POSITION.getAcquire(buffer, CONSUMER_OFFSET);
+            if (producerPosition + required - consumerLimit > size) {
+                return false;
+            }
+        }
+
+        long position = producerPosition;
+        if (recordLength > toEnd) {
+            buffer.putInt(HEADER_SIZE + index, PADDING);
+            position += toEnd;
+            index = 0;
+        }
+        int at = HEADER_SIZE + index;
+        buffer.putInt(at, payload.length);
+        buffer.putInt(at + 4, type);
+        buffer.put(at + RECORD_HEADER_SIZE, payload);
+
+        producerPosition = position + recordLength;
+        POSITION.setRelease(buffer, PRODUCER_OFFSET, producerPosition);
+        return true;
+    }
+
+    /**
+     * Read the records published since the last read, keeping their space until
+     * {@link #release}
+     * @param handler Receives each record and its position, in order
+     * @param limit Most records to read
+     * @return Number of records read
+     */
+    public int read(Handler handler, int limit) {
+        long available = (long) POSITION.getAcquire(buffer, PRODUCER_OFFSET);
+        long position = consumerPosition;
+        int read = 0;
+        try {
+            while (position < available && read < limit) {
+                int index = (int) (position & mask);
+                int at = HEADER_SIZE + index;
+                int length = buffer.getInt(at);
+                if (length == PADDING) {
+                    position += size - index;
+                    continue;
+                }
+                int type = buffer.getInt(at + 4);
+                byte[] payload = new byte[length];
+                buffer.get(at + RECORD_HEADER_SIZE, payload);
+                long recordPosition = position;
+                position += align(RECORD_HEADER_SIZE + length);
+                read++;
+                handler.onRecord(type, payload, recordPosition);
+            }
+        } finally {
+            // A record whose handler failed counts as read, as a skipped poison record does on Kafka
+            consumerPosition = position;
+        }
+        return read;
+    }
+
+    /**
+     * Hand the space of every record read so far back to the producer. Records read but
+     * not released are read again by a consumer that maps the ring afresh.
+     */
+    public void release() {
+        if (releasedPosition != consumerPosition) {
+            releasedPosition = consumerPosition;
+            POSITION.setRelease(buffer, CONSUMER_OFFSET, releasedPosition);
+        }
+    }
+
+    /**
+     * Read the records published since the last read and release them at once
+     * @param handler Receives each record and its position, in order
+     * @param limit Most records to read
+     * @return Number of records read
+     */
+    public int poll(Handler handler, int limit) {
+        try {
+            return read(handler, limit);
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static int align(int length) {
+        return (length + 7) & ~7;
+    }
+}
@@ -0,0 +1,160 @@
+package com.iris.common.ipc;
+
+import com.iris.common.kafka.CommandType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Carries commands and execution reports between a gateway and an engine on the same host
+ * through two ring files, in place of the inbound-orders and outbound-executions topics.
+ * The gateway produces commands and consumes reports; the engine does the opposite.
+ *
+ * Each ring has one producer. Threads of one process that send on the same ring take turns
+ * under a lock, and a send waits for room while the other side catches up. The engine
+ * releases commands only once it has made them durable, so one that restarts takes again
+ * those it had not; their ring positions tell it which it already has.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.transport", havingValue = "shared-memory")
+public class SharedMemoryTransport implements EngineTransport {
+    public static final String COMMANDS_RING = "commands.ring";
+    public static final String EXECUTIONS_RING = "executions.ring";
+
+    @Value("${app.ipc.directory:/dev/shm/iris}")
+    private String directory;
+
+    @Value("${app.ipc.ring-size:16777216}")
+    private int ringSize;
+
+    @Value("${app.ipc.idle-strategy:BACKOFF}")
+    private IdleStrategy.Type idleStrategy;
+
+    @Value("${app.ipc.max-park-us:1000}")
+    private long maxParkMicros;
+
+    // How long a send waits for room before giving up
+    @Value("${app.ipc.send-timeout-ms:1000}")
+    private long sendTimeoutMs;
+
+    // Most records handed over per poll
+    @Value("${app.ipc.poll-limit:256}")
+    private int pollLimit;
+
+    private MappedRing commands;
+    private MappedRing executions;
+
+    private final List<Thread> pollers = new ArrayList<>();
+    private volatile boolean stopped;
+    private volatile boolean commandsStopped;
+
+    @PostConstruct
+    public void open() throws IOException {
+        commands = new MappedRing(Path.of(directory, COMMANDS_RING), ringSize);
+        executions = new MappedRing(Path.of(directory, EXECUTIONS_RING), ringSize);
+        log.info("Shared memory transport open in {}, {} idle strategy", directory, idleStrategy);
+    }
+
+    @Override
+    public void sendCommand(CommandType type, byte[] payload) {
+        send(commands, type.getCode(), payload);
+    }
+
+    @Override
+    public void sendExecutionReport(byte[] payload) {
+        send(executions, 0, payload);
+    }
+
+    @Override
+    public void startCommandPoller(CommandHandler handler, BooleanSupplier release) {
+        startPoller("ipc-commands", commands,
+                (type, payload, position) -> handler.onCommand(CommandType.fromCode((byte) type), payload, position),
+                release, () -> commandsStopped);
+    }
+
+    @Override
+    public void stopCommandPoller() {
+        commandsStopped = true;
+    }
+
+    @Override
+    public void startExecutionPoller(Consumer<byte[]> handler) {
+        startPoller("ipc-executions", executions, (type, payload, position) -> handler.accept(payload),
+                () -> true, () -> false);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        stopped = true;
+        for (Thread poller : pollers) {
+            try {
+                poller.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        commands.close();
+        executions.close();
+    }
+
+    private void send(MappedRing ring, int type, byte[] payload) {
+        // One producer per ring, so this process's senders take turns
+        synchronized (ring) {
+            if (ring.offer(type, payload)) {
+                return;
+            }
+            IdleStrategy idle = new IdleStrategy(idleStrategy, TimeUnit.MICROSECONDS.toNanos(maxParkMicros));
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+            while (!ring.offer(type, payload)) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Ring full for " + sendTimeoutMs + " ms; is the other side running?");
+                }
+                idle.idle(0);
+            }
+        }
+    }
+
+    /**
+     * Start a thread that reads a ring, releasing what it read when told to
+     * @param release Called after each read that took records; true to release them
+     * @param halted True once the thread should stop early
+     */
+    private void startPoller(String name, MappedRing ring, MappedRing.Handler handler,
+                             BooleanSupplier release, BooleanSupplier halted) {
+        MappedRing.Handler guarded = (type, payload, position) -> {
+            try {
+                handler.onRecord(type, payload, position);
+            } catch (Exception e) {
+                // Skip the poison record so the ring keeps moving
+                log.error("Error handling record from {}", name, e);
+            }
+        };
+        Thread poller = new Thread(() -> {
+            IdleStrategy idle = new IdleStrategy(idleStrategy, TimeUnit.MICROSECONDS.toNanos(maxParkMicros));
+            while (!stopped && !halted.getAsBoolean()) {
+                int read = ring.read(guarded, pollLimit);
+                // Records not released now are covered by a later release
+                if (read > 0 && release.getAsBoolean()) {
+                    ring.release();
+                }
+                idle.idle(read);
+            }
+        }, name);
+        poller.setDaemon(true);
+        poller.start();
+        pollers.add(poller);
+        log.info("Started {} poller", name);
+    }
+}
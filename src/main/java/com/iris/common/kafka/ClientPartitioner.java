@@ -0,0 +1,44 @@
+package com.iris.common.kafka;
+
+import org.apache.kafka.common.utils.Utils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Maps each client to the outbound-executions partition its execution reports go to. The
+ * engine writes a client's reports to that partition, and a gateway reads only the
+ * partitions of the clients logged on to it, so both sides must agree on the count.
+ */
+@Component
+public class ClientPartitioner {
+    private final int partitions;
+
+    public ClientPartitioner(@Value("${iris.executions.partitions:12}") int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("iris.executions.partitions must be at least 1: " + partitions);
+        }
+        this.partitions = partitions;
+    }
+
+    /**
+     * Get the number of outbound-executions partitions
+     * @return Partition count
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Get the partition a client's execution reports go to
+     * @param clientId Client ID, the FIX SenderCompID of the client's session
+     * @return Partition
+     */
+    public int partitionOf(String clientId) {
+        if (clientId == null) {
+            return 0;
+        }
+        return Utils.toPositive(Utils.murmur2(clientId.getBytes(StandardCharsets.UTF_8))) % partitions;
+    }
+}
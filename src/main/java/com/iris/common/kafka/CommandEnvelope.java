@@ -0,0 +1,59 @@
+package com.iris.common.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+
+/**
+ * Envelope for commands sent to the matching engine. The record key is the instrument,
+ * and gateways pick the partition from the {@link ShardMap}; a one-byte header holds
+ * the command type. The payload is only decoded once the consumer knows its type.
+ */
+public final class CommandEnvelope {
+    public static final String TYPE_HEADER = "iris-cmd";
+
+    private CommandEnvelope() {
+    }
+
+    /**
+     * Wrap a command payload in a record
+     * @param topic Topic
+     * @param instrumentId Instrument ID, used as the record key
+     * @param type Command type
+     * @param payload Encoded command
+     * @return Record ready to send
+     */
+    public static ProducerRecord<String, byte[]> record(String topic, String instrumentId,
+                                                        CommandType type, byte[] payload) {
+        return record(topic, null, instrumentId, type, payload);
+    }
+
+    /**
+     * Wrap a command payload in a record for a chosen partition
+     * @param topic Topic
+     * @param partition Partition, or null to partition by key
+     * @param instrumentId Instrument ID, used as the record key
+     * @param type Command type
+     * @param payload Encoded command
+     * @return Record ready to send
+     */
+    public static ProducerRecord<String, byte[]> record(String topic, Integer partition, String instrumentId,
+                                                        CommandType type, byte[] payload) {
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, partition, instrumentId, payload);
+        record.headers().add(TYPE_HEADER, new byte[]{type.getCode()});
+        return record;
+    }
+
+    /**
+     * Read the command type from a record
+     * @param record Consumed record
+     * @return The command type, or null if the header is missing or unknown
+     */
+    public static CommandType typeOf(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(TYPE_HEADER);
+        if (header == null || header.value() == null || header.value().length != 1) {
+            return null;
+        }
+        return CommandType.fromCode(header.value()[0]);
+    }
+}
@@ -0,0 +1,45 @@
+package com.iris.common.kafka;
+
+/**
+ * Kind of command on the inbound-orders topic, carried as a one-byte record header
+ * so consumers can dispatch without looking at the payload
+ */
+public enum CommandType {
+    NEW_ORDER((byte) 1),
+    CANCEL_ORDER((byte) 2),
+    REPLACE_ORDER((byte) 3),
+    MASS_CANCEL((byte) 4),
+    // Hand an instrument's book to another partition
+    TRANSFER_OUT((byte) 5),
+    // A handed over book, sent by the engine that held it to the new partition
+    BOOK_TRANSFER((byte) 6),
+    // Whether the broker took a handed over book; engine-internal, journaled but never sent
+    HANDOFF_RESULT((byte) 7);
+
+    private static final CommandType[] BY_CODE = new CommandType[8];
+
+    static {
+        for (CommandType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final byte code;
+
+    CommandType(byte code) {
+        this.code = code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * Look up a command type by its header code
+     * @param code Header code
+     * @return The command type, or null if the code is unknown
+     */
+    public static CommandType fromCode(byte code) {
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
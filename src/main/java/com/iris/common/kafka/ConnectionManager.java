@@ -39,6 +39,10 @@ public class ConnectionManager {
     @Value("${app.kafka.create-topics:true}")
     private boolean createTopics;
 
+    // In one JVM everything goes through in-process queues and Kafka is left alone
+    @Value("${app.transport:kafka}")
+    private String transport;
+
     @Value("${app.kafka.topic.inbound-orders:inbound-orders}")
     private String inboundOrdersTopic;
 
@@ -54,6 +58,25 @@ public class ConnectionManager {
     @Value("${app.kafka.topic.system-control:system-control}")
     private String systemControlTopic;
 
+    // Instruments are spread over the inbound-orders partitions by the shard map
+    @Value("${iris.shards.partitions:3}")
+    private int inboundOrdersPartitions;
+
+    // Execution reports are spread over the outbound-executions partitions by client
+    @Value("${iris.executions.partitions:12}")
+    private int outboundExecutionsPartitions;
+
+    // Batch listeners: most records handed over per poll, and how long a fetch may wait to fill
+    @Value("${app.kafka.batch.max-records:500}")
+    private int batchMaxRecords;
+
+    @Value("${app.kafka.batch.linger-ms:5}")
+    private int batchLingerMs;
+
+    // How long the producer holds a record to fill a batch; the engine never flushes
+    @Value("${app.kafka.producer.linger-ms:1}")
+    private int producerLingerMs;
+
     private final Map<String, Integer> topicPartitions = new HashMap<>();
     private final Map<String, Short> topicReplications = new HashMap<>();
 
@@ -72,8 +95,8 @@ public class ConnectionManager {
         log.info("  system-control: {}", systemControlTopic);
 
         // Configure topic settings
-        topicPartitions.put(inboundOrdersTopic, 3);
-        topicPartitions.put(outboundExecutionsTopic, 3);
+        topicPartitions.put(inboundOrdersTopic, inboundOrdersPartitions);
+        topicPartitions.put(outboundExecutionsTopic, outboundExecutionsPartitions);
         topicPartitions.put(marketDataTopic, 3);
         topicPartitions.put(instrumentUpdatesTopic, 1);
         topicPartitions.put(systemControlTopic, 1);
@@ -82,8 +105,11 @@ public class ConnectionManager {
             topicReplications.put(topic, (short) 1); // Use 3 for production
         }
 
-        if (createTopics) {
-            createKafkaTopics();
+        if (!isInProcess()) {
+            if (createTopics) {
+                createKafkaTopics();
+            }
+            checkExecutionsPartitions();
         }
 
         // Log connection status
@@ -152,6 +178,38 @@ public class ConnectionManager {
         }
     }
 
+    /**
+     * Make sure the outbound-executions topic has the partition count engines and gateways
+     * route reports by. A topic with too few is grown when this node may create topics;
+     * otherwise, or when it has too many, startup is refused, since reports would go to
+     * partitions no gateway reads.
+     */
+    private void checkExecutionsPartitions() {
+        try (Admin admin = Admin.create(Map.of(
+                AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers
+        ))) {
+            TopicDescription description = admin.describeTopics(List.of(outboundExecutionsTopic))
+                    .allTopicNames().get().get(outboundExecutionsTopic);
+            int existing = description.partitions().size();
+            if (existing == outboundExecutionsPartitions) {
+                return;
+            }
+            if (existing > outboundExecutionsPartitions || !createTopics) {
+                throw new IllegalStateException("Topic " + outboundExecutionsTopic + " has " + existing
+                        + " partitions but iris.executions.partitions is " + outboundExecutionsPartitions);
+            }
+            log.info("Growing topic {} from {} to {} partitions", outboundExecutionsTopic, existing, outboundExecutionsPartitions);
+            admin.createPartitions(Map.of(outboundExecutionsTopic, NewPartitions.increaseTo(outboundExecutionsPartitions)))
+                    .all().get();
+        } catch (ExecutionException e) {
+            // Kafka unreachable or the topic missing; the listeners report it soon enough
+            log.error("Failed to check the partitions of {}", outboundExecutionsTopic, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted checking the partitions of {}", outboundExecutionsTopic, e);
+        }
+    }
+
     @Bean(name = "commonClientId")
     public String clientId() {
         return applicationName;
@@ -168,7 +226,7 @@ public class ConnectionManager {
         configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
         configProps.put(ProducerConfig.ACKS_CONFIG, "all");
         // Performance tuning
-        configProps.put(ProducerConfig.LINGER_MS_CONFIG, 5); // milliseconds to wait before sending
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, producerLingerMs); // milliseconds to wait before sending
         configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 16384);
         configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "snappy");
         return new DefaultKafkaProducerFactory<>(configProps);
@@ -181,6 +239,10 @@ public class ConnectionManager {
 
     @Bean
     public ConsumerFactory<String, byte[]> consumerFactory() {
+        return new DefaultKafkaConsumerFactory<>(consumerProperties());
+    }
+
+    private Map<String, Object> consumerProperties() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, applicationName);
@@ -193,7 +255,7 @@ public class ConnectionManager {
         // Performance tuning
         props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, 1024);
         props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, 500);
-        return new DefaultKafkaConsumerFactory<>(props);
+        return props;
     }
 
     @Bean
@@ -203,9 +265,34 @@ public class ConnectionManager {
         factory.setConsumerFactory(consumerFactory());
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
         factory.setConcurrency(3);
+        factory.setAutoStartup(!isInProcess());
         return factory;
     }
 
+    /**
+     * Listener factory that hands a whole poll to the listener as one list. The listener
+     * acknowledges once per batch, so offsets are committed once per poll.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> batchKafkaListenerContainerFactory() {
+        Map<String, Object> props = consumerProperties();
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchMaxRecords);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, batchLingerMs);
+
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(props));
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.setConcurrency(3);
+        factory.setAutoStartup(!isInProcess());
+        return factory;
+    }
+
+    private boolean isInProcess() {
+        return "in-process".equals(transport);
+    }
+
     @Bean
     public Map<String, String> kafkaTopicMap() {  // renamed from kafkaTopics
         Map<String, String> topics = new HashMap<>();
@@ -0,0 +1,107 @@
+package com.iris.common.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.utils.Utils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps each instrument to the inbound-orders partition its commands go to. Each engine
+ * node consumes a fixed set of partitions, so the partition decides which node holds the
+ * book.
+ *
+ * An instrument goes to the partition configured for it, e.g. iris.shards.instrument.AAPL=2,
+ * or else to its place on a consistent hash ring, so adding partitions moves only a share
+ * of the instruments. Moves made while running override both.
+ */
+@Slf4j
+@Component
+public class ShardMap {
+    // Per-instrument partition, e.g. iris.shards.instrument.AAPL=2
+    private static final String INSTRUMENT_PROPERTY_PREFIX = "iris.shards.instrument.";
+
+    // Points per partition on the hash ring; more points spread instruments more evenly
+    private static final int VIRTUAL_NODES = 64;
+
+    private final Environment environment;
+    private final int partitions;
+    private final TreeMap<Integer, Integer> ring = new TreeMap<>();
+
+    // Resolved partition per instrument, including moves
+    private final Map<String, Integer> assignments = new ConcurrentHashMap<>();
+
+    public ShardMap(Environment environment, @Value("${iris.shards.partitions:3}") int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("iris.shards.partitions must be at least 1: " + partitions);
+        }
+        this.environment = environment;
+        this.partitions = partitions;
+        for (int partition = 0; partition < partitions; partition++) {
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                ring.put(hash("partition-" + partition + "-" + node), partition);
+            }
+        }
+    }
+
+    /**
+     * Get the number of inbound-orders partitions
+     * @return Partition count
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Get the partition an instrument's commands go to
+     * @param instrumentId Instrument ID
+     * @return Partition
+     */
+    public int partitionOf(String instrumentId) {
+        Integer partition = assignments.get(instrumentId);
+        if (partition == null) {
+            partition = assignments.computeIfAbsent(instrumentId, this::assign);
+        }
+        return partition;
+    }
+
+    /**
+     * Send an instrument's commands to another partition from now on
+     * @param instrumentId Instrument ID
+     * @param partition New partition
+     */
+    public void move(String instrumentId, int partition) {
+        checkPartition(partition);
+        Integer previous = assignments.put(instrumentId, partition);
+        log.info("Instrument {} moved from partition {} to {}", instrumentId, previous, partition);
+    }
+
+    /**
+     * Check that a partition exists
+     * @param partition Partition
+     */
+    public void checkPartition(int partition) {
+        if (partition < 0 || partition >= partitions) {
+            throw new IllegalArgumentException("Partition must be between 0 and " + (partitions - 1) + ": " + partition);
+        }
+    }
+
+    private int assign(String instrumentId) {
+        Integer configured = environment.getProperty(INSTRUMENT_PROPERTY_PREFIX + instrumentId, Integer.class);
+        if (configured != null) {
+            checkPartition(configured);
+            return configured;
+        }
+        Map.Entry<Integer, Integer> point = ring.ceilingEntry(hash(instrumentId));
+        return (point != null ? point : ring.firstEntry()).getValue();
+    }
+
+    private static int hash(String key) {
+        return Utils.toPositive(Utils.murmur2(key.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,79 @@
+package com.iris.common.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Helpers for fixed-point prices and quantities. A value is held as a long mantissa
+ * with a per-instrument scale (number of decimal places), e.g. 150.25 with scale 2
+ * is 15025. Decimal types are only used when converting at the edges.
+ */
+public final class FixedPoint {
+    // Largest scale we support; 10^18 still fits in a long
+    public static final int MAX_SCALE = 18;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_SCALE; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Get the scale needed to represent multiples of a tick size exactly
+     * @param tickSize Tick size, e.g. 0.01
+     * @return Number of decimal places, e.g. 2
+     */
+    public static int scaleOf(double tickSize) {
+        if (tickSize <= 0) {
+            throw new IllegalArgumentException("Tick size must be positive: " + tickSize);
+        }
+        int scale = BigDecimal.valueOf(tickSize).stripTrailingZeros().scale();
+        return Math.min(Math.max(scale, 0), MAX_SCALE);
+    }
+
+    /**
+     * Convert a decimal value to a mantissa, rounding to the nearest unit
+     * @param value Decimal value
+     * @param scale Scale
+     * @return Mantissa
+     */
+    public static long toMantissa(double value, int scale) {
+        return Math.round(value * POWERS_OF_TEN[scale]);
+    }
+
+    /**
+     * Check whether a decimal value can be held at a scale without rounding
+     * @param value Decimal value
+     * @param scale Scale
+     * @return True if the value has no more than scale decimal places
+     */
+    public static boolean isExact(double value, int scale) {
+        double scaled = value * POWERS_OF_TEN[scale];
+        return Math.abs(scaled - Math.rint(scaled)) < 1e-6;
+    }
+
+    /**
+     * Convert a mantissa to the nearest double, for messages that carry doubles
+     * @param mantissa Mantissa
+     * @param scale Scale
+     * @return Decimal value
+     */
+    public static double toDouble(long mantissa, int scale) {
+        return (double) mantissa / POWERS_OF_TEN[scale];
+    }
+
+    /**
+     * Convert a mantissa to an exact decimal, for persistence
+     * @param mantissa Mantissa
+     * @param scale Scale
+     * @return Decimal value
+     */
+    public static BigDecimal toDecimal(long mantissa, int scale) {
+        return BigDecimal.valueOf(mantissa, scale);
+    }
+}
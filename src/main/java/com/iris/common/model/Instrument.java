@@ -14,6 +14,7 @@ public class Instrument {
     private double lastTradePrice;
     private double lastSettlementPrice;
     private double volumeTickSize;
+    private double priceTickSize;
     private String tradingHours;
     private boolean active;
 
@@ -23,6 +24,7 @@ public class Instrument {
         this.lastTradePrice = lastTradePrice;
         this.lastSettlementPrice = lastTradePrice;
         this.volumeTickSize = 1.0;
+        this.priceTickSize = 0.01;
         this.tradingHours = "0000-2359";
         this.active = active;
     }
@@ -34,6 +36,7 @@ public class Instrument {
         this.lastTradePrice = lastSettlementPrice; // Initialize trade price with settlement price
         this.lastSettlementPrice = lastSettlementPrice;
         this.volumeTickSize = volumeTickSize;
+        this.priceTickSize = 0.01;
         this.tradingHours = tradingHours;
         this.active = active;
     }
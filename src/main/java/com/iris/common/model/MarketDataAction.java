@@ -0,0 +1,15 @@
+package com.iris.common.model;
+
+/**
+ * What a market data entry says about a price level, or that a trade printed
+ */
+public enum MarketDataAction {
+    // A price level appeared
+    NEW,
+    // A level's quantity or order count changed
+    CHANGE,
+    // A level emptied and left the book
+    DELETE,
+    // A trade at the entry's price and quantity; the side is the aggressor's
+    TRADE
+}
@@ -0,0 +1,22 @@
+package com.iris.common.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One price level update or trade in a market data message. Level entries carry the
+ * level's total quantity and order count after the change, not the difference.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MarketDataEntry {
+    private MarketDataAction action;
+    private String side; // "BUY" or "SELL"
+    private double price;
+    private double quantity;
+    private int orderCount;
+}
@@ -13,11 +13,15 @@ public class Instrument {
     private String symbol;
     private double lastSettlementPrice;
     private double volumeTickSize;
+    private double priceTickSize;
     private String tradingHours; // Format: "0000-2359"
 
     // Default trading hours
     public static final String DEFAULT_TRADING_HOURS = "0000-2359";
 
+    // Default price tick size when the instruments file does not specify one
+    public static final double DEFAULT_PRICE_TICK_SIZE = 0.01;
+
     // Helper method to check if trading is allowed at a specific time
     public boolean isTradingAllowed(String currentTime) {
         if (tradingHours == null || tradingHours.isEmpty() || DEFAULT_TRADING_HOURS.equals(tradingHours)) {
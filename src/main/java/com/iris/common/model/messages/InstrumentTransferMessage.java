@@ -0,0 +1,24 @@
+package com.iris.common.model.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Moves an instrument's book to another inbound-orders partition. Sent to the engine
+ * holding the book as "TransferOut"; once the book has been handed over, the engine
+ * announces it on the system-control topic as "InstrumentMoved" and gateways route the
+ * instrument's commands to the new partition.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InstrumentTransferMessage {
+    private String messageType;
+    private String messageId;
+    private long timestamp;
+    private String instrumentId;
+    private int toPartition;
+}
@@ -1,10 +1,20 @@
 package com.iris.common.model.messages;
 
+import com.iris.common.model.MarketDataEntry;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
+/**
+ * Book changes for one instrument. "MarketDataIncrementalRefresh" carries the level updates
+ * and trades of one sequenced command; "MarketDataSnapshot" carries every level. The
+ * sequence goes up by one per incremental refresh of the instrument, and a snapshot holds
+ * the sequence of the last refresh it includes, so a consumer that sees a gap waits for the
+ * next snapshot.
+ */
 @Data
 @Builder
 @NoArgsConstructor
@@ -18,4 +28,6 @@ public class MarketDataUpdateMessage {
     private double lastTradeQuantity;
     private long lastTradeTime;
     private String tradingStatus;
+    private long sequence;
+    private List<MarketDataEntry> entries;
 }
\ No newline at end of file
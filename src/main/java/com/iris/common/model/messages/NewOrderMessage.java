@@ -1,5 +1,6 @@
 package com.iris.common.model.messages;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
 import com.iris.common.model.NewOrder;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -16,5 +17,6 @@ public class NewOrderMessage {
     private String messageId;
     private long timestamp;
     private String clientId;
+    @JsonAlias("order") // Name used by the gateway
     private NewOrder newOrder;
 }
\ No newline at end of file
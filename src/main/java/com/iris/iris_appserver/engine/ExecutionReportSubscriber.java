@@ -0,0 +1,279 @@
+package com.iris.iris_appserver.engine;
+
+import com.iris.common.kafka.ClientPartitioner;
+import com.iris.common.kafka.KafkaTopics;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads execution reports from the outbound-executions partitions that hold the clients
+ * logged on to this gateway, and from no others. The engine writes each client's reports
+ * to the client's partition, so this gateway gets its own clients' reports plus those of
+ * clients elsewhere that share a partition with them; more partitions mean less of the
+ * latter.
+ *
+ * Partitions are assigned here rather than by a consumer group, and change as clients log
+ * on and off. Positions are still committed under this gateway's group id, so a newly
+ * assigned partition picks up where this gateway last read it, and reports written while
+ * the gateway was down or the client was away reach the client when it logs on again.
+ * A partition this gateway never read starts at the time the client asking for it logged
+ * on, so a logon need not wait for the assignment, and no partition goes back further than
+ * the replay window.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExecutionReportSubscriber {
+    // Engine clocks may run behind this one; repeating a few reports beats losing one
+    private static final long CLOCK_SKEW_MS = 1000;
+
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    private final KafkaTopics kafkaTopics;
+    private final ClientPartitioner clientPartitioner;
+    private final MatchingEngineConsumer matchingEngineConsumer;
+
+    // Reports come over Kafka only; local transports deliver them to MatchingEngineConsumer
+    @Value("${app.transport:kafka}")
+    private String transport;
+
+    @Value("${app.kafka.executions.poll-timeout-ms:100}")
+    private long pollTimeoutMs;
+
+    // Positions are committed per gateway, so each keeps its own place in every partition
+    @Value("${spring.application.name}-${iris.node-id:1}-executions")
+    private String groupId;
+
+    // Furthest back a newly assigned partition is read from
+    @Value("${app.kafka.executions.replay-window-ms:300000}")
+    private long replayWindowMs;
+
+    // Logged-on clients, and when each wanted partition was first asked for
+    private final Set<String> clients = new HashSet<>();
+    private final Map<Integer, Long> wantedSince = new HashMap<>();
+
+    private volatile Set<Integer> wantedPartitions = Set.of();
+    private volatile Consumer<String, byte[]> consumer;
+    private volatile Thread poller;
+    private volatile boolean stopped;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!"kafka".equals(transport)) {
+            return;
+        }
+        poller = new Thread(this::run, "execution-report-subscriber");
+        poller.setDaemon(true);
+        poller.start();
+        log.info("Started execution report subscriber on {} partitions of {}",
+                clientPartitioner.getPartitions(), kafkaTopics.getOutboundExecutionsTopic());
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        wake();
+        Thread running = poller;
+        if (running != null) {
+            try {
+                running.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Start reading a client's partition, if no other client here is on it already. Returns
+     * at once; the partition is read from no later than now, whenever it is assigned.
+     * @param clientId Client that logged on
+     */
+    public void addClient(String clientId) {
+        synchronized (this) {
+            if (!clients.add(clientId) || !requestAssignment()) {
+                return;
+            }
+        }
+        log.info("Client {} logged on, reading execution report partition {}",
+                clientId, clientPartitioner.partitionOf(clientId));
+    }
+
+    /**
+     * Stop reading a client's partition, once no other client here is on it
+     * @param clientId Client that logged out
+     */
+    public void removeClient(String clientId) {
+        synchronized (this) {
+            if (!clients.remove(clientId) || !requestAssignment()) {
+                return;
+            }
+        }
+        log.info("Client {} logged out, no longer reading execution report partition {}",
+                clientId, clientPartitioner.partitionOf(clientId));
+    }
+
+    // Called holding the lock; returns false if the clients still map to the same partitions
+    private boolean requestAssignment() {
+        Set<Integer> wanted = new HashSet<>();
+        for (String client : clients) {
+            wanted.add(clientPartitioner.partitionOf(client));
+        }
+        if (wanted.equals(wantedPartitions)) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        wantedSince.keySet().retainAll(wanted);
+        for (Integer partition : wanted) {
+            wantedSince.putIfAbsent(partition, now);
+        }
+        wantedPartitions = Set.copyOf(wanted);
+        wake();
+        return true;
+    }
+
+    private void wake() {
+        Consumer<String, byte[]> current = consumer;
+        if (current != null) {
+            current.wakeup();
+        }
+        Thread running = poller;
+        if (running != null) {
+            LockSupport.unpark(running);
+        }
+    }
+
+    private void run() {
+        // Partitions are assigned here, so the consumer joins no group; the group id only keys its commits
+        try (Consumer<String, byte[]> kafkaConsumer = consumerFactory.createConsumer(groupId, "-executions")) {
+            consumer = kafkaConsumer;
+            Set<Integer> assigned = Set.of();
+            while (!stopped) {
+                Set<Integer> wanted;
+                Map<Integer, Long> since;
+                synchronized (this) {
+                    wanted = wantedPartitions;
+                    since = Map.copyOf(wantedSince);
+                }
+                try {
+                    if (!wanted.equals(assigned)) {
+                        assign(kafkaConsumer, assigned, wanted, since);
+                        assigned = wanted;
+                    }
+                    if (assigned.isEmpty()) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(pollTimeoutMs));
+                        continue;
+                    }
+                    ConsumerRecords<String, byte[]> records = kafkaConsumer.poll(Duration.ofMillis(pollTimeoutMs));
+                    for (ConsumerRecord<String, byte[]> record : records) {
+                        handle(record);
+                    }
+                    if (!records.isEmpty()) {
+                        kafkaConsumer.commitAsync();
+                    }
+                } catch (WakeupException e) {
+                    // The wanted partitions changed, or we are stopping
+                }
+            }
+            try {
+                commit(kafkaConsumer);
+            } catch (WakeupException e) {
+                // Woken to stop, which spends the wakeup, so this one goes through
+                commit(kafkaConsumer);
+            }
+        } catch (Exception e) {
+            log.error("Execution report subscriber stopped", e);
+        } finally {
+            consumer = null;
+        }
+    }
+
+    private void assign(Consumer<String, byte[]> kafkaConsumer, Set<Integer> assigned, Set<Integer> wanted,
+                        Map<Integer, Long> since) {
+        String topic = kafkaTopics.getOutboundExecutionsTopic();
+        List<TopicPartition> partitions = wanted.stream().map(p -> new TopicPartition(topic, p)).toList();
+        Set<TopicPartition> added = new HashSet<>();
+        for (Integer partition : wanted) {
+            if (!assigned.contains(partition)) {
+                added.add(new TopicPartition(topic, partition));
+            }
+        }
+        // Positions of partitions being dropped are kept for when they come back
+        if (!assigned.isEmpty()) {
+            commit(kafkaConsumer);
+        }
+        // Partitions kept keep their position
+        kafkaConsumer.assign(partitions);
+        if (!added.isEmpty()) {
+            seekAdded(kafkaConsumer, added, since);
+        }
+        log.info("Reading execution report partitions {}", wanted);
+    }
+
+    /**
+     * Position newly assigned partitions: at this gateway's committed offset if it has one,
+     * else at the time the partition was asked for, and never before the replay window
+     */
+    private void seekAdded(Consumer<String, byte[]> kafkaConsumer, Set<TopicPartition> added, Map<Integer, Long> since) {
+        long floor = System.currentTimeMillis() - replayWindowMs;
+        Map<TopicPartition, OffsetAndMetadata> committed = kafkaConsumer.committed(added);
+        Map<TopicPartition, Long> times = new HashMap<>();
+        for (TopicPartition partition : added) {
+            boolean hasCommitted = committed.get(partition) != null;
+            long asked = since.getOrDefault(partition.partition(), floor) - CLOCK_SKEW_MS;
+            times.put(partition, hasCommitted ? floor : Math.max(floor, asked));
+        }
+        Map<TopicPartition, OffsetAndTimestamp> byTime = kafkaConsumer.offsetsForTimes(times);
+        Map<TopicPartition, Long> ends = kafkaConsumer.endOffsets(added);
+        for (TopicPartition partition : added) {
+            OffsetAndTimestamp atTime = byTime.get(partition);
+            // Nothing written since that time means reading from the end
+            long offset = atTime != null ? atTime.offset() : ends.get(partition);
+            OffsetAndMetadata last = committed.get(partition);
+            if (last != null) {
+                offset = Math.max(offset, Math.min(last.offset(), ends.get(partition)));
+            }
+            kafkaConsumer.seek(partition, offset);
+        }
+    }
+
+    private void commit(Consumer<String, byte[]> kafkaConsumer) {
+        try {
+            kafkaConsumer.commitSync();
+        } catch (WakeupException e) {
+            throw e;
+        } catch (Exception e) {
+            // Only costs a longer replay when the partition is next assigned
+            log.warn("Failed to commit execution report positions", e);
+        }
+    }
+
+    private void handle(ConsumerRecord<String, byte[]> record) {
+        try {
+            matchingEngineConsumer.handleExecutionReports(record.value());
+        } catch (Exception e) {
+            // Skip the poison record so the partition keeps moving
+            log.error("Error processing execution report at {}-{}@{}", record.topic(), record.partition(), record.offset(), e);
+        }
+    }
+}
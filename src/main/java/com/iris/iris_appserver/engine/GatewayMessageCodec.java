@@ -0,0 +1,180 @@
+package com.iris.iris_appserver.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.common.codec.BinaryFlyweight;
+import com.iris.common.codec.CancelOrderCodec;
+import com.iris.common.codec.ExecutionReportBatchCodec;
+import com.iris.common.codec.ExecutionReportCodec;
+import com.iris.common.codec.MassCancelCodec;
+import com.iris.common.codec.NewOrderCodec;
+import com.iris.common.codec.ReplaceOrderCodec;
+import com.iris.common.codec.WireFormat;
+import com.iris.iris_appserver.model.ClientInfo;
+import com.iris.iris_appserver.model.Execution;
+import com.iris.iris_appserver.model.Order;
+import com.iris.iris_appserver.model.messages.*;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the commands the gateway sends to the engine and reads the execution reports
+ * it gets back, in the same layouts the engine uses
+ */
+@Component
+@RequiredArgsConstructor
+public class GatewayMessageCodec {
+    private final ObjectMapper objectMapper;
+
+    @Value("${iris.codec.format:BINARY}")
+    private WireFormat format;
+
+    private final ThreadLocal<NewOrderCodec.Encoder> newOrderEncoder = ThreadLocal.withInitial(NewOrderCodec.Encoder::new);
+    private final ThreadLocal<CancelOrderCodec.Encoder> cancelEncoder = ThreadLocal.withInitial(CancelOrderCodec.Encoder::new);
+    private final ThreadLocal<ReplaceOrderCodec.Encoder> replaceEncoder = ThreadLocal.withInitial(ReplaceOrderCodec.Encoder::new);
+    private final ThreadLocal<MassCancelCodec.Encoder> massCancelEncoder = ThreadLocal.withInitial(MassCancelCodec.Encoder::new);
+    private final ThreadLocal<ExecutionReportCodec.Decoder> executionDecoder = ThreadLocal.withInitial(ExecutionReportCodec.Decoder::new);
+    private final ThreadLocal<ExecutionReportBatchCodec.Decoder> batchDecoder = ThreadLocal.withInitial(ExecutionReportBatchCodec.Decoder::new);
+
+    public byte[] encode(NewOrderMessage message) throws IOException {
+        if (format == WireFormat.JSON) {
+            return objectMapper.writeValueAsBytes(message);
+        }
+        Order order = message.getOrder();
+        ClientInfo clientInfo = order.getClientInfo();
+        return newOrderEncoder.get().wrap()
+                .timestamp(message.getTimestamp())
+                .quantity(order.getQuantity())
+                .price(order.getPrice())
+                .side(order.getSide())
+                .orderType(order.getOrderType())
+                .messageId(message.getMessageId())
+                .clientId(message.getClientId())
+                .orderId(order.getOrderId())
+                .clOrdId(order.getClOrdId())
+                .instrumentId(order.getInstrumentId())
+                .timeInForce(order.getTimeInForce())
+                .sourceIpAddress(order.getSourceIpAddress())
+                .account(clientInfo == null ? null : clientInfo.getAccount())
+                .userId(clientInfo == null ? null : clientInfo.getUserId())
+                .finish()
+                .toBytes();
+    }
+
+    public byte[] encode(CancelOrderMessage message) throws IOException {
+        if (format == WireFormat.JSON) {
+            return objectMapper.writeValueAsBytes(message);
+        }
+        CancelOrderRequest cancel = message.getCancel();
+        return cancelEncoder.get().wrap()
+                .timestamp(message.getTimestamp())
+                .side(cancel.getSide())
+                .messageId(message.getMessageId())
+                .clientId(message.getClientId())
+                .origOrderId(cancel.getOrigOrderId())
+                .origClOrdId(cancel.getOrigClOrdId())
+                .clOrdId(cancel.getClOrdId())
+                .instrumentId(cancel.getInstrumentId())
+                .sourceIpAddress(cancel.getSourceIpAddress())
+                .finish()
+                .toBytes();
+    }
+
+    public byte[] encode(ReplaceOrderMessage message) throws IOException {
+        if (format == WireFormat.JSON) {
+            return objectMapper.writeValueAsBytes(message);
+        }
+        ReplaceOrderRequest replace = message.getReplace();
+        return replaceEncoder.get().wrap()
+                .timestamp(message.getTimestamp())
+                .quantity(replace.getQuantity())
+                .price(replace.getPrice())
+                .side(replace.getSide())
+                .orderType(replace.getOrderType())
+                .messageId(message.getMessageId())
+                .clientId(message.getClientId())
+                .origOrderId(replace.getOrigOrderId())
+                .origClOrdId(replace.getOrigClOrdId())
+                .newOrderId(replace.getNewOrderId())
+                .clOrdId(replace.getClOrdId())
+                .instrumentId(replace.getInstrumentId())
+                .timeInForce(replace.getTimeInForce())
+                .sourceIpAddress(replace.getSourceIpAddress())
+                .finish()
+                .toBytes();
+    }
+
+    public byte[] encode(MassCancelMessage message) throws IOException {
+        if (format == WireFormat.JSON) {
+            return objectMapper.writeValueAsBytes(message);
+        }
+        MassCancelRequest massCancel = message.getMassCancel();
+        return massCancelEncoder.get().wrap()
+                .timestamp(message.getTimestamp())
+                .side(massCancel.getSide())
+                .messageId(message.getMessageId())
+                .clientId(message.getClientId())
+                .clOrdId(massCancel.getClOrdId())
+                .cancelType(massCancel.getCancelType())
+                .instrumentId(massCancel.getInstrumentId())
+                .sourceIpAddress(massCancel.getSourceIpAddress())
+                .finish()
+                .toBytes();
+    }
+
+    /**
+     * Read the execution reports in a record, which holds either one report or a batch
+     * @param payload Record value
+     * @return The reports, in the order they are to be handled
+     */
+    public List<ExecutionReportMessage> decodeExecutionReports(byte[] payload) throws IOException {
+        if (!ExecutionReportBatchCodec.isBatch(payload)) {
+            return List.of(decodeExecutionReport(payload, 0, payload.length));
+        }
+        ExecutionReportBatchCodec.Decoder batch = batchDecoder.get().wrap(payload);
+        List<ExecutionReportMessage> reports = new ArrayList<>(batch.count());
+        while (batch.next()) {
+            reports.add(decodeExecutionReport(payload, batch.offset(), batch.length()));
+        }
+        return reports;
+    }
+
+    /**
+     * Read an execution report in either format
+     * @param payload Bytes holding the report
+     * @param offset Where the report starts
+     * @param length Length of the report
+     * @return The report
+     */
+    private ExecutionReportMessage decodeExecutionReport(byte[] payload, int offset, int length) throws IOException {
+        if (length < BinaryFlyweight.HEADER_LENGTH || payload[offset] != BinaryFlyweight.MAGIC) {
+            return objectMapper.readValue(payload, offset, length, ExecutionReportMessage.class);
+        }
+        ExecutionReportCodec.Decoder in = executionDecoder.get().wrap(ByteBuffer.wrap(payload), offset, length);
+        Execution execution = Execution.builder()
+                .orderId(in.orderId())
+                .clOrdId(in.clOrdId())
+                .execId(in.execId())
+                .instrumentId(in.instrumentId())
+                .side(in.side())
+                .execType(in.execType())
+                .orderStatus(in.orderStatus())
+                .filledQuantity(in.filledQuantity())
+                .remainingQuantity(in.remainingQuantity())
+                .price(in.price())
+                .lastPrice(in.lastPrice())
+                .lastQuantity(in.lastQuantity())
+                .avgPrice(in.avgPrice())
+                .text(in.text())
+                .tradeId(in.tradeId())
+                .contraParty(in.contraParty())
+                .build();
+        return new ExecutionReportMessage(ExecutionReportCodec.MESSAGE_TYPE, in.messageId(), in.timestamp(),
+                in.clientId(), execution);
+    }
+}
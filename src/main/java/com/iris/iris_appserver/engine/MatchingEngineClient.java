@@ -1,50 +1,60 @@
 package com.iris.iris_appserver.engine;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.common.id.IdGenerator;
+import com.iris.common.ipc.EngineTransport;
+import com.iris.common.kafka.CommandEnvelope;
+import com.iris.common.kafka.CommandType;
 import com.iris.common.kafka.KafkaTopics;
+import com.iris.common.kafka.ShardMap;
 import com.iris.iris_appserver.model.Order;
 import com.iris.iris_appserver.model.messages.*;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
-import java.util.UUID;
+import java.util.Optional;
 
 @Slf4j
 @Service
 public class MatchingEngineClient {
 
     private final KafkaTemplate<String, byte[]> kafkaTemplate;
-    private final ObjectMapper objectMapper;
-    private final String clientId;
+    private final GatewayMessageCodec messageCodec;
     private final KafkaTopics kafkaTopics;
+    private final IdGenerator idGenerator;
+    private final ShardMap shardMap;
+    // Set when commands go to an engine on this host or in this JVM instead of over Kafka
+    private final EngineTransport localTransport;
 
     public MatchingEngineClient(
             KafkaTemplate<String, byte[]> kafkaTemplate,
-            ObjectMapper objectMapper,
-            @Qualifier("commonClientId") String clientId,
-            KafkaTopics kafkaTopics) {
+            GatewayMessageCodec messageCodec,
+            KafkaTopics kafkaTopics,
+            IdGenerator idGenerator,
+            ShardMap shardMap,
+            Optional<EngineTransport> localTransport) {
         this.kafkaTemplate = kafkaTemplate;
-        this.objectMapper = objectMapper;
-        this.clientId = clientId;
+        this.messageCodec = messageCodec;
         this.kafkaTopics = kafkaTopics;
+        this.idGenerator = idGenerator;
+        this.shardMap = shardMap;
+        this.localTransport = localTransport.orElse(null);
     }
 
     public void sendNewOrder(Order order) {
         try {
             NewOrderMessage message = NewOrderMessage.builder()
                     .messageType("NewOrder")
-                    .messageId("MSG" + UUID.randomUUID().toString().substring(0, 8))
+                    .messageId("MSG" + idGenerator.nextIdString())
                     .timestamp(Instant.now().toEpochMilli())
                     .clientId(order.getClientInfo().getUserId())
                     .order(order)
                     .build();
 
-            byte[] payload = objectMapper.writeValueAsBytes(message);
-            // Use symbol as key for partitioning
-            kafkaTemplate.send(kafkaTopics.getInboundOrdersTopic(), order.getInstrumentId(), payload);
+            byte[] payload = messageCodec.encode(message);
+            send(order.getInstrumentId(), CommandType.NEW_ORDER, payload);
             log.info("Sent new order to matching engine: OrderID={}, Symbol={}",
                     order.getOrderId(), order.getInstrumentId());
         } catch (Exception e) {
@@ -53,18 +63,18 @@ public class MatchingEngineClient {
         }
     }
 
-    public void sendCancelOrder(CancelOrderRequest cancelRequest) {
+    public void sendCancelOrder(String clientId, CancelOrderRequest cancelRequest) {
         try {
             CancelOrderMessage message = CancelOrderMessage.builder()
                     .messageType("CancelOrder")
-                    .messageId("MSG" + UUID.randomUUID().toString().substring(0, 8))
+                    .messageId("MSG" + idGenerator.nextIdString())
                     .timestamp(Instant.now().toEpochMilli())
                     .clientId(clientId)
                     .cancel(cancelRequest)
                     .build();
 
-            byte[] payload = objectMapper.writeValueAsBytes(message);
-            kafkaTemplate.send(kafkaTopics.getInboundOrdersTopic(), cancelRequest.getInstrumentId(), payload);
+            byte[] payload = messageCodec.encode(message);
+            send(cancelRequest.getInstrumentId(), CommandType.CANCEL_ORDER, payload);
             log.info("Sent cancel request to matching engine: OrigOrderID={}, Symbol={}",
                     cancelRequest.getOrigOrderId(), cancelRequest.getInstrumentId());
         } catch (Exception e) {
@@ -73,18 +83,18 @@ public class MatchingEngineClient {
         }
     }
 
-    public void sendReplaceOrder(ReplaceOrderRequest replaceRequest) {
+    public void sendReplaceOrder(String clientId, ReplaceOrderRequest replaceRequest) {
         try {
             ReplaceOrderMessage message = ReplaceOrderMessage.builder()
                     .messageType("ReplaceOrder")
-                    .messageId("MSG" + UUID.randomUUID().toString().substring(0, 8))
+                    .messageId("MSG" + idGenerator.nextIdString())
                     .timestamp(Instant.now().toEpochMilli())
                     .clientId(clientId)
                     .replace(replaceRequest)
                     .build();
 
-            byte[] payload = objectMapper.writeValueAsBytes(message);
-            kafkaTemplate.send(kafkaTopics.getInboundOrdersTopic(), replaceRequest.getInstrumentId(), payload);
+            byte[] payload = messageCodec.encode(message);
+            send(replaceRequest.getInstrumentId(), CommandType.REPLACE_ORDER, payload);
             log.info("Sent replace request to matching engine: OrigOrderID={}, Symbol={}",
                     replaceRequest.getOrigOrderId(), replaceRequest.getInstrumentId());
         } catch (Exception e) {
@@ -93,20 +103,26 @@ public class MatchingEngineClient {
         }
     }
 
-    public void sendMassCancel(MassCancelRequest massCancelRequest) {
+    public void sendMassCancel(String clientId, MassCancelRequest massCancelRequest) {
         try {
             MassCancelMessage message = MassCancelMessage.builder()
                     .messageType("MassCancel")
-                    .messageId("MSG" + UUID.randomUUID().toString().substring(0, 8))
+                    .messageId("MSG" + idGenerator.nextIdString())
                     .timestamp(Instant.now().toEpochMilli())
                     .clientId(clientId)
                     .massCancel(massCancelRequest)
                     .build();
 
-            byte[] payload = objectMapper.writeValueAsBytes(message);
-            String partitionKey = massCancelRequest.getInstrumentId() != null ?
-                    massCancelRequest.getInstrumentId() : "ALL";
-            kafkaTemplate.send(kafkaTopics.getInboundOrdersTopic(), partitionKey, payload);
+            byte[] payload = messageCodec.encode(message);
+            if (massCancelRequest.getInstrumentId() != null || localTransport != null) {
+                send(massCancelRequest.getInstrumentId(), CommandType.MASS_CANCEL, payload);
+            } else {
+                // The client's books may be on any engine node, so every partition gets a copy
+                for (int partition = 0; partition < shardMap.getPartitions(); partition++) {
+                    kafkaTemplate.send(CommandEnvelope.record(kafkaTopics.getInboundOrdersTopic(),
+                            partition, "ALL", CommandType.MASS_CANCEL, payload));
+                }
+            }
             log.info("Sent mass cancel request to matching engine: Type={}, Symbol={}",
                     massCancelRequest.getCancelType(), massCancelRequest.getInstrumentId());
         } catch (Exception e) {
@@ -114,4 +130,31 @@ public class MatchingEngineClient {
             throw new RuntimeException("Failed to send mass cancel request to matching engine", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Send a command to the engine that holds the instrument's book
+     * @param instrumentId Instrument ID, or null for a mass cancel sent to a local engine
+     * @param type Command type
+     * @param payload Encoded command
+     */
+    private void send(String instrumentId, CommandType type, byte[] payload) {
+        if (localTransport != null) {
+            // A single local engine holds every book
+            localTransport.sendCommand(type, payload);
+        } else {
+            kafkaTemplate.send(command(instrumentId, type, payload));
+        }
+    }
+
+    /**
+     * Build a command record for the partition that holds the instrument's book
+     * @param instrumentId Instrument ID
+     * @param type Command type
+     * @param payload Encoded command
+     * @return Record ready to send
+     */
+    private ProducerRecord<String, byte[]> command(String instrumentId, CommandType type, byte[] payload) {
+        return CommandEnvelope.record(kafkaTopics.getInboundOrdersTopic(), shardMap.partitionOf(instrumentId),
+                instrumentId, type, payload);
+    }
+}
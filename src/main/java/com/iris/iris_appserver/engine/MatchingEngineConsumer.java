@@ -1,16 +1,30 @@
 package com.iris.iris_appserver.engine;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.common.ipc.EngineTransport;
+import com.iris.common.ipc.InProcessTransport;
+import com.iris.common.kafka.ShardMap;
+import com.iris.common.model.messages.InstrumentTransferMessage;
 import com.iris.iris_appserver.fix.FixSessionManager;
+import com.iris.iris_appserver.marketdata.MarketDataConflator;
 import com.iris.iris_appserver.model.messages.ExecutionReportMessage;
 import com.iris.iris_appserver.model.messages.MarketDataUpdateMessage;
 import com.iris.iris_appserver.service.InstrumentService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.PartitionOffset;
+import org.springframework.kafka.annotation.TopicPartition;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -19,49 +33,76 @@ public class MatchingEngineConsumer {
     private final ObjectMapper objectMapper;
     private final FixSessionManager fixSessionManager;
     private final InstrumentService instrumentService;
-
-    @KafkaListener(topics = "${app.kafka.topic.outbound-executions:outbound-executions}", groupId = "${spring.application.name}")
-    public void consumeExecutionReports(byte[] message, Acknowledgment acknowledgment) {
-        try {
-            ExecutionReportMessage executionReport = objectMapper.readValue(message, ExecutionReportMessage.class);
-            log.info("Received execution report from matching engine: ClientID={}, OrderID={}, ExecType={}",
-                    executionReport.getClientId(),
-                    executionReport.getExecution().getOrderId(),
-                    executionReport.getExecution().getExecType());
-
-            // If this is a trade, update the last trade price in our instrument service
-            if ("TRADE".equals(executionReport.getExecution().getExecType()) &&
-                    executionReport.getExecution().getLastPrice() != null) {
-
-                instrumentService.updateInstrumentPrice(
-                        executionReport.getExecution().getInstrumentId(),
-                        executionReport.getExecution().getLastPrice()
-                );
+    private final ShardMap shardMap;
+    private final MarketDataConflator marketDataConflator;
+    private final GatewayMessageCodec messageCodec;
+    private final Optional<EngineTransport> localTransport;
+
+    /**
+     * Takes execution reports from a local engine over shared memory or in-process queues.
+     * Over Kafka, ExecutionReportSubscriber reads them and hands them here.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void pollLocalTransport() {
+        localTransport.ifPresent(transport -> transport.startExecutionPoller(message -> {
+            try {
+                handleExecutionReports(message);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
+        }));
+        // In one JVM with the engine, market data comes the same way
+        if (localTransport.orElse(null) instanceof InProcessTransport inProcess) {
+            inProcess.startMarketDataPoller(message -> {
+                try {
+                    handleMarketData(message);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
 
-            // Convert execution report to FIX message and send to client
-            fixSessionManager.sendExecutionReport(executionReport);
+    /**
+     * Handle a record of execution reports, which holds one report or every report one
+     * command produced for a client, in order
+     */
+    void handleExecutionReports(byte[] message) throws IOException {
+        // Decode the whole record first, so a bad one is skipped or redelivered as a unit
+        for (ExecutionReportMessage executionReport : messageCodec.decodeExecutionReports(message)) {
+            handleExecutionReport(executionReport);
+        }
+    }
 
-            // Acknowledge message processing
-            acknowledgment.acknowledge();
-        } catch (Exception e) {
-            log.error("Error processing execution report", e);
-            // Don't acknowledge - message will be redelivered
+    private void handleExecutionReport(ExecutionReportMessage executionReport) {
+        log.info("Received execution report from matching engine: ClientID={}, OrderID={}, ExecType={}",
+                executionReport.getClientId(),
+                executionReport.getExecution().getOrderId(),
+                executionReport.getExecution().getExecType());
+
+        // If this is a trade, update the last trade price in our instrument service
+        if ("TRADE".equals(executionReport.getExecution().getExecType()) &&
+                executionReport.getExecution().getLastPrice() != null) {
+
+            instrumentService.updateInstrumentPrice(
+                    executionReport.getExecution().getInstrumentId(),
+                    executionReport.getExecution().getLastPrice()
+            );
         }
+
+        // Convert execution report to FIX message and send to client
+        fixSessionManager.sendExecutionReport(executionReport);
     }
 
-    @KafkaListener(topics = "${app.kafka.topic.market-data:market-data}", groupId = "${spring.application.name}")
+    /**
+     * Each gateway keeps its own replica of every book, so each reads the whole market-data
+     * topic in a group of its own
+     */
+    @KafkaListener(topics = "${app.kafka.topic.market-data:market-data}",
+            groupId = "${spring.application.name}-${iris.node-id:1}")
     public void consumeMarketData(byte[] message, Acknowledgment acknowledgment) {
         try {
-            MarketDataUpdateMessage marketData = objectMapper.readValue(message, MarketDataUpdateMessage.class);
-            log.debug("Received market data update: Symbol={}, LastPrice={}",
-                    marketData.getInstrumentId(),
-                    marketData.getLastTradePrice());
-
-            // Update instrument service with latest price
-            instrumentService.updateInstrumentPrice(
-                    marketData.getInstrumentId(),
-                    marketData.getLastTradePrice());
+            handleMarketData(message);
 
             // Acknowledge message processing
             acknowledgment.acknowledge();
@@ -71,6 +112,23 @@ public class MatchingEngineConsumer {
         }
     }
 
+    private void handleMarketData(byte[] message) throws IOException {
+        MarketDataUpdateMessage marketData = objectMapper.readValue(message, MarketDataUpdateMessage.class);
+        log.debug("Received market data update: Symbol={}, LastPrice={}",
+                marketData.getInstrumentId(),
+                marketData.getLastTradePrice());
+
+        // Update instrument service with latest price; only updates with a trade carry one
+        if (marketData.getLastTradeQuantity() > 0) {
+            instrumentService.updateInstrumentPrice(
+                    marketData.getInstrumentId(),
+                    marketData.getLastTradePrice());
+        }
+
+        // Keep the book replica and pass the update on to subscribers
+        marketDataConflator.onMarketData(marketData);
+    }
+
     // Additional listeners for other topics
     @KafkaListener(topics = "${app.kafka.topic.instrument-updates:instrument-updates}", groupId = "${spring.application.name}")
     public void consumeInstrumentUpdates(byte[] message, Acknowledgment acknowledgment) {
@@ -91,11 +149,22 @@ public class MatchingEngineConsumer {
         }
     }
 
-    @KafkaListener(topics = "${app.kafka.topic.system-control:system-control}", groupId = "${spring.application.name}")
+    /**
+     * Every gateway reads the whole system-control topic from the start, so each one learns
+     * of every instrument move, including those made before it started
+     */
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "${app.kafka.topic.system-control:system-control}",
+            partitionOffsets = @PartitionOffset(partition = "0", initialOffset = "0")),
+            groupId = "${spring.application.name}")
     public void consumeSystemControl(byte[] message, Acknowledgment acknowledgment) {
         try {
             // Process administrative commands
             // This could involve pausing/resuming trading, enabling/disabling instruments, etc.
+            JsonNode control = objectMapper.readTree(message);
+            if ("InstrumentMoved".equals(control.path("messageType").asText())) {
+                InstrumentTransferMessage moved = objectMapper.treeToValue(control, InstrumentTransferMessage.class);
+                shardMap.move(moved.getInstrumentId(), moved.getToPartition());
+            }
 
             log.info("Processed system control message");
 
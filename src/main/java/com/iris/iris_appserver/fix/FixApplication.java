@@ -1,10 +1,13 @@
 package com.iris.iris_appserver.fix;
 
+import com.iris.iris_appserver.engine.ExecutionReportSubscriber;
 import com.iris.iris_appserver.fix.handler.MessageHandlerRegistry;
 import com.iris.iris_appserver.fix.message.ResponseFactory;
+import com.iris.iris_appserver.service.OrderService;
 import com.iris.iris_appserver.service.SessionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import quickfix.*;
 import quickfix.field.MsgSeqNum;
@@ -22,6 +25,13 @@ public class FixApplication implements Application {
     private final ResponseFactory responseFactory;
     private final SessionService sessionService;
     private final FixSessionManager fixSessionManager;
+    private final OrderService orderService;
+    private final FixMarketDataService fixMarketDataService;
+    private final ExecutionReportSubscriber executionReportSubscriber;
+
+    // Pull a client's resting orders when its session logs out
+    @Value("${fix.cancel-on-disconnect:true}")
+    private boolean cancelOnDisconnect;
 
 
     @Override
@@ -50,6 +60,9 @@ public class FixApplication implements Application {
         } catch (Exception e) {
             log.error("Failed to register session for client {}: {}", clientSenderCompId, e.getMessage());
         }
+
+        // Returns at once; the partition is read from this logon on, whenever it is assigned
+        executionReportSubscriber.addClient(clientSenderCompId);
     }
 
     @Override
@@ -64,6 +77,18 @@ public class FixApplication implements Application {
         } catch (Exception e) {
             log.error("Failed to unregister session for client {}: {}", clientSenderCompId, e.getMessage());
         }
+        executionReportSubscriber.removeClient(clientSenderCompId);
+
+        fixMarketDataService.unsubscribeAll(sessionId);
+
+        if (cancelOnDisconnect) {
+            try {
+                orderService.cancelOnDisconnect(clientSenderCompId);
+                log.info("Requested cancel-on-disconnect for client {}", clientSenderCompId);
+            } catch (Exception e) {
+                log.error("Failed to request cancel-on-disconnect for client {}: {}", clientSenderCompId, e.getMessage());
+            }
+        }
     }
 
     @Override
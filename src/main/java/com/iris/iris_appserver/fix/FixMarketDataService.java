@@ -0,0 +1,171 @@
+package com.iris.iris_appserver.fix;
+
+import com.iris.iris_appserver.fix.message.ResponseFactory;
+import com.iris.iris_appserver.marketdata.MarketDataConflator;
+import com.iris.iris_appserver.marketdata.MarketDataSubscriber;
+import com.iris.iris_appserver.marketdata.MarketDataSubscription;
+import com.iris.iris_appserver.model.messages.MarketDataUpdateMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import quickfix.Message;
+import quickfix.Session;
+import quickfix.SessionID;
+import quickfix.field.MDReqID;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves FIX market data subscriptions from the gateway's book replicas.
+ *
+ * Each subscription gets the replica's book as a full refresh, then incremental refreshes.
+ * The FIX body of an update is built once per instrument and set of entry types and shared
+ * by every session receiving that update; only the MDReqID is set per session.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FixMarketDataService {
+
+    private final MarketDataConflator marketDataConflator;
+    private final ResponseFactory responseFactory;
+    private final Environment environment;
+
+    // Active subscriptions per session, by MDReqID
+    private final Map<SessionID, Map<String, List<MarketDataSubscription>>> subscriptions = new ConcurrentHashMap<>();
+    // Last body built per instrument and entry types; only touched under that instrument's feed lock
+    private final Map<String, Encoded> encoded = new ConcurrentHashMap<>();
+
+    // How often sessions receive merged refreshes, unless set per client with
+    // fix.market-data.interval-ms.<SenderCompID>; 0 for every update
+    @Value("${fix.market-data.interval-ms:0}")
+    private long defaultIntervalMs;
+
+    private record Encoded(MarketDataUpdateMessage source, Message body) {
+    }
+
+    /**
+     * Follows one instrument for one MarketDataRequest
+     */
+    @RequiredArgsConstructor
+    private class FixSubscriber implements MarketDataSubscriber {
+        private final SessionID sessionId;
+        private final String mdReqId;
+        private final String entryTypes;
+
+        @Override
+        public void onMarketData(MarketDataUpdateMessage update) {
+            send(sessionId, mdReqId, encode(update, entryTypes));
+        }
+    }
+
+    public boolean isSubscribed(SessionID sessionId, String mdReqId) {
+        return subscriptions.getOrDefault(sessionId, Map.of()).containsKey(mdReqId);
+    }
+
+    /**
+     * Subscribe a session to snapshots and refreshes of some instruments
+     * @param sessionId Session to deliver to
+     * @param mdReqId MDReqID of the request, echoed on every message
+     * @param symbols Instruments to follow
+     * @param entryTypes MDEntryType values asked for
+     */
+    public void subscribe(SessionID sessionId, String mdReqId, List<String> symbols, String entryTypes) {
+        long intervalMs = environment.getProperty("fix.market-data.interval-ms." + sessionId.getTargetCompID(),
+                Long.class, defaultIntervalMs);
+        List<MarketDataSubscription> subscribed = new ArrayList<>(symbols.size());
+        subscriptions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>()).put(mdReqId, subscribed);
+        for (String symbol : symbols) {
+            subscribed.add(marketDataConflator.subscribe(symbol,
+                    new FixSubscriber(sessionId, mdReqId, entryTypes), intervalMs));
+        }
+        log.info("Session {} subscribed to market data for {} as {}", sessionId, symbols, mdReqId);
+    }
+
+    /**
+     * Send one full refresh per instrument without subscribing
+     * @param sessionId Session to deliver to
+     * @param mdReqId MDReqID of the request
+     * @param symbols Instruments to send
+     * @param entryTypes MDEntryType values asked for
+     * @param depth Levels per side; 0 for all
+     * @return False if a book is not available yet, in which case nothing was sent
+     */
+    public boolean sendSnapshots(SessionID sessionId, String mdReqId, List<String> symbols, String entryTypes, int depth) {
+        List<MarketDataUpdateMessage> snapshots = new ArrayList<>(symbols.size());
+        for (String symbol : symbols) {
+            MarketDataUpdateMessage snapshot = marketDataConflator.snapshot(symbol);
+            if (snapshot == null) {
+                return false;
+            }
+            snapshots.add(snapshot);
+        }
+        for (MarketDataUpdateMessage snapshot : snapshots) {
+            send(sessionId, mdReqId, responseFactory.createMarketDataSnapshot(snapshot, entryTypes, depth));
+        }
+        return true;
+    }
+
+    /**
+     * Stop a MarketDataRequest's subscriptions
+     * @param sessionId Session that made the request
+     * @param mdReqId MDReqID of the original request
+     * @return False if there was no such subscription
+     */
+    public boolean unsubscribe(SessionID sessionId, String mdReqId) {
+        Map<String, List<MarketDataSubscription>> bySession = subscriptions.get(sessionId);
+        List<MarketDataSubscription> subscribed = bySession == null ? null : bySession.remove(mdReqId);
+        if (subscribed == null) {
+            return false;
+        }
+        subscribed.forEach(marketDataConflator::unsubscribe);
+        log.info("Session {} unsubscribed from market data {}", sessionId, mdReqId);
+        return true;
+    }
+
+    /**
+     * Stop every subscription a session holds, when it logs out
+     * @param sessionId The session
+     */
+    public void unsubscribeAll(SessionID sessionId) {
+        Map<String, List<MarketDataSubscription>> bySession = subscriptions.remove(sessionId);
+        if (bySession != null) {
+            bySession.values().forEach(subscribed -> subscribed.forEach(marketDataConflator::unsubscribe));
+            log.info("Removed {} market data subscriptions for session {}", bySession.size(), sessionId);
+        }
+    }
+
+    /**
+     * Build the FIX body of an update, or reuse it if another session already had it built
+     */
+    private Message encode(MarketDataUpdateMessage update, String entryTypes) {
+        String key = update.getInstrumentId() + "|" + entryTypes;
+        Encoded last = encoded.get(key);
+        if (last != null && last.source() == update) {
+            return last.body();
+        }
+        Message body = "MarketDataSnapshot".equals(update.getMessageType())
+                ? responseFactory.createMarketDataSnapshot(update, entryTypes, 0)
+                : responseFactory.createMarketDataIncrementalRefresh(update, entryTypes);
+        encoded.put(key, new Encoded(update, body));
+        return body;
+    }
+
+    private static void send(SessionID sessionId, String mdReqId, Message body) {
+        if (body == null) {
+            return;
+        }
+        try {
+            Message message = (Message) body.clone();
+            message.setField(new MDReqID(mdReqId));
+            Session.sendToTarget(message, sessionId);
+        } catch (Exception e) {
+            log.error("Failed to send market data {} to session {}", mdReqId, sessionId, e);
+        }
+    }
+}
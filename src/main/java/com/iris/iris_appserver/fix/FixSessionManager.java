@@ -71,8 +71,8 @@ public class FixSessionManager {
             SessionID sessionId = senderCompIdSessionMap.get(clientId);
 
             if (sessionId == null) {
-                log.warn("No active FIX session found for client: {}", clientId);
-                log.warn("Currently active registered fix sessions are: {}", clientSessionMap.keySet());
+                // Expected for clients of other gateways that share a partition with ours
+                log.debug("No active FIX session found for client: {}", clientId);
                 return;
             }
 
@@ -0,0 +1,102 @@
+package com.iris.iris_appserver.fix.handler;
+
+import com.iris.iris_appserver.fix.FixMarketDataService;
+import com.iris.iris_appserver.fix.message.ResponseFactory;
+import com.iris.iris_appserver.service.InstrumentService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import quickfix.*;
+import quickfix.field.*;
+import quickfix.fix44.MarketDataRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MarketDataRequestHandler implements MessageHandler<Message> {
+
+    private static final String SUPPORTED_ENTRY_TYPES = "" + MDEntryType.BID + MDEntryType.OFFER + MDEntryType.TRADE;
+
+    private final FixMarketDataService fixMarketDataService;
+    private final InstrumentService instrumentService;
+    private final ResponseFactory responseFactory;
+
+    @Override
+    public boolean canHandle(String msgType) {
+        return MsgType.MARKET_DATA_REQUEST.equals(msgType);
+    }
+
+    @Override
+    public void handle(Message message, SessionID sessionId) throws FieldNotFound, SessionNotFound {
+        String mdReqId = message.getString(MDReqID.FIELD);
+        char requestType = message.getChar(SubscriptionRequestType.FIELD);
+
+        log.info("Received MarketDataRequest: MDReqID={}, SubscriptionRequestType={}, SessionID={}",
+                mdReqId, requestType, sessionId);
+
+        if (requestType == SubscriptionRequestType.DISABLE_PREVIOUS_SNAPSHOT_UPDATE_REQUEST) {
+            if (!fixMarketDataService.unsubscribe(sessionId, mdReqId)) {
+                log.warn("No market data subscription {} for session {}", mdReqId, sessionId);
+            }
+            return;
+        }
+
+        int depth = message.getInt(MarketDepth.FIELD);
+
+        // Entry types asked for, kept in a fixed order so equal requests share encoding
+        StringBuilder entryTypes = new StringBuilder();
+        MarketDataRequest.NoMDEntryTypes typeGroup = new MarketDataRequest.NoMDEntryTypes();
+        List<Character> requested = new ArrayList<>();
+        for (int i = 1; i <= message.getGroupCount(NoMDEntryTypes.FIELD); i++) {
+            message.getGroup(i, typeGroup);
+            requested.add(typeGroup.getChar(MDEntryType.FIELD));
+        }
+        for (char type : SUPPORTED_ENTRY_TYPES.toCharArray()) {
+            if (requested.contains(type)) {
+                entryTypes.append(type);
+            }
+        }
+        if (entryTypes.length() != requested.size()) {
+            reject(sessionId, mdReqId, MDReqRejReason.UNSUPPORTED_MDENTRYTYPE, "Supported MDEntryTypes are bid, offer and trade");
+            return;
+        }
+
+        List<String> symbols = new ArrayList<>();
+        MarketDataRequest.NoRelatedSym symbolGroup = new MarketDataRequest.NoRelatedSym();
+        for (int i = 1; i <= message.getGroupCount(NoRelatedSym.FIELD); i++) {
+            message.getGroup(i, symbolGroup);
+            String symbol = symbolGroup.getString(Symbol.FIELD);
+            if (!instrumentService.isValidInstrument(symbol)) {
+                reject(sessionId, mdReqId, MDReqRejReason.UNKNOWN_SYMBOL, "Invalid instrument: " + symbol);
+                return;
+            }
+            symbols.add(symbol);
+        }
+
+        if (requestType == SubscriptionRequestType.SNAPSHOT) {
+            if (!fixMarketDataService.sendSnapshots(sessionId, mdReqId, symbols, entryTypes.toString(), depth)) {
+                reject(sessionId, mdReqId, MDReqRejReason.UNKNOWN_SYMBOL, "Book not available yet, try again shortly");
+            }
+            return;
+        }
+
+        // Refreshes cover every level, so a depth limit would leave subscribers with levels they never saw
+        if (depth != 0) {
+            reject(sessionId, mdReqId, MDReqRejReason.UNSUPPORTED_MARKETDEPTH, "Subscriptions are full depth only");
+            return;
+        }
+        if (fixMarketDataService.isSubscribed(sessionId, mdReqId)) {
+            reject(sessionId, mdReqId, MDReqRejReason.DUPLICATE_MDREQID, "Duplicate MDReqID: " + mdReqId);
+            return;
+        }
+        fixMarketDataService.subscribe(sessionId, mdReqId, symbols, entryTypes.toString());
+    }
+
+    private void reject(SessionID sessionId, String mdReqId, char reason, String text) throws SessionNotFound {
+        log.warn("Rejecting MarketDataRequest {}: {}", mdReqId, text);
+        Session.sendToTarget(responseFactory.createMarketDataRequestReject(mdReqId, reason, text), sessionId);
+    }
+}
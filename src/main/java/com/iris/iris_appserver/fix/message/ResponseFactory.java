@@ -1,21 +1,31 @@
 package com.iris.iris_appserver.fix.message;
 
+import com.iris.common.id.IdGenerator;
+import com.iris.common.model.MarketDataAction;
+import com.iris.common.model.MarketDataEntry;
+import com.iris.iris_appserver.model.messages.MarketDataUpdateMessage;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import quickfix.FieldNotFound;
 import quickfix.Message;
 import quickfix.field.*;
 import quickfix.fix44.ExecutionReport;
+import quickfix.fix44.MarketDataIncrementalRefresh;
+import quickfix.fix44.MarketDataRequestReject;
+import quickfix.fix44.MarketDataSnapshotFullRefresh;
 import quickfix.fix44.OrderCancelReject;
 import quickfix.fix44.OrderMassCancelReport;
 
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class ResponseFactory {
 
+    private final IdGenerator idGenerator;
+
     // Existing method that takes a Message
     public ExecutionReport createOrderAcknowledgment_from_appserver(Message orderMessage, String orderId) throws FieldNotFound {
         ExecutionReport executionReport = new ExecutionReport(
@@ -290,8 +300,95 @@ public class ResponseFactory {
         return executionReport;
     }
 
+    /**
+     * Build a full refresh of a book, without an MDReqID so it can be shared
+     * @param update Snapshot of the book
+     * @param entryTypes MDEntryType values to include
+     * @param depth Levels per side to include; 0 for all
+     * @return The message
+     */
+    public MarketDataSnapshotFullRefresh createMarketDataSnapshot(MarketDataUpdateMessage update, String entryTypes, int depth) {
+        MarketDataSnapshotFullRefresh snapshot = new MarketDataSnapshotFullRefresh();
+        snapshot.set(new Symbol(update.getInstrumentId()));
+
+        int bids = 0;
+        int offers = 0;
+        for (MarketDataEntry entry : update.getEntries()) {
+            char type = entryType(entry);
+            if (entryTypes.indexOf(type) < 0) {
+                continue;
+            }
+            int level = type == MDEntryType.BID ? ++bids : ++offers;
+            if (depth > 0 && level > depth) {
+                continue;
+            }
+            MarketDataSnapshotFullRefresh.NoMDEntries group = new MarketDataSnapshotFullRefresh.NoMDEntries();
+            group.set(new MDEntryType(type));
+            group.set(new MDEntryPx(entry.getPrice()));
+            group.set(new MDEntrySize(entry.getQuantity()));
+            group.set(new NumberOfOrders(entry.getOrderCount()));
+            snapshot.addGroup(group);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Build an incremental refresh, without an MDReqID so it can be shared
+     * @param update Level changes and trades
+     * @param entryTypes MDEntryType values to include
+     * @return The message, or null if none of its entries were asked for
+     */
+    public MarketDataIncrementalRefresh createMarketDataIncrementalRefresh(MarketDataUpdateMessage update, String entryTypes) {
+        MarketDataIncrementalRefresh refresh = new MarketDataIncrementalRefresh();
+        int count = 0;
+        for (MarketDataEntry entry : update.getEntries()) {
+            char type = entryType(entry);
+            if (entryTypes.indexOf(type) < 0) {
+                continue;
+            }
+            MarketDataIncrementalRefresh.NoMDEntries group = new MarketDataIncrementalRefresh.NoMDEntries();
+            group.set(new MDUpdateAction(updateAction(entry.getAction())));
+            group.set(new MDEntryType(type));
+            group.set(new Symbol(update.getInstrumentId()));
+            group.set(new MDEntryPx(entry.getPrice()));
+            group.set(new MDEntrySize(entry.getQuantity()));
+            if (entry.getAction() != MarketDataAction.TRADE) {
+                group.set(new NumberOfOrders(entry.getOrderCount()));
+            }
+            refresh.addGroup(group);
+            count++;
+        }
+        return count > 0 ? refresh : null;
+    }
+
+    public MarketDataRequestReject createMarketDataRequestReject(String mdReqId, char reason, String text) {
+        MarketDataRequestReject reject = new MarketDataRequestReject(new MDReqID(mdReqId));
+        reject.set(new MDReqRejReason(reason));
+        reject.set(new Text(text));
+        return reject;
+    }
+
+    private static char entryType(MarketDataEntry entry) {
+        if (entry.getAction() == MarketDataAction.TRADE) {
+            return MDEntryType.TRADE;
+        }
+        return "BUY".equals(entry.getSide()) ? MDEntryType.BID : MDEntryType.OFFER;
+    }
+
+    private static char updateAction(MarketDataAction action) {
+        switch (action) {
+            case CHANGE:
+                return MDUpdateAction.CHANGE;
+            case DELETE:
+                return MDUpdateAction.DELETE;
+            default:
+                // Trades are new entries
+                return MDUpdateAction.NEW;
+        }
+    }
+
     private String generateExecId() {
-        return "EXE" + System.currentTimeMillis() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        return "EXE" + idGenerator.nextIdString();
     }
 
     private LocalDateTime getCurrentUtcDateTime() {
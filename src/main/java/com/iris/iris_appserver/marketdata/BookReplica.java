@@ -0,0 +1,153 @@
+package com.iris.iris_appserver.marketdata;
+
+import com.iris.common.model.MarketDataAction;
+import com.iris.common.model.MarketDataEntry;
+import com.iris.iris_appserver.model.messages.MarketDataUpdateMessage;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The gateway's copy of one instrument's price levels, kept from the market-data topic.
+ *
+ * Incremental refreshes apply only when they carry the next sequence. A gap marks the
+ * replica stale until the engine's next periodic snapshot. A replica starts empty at
+ * sequence 0, which matches a book the engine has not touched yet. A snapshot behind the
+ * replica resets it, since the engine only goes back when its book was rebuilt.
+ */
+@Slf4j
+public class BookReplica {
+    @Getter
+    private final String instrumentId;
+    private final NavigableMap<Double, Level> bids = new TreeMap<>(Collections.reverseOrder());
+    private final NavigableMap<Double, Level> asks = new TreeMap<>();
+
+    @Getter
+    private long sequence;
+    // False from a gap until the next snapshot
+    @Getter
+    private boolean synced = true;
+
+    public BookReplica(String instrumentId) {
+        this.instrumentId = instrumentId;
+    }
+
+    /**
+     * Total quantity and order count resting at one price
+     */
+    public record Level(double quantity, int orderCount) {
+    }
+
+    /**
+     * What applying a message did to the replica
+     */
+    public enum Result {
+        // An incremental refresh moved the replica on by one sequence
+        APPLIED,
+        // Rebuilt from a snapshot, so anyone following the replica needs the whole book again
+        RESYNCED,
+        // A duplicate, a refresh that arrived while stale, or a snapshot of the sequence already held
+        IGNORED
+    }
+
+    /**
+     * Apply a market data message
+     * @param message Snapshot or incremental refresh for this instrument
+     * @return What the message did
+     */
+    public Result apply(MarketDataUpdateMessage message) {
+        boolean snapshot = "MarketDataSnapshot".equals(message.getMessageType());
+        if (snapshot) {
+            // Periodic snapshots of a book already in step only confirm it
+            if (synced && message.getSequence() == sequence) {
+                return Result.IGNORED;
+            }
+            if (message.getSequence() < sequence) {
+                // Snapshots arrive in order, so the engine's sequence went back: the book restarted or moved
+                log.info("Market data for {} reset from sequence {} to {}", instrumentId, sequence, message.getSequence());
+            }
+            // Stale, reset, or ahead of the refreshes seen so far because some were lost
+            bids.clear();
+            asks.clear();
+            applyEntries(message.getEntries());
+            sequence = message.getSequence();
+            synced = true;
+            return Result.RESYNCED;
+        }
+
+        if (!synced || message.getSequence() <= sequence) {
+            // Stale until the next snapshot, or a duplicate
+            return Result.IGNORED;
+        }
+        if (message.getSequence() != sequence + 1) {
+            log.warn("Market data gap for {}: expected {} but got {}", instrumentId, sequence + 1, message.getSequence());
+            synced = false;
+            return Result.IGNORED;
+        }
+        applyEntries(message.getEntries());
+        sequence = message.getSequence();
+        return Result.APPLIED;
+    }
+
+    /**
+     * Get the level at a price
+     * @param buy True for the bid side
+     * @param price Level price
+     * @return The level, or null if there is none
+     */
+    public Level getLevel(boolean buy, double price) {
+        return (buy ? bids : asks).get(price);
+    }
+
+    /**
+     * Levels from the best price outwards
+     * @param buy True for the bid side
+     * @return Read-only view of the side
+     */
+    public NavigableMap<Double, Level> getLevels(boolean buy) {
+        return Collections.unmodifiableNavigableMap(buy ? bids : asks);
+    }
+
+    /**
+     * Copy every level into snapshot entries
+     * @return One NEW entry per level, bids first
+     */
+    public List<MarketDataEntry> toEntries() {
+        List<MarketDataEntry> entries = new ArrayList<>(bids.size() + asks.size());
+        bids.forEach((price, level) -> entries.add(entry(MarketDataAction.NEW, true, price, level)));
+        asks.forEach((price, level) -> entries.add(entry(MarketDataAction.NEW, false, price, level)));
+        return entries;
+    }
+
+    static MarketDataEntry entry(MarketDataAction action, boolean buy, double price, Level level) {
+        return MarketDataEntry.builder()
+                .action(action)
+                .side(buy ? "BUY" : "SELL")
+                .price(price)
+                .quantity(level == null ? 0 : level.quantity())
+                .orderCount(level == null ? 0 : level.orderCount())
+                .build();
+    }
+
+    private void applyEntries(List<MarketDataEntry> entries) {
+        if (entries == null) {
+            return;
+        }
+        for (MarketDataEntry entry : entries) {
+            if (entry.getAction() == MarketDataAction.TRADE) {
+                continue;
+            }
+            NavigableMap<Double, Level> side = "BUY".equals(entry.getSide()) ? bids : asks;
+            if (entry.getAction() == MarketDataAction.DELETE) {
+                side.remove(entry.getPrice());
+            } else {
+                side.put(entry.getPrice(), new Level(entry.getQuantity(), entry.getOrderCount()));
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.iris.iris_appserver.marketdata;
+
+import com.iris.common.model.MarketDataAction;
+import com.iris.common.model.MarketDataEntry;
+import com.iris.iris_appserver.model.messages.MarketDataUpdateMessage;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fans the market-data stream out to subscribers, each at its own rate.
+ *
+ * Every instrument has a replica of its book. Subscribers without an interval get each
+ * update as it is applied. Throttled subscribers only note which levels changed, and on
+ * their interval receive one refresh carrying the current state of those levels, so a slow
+ * subscriber costs memory in proportion to book depth rather than to how far behind it is.
+ */
+@Slf4j
+@Service
+public class MarketDataConflator {
+    private final Map<String, Feed> feeds = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "market-data-conflator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * One instrument's replica and subscriptions; the monitor guards both
+     */
+    private static class Feed {
+        private final BookReplica replica;
+        private final List<MarketDataSubscription> subscriptions = new CopyOnWriteArrayList<>();
+        private long timestamp;
+
+        private Feed(String instrumentId) {
+            this.replica = new BookReplica(instrumentId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Apply an update from the market-data topic and pass it on
+     * @param message Snapshot or incremental refresh
+     */
+    public void onMarketData(MarketDataUpdateMessage message) {
+        Feed feed = feed(message.getInstrumentId());
+        synchronized (feed) {
+            BookReplica.Result result = feed.replica.apply(message);
+            if (result == BookReplica.Result.IGNORED) {
+                return;
+            }
+            feed.timestamp = message.getTimestamp();
+            if (feed.subscriptions.isEmpty()) {
+                return;
+            }
+
+            // The engine's snapshot is the replica's whole book, so it can go out as is
+            for (MarketDataSubscription subscription : feed.subscriptions) {
+                if (!subscription.isThrottled()) {
+                    deliver(subscription, message);
+                } else if (result == BookReplica.Result.RESYNCED) {
+                    subscription.clear();
+                    subscription.needsSnapshot = true;
+                } else {
+                    merge(subscription, feed.replica, message);
+                }
+            }
+        }
+    }
+
+    /**
+     * Subscribe to an instrument. The subscriber gets the replica's book straight away, or
+     * once the replica is back in step if it is stale, then refreshes.
+     * @param instrumentId Instrument to follow
+     * @param subscriber Where to deliver
+     * @param intervalMs How often to deliver merged refreshes; 0 for every update
+     * @return The subscription, for {@link #unsubscribe}
+     */
+    public MarketDataSubscription subscribe(String instrumentId, MarketDataSubscriber subscriber, long intervalMs) {
+        MarketDataSubscription subscription = new MarketDataSubscription(instrumentId, subscriber, Math.max(0, intervalMs));
+        Feed feed = feed(instrumentId);
+        synchronized (feed) {
+            if (feed.replica.isSynced()) {
+                deliver(subscription, snapshot(feed));
+            } else {
+                subscription.needsSnapshot = true;
+            }
+            feed.subscriptions.add(subscription);
+        }
+        if (subscription.isThrottled()) {
+            subscription.flushTask = scheduler.scheduleAtFixedRate(() -> flush(subscription),
+                    subscription.getIntervalMs(), subscription.getIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+        log.info("Market data subscription to {} every {}ms", instrumentId, subscription.getIntervalMs());
+        return subscription;
+    }
+
+    /**
+     * Stop a subscription; nothing more is delivered to it once this returns
+     * @param subscription The subscription
+     */
+    public void unsubscribe(MarketDataSubscription subscription) {
+        if (subscription.flushTask != null) {
+            subscription.flushTask.cancel(false);
+        }
+        Feed feed = feed(subscription.getInstrumentId());
+        synchronized (feed) {
+            feed.subscriptions.remove(subscription);
+            subscription.clear();
+        }
+    }
+
+    /**
+     * Get the replica's book without subscribing
+     * @param instrumentId The instrument
+     * @return A snapshot, or null while the replica is stale
+     */
+    public MarketDataUpdateMessage snapshot(String instrumentId) {
+        Feed feed = feed(instrumentId);
+        synchronized (feed) {
+            return feed.replica.isSynced() ? snapshot(feed) : null;
+        }
+    }
+
+    /**
+     * Note what an applied refresh changed, for the subscription's next delivery
+     */
+    private static void merge(MarketDataSubscription subscription, BookReplica replica, MarketDataUpdateMessage message) {
+        if (message.getEntries() == null) {
+            return;
+        }
+        for (MarketDataEntry entry : message.getEntries()) {
+            if (entry.getAction() == MarketDataAction.TRADE) {
+                subscription.lastTrade = entry;
+                subscription.tradeQuantity += entry.getQuantity();
+                subscription.lastTradeTime = message.getTimestamp();
+                continue;
+            }
+            // The first change to a level since the last delivery says whether it existed then
+            subscription.pending.putIfAbsent(
+                    new MarketDataSubscription.LevelKey("BUY".equals(entry.getSide()), entry.getPrice()),
+                    entry.getAction() != MarketDataAction.NEW);
+        }
+    }
+
+    /**
+     * Deliver a throttled subscription's merged changes, if it has any
+     */
+    void flush(MarketDataSubscription subscription) {
+        Feed feed = feed(subscription.getInstrumentId());
+        synchronized (feed) {
+            if (!feed.subscriptions.contains(subscription) || !feed.replica.isSynced()) {
+                return;
+            }
+            if (subscription.needsSnapshot) {
+                subscription.needsSnapshot = false;
+                subscription.clear();
+                deliver(subscription, snapshot(feed));
+                return;
+            }
+            if (subscription.pending.isEmpty() && subscription.lastTrade == null) {
+                return;
+            }
+            deliver(subscription, conflated(subscription, feed));
+            subscription.clear();
+        }
+    }
+
+    /**
+     * One refresh giving the current state of every level the subscription has pending,
+     * then the merged trade
+     */
+    private static MarketDataUpdateMessage conflated(MarketDataSubscription subscription, Feed feed) {
+        BookReplica replica = feed.replica;
+        List<MarketDataEntry> entries = new ArrayList<>(subscription.pending.size() + 1);
+        subscription.pending.forEach((key, existed) -> {
+            BookReplica.Level level = replica.getLevel(key.buy(), key.price());
+            if (level != null) {
+                entries.add(BookReplica.entry(existed ? MarketDataAction.CHANGE : MarketDataAction.NEW,
+                        key.buy(), key.price(), level));
+            } else if (existed) {
+                entries.add(BookReplica.entry(MarketDataAction.DELETE, key.buy(), key.price(), null));
+            }
+            // A level that came and went between deliveries is left out
+        });
+
+        MarketDataUpdateMessage message = MarketDataUpdateMessage.builder()
+                .messageType("MarketDataIncrementalRefresh")
+                .messageId("MDC-" + replica.getInstrumentId() + "-" + replica.getSequence())
+                .timestamp(feed.timestamp)
+                .instrumentId(replica.getInstrumentId())
+                .sequence(replica.getSequence())
+                .build();
+        MarketDataEntry trade = subscription.lastTrade;
+        if (trade != null) {
+            entries.add(MarketDataEntry.builder()
+                    .action(MarketDataAction.TRADE)
+                    .side(trade.getSide())
+                    .price(trade.getPrice())
+                    .quantity(subscription.tradeQuantity)
+                    .build());
+            message.setLastTradePrice(trade.getPrice());
+            message.setLastTradeQuantity(subscription.tradeQuantity);
+            message.setLastTradeTime(subscription.lastTradeTime);
+        }
+        message.setEntries(entries);
+        return message;
+    }
+
+    private static MarketDataUpdateMessage snapshot(Feed feed) {
+        BookReplica replica = feed.replica;
+        return MarketDataUpdateMessage.builder()
+                .messageType("MarketDataSnapshot")
+                .messageId("MDS-" + replica.getInstrumentId() + "-" + replica.getSequence())
+                .timestamp(feed.timestamp)
+                .instrumentId(replica.getInstrumentId())
+                .sequence(replica.getSequence())
+                .entries(replica.toEntries())
+                .build();
+    }
+
+    private static void deliver(MarketDataSubscription subscription, MarketDataUpdateMessage message) {
+        try {
+            subscription.getSubscriber().onMarketData(message);
+        } catch (Exception e) {
+            log.error("Error delivering market data for {}", subscription.getInstrumentId(), e);
+        }
+    }
+
+    private Feed feed(String instrumentId) {
+        return feeds.computeIfAbsent(instrumentId, Feed::new);
+    }
+}
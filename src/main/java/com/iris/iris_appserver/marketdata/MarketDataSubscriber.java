@@ -0,0 +1,17 @@
+package com.iris.iris_appserver.marketdata;
+
+import com.iris.iris_appserver.model.messages.MarketDataUpdateMessage;
+
+/**
+ * Receives market data for the instruments it subscribed to. Calls are made while the
+ * instrument's feed is locked, so implementations must hand the update off without blocking.
+ */
+public interface MarketDataSubscriber {
+
+    /**
+     * Deliver a snapshot or incremental refresh. Subscribers that are not throttled all
+     * receive the same message instance for a given update.
+     * @param update The update
+     */
+    void onMarketData(MarketDataUpdateMessage update);
+}
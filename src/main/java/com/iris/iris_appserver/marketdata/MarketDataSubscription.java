@@ -0,0 +1,49 @@
+package com.iris.iris_appserver.marketdata;
+
+import com.iris.common.model.MarketDataEntry;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * One subscriber's interest in one instrument. A throttled subscription keeps only which
+ * levels changed since its last delivery, never the updates themselves, so what it holds
+ * is bounded by the depth of the book however far behind it falls.
+ */
+@RequiredArgsConstructor
+public class MarketDataSubscription {
+    @Getter
+    private final String instrumentId;
+    @Getter
+    private final MarketDataSubscriber subscriber;
+    // 0 to receive every update as it arrives
+    @Getter
+    private final long intervalMs;
+
+    // Levels changed since the last delivery, and whether each existed at that delivery
+    final Map<LevelKey, Boolean> pending = new LinkedHashMap<>();
+    // Trades since the last delivery, merged into the last one's price and their total quantity
+    MarketDataEntry lastTrade;
+    double tradeQuantity;
+    long lastTradeTime;
+    // Set when the next delivery must be the whole book
+    boolean needsSnapshot;
+    ScheduledFuture<?> flushTask;
+
+    public boolean isThrottled() {
+        return intervalMs > 0;
+    }
+
+    void clear() {
+        pending.clear();
+        lastTrade = null;
+        tradeQuantity = 0;
+        lastTradeTime = 0;
+    }
+
+    record LevelKey(boolean buy, double price) {
+    }
+}
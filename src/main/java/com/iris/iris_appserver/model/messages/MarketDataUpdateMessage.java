@@ -1,10 +1,13 @@
 package com.iris.iris_appserver.model.messages;
 
+import com.iris.common.model.MarketDataEntry;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -18,4 +21,6 @@ public class MarketDataUpdateMessage {
     private double lastTradeQuantity;
     private long lastTradeTime;
     private String tradingStatus;
+    private long sequence;
+    private List<MarketDataEntry> entries;
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.iris.iris_appserver.service;
 
+import com.iris.common.id.IdGenerator;
 import com.iris.iris_appserver.engine.MatchingEngineClient;
 import com.iris.iris_appserver.model.*;
 import com.iris.iris_appserver.model.messages.*;
@@ -16,6 +17,7 @@ import quickfix.field.*;
 public class OrderService {
 
     private final MatchingEngineClient matchingEngineClient;
+    private final IdGenerator idGenerator;
 
     public String processNewOrder(Message fixMessage) throws FieldNotFound {
         // Extract data from FIX message
@@ -68,7 +70,7 @@ public class OrderService {
                 .sourceIpAddress(getClientIpAddress(fixMessage))
                 .build();
 
-        matchingEngineClient.sendCancelOrder(cancelRequest);
+        matchingEngineClient.sendCancelOrder(clientId, cancelRequest);
 
         return "ORD" + System.currentTimeMillis(); // Placeholder for response
     }
@@ -98,7 +100,7 @@ public class OrderService {
                 .sourceIpAddress(getClientIpAddress(fixMessage))
                 .build();
 
-        matchingEngineClient.sendReplaceOrder(replaceRequest);
+        matchingEngineClient.sendReplaceOrder(clientId, replaceRequest);
 
         return newOrderId;
     }
@@ -121,16 +123,28 @@ public class OrderService {
                 .sourceIpAddress(getClientIpAddress(fixMessage))
                 .build();
 
-        matchingEngineClient.sendMassCancel(massCancelRequest);
+        matchingEngineClient.sendMassCancel(clientId, massCancelRequest);
 
         // Placeholder - actual count would come from execution report
         return 5;
     }
 
+    /**
+     * Cancel every resting order of a client whose session has gone away
+     * @param clientId Client SenderCompID
+     */
+    public void cancelOnDisconnect(String clientId) {
+        MassCancelRequest massCancelRequest = MassCancelRequest.builder()
+                .clOrdId("COD" + idGenerator.nextIdString())
+                .cancelType("CANCEL_ON_DISCONNECT")
+                .build();
+
+        matchingEngineClient.sendMassCancel(clientId, massCancelRequest);
+    }
+
     // Helper methods
     private String generateOrderId() {
-        return "ORD" + System.currentTimeMillis() + "-" +
-                java.util.UUID.randomUUID().toString().substring(0, 8);
+        return "ORD" + idGenerator.nextIdString();
     }
 
     private String orderTypeToString(char orderType) {
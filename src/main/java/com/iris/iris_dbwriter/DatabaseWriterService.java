@@ -1,7 +1,10 @@
 package com.iris.iris_dbwriter;
 
+import com.iris.common.ipc.InProcessTransport;
 import com.iris.common.model.db.*;
 import com.iris.iris_dbwriter.repository.*;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 import lombok.RequiredArgsConstructor;
@@ -9,6 +12,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.kafka.support.Acknowledgment;
 
+import java.util.Optional;
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
@@ -17,6 +22,8 @@ public class DatabaseWriterService {
     private final OrderRepository orderRepository;
     private final TradeRepository tradeRepository;
     private final OrderBookStateRepository orderBookStateRepository;
+    // Present when running in one JVM with the engine
+    private final Optional<InProcessTransport> inProcess;
 //    private final FixMessageRepository fixMessageRepository;
 
     @KafkaListener(topics = "${app.kafka.topic.db-orders}", groupId = "${spring.application.name}")
@@ -57,6 +64,24 @@ public class DatabaseWriterService {
         }
     }
 
+    /**
+     * Saves the events the engine hands over in-process, in the order it sent them
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void pollInProcess() {
+        inProcess.ifPresent(transport -> transport.startDbEventPoller(event -> {
+            if (event instanceof Order order) {
+                orderRepository.save(order);
+            } else if (event instanceof Trade trade) {
+                tradeRepository.save(trade);
+            } else if (event instanceof OrderBookState orderBookState) {
+                orderBookStateRepository.save(orderBookState);
+            } else {
+                log.warn("Ignoring unknown event {}", event);
+            }
+        }));
+    }
+
 //    @KafkaListener(topics = "${app.kafka.topic.db-fixmessages}", groupId = "${spring.application.name}")
 //    @Transactional
 //    public void consumeFixMessages(FixMessage fixMessage, Acknowledgment ack) {
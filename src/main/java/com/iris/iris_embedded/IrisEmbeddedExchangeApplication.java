@@ -0,0 +1,51 @@
+package com.iris.iris_embedded;
+
+import com.iris.common.ipc.IdleStrategy;
+import com.iris.common.ipc.InProcessTransport;
+import com.iris.iris_appserver.IrisAppserverApplication;
+import com.iris.iris_dbwriter.IrisDbWriterApplication;
+import com.iris.iris_matchingengine.IrisMatchingEngineApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the matching engine, DB writer and FIX gateway in one JVM, for latency-sensitive
+ * venues and for tests. Each application gets its own Spring context, configured as when
+ * it runs alone, under a parent context holding the in-process queues that take the place
+ * of Kafka between them.
+ */
+@Slf4j
+@Configuration
+public class IrisEmbeddedExchangeApplication {
+
+    @Bean(destroyMethod = "close")
+    public InProcessTransport inProcessTransport(
+            @Value("${app.in-process.queue-capacity:65536}") int capacity,
+            @Value("${app.ipc.idle-strategy:BACKOFF}") IdleStrategy.Type idleStrategy,
+            @Value("${app.ipc.max-park-us:1000}") long maxParkMicros,
+            @Value("${app.ipc.send-timeout-ms:1000}") long sendTimeoutMs) {
+        log.info("In-process transport with queues of {}, {} idle strategy", capacity, idleStrategy);
+        return new InProcessTransport(capacity, idleStrategy, TimeUnit.MICROSECONDS.toNanos(maxParkMicros), sendTimeoutMs);
+    }
+
+    public static void main(String[] args) {
+        SpringApplicationBuilder parent = new SpringApplicationBuilder(IrisEmbeddedExchangeApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("embedded");
+
+        // Engine first, so it takes commands before the gateway accepts sessions
+        // The only engine in this JVM; a command-line iris.node-id still wins
+        SpringApplicationBuilder engine = parent.child(IrisMatchingEngineApplication.class).profiles("matchingengine")
+                .properties("iris.node-id=2");
+        engine.run(args);
+        engine.sibling(IrisDbWriterApplication.class).profiles("dbwriter").run(args);
+        // A child context is taken for a web application when servlet classes are present
+        engine.sibling(IrisAppserverApplication.class).profiles("appserver").web(WebApplicationType.NONE).run(args);
+    }
+}
@@ -61,11 +61,14 @@ public class InstrumentManager {
                     // Default values if not provided
                     double tickSize = parts.length > 2 ? Double.parseDouble(parts[2].trim()) : 1.0;
                     String hours = parts.length > 3 ? parts[3].trim() : Instrument.DEFAULT_TRADING_HOURS;
+                    double priceTickSize = parts.length > 4 && !parts[4].trim().isEmpty() ?
+                            Double.parseDouble(parts[4].trim()) : Instrument.DEFAULT_PRICE_TICK_SIZE;
 
                     Instrument instrument = Instrument.builder()
                             .symbol(symbol)
                             .lastSettlementPrice(price)
                             .volumeTickSize(tickSize)
+                            .priceTickSize(priceTickSize)
                             .tradingHours(hours)
                             .build();
 
@@ -1,47 +1,199 @@
 package com.iris.iris_matchingengine.consumer;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.common.codec.EngineMessageCodec;
+import com.iris.common.ipc.EngineTransport;
+import com.iris.common.kafka.CommandEnvelope;
+import com.iris.common.kafka.CommandType;
 import com.iris.common.model.messages.CancelOrderMessage;
+import com.iris.common.model.messages.InstrumentTransferMessage;
+import com.iris.common.model.messages.MassCancelMessage;
 import com.iris.common.model.messages.NewOrderMessage;
 import com.iris.common.model.messages.ReplaceOrderMessage;
-import com.iris.iris_matchingengine.service.OrderProcessingService;
+import com.iris.iris_matchingengine.sequencer.EngineSequencer;
+import com.iris.iris_matchingengine.snapshot.BookImageCodec;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.TopicPartition;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class OrderConsumer {
+    // A standby starts the listener itself once promoted
+    public static final String LISTENER_ID = "inbound-commands";
+
     private final ObjectMapper objectMapper;
-    private final OrderProcessingService orderProcessingService;
+    private final EngineMessageCodec messageCodec;
+    private final EngineSequencer engineSequencer;
+    private final Optional<EngineTransport> localTransport;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+
+    // Inbound-orders partitions this node consumes; together the nodes must cover every partition
+    @Value("${matching.node.partitions:0,1,2}")
+    private String partitions;
+
+    @Value("${matching.role:PRIMARY}")
+    private String role;
+
+    // How long a batch's commit waits for its commands to be journaled
+    @Value("${matching.journal.commit-timeout-ms:5000}")
+    private long commitTimeoutMs;
 
     /**
-     * Listens for new orders on the inbound-orders topic
-     * Routes them to the appropriate orderbook for matching
+     * Listens for commands on this node's inbound-orders partitions, one poll at a time.
+     * The partitions are assigned explicitly, so a node never takes over another's
+     * instruments in a rebalance; instruments move between nodes by book handoff instead.
+     * Dispatches each record on its command type header and hands it to the sequencer in
+     * record order, which routes it to the shard owning the orderbook, then commits the
+     * whole batch once its commands are journaled. If a shard halted on a journal failure
+     * the batch is left uncommitted and the listener stops, so a restart takes those
+     * commands again.
      *
-     * @param message Raw message bytes from Kafka
+     * @param records Records from one poll, in partition order
      * @param acknowledgment Kafka acknowledgment object
      */
-    @KafkaListener(topics = "${app.kafka.topic.inbound-orders:inbound-orders}",
-            groupId = "${spring.application.name}")
-    public void consumeNewOrders(byte[] message, Acknowledgment acknowledgment) {
-        try {
+    @KafkaListener(id = LISTENER_ID,
+            topicPartitions = @TopicPartition(topic = "${app.kafka.topic.inbound-orders:inbound-orders}",
+                    partitions = "#{'${matching.node.partitions:0,1,2}'.split(',')}"),
+            groupId = "${spring.application.name}",
+            autoStartup = "#{'${matching.role:PRIMARY}' != 'STANDBY' && '${app.transport:kafka}' == 'kafka'}",
+            containerFactory = "batchKafkaListenerContainerFactory")
+    public void consumeCommands(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment) {
+        log.debug("Received batch of {} commands", records.size());
+
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                dispatch(typeOf(record), record.value(), record.partition(), record.offset());
+            } catch (Exception e) {
+                // Skip the poison record so the rest of the batch still goes through
+                // In production, consider a dead-letter queue for failed messages
+                log.error("Error processing command at {}-{} offset {}",
+                        record.topic(), record.partition(), record.offset(), e);
+            }
+        }
 
-                NewOrderMessage orderMessage = objectMapper.readValue(message, NewOrderMessage.class);
-                log.debug("Received new order: {}", orderMessage);
+        boolean journaled = engineSequencer.awaitJournaled(commitTimeoutMs);
+        if (engineSequencer.isHalted()) {
+            stopListener();
+            return;
+        }
+        if (!journaled) {
+            // The next batch's commit covers this one
+            log.warn("Batch of {} commands not journaled after {} ms, leaving it uncommitted",
+                    records.size(), commitTimeoutMs);
+            return;
+        }
 
-                orderProcessingService.processNewOrder(orderMessage);
+        // One offset commit for the whole poll
+        acknowledgment.acknowledge();
+    }
 
+    private void stopListener() {
+        MessageListenerContainer listener = listenerRegistry.getListenerContainer(LISTENER_ID);
+        if (listener != null && listener.isRunning()) {
+            // Stopping waits for this listener call to return, so it must not block on it
+            listener.stop(() -> log.error("Stopped consuming commands, a shard is halted"));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!"STANDBY".equals(role)) {
+            pollLocalTransport();
+        }
+    }
+
+    /**
+     * Start taking commands from a local gateway, when commands come over shared memory
+     * or in-process queues rather than Kafka. These carry every partition's commands, so
+     * one engine node serves them all. As with a Kafka batch, each poll's commands are
+     * released only once they are journaled, and a halted shard stops the poller. Ring
+     * positions stand in for offsets, so commands taken again after a restart are skipped.
+     *
+     * @return False if commands come over Kafka
+     */
+    public boolean pollLocalTransport() {
+        if (localTransport.isEmpty()) {
+            return false;
+        }
+        EngineTransport transport = localTransport.get();
+        transport.startCommandPoller((type, payload, position) -> {
+            try {
+                dispatch(type, payload, EngineSequencer.LOCAL_PARTITION, position);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, () -> {
+            boolean journaled = engineSequencer.awaitJournaled(commitTimeoutMs);
+            if (engineSequencer.isHalted()) {
+                transport.stopCommandPoller();
+                log.error("Stopped taking local commands, a shard is halted");
+                return false;
+            }
+            if (!journaled) {
+                // The next poll's release covers this one
+                log.warn("Local commands not journaled after {} ms, leaving them unreleased", commitTimeoutMs);
+            }
+            return journaled;
+        });
+        return true;
+    }
+
+    private static CommandType typeOf(ConsumerRecord<String, byte[]> record) {
+        CommandType type = CommandEnvelope.typeOf(record);
+        // Records from senders that predate the header only ever carried new orders
+        return type != null ? type : CommandType.NEW_ORDER;
+    }
 
-            // Acknowledge message processing
-            acknowledgment.acknowledge();
-        } catch (Exception e) {
-            log.error("Error processing order message", e);
-            // In production, consider a dead-letter queue for failed messages
-            acknowledgment.acknowledge();
+    private void dispatch(CommandType type, byte[] payload, int partition, long offset) throws IOException {
+        switch (type) {
+            case NEW_ORDER:
+                NewOrderMessage newOrder = messageCodec.decodeNewOrder(payload);
+                log.debug("Received new order: {}", newOrder);
+                engineSequencer.publishNewOrder(newOrder, payload, partition, offset);
+                break;
+            case CANCEL_ORDER:
+                CancelOrderMessage cancel = messageCodec.decodeCancel(payload);
+                log.debug("Received cancel: {}", cancel);
+                engineSequencer.publishCancelOrder(cancel, payload, partition, offset);
+                break;
+            case REPLACE_ORDER:
+                ReplaceOrderMessage replace = messageCodec.decodeReplace(payload);
+                log.debug("Received replace: {}", replace);
+                engineSequencer.publishReplaceOrder(replace, payload, partition, offset);
+                break;
+            case MASS_CANCEL:
+                MassCancelMessage massCancel = messageCodec.decodeMassCancel(payload);
+                // One for all instruments comes on every partition; each copy cancels its partition's instruments
+                log.debug("Received mass cancel: {}", massCancel);
+                engineSequencer.publishMassCancel(massCancel, payload, partition, offset);
+                break;
+            case TRANSFER_OUT:
+                InstrumentTransferMessage transfer = objectMapper.readValue(payload, InstrumentTransferMessage.class);
+                log.info("Received transfer of {} to partition {}", transfer.getInstrumentId(), transfer.getToPartition());
+                engineSequencer.publishTransferOut(transfer, payload, partition, offset);
+                break;
+            case BOOK_TRANSFER:
+                engineSequencer.publishBookTransfer(BookImageCodec.decode(payload), payload, partition, offset);
+                break;
+            default:
+                log.warn("Ignoring {} command, which only the engine itself sequences", type);
+                break;
         }
     }
-}
\ No newline at end of file
+}
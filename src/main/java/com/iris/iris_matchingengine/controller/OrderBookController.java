@@ -0,0 +1,37 @@
+package com.iris.iris_matchingengine.controller;
+
+import com.iris.iris_matchingengine.model.BookSnapshot;
+import com.iris.iris_matchingengine.service.BookInspectionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/orderbooks")
+@RequiredArgsConstructor
+public class OrderBookController {
+
+    private final BookInspectionService bookInspectionService;
+
+    @GetMapping
+    public ResponseEntity<Map<String, BookSnapshot>> getAllOrderBooks() {
+        log.debug("Request to get all order book snapshots");
+        return ResponseEntity.ok(bookInspectionService.getSnapshots());
+    }
+
+    @GetMapping("/{instrumentId}")
+    public ResponseEntity<BookSnapshot> getOrderBook(@PathVariable String instrumentId) {
+        log.debug("Request to get order book snapshot: {}", instrumentId);
+        BookSnapshot snapshot = bookInspectionService.getSnapshot(instrumentId);
+
+        if (snapshot == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(snapshot);
+    }
+}
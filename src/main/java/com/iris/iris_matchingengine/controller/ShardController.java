@@ -0,0 +1,71 @@
+package com.iris.iris_matchingengine.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.common.kafka.ShardMap;
+import com.iris.common.model.messages.InstrumentTransferMessage;
+import com.iris.iris_matchingengine.sequencer.EngineSequencer;
+import com.iris.iris_matchingengine.service.InstrumentHandoff;
+import com.iris.iris_matchingengine.service.OrderBookManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/shards")
+@RequiredArgsConstructor
+public class ShardController {
+
+    private final ShardMap shardMap;
+    private final InstrumentHandoff instrumentHandoff;
+    private final OrderBookManager orderBookManager;
+    private final EngineSequencer engineSequencer;
+    private final ObjectMapper objectMapper;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getShards() {
+        return ResponseEntity.ok(Map.of(
+                "partitions", shardMap.getPartitions(),
+                "instruments", orderBookManager.getInstrumentIds(),
+                "handedOff", instrumentHandoff.getHandedOff()));
+    }
+
+    /**
+     * Hand a book held on this node to another partition. Trading carries on: commands
+     * that reach this node after the handoff are forwarded until every gateway has moved.
+     */
+    @PostMapping("/instruments/{instrumentId}/transfer")
+    public ResponseEntity<String> transfer(@PathVariable String instrumentId, @RequestParam int partition) {
+        log.info("Request to hand book {} to partition {}", instrumentId, partition);
+        if (partition < 0 || partition >= shardMap.getPartitions()) {
+            return ResponseEntity.badRequest().body("No such partition: " + partition);
+        }
+        if (!engineSequencer.isRunning()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Engine is not taking commands");
+        }
+        if (!orderBookManager.getInstrumentIds().contains(instrumentId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No book for " + instrumentId + " on this node");
+        }
+
+        try {
+            long now = System.currentTimeMillis();
+            InstrumentTransferMessage message = InstrumentTransferMessage.builder()
+                    .messageType("TransferOut")
+                    .messageId("XFER-" + instrumentId + "-" + now)
+                    .timestamp(now)
+                    .instrumentId(instrumentId)
+                    .toPartition(partition)
+                    .build();
+            // Requested here rather than taken from Kafka, so it has no offset
+            engineSequencer.publishTransferOut(message, objectMapper.writeValueAsBytes(message), -1, -1);
+            return ResponseEntity.accepted().body(message.getMessageId());
+        } catch (Exception e) {
+            log.error("Failed to request transfer of {}", instrumentId, e);
+            return ResponseEntity.internalServerError().body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.iris.iris_matchingengine.journal;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Owns the per-shard command journals. Every command is appended to its shard's journal
+ * by a stage that runs ahead of matching, so nothing is applied to a book before it has
+ * been journaled.
+ */
+@Slf4j
+@Service
+public class CommandJournal {
+    @Getter
+    @Value("${matching.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${matching.journal.dir:journal}")
+    private String directory;
+
+    @Value("${matching.journal.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Getter
+    @Value("${matching.journal.sync-policy:BATCH}")
+    private JournalSyncPolicy syncPolicy;
+
+    private final Map<Integer, JournalWriter> writers = new ConcurrentHashMap<>();
+
+    private JournalLease lease;
+
+    /**
+     * Get the journal directory of a shard
+     * @param shard Shard index
+     * @return Directory path
+     */
+    public Path shardDirectory(int shard) {
+        return Paths.get(directory, "shard-" + shard);
+    }
+
+    /**
+     * Get the lease on the journal directory; only its holder may open writers
+     * @return The lease, not necessarily held yet
+     */
+    public synchronized JournalLease lease() {
+        if (lease == null) {
+            try {
+                lease = new JournalLease(Paths.get(directory));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open journal lease in " + directory, e);
+            }
+        }
+        return lease;
+    }
+
+    /**
+     * Open the journal writer for a shard
+     * @param shard Shard index
+     * @return The writer, owned by the shard's journal stage
+     */
+    public JournalWriter openWriter(int shard) {
+        if (!lease().isHeld()) {
+            throw new IllegalStateException("Journal lease " + lease().getFile() + " is not held by this engine");
+        }
+        return writers.computeIfAbsent(shard, index -> {
+            try {
+                JournalWriter writer = new JournalWriter(shardDirectory(index), segmentSizeMb << 20);
+                log.info("Journal for shard {} at {} continues from sequence {}, {} sync",
+                        index, shardDirectory(index), writer.getSequence(), syncPolicy);
+                return writer;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open journal for shard " + index, e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Map.Entry<Integer, JournalWriter> entry : writers.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (IOException e) {
+                log.error("Failed to close journal for shard {}", entry.getKey(), e);
+            }
+        }
+        writers.clear();
+        if (lease != null) {
+            try {
+                lease.close();
+            } catch (IOException e) {
+                log.error("Failed to release journal lease", e);
+            }
+        }
+    }
+}
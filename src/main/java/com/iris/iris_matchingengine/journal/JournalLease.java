@@ -0,0 +1,56 @@
+package com.iris.iris_matchingengine.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Exclusive right to write a journal, held by the primary engine. It is an OS lock on a
+ * file next to the journals, so it is released the moment the holder's process dies and a
+ * standby polling for it learns of the failure within one poll.
+ */
+public class JournalLease implements Closeable {
+    static final String FILE_NAME = "lease";
+
+    private final Path file;
+    private final FileChannel channel;
+    private FileLock lock;
+
+    public JournalLease(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.file = directory.resolve(FILE_NAME);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Take the lease if no other process holds it; does not block
+     * @return True if this process holds the lease
+     */
+    public synchronized boolean tryAcquire() throws IOException {
+        if (lock == null) {
+            lock = channel.tryLock();
+        }
+        return lock != null;
+    }
+
+    public synchronized boolean isHeld() {
+        return lock != null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (lock != null) {
+            lock.release();
+            lock = null;
+        }
+        channel.close();
+    }
+}
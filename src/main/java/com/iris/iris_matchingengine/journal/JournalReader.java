@@ -0,0 +1,162 @@
+package com.iris.iris_matchingengine.journal;
+
+import com.iris.common.kafka.CommandType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads journals written by {@link JournalWriter}. A segment is read up to its zero-filled
+ * tail or the first record that fails its checksum, which is where a crash tore a write.
+ */
+@Slf4j
+public final class JournalReader {
+    static final String SUFFIX = ".journal";
+
+    private JournalReader() {
+    }
+
+    static String segmentName(long firstSequence) {
+        return String.format("%020d%s", firstSequence, SUFFIX);
+    }
+
+    /**
+     * Read every record from a sequence onwards, in order
+     * @param directory Journal directory
+     * @param fromSequence First sequence wanted
+     * @param consumer Receives each record
+     * @return Last sequence read, or fromSequence - 1 if none
+     */
+    public static long read(Path directory, long fromSequence, Consumer<JournalRecord> consumer) throws IOException {
+        List<Path> segments = segments(directory);
+        long last = fromSequence - 1;
+        for (int i = 0; i < segments.size(); i++) {
+            // Skip segments that end before the wanted sequence
+            if (i + 1 < segments.size() && firstSequence(segments.get(i + 1)) <= fromSequence) {
+                continue;
+            }
+            last = Math.max(last, readSegment(segments.get(i), fromSequence, consumer));
+        }
+        return last;
+    }
+
+    /**
+     * Find the last intact sequence in a journal
+     * @param directory Journal directory
+     * @return Last sequence, 0 if the journal is empty
+     */
+    public static long lastSequence(Path directory) throws IOException {
+        List<Path> segments = segments(directory);
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            long last = readSegment(segments.get(i), Long.MAX_VALUE, record -> { });
+            if (last > 0) {
+                return last;
+            }
+        }
+        return 0;
+    }
+
+    private static long readSegment(Path segment, long fromSequence,
+                                    Consumer<JournalRecord> consumer) throws IOException {
+        long last = 0;
+        long expected = 0;
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            JournalRecord record;
+            while ((record = readRecord(buffer, crc)) != null) {
+                long sequence = record.getSequence();
+                if (expected > 0 && sequence != expected) {
+                    log.warn("Journal segment {} jumps from sequence {} to {}", segment, expected - 1, sequence);
+                }
+                expected = sequence + 1;
+                last = sequence;
+                if (sequence >= fromSequence) {
+                    consumer.accept(record);
+                }
+            }
+            if (buffer.remaining() >= Integer.BYTES && buffer.getInt(buffer.position()) != 0) {
+                log.warn("Journal segment {} has a torn record at offset {}", segment, buffer.position());
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Read the record at the buffer's position
+     * @param buffer Segment buffer
+     * @param crc Checksum to reuse
+     * @return The record, with the buffer moved past it, or null if there is no intact
+     * record at the position, with the buffer left where it was
+     */
+    static JournalRecord readRecord(ByteBuffer buffer, CRC32C crc) {
+        int start = buffer.position();
+        if (buffer.remaining() < JournalWriter.HEADER_SIZE) {
+            return null;
+        }
+        int bodyLength = buffer.getInt(start);
+        int checksum = buffer.getInt(start + 4);
+        if (bodyLength < JournalWriter.BODY_FIXED_SIZE || bodyLength > buffer.remaining() - JournalWriter.HEADER_SIZE) {
+            return null;
+        }
+
+        int bodyStart = start + JournalWriter.HEADER_SIZE;
+        crc.reset();
+        buffer.limit(bodyStart + bodyLength).position(bodyStart);
+        crc.update(buffer);
+        buffer.limit(buffer.capacity()).position(bodyStart);
+        if ((int) crc.getValue() != checksum) {
+            buffer.position(start);
+            return null;
+        }
+
+        long sequence = buffer.getLong();
+        long timestamp = buffer.getLong();
+        byte code = buffer.get();
+        int partition = -1;
+        long offset = -1;
+        int fixedSize = JournalWriter.BODY_FIXED_SIZE;
+        if ((code & JournalWriter.SOURCE_FLAG) != 0) {
+            partition = buffer.getInt();
+            offset = buffer.getLong();
+            fixedSize += JournalWriter.SOURCE_SIZE;
+        }
+        CommandType type = CommandType.fromCode((byte) (code & ~JournalWriter.SOURCE_FLAG));
+        byte[] instrument = new byte[buffer.getShort()];
+        buffer.get(instrument);
+        byte[] payload = new byte[bodyLength - fixedSize - instrument.length];
+        buffer.get(payload);
+        return new JournalRecord(sequence, timestamp, type, new String(instrument, StandardCharsets.UTF_8), payload,
+                partition, offset);
+    }
+
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .forEach(segments::add);
+        }
+        return segments;
+    }
+
+    static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,19 @@
+package com.iris.iris_matchingengine.journal;
+
+import com.iris.common.kafka.CommandType;
+import lombok.Value;
+
+/**
+ * A command read back from the journal
+ */
+@Value
+public class JournalRecord {
+    long sequence;
+    long timestamp;
+    CommandType type;
+    String instrumentId;
+    byte[] payload;
+    // Inbound-orders partition and offset the command came from; -1 if not from Kafka
+    int partition;
+    long offset;
+}
@@ -0,0 +1,13 @@
+package com.iris.iris_matchingengine.journal;
+
+/**
+ * When journal writes are forced to disk
+ */
+public enum JournalSyncPolicy {
+    // Force after every command; slowest, loses nothing on power failure
+    EVERY,
+    // Force once per ring batch, so one fsync covers every command in a burst
+    BATCH,
+    // Leave it to the OS; survives a process crash but not a power failure
+    NONE
+}
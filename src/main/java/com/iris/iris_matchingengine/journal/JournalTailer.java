@@ -0,0 +1,129 @@
+package com.iris.iris_matchingengine.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Follows a shard journal while another process appends to it. The writer puts a record's
+ * length in last, so the tailer stops at the first record that is not complete yet and
+ * picks it up on a later poll. When the writer rolls, the next segment is named after the
+ * next sequence, which is how the tailer knows where to go on.
+ *
+ * Not thread-safe; one follower thread owns each tailer.
+ */
+@Slf4j
+public class JournalTailer implements Closeable {
+    private final Path directory;
+    private final CRC32C crc = new CRC32C();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    // First sequence of the mapped segment
+    private long segmentFirst;
+
+    // Last sequence read
+    private long sequence;
+
+    /**
+     * @param directory Journal directory
+     * @param fromSequence First sequence wanted
+     */
+    public JournalTailer(Path directory, long fromSequence) {
+        this.directory = directory;
+        this.sequence = fromSequence - 1;
+    }
+
+    /**
+     * Get the last sequence read
+     * @return Sequence
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Read every complete record written since the last poll
+     * @param consumer Receives each record, in order
+     * @return Number of records read
+     */
+    public int poll(Consumer<JournalRecord> consumer) throws IOException {
+        int read = 0;
+        while (buffer != null || openSegment()) {
+            JournalRecord record = JournalReader.readRecord(buffer, crc);
+            if (record == null) {
+                if (segmentFirst == sequence + 1
+                        || !Files.exists(directory.resolve(JournalReader.segmentName(sequence + 1)))) {
+                    return read;
+                }
+                // The writer finished this segment before creating the next; read what is left first
+                record = JournalReader.readRecord(buffer, crc);
+                if (record == null) {
+                    closeSegment();
+                    continue;
+                }
+            }
+            // Older records of the first segment, before the wanted sequence
+            if (record.getSequence() <= sequence) {
+                continue;
+            }
+            if (record.getSequence() != sequence + 1) {
+                log.warn("Journal {} jumps from sequence {} to {}", directory, sequence, record.getSequence());
+            }
+            sequence = record.getSequence();
+            consumer.accept(record);
+            read++;
+        }
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+
+    /**
+     * Map the segment holding the next sequence
+     * @return False if it has not been created yet
+     */
+    private boolean openSegment() throws IOException {
+        Path segment = null;
+        List<Path> segments = JournalReader.segments(directory);
+        for (Path candidate : segments) {
+            if (JournalReader.firstSequence(candidate) <= sequence + 1) {
+                segment = candidate;
+            }
+        }
+        if (segment == null) {
+            return false;
+        }
+        FileChannel opened = FileChannel.open(segment, StandardOpenOption.READ);
+        // The writer maps a new segment at its full size in one step; until then there is nothing to read
+        if (opened.size() == 0) {
+            opened.close();
+            return false;
+        }
+        channel = opened;
+        segmentFirst = JournalReader.firstSequence(segment);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        log.info("Following journal segment {}", segment);
+        return true;
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        channel = null;
+        buffer = null;
+    }
+}
@@ -0,0 +1,162 @@
+package com.iris.iris_matchingengine.journal;
+
+import com.iris.common.kafka.CommandType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Appends commands to one shard's journal.
+ *
+ * The journal is a directory of fixed-size memory-mapped segments, each named after the
+ * first sequence it holds. Appending is a copy into the mapped segment; nothing reaches
+ * the disk until {@link #sync} forces the written range. A record never spans segments,
+ * and the zero-filled tail of a segment marks the end of its data.
+ *
+ * Record layout: body length (int), CRC32C of the body (int), then the body: sequence
+ * (long), timestamp (long), command type (byte), instrument length (short), instrument
+ * (UTF-8) and the command payload as it arrived. A command taken from Kafka has the high
+ * bit of its type set and its inbound-orders partition (int) and offset (long) after the
+ * type.
+ *
+ * Not thread-safe; each shard's journal stage owns its writer.
+ */
+@Slf4j
+public class JournalWriter implements Closeable {
+    static final int HEADER_SIZE = 8;
+    static final int BODY_FIXED_SIZE = 8 + 8 + 1 + 2;
+    static final int SOURCE_FLAG = 0x80;
+    static final int SOURCE_SIZE = 4 + 8;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final CRC32C crc = new CRC32C();
+
+    // Encoded instrument IDs, so steady-state appends do not allocate
+    private final Map<String, byte[]> instrumentBytes = new HashMap<>();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    // Start of the range written since the last sync
+    private int unsyncedFrom;
+
+    // Last sequence written
+    private long sequence;
+
+    public JournalWriter(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+
+        // Carry on from the last intact record; a torn tail is left for readers to skip
+        this.sequence = JournalReader.lastSequence(directory);
+        openSegment(sequence + 1);
+    }
+
+    /**
+     * Get the last sequence written
+     * @return Sequence, 0 if the journal is empty
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Append a command
+     * @param type Command type
+     * @param instrumentId Instrument the command applies to
+     * @param payload Encoded command
+     * @param timestamp Time the command was sequenced, in epoch millis
+     * @param partition Inbound-orders partition the command came from
+     * @param offset Offset of its record, -1 if it did not come from Kafka
+     * @return Sequence of the record
+     */
+    public long append(CommandType type, String instrumentId, byte[] payload, long timestamp,
+                       int partition, long offset) throws IOException {
+        byte[] instrument = instrumentBytes.computeIfAbsent(instrumentId,
+                id -> id.getBytes(StandardCharsets.UTF_8));
+        boolean sourced = offset >= 0;
+        int bodyLength = BODY_FIXED_SIZE + (sourced ? SOURCE_SIZE : 0) + instrument.length + payload.length;
+        if (HEADER_SIZE + bodyLength > segmentSize) {
+            throw new IOException("Record of " + bodyLength + " bytes does not fit a journal segment");
+        }
+        if (buffer.remaining() < HEADER_SIZE + bodyLength) {
+            rollSegment();
+        }
+
+        long next = sequence + 1;
+        int start = buffer.position();
+        int bodyStart = start + HEADER_SIZE;
+        buffer.position(bodyStart);
+        buffer.putLong(next)
+                .putLong(timestamp);
+        if (sourced) {
+            buffer.put((byte) (type.getCode() | SOURCE_FLAG))
+                    .putInt(partition)
+                    .putLong(offset);
+        } else {
+            buffer.put(type.getCode());
+        }
+        buffer.putShort((short) instrument.length)
+                .put(instrument)
+                .put(payload);
+        int end = buffer.position();
+
+        crc.reset();
+        buffer.limit(end).position(bodyStart);
+        crc.update(buffer);
+        buffer.limit(buffer.capacity());
+
+        // Length goes in last, so a reader never takes a half-written body for a record
+        buffer.putInt(start + 4, (int) crc.getValue());
+        buffer.putInt(start, bodyLength);
+
+        sequence = next;
+        return next;
+    }
+
+    /**
+     * Force everything written since the last sync to disk
+     */
+    public void sync() {
+        int end = buffer.position();
+        if (end > unsyncedFrom) {
+            buffer.force(unsyncedFrom, end - unsyncedFrom);
+            unsyncedFrom = end;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    private void rollSegment() throws IOException {
+        close();
+        openSegment(sequence + 1);
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(JournalReader.segmentName(firstSequence));
+        // An existing file here starts with a torn record (the sequence says so), but may hold
+        // older records past it that would read back as intact; truncate it, so the mapping
+        // below comes back zero-filled
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        unsyncedFrom = 0;
+        log.info("Opened journal segment {}", path);
+    }
+}
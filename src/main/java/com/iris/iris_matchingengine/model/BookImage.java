@@ -0,0 +1,83 @@
+package com.iris.iris_matchingengine.model;
+
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * Full copy of a book's resting orders, for persistence and restart. Orders are held in
+ * book order: bids best first, then asks best first, each level in queue order. Fields
+ * are kept in flat arrays so taking an image on the matching thread is a plain copy.
+ */
+@Getter
+public class BookImage {
+    private final String instrumentId;
+    // The book's priority sequence counter
+    private final int sequence;
+    // Last market data sequence the book issued
+    private final long marketDataSequence;
+    private final int count;
+
+    private final String[] orderIds;
+    private final String[] clOrdIds;
+    private final boolean[] buy;
+    private final long[] originalQuantities;
+    private final long[] remainingQuantities;
+    private final long[] prices;
+    private final String[] orderTypes;
+    private final String[] timeInForces;
+    private final long[] entryTimes; // Epoch millis, 0 if unknown
+    private final String[] clientIds;
+    private final String[] sourceIps;
+    private final int[] sequenceNumbers;
+
+    public BookImage(String instrumentId, int sequence, long marketDataSequence, int count) {
+        this.instrumentId = instrumentId;
+        this.sequence = sequence;
+        this.marketDataSequence = marketDataSequence;
+        this.count = count;
+        this.orderIds = new String[count];
+        this.clOrdIds = new String[count];
+        this.buy = new boolean[count];
+        this.originalQuantities = new long[count];
+        this.remainingQuantities = new long[count];
+        this.prices = new long[count];
+        this.orderTypes = new String[count];
+        this.timeInForces = new String[count];
+        this.entryTimes = new long[count];
+        this.clientIds = new String[count];
+        this.sourceIps = new String[count];
+        this.sequenceNumbers = new int[count];
+    }
+
+    void set(int i, OrderBookEntry entry) {
+        orderIds[i] = entry.getOrderId();
+        clOrdIds[i] = entry.getClOrdId();
+        buy[i] = "BUY".equalsIgnoreCase(entry.getSide());
+        originalQuantities[i] = entry.getOriginalQuantity();
+        remainingQuantities[i] = entry.getRemainingQuantity();
+        prices[i] = entry.getPrice();
+        orderTypes[i] = entry.getOrderType();
+        timeInForces[i] = entry.getTimeInForce();
+        entryTimes[i] = entry.getEntryTime() != null ? entry.getEntryTime().toEpochMilli() : 0;
+        clientIds[i] = entry.getClientId();
+        sourceIps[i] = entry.getSourceIp();
+        sequenceNumbers[i] = entry.getSequenceNumber();
+    }
+
+    void fill(int i, OrderBookEntry entry) {
+        entry.setOrderId(orderIds[i]);
+        entry.setClOrdId(clOrdIds[i]);
+        entry.setInstrumentId(instrumentId);
+        entry.setSide(buy[i] ? "BUY" : "SELL");
+        entry.setOriginalQuantity(originalQuantities[i]);
+        entry.setRemainingQuantity(remainingQuantities[i]);
+        entry.setPrice(prices[i]);
+        entry.setOrderType(orderTypes[i]);
+        entry.setTimeInForce(timeInForces[i]);
+        entry.setEntryTime(entryTimes[i] != 0 ? Instant.ofEpochMilli(entryTimes[i]) : null);
+        entry.setClientId(clientIds[i]);
+        entry.setSourceIp(sourceIps[i]);
+        entry.setSequenceNumber(sequenceNumbers[i]);
+    }
+}
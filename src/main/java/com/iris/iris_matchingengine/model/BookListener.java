@@ -0,0 +1,28 @@
+package com.iris.iris_matchingengine.model;
+
+import com.iris.common.model.MarketDataAction;
+
+/**
+ * Told by an order book about each change to its price levels as the change is made, so
+ * market data is built without rescanning the book. Called on the matching thread.
+ */
+public interface BookListener {
+    /**
+     * A level was added, changed or emptied. An emptied level is reported before it is
+     * removed, so its price is still valid.
+     * @param book The book
+     * @param action NEW, CHANGE or DELETE
+     * @param buy True for the buy side
+     * @param level The level, with its quantity and order count after the change
+     */
+    void onLevel(OrderBook book, MarketDataAction action, boolean buy, PriceLevel level);
+
+    /**
+     * A trade printed
+     * @param book The book
+     * @param aggressorBuy True if the incoming order was a buy
+     * @param price Trade price mantissa
+     * @param quantity Trade quantity mantissa
+     */
+    void onTrade(OrderBook book, boolean aggressorBuy, long price, long quantity);
+}
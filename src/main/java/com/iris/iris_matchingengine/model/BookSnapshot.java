@@ -0,0 +1,111 @@
+package com.iris.iris_matchingengine.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.iris.common.model.FixedPoint;
+import lombok.Getter;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copy of the top levels of a book at one point in time. Taken on the matching thread
+ * as raw mantissas; conversion and formatting happen only when the snapshot is read.
+ */
+public class BookSnapshot {
+    @Getter
+    private final String instrumentId;
+    @Getter
+    private final long version;
+    @Getter
+    private final long timestamp;
+
+    private final int priceScale;
+    private final int quantityScale;
+
+    private final long[] bidPrices;
+    private final long[] bidQuantities;
+    private final int[] bidOrderCounts;
+    private final long[] askPrices;
+    private final long[] askQuantities;
+    private final int[] askOrderCounts;
+    private final int bidLevels;
+    private final int askLevels;
+
+    BookSnapshot(OrderBook book, long version, int depth) {
+        this.instrumentId = book.getInstrumentId();
+        this.version = version;
+        this.timestamp = System.currentTimeMillis();
+        this.priceScale = book.getPriceScale();
+        this.quantityScale = book.getQuantityScale();
+
+        this.bidPrices = new long[depth];
+        this.bidQuantities = new long[depth];
+        this.bidOrderCounts = new int[depth];
+        this.askPrices = new long[depth];
+        this.askQuantities = new long[depth];
+        this.askOrderCounts = new int[depth];
+        this.bidLevels = book.getDepth(true, bidPrices, bidQuantities, bidOrderCounts);
+        this.askLevels = book.getDepth(false, askPrices, askQuantities, askOrderCounts);
+    }
+
+    /**
+     * Get bid levels, best first
+     */
+    public List<DepthLevel> getBids() {
+        return levels(bidPrices, bidQuantities, bidOrderCounts, bidLevels);
+    }
+
+    /**
+     * Get ask levels, best first
+     */
+    public List<DepthLevel> getAsks() {
+        return levels(askPrices, askQuantities, askOrderCounts, askLevels);
+    }
+
+    private List<DepthLevel> levels(long[] prices, long[] quantities, int[] counts, int n) {
+        List<DepthLevel> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            result.add(new DepthLevel(
+                    FixedPoint.toDouble(prices[i], priceScale),
+                    FixedPoint.toDouble(quantities[i], quantityScale),
+                    counts[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Render the snapshot as a ladder, highest price first
+     */
+    @JsonIgnore
+    public String format() {
+        StringBuilder sb = new StringBuilder("\nOrderBook for " + instrumentId + " (version " + version + "):\n");
+        sb.append(String.format("%-15s | %-15s | %-15s | %-15s\n", "SELL QTY", "SELL PRICE", "BUY PRICE", "BUY QTY"));
+        sb.append("----------------------------------------------------------------\n");
+
+        // Asks are stored best (lowest) first, so walk them backwards to print highest first
+        for (int i = askLevels - 1; i >= 0; i--) {
+            sb.append(String.format("%-15.2f | %-15.2f | %-15.2f | %-15.2f\n",
+                    FixedPoint.toDouble(askQuantities[i], quantityScale),
+                    FixedPoint.toDouble(askPrices[i], priceScale),
+                    0.0, 0.0));
+        }
+        for (int i = 0; i < bidLevels; i++) {
+            sb.append(String.format("%-15.2f | %-15.2f | %-15.2f | %-15.2f\n",
+                    0.0, 0.0,
+                    FixedPoint.toDouble(bidPrices[i], priceScale),
+                    FixedPoint.toDouble(bidQuantities[i], quantityScale)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A single aggregated price level
+     */
+    @Value
+    public static class DepthLevel {
+        double price;
+        double quantity;
+        int orderCount;
+    }
+}
@@ -0,0 +1,55 @@
+package com.iris.iris_matchingengine.model;
+
+/**
+ * One client's resting orders in a book, linked through the entries' own client links
+ * so indexing an order never allocates. Kept per client for the life of the book, so
+ * a client whose orders come and go reuses the same list.
+ *
+ * ClOrdIDs are only unique per client, so they are indexed here rather than book-wide.
+ */
+final class ClientOrders {
+    OrderBookEntry head;
+    int count;
+
+    // The client's resting orders by ClOrdID
+    final OrderIndex clOrdIds = new OrderIndex(16);
+
+    /**
+     * Link an order into the client's list
+     * @param entry Order to add
+     */
+    void add(OrderBookEntry entry) {
+        entry.clientOrders = this;
+        entry.clientPrev = null;
+        entry.clientNext = head;
+        if (head != null) {
+            head.clientPrev = entry;
+        }
+        head = entry;
+        count++;
+    }
+
+    /**
+     * Unlink an order from the client's list
+     * @param entry Order to remove, must belong to this list
+     */
+    void remove(OrderBookEntry entry) {
+        if (entry.clientOrders != this) {
+            return;
+        }
+
+        if (entry.clientPrev == null) {
+            head = entry.clientNext;
+        } else {
+            entry.clientPrev.clientNext = entry.clientNext;
+        }
+        if (entry.clientNext != null) {
+            entry.clientNext.clientPrev = entry.clientPrev;
+        }
+
+        entry.clientPrev = null;
+        entry.clientNext = null;
+        entry.clientOrders = null;
+        count--;
+    }
+}
@@ -0,0 +1,107 @@
+package com.iris.iris_matchingengine.model;
+
+import com.iris.common.model.MarketDataAction;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Level updates and trades one command made to one book, or a full copy of its levels.
+ * Filled in on the matching thread as raw mantissas and converted to a message on a later
+ * stage. Each ring slot keeps one and reuses its arrays, so recording does not allocate
+ * once they have grown to the largest sweep seen.
+ */
+public class MarketDataUpdate {
+    private static final int INITIAL_CAPACITY = 16;
+
+    @Getter
+    private String instrumentId;
+    @Getter
+    private int priceScale;
+    @Getter
+    private int quantityScale;
+    @Getter
+    private long sequence;
+    // True for a full copy of the book's levels
+    @Getter
+    private boolean snapshot;
+    @Getter
+    private int count;
+
+    private MarketDataAction[] actions = new MarketDataAction[INITIAL_CAPACITY];
+    private boolean[] buy = new boolean[INITIAL_CAPACITY];
+    private long[] prices = new long[INITIAL_CAPACITY];
+    private long[] quantities = new long[INITIAL_CAPACITY];
+    private int[] orderCounts = new int[INITIAL_CAPACITY];
+
+    /**
+     * Start recording for a book
+     * @param book The book
+     * @param sequence Market data sequence of the update
+     * @param snapshot True for a full copy of the levels
+     */
+    public void start(OrderBook book, long sequence, boolean snapshot) {
+        this.instrumentId = book.getInstrumentId();
+        this.priceScale = book.getPriceScale();
+        this.quantityScale = book.getQuantityScale();
+        this.sequence = sequence;
+        this.snapshot = snapshot;
+        this.count = 0;
+    }
+
+    public boolean isStarted() {
+        return instrumentId != null;
+    }
+
+    /**
+     * Record one entry
+     * @param action What happened
+     * @param isBuy True for the buy side, or a buy aggressor for a trade
+     * @param price Price mantissa
+     * @param quantity Level total or trade quantity mantissa
+     * @param orderCount Orders in the level; 0 for a trade
+     */
+    public void add(MarketDataAction action, boolean isBuy, long price, long quantity, int orderCount) {
+        if (count == actions.length) {
+            int capacity = count * 2;
+            actions = Arrays.copyOf(actions, capacity);
+            buy = Arrays.copyOf(buy, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            orderCounts = Arrays.copyOf(orderCounts, capacity);
+        }
+        actions[count] = action;
+        buy[count] = isBuy;
+        prices[count] = price;
+        quantities[count] = quantity;
+        orderCounts[count] = orderCount;
+        count++;
+    }
+
+    public MarketDataAction getAction(int i) {
+        return actions[i];
+    }
+
+    public boolean isBuy(int i) {
+        return buy[i];
+    }
+
+    public long getPrice(int i) {
+        return prices[i];
+    }
+
+    public long getQuantity(int i) {
+        return quantities[i];
+    }
+
+    public int getOrderCount(int i) {
+        return orderCounts[i];
+    }
+
+    public void clear() {
+        instrumentId = null;
+        sequence = 0;
+        snapshot = false;
+        count = 0;
+    }
+}
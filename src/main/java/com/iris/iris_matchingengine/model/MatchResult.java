@@ -1,14 +1,33 @@
 package com.iris.iris_matchingengine.model;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.Getter;
+import lombok.ToString;
 
-@Data
-@AllArgsConstructor
+/**
+ * A single fill between an incoming and a resting order. The book reuses one instance
+ * for every fill it reports, so a match is only valid inside {@link MatchSink#onMatch}.
+ */
+@Getter
+@ToString
 public class MatchResult {
-    private final OrderBookEntry aggressorOrder; // The incoming order
-    private final OrderBookEntry restingOrder;   // The resting order
-    private final double matchedQuantity;
-    private final double matchPrice;
-    private final String tradeId;
-}
\ No newline at end of file
+    private OrderBookEntry aggressorOrder; // The incoming order
+    private OrderBookEntry restingOrder;   // The resting order
+    private long matchedQuantity;
+    private long matchPrice;
+    private long tradeId;
+
+    MatchResult set(OrderBookEntry aggressorOrder, OrderBookEntry restingOrder,
+                    long matchedQuantity, long matchPrice, long tradeId) {
+        this.aggressorOrder = aggressorOrder;
+        this.restingOrder = restingOrder;
+        this.matchedQuantity = matchedQuantity;
+        this.matchPrice = matchPrice;
+        this.tradeId = tradeId;
+        return this;
+    }
+
+    void clear() {
+        this.aggressorOrder = null;
+        this.restingOrder = null;
+    }
+}
@@ -0,0 +1,14 @@
+package com.iris.iris_matchingengine.model;
+
+/**
+ * Receives fills from an order book as they happen during matching
+ */
+@FunctionalInterface
+public interface MatchSink {
+    /**
+     * Called once per fill. The match and its resting order are recycled by the book
+     * after this returns, so anything needed later must be copied out here.
+     * @param match The fill
+     */
+    void onMatch(MatchResult match);
+}
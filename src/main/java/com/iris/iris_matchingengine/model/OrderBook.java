@@ -1,44 +1,150 @@
 package com.iris.iris_matchingengine.model;
 
-import com.iris.common.model.Execution;
-import com.iris.common.model.messages.ExecutionReportMessage;
+import com.iris.common.id.IdGenerator;
+import com.iris.common.model.MarketDataAction;
 import lombok.Getter;
-import lombok.extern.slf4j.Slf4j;
+import lombok.Setter;
 
-import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
-
-@Slf4j
-public class OrderBook {
+import java.util.function.Consumer;
+
+/**
+ * Price-time priority order book. Order lookup, sequencing and matching live here;
+ * subclasses decide how price levels are stored and located. Prices and quantities are
+ * fixed-point mantissas at the instrument's price and quantity scale.
+ *
+ * Matching reports fills through a {@link MatchSink} using a single reused
+ * {@link MatchResult}, and entries that leave the book can be handed back through
+ * {@link #releaseEntry} for reuse, so a book whose levels are pooled as well
+ * (see {@link TickLadderOrderBook}) matches without allocating in steady state.
+ *
+ * A book is owned by a single sequencer shard thread and is not thread-safe.
+ */
+public abstract class OrderBook {
+    @Getter
     private final String instrumentId;
+    @Getter
     private final String matchingAlgorithm;
 
-    // Sequence counter for price-time priority
-    private final AtomicInteger sequence = new AtomicInteger(0);
+    // Decimal places of price and quantity mantissas, see FixedPoint
+    @Getter
+    private final int priceScale;
+    @Getter
+    private final int quantityScale;
 
-    // Maps for quick lookup by orderId and clOrdId
-    private final Map<String, OrderBookEntry> orderIdMap = new ConcurrentHashMap<>();
-    private final Map<String, String> clOrdIdToOrderIdMap = new ConcurrentHashMap<>();
+    // Sequence counter for price-time priority
+    private int sequence;
 
-    // Buy orders are sorted in descending order by price (highest price first)
-    // For same price, sorted by sequence number (lowest first) for time priority
+    // Bumped on every change, so samplers can tell whether the book moved
     @Getter
-    private final NavigableMap<Double, SortedMap<Integer, OrderBookEntry>> buyOrders =
-            new ConcurrentSkipListMap<>(Collections.reverseOrder());
+    private long version;
 
-    // Sell orders are sorted in ascending order by price (lowest price first)
-    // For same price, sorted by sequence number (lowest first) for time priority
+    // Last market data sequence issued for this book; carried in images so it survives restarts
     @Getter
-    private final NavigableMap<Double, SortedMap<Integer, OrderBookEntry>> sellOrders =
-            new ConcurrentSkipListMap<>();
+    private long marketDataSequence;
+
+    // Told about every level change and trade; null for none
+    @Setter
+    private BookListener listener;
+
+    // Upper bound on recycled entries kept around between bursts
+    private static final int MAX_POOLED_ENTRIES = 1 << 16;
+
+    // Index for quick lookup by orderId
+    private final OrderIndex orderIdIndex = new OrderIndex(1024);
 
-    public OrderBook(String instrumentId, String matchingAlgorithm) {
+    // Resting orders per client, for lookup by clOrdId, mass cancel and cancel-on-disconnect
+    private final Map<String, ClientOrders> clientIndex = new HashMap<>();
+
+    // Recycled entries and the match handed to sinks
+    private final ArrayDeque<OrderBookEntry> entryPool = new ArrayDeque<>();
+    private final MatchResult match = new MatchResult();
+
+    // Source of trade IDs, unique across books, restarts and engine instances
+    private final IdGenerator tradeIds;
+
+    protected OrderBook(String instrumentId, String matchingAlgorithm, int priceScale, int quantityScale,
+                        IdGenerator tradeIds) {
         this.instrumentId = instrumentId;
         this.matchingAlgorithm = matchingAlgorithm;
+        this.priceScale = priceScale;
+        this.quantityScale = quantityScale;
+        this.tradeIds = tradeIds;
+    }
+
+    /**
+     * Get the level at a price, creating it if needed
+     * @param buy True for the buy side
+     * @param price Level price mantissa
+     * @return The level
+     */
+    protected abstract PriceLevel getOrCreateLevel(boolean buy, long price);
+
+    /**
+     * Remove an empty level from the book
+     * @param buy True for the buy side
+     * @param level Level to remove
+     */
+    protected abstract void removeLevel(boolean buy, PriceLevel level);
+
+    /**
+     * Get the best level on one side (highest bid or lowest ask)
+     * @param buy True for the buy side
+     * @return The best level or null if the side is empty
+     */
+    protected abstract PriceLevel getBestLevel(boolean buy);
+
+    /**
+     * Get the level at a price without creating it
+     * @param buy True for the buy side
+     * @param price Level price mantissa
+     * @return The level or null if nothing rests at that price
+     */
+    protected abstract PriceLevel getLevel(boolean buy, long price);
+
+    /**
+     * Get all levels on one side, best price first
+     * @param buy True for the buy side
+     * @return Levels in priority order
+     */
+    public abstract Iterable<PriceLevel> getLevels(boolean buy);
+
+    /**
+     * Check whether a price can rest in this book
+     * @param price Limit price mantissa
+     * @return True if the price is acceptable
+     */
+    public boolean isValidPrice(long price) {
+        return true;
+    }
+
+    /**
+     * Take an empty entry from the pool, or a new one if the pool is empty
+     * @return An entry to fill in
+     */
+    public OrderBookEntry acquireEntry() {
+        OrderBookEntry entry = entryPool.pollFirst();
+        if (entry == null) {
+            return new OrderBookEntry();
+        }
+        entry.pooled = false;
+        return entry;
+    }
+
+    /**
+     * Hand an entry that is no longer in the book back for reuse. The caller must not
+     * touch the entry afterwards.
+     * @param entry Entry to recycle
+     */
+    public void releaseEntry(OrderBookEntry entry) {
+        if (entry == null || entry.pooled || entry.level != null) {
+            return;
+        }
+        entry.reset();
+        if (entryPool.size() < MAX_POOLED_ENTRIES) {
+            entry.pooled = true;
+            entryPool.addFirst(entry);
+        }
     }
 
     /**
@@ -47,87 +153,182 @@ public class OrderBook {
      */
     public void addOrder(OrderBookEntry entry) {
         // Assign sequence number for time priority
-        int seqNum = sequence.incrementAndGet();
+        int seqNum = ++sequence;
+        version++;
         entry.setSequenceNumber(seqNum);
+        insert(entry);
 
-        // Store in lookup maps
-        orderIdMap.put(entry.getOrderId(), entry);
-        if (entry.getClOrdId() != null) {
-            clOrdIdToOrderIdMap.put(entry.getClOrdId(), entry.getOrderId());
+        PriceLevel level = entry.level;
+        if (listener != null && level != null) {
+            listener.onLevel(this, level.getOrderCount() == 1 ? MarketDataAction.NEW : MarketDataAction.CHANGE,
+                    "BUY".equalsIgnoreCase(entry.getSide()), level);
         }
+    }
+
+    /**
+     * Take the next market data sequence for an update of this book
+     * @return Sequence
+     */
+    public long nextMarketDataSequence() {
+        return ++marketDataSequence;
+    }
 
-        // Add to appropriate price level
+    private void insert(OrderBookEntry entry) {
+        // Level first, so a price the book cannot hold leaves the order in no index
+        PriceLevel level = null;
         if ("BUY".equalsIgnoreCase(entry.getSide())) {
-            buyOrders.computeIfAbsent(entry.getPrice(), k -> new TreeMap<>())
-                    .put(seqNum, entry);
+            level = getOrCreateLevel(true, entry.getPrice());
         } else if ("SELL".equalsIgnoreCase(entry.getSide())) {
-            sellOrders.computeIfAbsent(entry.getPrice(), k -> new TreeMap<>())
-                    .put(seqNum, entry);
+            level = getOrCreateLevel(false, entry.getPrice());
         }
 
-        // Log the orderbook state
-        logOrderBookState();
+        // Store in lookup maps
+        orderIdIndex.put(entry.getOrderId(), entry);
+        if (entry.getClientId() != null) {
+            ClientOrders orders = clientIndex.computeIfAbsent(entry.getClientId(), id -> new ClientOrders());
+            orders.add(entry);
+            if (entry.getClOrdId() != null) {
+                orders.clOrdIds.put(entry.getClOrdId(), entry);
+            }
+        }
+
+        // Add to the price level
+        if (level != null) {
+            level.add(entry);
+        }
     }
 
     /**
-     * Cancel an order from the book
+     * Cancel an order from the book. The caller owns the returned entry and may
+     * release it once done with it.
      * @param orderId Order ID to cancel
      * @return The canceled order or null if not found
      */
     public OrderBookEntry cancelOrder(String orderId) {
-        OrderBookEntry order = orderIdMap.get(orderId);
+        OrderBookEntry order = orderIdIndex.remove(orderId);
         if (order == null) {
             return null;
         }
 
         // Remove from lookup maps
-        orderIdMap.remove(orderId);
-        if (order.getClOrdId() != null) {
-            clOrdIdToOrderIdMap.remove(order.getClOrdId());
-        }
+        removeClOrdId(order);
+        removeFromClient(order);
+        version++;
 
         // Remove from price levels
         if ("BUY".equalsIgnoreCase(order.getSide())) {
-            SortedMap<Integer, OrderBookEntry> priceLevel = buyOrders.get(order.getPrice());
-            if (priceLevel != null) {
-                priceLevel.remove(order.getSequenceNumber());
-                if (priceLevel.isEmpty()) {
-                    buyOrders.remove(order.getPrice());
-                }
-            }
+            removeFromLevel(true, order);
         } else if ("SELL".equalsIgnoreCase(order.getSide())) {
-            SortedMap<Integer, OrderBookEntry> priceLevel = sellOrders.get(order.getPrice());
-            if (priceLevel != null) {
-                priceLevel.remove(order.getSequenceNumber());
-                if (priceLevel.isEmpty()) {
-                    sellOrders.remove(order.getPrice());
-                }
-            }
+            removeFromLevel(false, order);
         }
 
-        // Log the orderbook state
-        logOrderBookState();
-
         return order;
     }
 
+    private void removeClOrdId(OrderBookEntry order) {
+        ClientOrders orders = order.clientOrders;
+        if (orders != null && order.getClOrdId() != null && orders.clOrdIds.get(order.getClOrdId()) == order) {
+            orders.clOrdIds.remove(order.getClOrdId());
+        }
+    }
+
+    private void removeFromClient(OrderBookEntry order) {
+        if (order.clientOrders != null) {
+            order.clientOrders.remove(order);
+        }
+    }
+
+    private void removeFromLevel(boolean buy, OrderBookEntry order) {
+        // Resting orders point back at their level, so no price lookup is needed
+        PriceLevel priceLevel = order.level;
+        if (priceLevel != null) {
+            priceLevel.remove(order);
+            if (priceLevel.isEmpty()) {
+                notifyLevel(MarketDataAction.DELETE, buy, priceLevel);
+                removeLevel(buy, priceLevel);
+            } else {
+                notifyLevel(MarketDataAction.CHANGE, buy, priceLevel);
+            }
+        }
+    }
+
+    private void notifyLevel(MarketDataAction action, boolean buy, PriceLevel level) {
+        if (listener != null) {
+            listener.onLevel(this, action, buy, level);
+        }
+    }
+
     /**
-     * Replace an order (cancel-replace)
-     * @param origOrderId Original order ID
-     * @param newEntry New order entry
-     * @return The old order or null if not found
+     * Cancel all of a client's resting orders. Each canceled entry is handed to the
+     * callback and then recycled, so callbacks must not keep it.
+     * @param clientId Client ID
+     * @param side "BUY", "SELL" or null for both sides
+     * @param onCanceled Receives each canceled order
+     * @return Number of orders canceled
      */
-    public OrderBookEntry replaceOrder(String origOrderId, OrderBookEntry newEntry) {
-        // First cancel the original order
-        OrderBookEntry oldOrder = cancelOrder(origOrderId);
-        if (oldOrder == null) {
-            return null;
+    public int cancelClientOrders(String clientId, String side, Consumer<OrderBookEntry> onCanceled) {
+        ClientOrders orders = clientId != null ? clientIndex.get(clientId) : null;
+        if (orders == null) {
+            return 0;
         }
 
-        // Then add the new order with a new sequence number (loses time priority)
-        addOrder(newEntry);
+        // Walks only this client's orders; take the next link before the cancel clears it
+        int canceled = 0;
+        OrderBookEntry order = orders.head;
+        while (order != null) {
+            OrderBookEntry next = order.clientNext;
+            if (side == null || side.equalsIgnoreCase(order.getSide())) {
+                cancelOrder(order.getOrderId());
+                onCanceled.accept(order);
+                releaseEntry(order);
+                canceled++;
+            }
+            order = next;
+        }
+        return canceled;
+    }
 
-        return oldOrder;
+    /**
+     * Get the number of a client's orders resting in the book
+     * @param clientId Client ID
+     * @return Resting order count
+     */
+    public int getClientOrderCount(String clientId) {
+        ClientOrders orders = clientIndex.get(clientId);
+        return orders != null ? orders.count : 0;
+    }
+
+    /**
+     * Amend a resting order where it sits, keeping its time priority. Only amends that
+     * leave the price alone and do not add quantity qualify; anything else has to be
+     * canceled and re-entered.
+     * @param order Resting order
+     * @param clOrdId New client order ID, or null to keep the current one
+     * @param quantity New total quantity mantissa, above what has already been filled
+     * @return True if amended, false if the amend needs a requeue
+     */
+    public boolean amendOrder(OrderBookEntry order, String clOrdId, long quantity) {
+        long filled = order.getOriginalQuantity() - order.getRemainingQuantity();
+        if (order.level == null || quantity > order.getOriginalQuantity() || quantity <= filled) {
+            return false;
+        }
+
+        if (clOrdId != null && !clOrdId.equals(order.getClOrdId())) {
+            removeClOrdId(order);
+            order.setClOrdId(clOrdId);
+            if (order.clientOrders != null) {
+                order.clientOrders.clOrdIds.put(clOrdId, order);
+            }
+        }
+        long reduced = order.getRemainingQuantity() - (quantity - filled);
+        order.level.reduce(reduced);
+        order.setOriginalQuantity(quantity);
+        order.setRemainingQuantity(quantity - filled);
+        version++;
+        if (reduced != 0) {
+            notifyLevel(MarketDataAction.CHANGE, "BUY".equalsIgnoreCase(order.getSide()), order.level);
+        }
+        return true;
     }
 
     /**
@@ -136,197 +337,225 @@ public class OrderBook {
      * @return The order or null if not found
      */
     public OrderBookEntry getOrderById(String orderId) {
-        return orderIdMap.get(orderId);
+        return orderIdIndex.get(orderId);
     }
 
     /**
-     * Get an order by its client order ID
-     * @param clOrdId Client order ID
+     * Get one of a client's orders by its client order ID
+     * @param clientId Client ID
+     * @param clOrdId Client order ID, unique only within the client
      * @return The order or null if not found
      */
-    public OrderBookEntry getOrderByClientOrderId(String clOrdId) {
-        String orderId = clOrdIdToOrderIdMap.get(clOrdId);
-        if (orderId == null) {
-            return null;
-        }
-        return orderIdMap.get(orderId);
+    public OrderBookEntry getOrderByClientOrderId(String clientId, String clOrdId) {
+        ClientOrders orders = clientId != null ? clientIndex.get(clientId) : null;
+        return orders != null && clOrdId != null ? orders.clOrdIds.get(clOrdId) : null;
     }
 
     /**
-     * Match an incoming buy order against the sell side of the book
-     * @param incomingOrder Order to match
-     * @return List of executions created
+     * Get the number of orders resting in the book
+     * @return Resting order count
      */
-    public List<MatchResult> matchBuyOrder(OrderBookEntry incomingOrder) {
-        List<MatchResult> executions = new ArrayList<>();
-        double remainingQty = incomingOrder.getRemainingQuantity();
-
-        // Process until we've filled the order or run out of matching sell orders
-        while (remainingQty > 0 && !sellOrders.isEmpty()) {
-            // Get the best (lowest) sell price
-            Map.Entry<Double, SortedMap<Integer, OrderBookEntry>> bestSellLevel = sellOrders.firstEntry();
+    public int getOrderCount() {
+        return orderIdIndex.size();
+    }
 
-            // If best sell is higher than buy price, no match is possible
-            if (bestSellLevel == null || bestSellLevel.getKey() > incomingOrder.getPrice()) {
-                break;
+    /**
+     * Copy every resting order, for a snapshot taken on the matching thread
+     * @return The image
+     */
+    public BookImage image() {
+        BookImage image = new BookImage(instrumentId, sequence, marketDataSequence, getOrderCount());
+        int i = 0;
+        for (PriceLevel level : getLevels(true)) {
+            for (OrderBookEntry order = level.peek(); order != null; order = order.next) {
+                image.set(i++, order);
             }
+        }
+        for (PriceLevel level : getLevels(false)) {
+            for (OrderBookEntry order = level.peek(); order != null; order = order.next) {
+                image.set(i++, order);
+            }
+        }
+        return image;
+    }
 
-            // Get all orders at the best price level, ordered by time priority
-            SortedMap<Integer, OrderBookEntry> ordersAtBestPrice = bestSellLevel.getValue();
-
-            // Match against each resting order in time priority
-            Iterator<Map.Entry<Integer, OrderBookEntry>> it = ordersAtBestPrice.entrySet().iterator();
-            while (it.hasNext() && remainingQty > 0) {
-                Map.Entry<Integer, OrderBookEntry> entry = it.next();
-                OrderBookEntry restingOrder = entry.getValue();
+    /**
+     * Load an image into an empty book, keeping each order's sequence number and queue position
+     * @param image Image to load
+     */
+    public void restore(BookImage image) {
+        if (getOrderCount() > 0) {
+            throw new IllegalStateException("Cannot restore into non-empty book " + instrumentId);
+        }
+        for (int i = 0; i < image.getCount(); i++) {
+            OrderBookEntry entry = acquireEntry();
+            image.fill(i, entry);
+            insert(entry);
+        }
+        sequence = image.getSequence();
+        marketDataSequence = image.getMarketDataSequence();
+        version++;
+    }
 
-                // Calculate trade quantity
-                double tradeQty = Math.min(remainingQty, restingOrder.getRemainingQuantity());
-
-                // Create match result
-                MatchResult match = new MatchResult(
-                        incomingOrder,
-                        restingOrder,
-                        tradeQty,
-                        bestSellLevel.getKey(),
-                        UUID.randomUUID().toString()  // Trade ID
-                );
-                executions.add(match);
+    /**
+     * Get the quantity resting at one price, read from the level's running total
+     * @param buy True for the buy side
+     * @param price Price mantissa
+     * @return Quantity mantissa, 0 if nothing rests there
+     */
+    public long getVolumeAt(boolean buy, long price) {
+        PriceLevel level = getLevel(buy, price);
+        return level != null ? level.getTotalQuantity() : 0;
+    }
 
-                // Update remaining quantities
-                remainingQty -= tradeQty;
-                restingOrder.setRemainingQuantity(restingOrder.getRemainingQuantity() - tradeQty);
+    /**
+     * Get the number of orders resting at one price
+     * @param buy True for the buy side
+     * @param price Price mantissa
+     * @return Order count, 0 if nothing rests there
+     */
+    public int getOrderCountAt(boolean buy, long price) {
+        PriceLevel level = getLevel(buy, price);
+        return level != null ? level.getOrderCount() : 0;
+    }
 
-                // Remove completely filled resting orders
-                if (restingOrder.isFilled()) {
-                    it.remove();
-                    orderIdMap.remove(restingOrder.getOrderId());
-                    if (restingOrder.getClOrdId() != null) {
-                        clOrdIdToOrderIdMap.remove(restingOrder.getClOrdId());
-                    }
-                }
+    /**
+     * Get the quantity resting on one side at prices as good as or better than a limit,
+     * which is what an order on the other side limited to that price could trade against.
+     * Costs one step per level, not per order or per empty tick.
+     * @param buy True for the buy side
+     * @param price Limit price mantissa; levels below it for bids, above it for asks are left out
+     * @return Cumulative quantity mantissa
+     */
+    public long getDepthTo(boolean buy, long price) {
+        long total = 0;
+        for (PriceLevel level : getLevels(buy)) {
+            if (buy ? level.getPrice() < price : level.getPrice() > price) {
+                break;
             }
+            total += level.getTotalQuantity();
+        }
+        return total;
+    }
 
-            // Remove price level if empty
-            if (ordersAtBestPrice.isEmpty()) {
-                sellOrders.remove(bestSellLevel.getKey());
+    /**
+     * Copy the top levels of one side into caller-owned arrays, best price first
+     * @param buy True for the buy side
+     * @param prices Receives level prices; its length is the most levels copied
+     * @param quantities Receives level total quantities
+     * @param orderCounts Receives level order counts
+     * @return Number of levels copied
+     */
+    public int getDepth(boolean buy, long[] prices, long[] quantities, int[] orderCounts) {
+        int n = 0;
+        for (PriceLevel level : getLevels(buy)) {
+            if (n == prices.length) {
+                break;
             }
+            prices[n] = level.getPrice();
+            quantities[n] = level.getTotalQuantity();
+            orderCounts[n] = level.getOrderCount();
+            n++;
         }
+        return n;
+    }
 
-        // Update the incoming order's remaining quantity
-        incomingOrder.setRemainingQuantity(remainingQty);
-
-        // Log the orderbook state
-        logOrderBookState();
+    /**
+     * Copy the top of the book for inspection off the matching thread
+     * @param depth Maximum levels per side
+     * @return The snapshot
+     */
+    public BookSnapshot snapshot(int depth) {
+        return new BookSnapshot(this, version, depth);
+    }
 
-        return executions;
+    /**
+     * Match an incoming buy order against the sell side of the book
+     * @param incomingOrder Order to match
+     * @param sink Receives each fill
+     * @return Number of fills
+     */
+    public int matchBuyOrder(OrderBookEntry incomingOrder, MatchSink sink) {
+        return match(incomingOrder, true, sink);
     }
 
     /**
      * Match an incoming sell order against the buy side of the book
      * @param incomingOrder Order to match
-     * @return List of executions created
+     * @param sink Receives each fill
+     * @return Number of fills
      */
-    public List<MatchResult> matchSellOrder(OrderBookEntry incomingOrder) {
-        List<MatchResult> executions = new ArrayList<>();
-        double remainingQty = incomingOrder.getRemainingQuantity();
+    public int matchSellOrder(OrderBookEntry incomingOrder, MatchSink sink) {
+        return match(incomingOrder, false, sink);
+    }
 
-        // Process until we've filled the order or run out of matching buy orders
-        while (remainingQty > 0 && !buyOrders.isEmpty()) {
-            // Get the best (highest) buy price
-            Map.Entry<Double, SortedMap<Integer, OrderBookEntry>> bestBuyLevel = buyOrders.firstEntry();
+    private int match(OrderBookEntry incomingOrder, boolean incomingIsBuy, MatchSink sink) {
+        int fills = 0;
+        long remainingQty = incomingOrder.getRemainingQuantity();
+        boolean marketOrder = "MARKET".equalsIgnoreCase(incomingOrder.getOrderType());
 
-            // If best buy is lower than sell price, no match is possible
-            if (bestBuyLevel == null || bestBuyLevel.getKey() < incomingOrder.getPrice()) {
+        // Process until we've filled the order or run out of contra orders
+        while (remainingQty > 0) {
+            // Get the best contra level (lowest sell for a buy, highest buy for a sell)
+            PriceLevel bestLevel = getBestLevel(!incomingIsBuy);
+            if (bestLevel == null) {
                 break;
             }
 
-            // Get all orders at the best price level, ordered by time priority
-            SortedMap<Integer, OrderBookEntry> ordersAtBestPrice = bestBuyLevel.getValue();
+            // Market orders take any price; limit orders stop once the contra side no longer crosses
+            if (!marketOrder && (incomingIsBuy ?
+                    bestLevel.getPrice() > incomingOrder.getPrice() :
+                    bestLevel.getPrice() < incomingOrder.getPrice())) {
+                break;
+            }
 
             // Match against each resting order in time priority
-            Iterator<Map.Entry<Integer, OrderBookEntry>> it = ordersAtBestPrice.entrySet().iterator();
-            while (it.hasNext() && remainingQty > 0) {
-                Map.Entry<Integer, OrderBookEntry> entry = it.next();
-                OrderBookEntry restingOrder = entry.getValue();
+            while (remainingQty > 0 && !bestLevel.isEmpty()) {
+                OrderBookEntry restingOrder = bestLevel.peek();
 
                 // Calculate trade quantity
-                double tradeQty = Math.min(remainingQty, restingOrder.getRemainingQuantity());
-
-                // Create match result
-                MatchResult match = new MatchResult(
-                        incomingOrder,
-                        restingOrder,
-                        tradeQty,
-                        bestBuyLevel.getKey(),
-                        UUID.randomUUID().toString()  // Trade ID
-                );
-                executions.add(match);
+                long tradeQty = Math.min(remainingQty, restingOrder.getRemainingQuantity());
 
                 // Update remaining quantities
                 remainingQty -= tradeQty;
+                incomingOrder.setRemainingQuantity(remainingQty);
+                bestLevel.reduce(tradeQty);
                 restingOrder.setRemainingQuantity(restingOrder.getRemainingQuantity() - tradeQty);
 
-                // Remove completely filled resting orders
-                if (restingOrder.isFilled()) {
-                    it.remove();
-                    orderIdMap.remove(restingOrder.getOrderId());
-                    if (restingOrder.getClOrdId() != null) {
-                        clOrdIdToOrderIdMap.remove(restingOrder.getClOrdId());
-                    }
+                // Take completely filled resting orders out of the book before reporting
+                boolean filled = restingOrder.isFilled();
+                if (filled) {
+                    bestLevel.remove(restingOrder);
+                    orderIdIndex.remove(restingOrder.getOrderId());
+                    removeClOrdId(restingOrder);
+                    removeFromClient(restingOrder);
                 }
-            }
-
-            // Remove price level if empty
-            if (ordersAtBestPrice.isEmpty()) {
-                buyOrders.remove(bestBuyLevel.getKey());
-            }
-        }
-
-        // Update the incoming order's remaining quantity
-        incomingOrder.setRemainingQuantity(remainingQty);
 
-        // Log the orderbook state
-        logOrderBookState();
-
-        return executions;
-    }
+                // Report the fill
+                sink.onMatch(match.set(incomingOrder, restingOrder, tradeQty, bestLevel.getPrice(), tradeIds.nextId()));
+                if (listener != null) {
+                    listener.onTrade(this, incomingIsBuy, bestLevel.getPrice(), tradeQty);
+                }
+                fills++;
+                version++;
 
-    /**
-     * Log the current state of the order book in a readable format
-     */
-    public void logOrderBookState() {
-        StringBuilder sb = new StringBuilder("\nOrderBook for " + instrumentId + ":\n");
-        sb.append(String.format("%-15s | %-15s | %-15s | %-15s\n", "SELL QTY", "SELL PRICE", "BUY PRICE", "BUY QTY"));
-        sb.append("----------------------------------------------------------------\n");
-
-        // Combine all price levels for display
-        NavigableSet<Double> allPrices = new TreeSet<>(Collections.reverseOrder());
-        allPrices.addAll(buyOrders.keySet());
-        allPrices.addAll(sellOrders.keySet());
-
-        for (Double price : allPrices) {
-            double sellQty = 0;
-            if (sellOrders.containsKey(price)) {
-                sellQty = sellOrders.get(price).values().stream()
-                        .mapToDouble(OrderBookEntry::getRemainingQuantity)
-                        .sum();
+                // Filled resting orders are owned by the book, so recycle them once reported
+                if (filled) {
+                    releaseEntry(restingOrder);
+                }
             }
 
-            double buyQty = 0;
-            if (buyOrders.containsKey(price)) {
-                buyQty = buyOrders.get(price).values().stream()
-                        .mapToDouble(OrderBookEntry::getRemainingQuantity)
-                        .sum();
+            // Remove price level if empty
+            if (bestLevel.isEmpty()) {
+                notifyLevel(MarketDataAction.DELETE, !incomingIsBuy, bestLevel);
+                removeLevel(!incomingIsBuy, bestLevel);
+            } else {
+                notifyLevel(MarketDataAction.CHANGE, !incomingIsBuy, bestLevel);
             }
-
-            sb.append(String.format("%-15.2f | %-15.2f | %-15.2f | %-15.2f\n",
-                    sellQty > 0 ? sellQty : 0,
-                    sellQty > 0 ? price : 0,
-                    buyQty > 0 ? price : 0,
-                    buyQty > 0 ? buyQty : 0));
         }
 
-        log.info(sb.toString());
+        match.clear();
+
+        return fills;
     }
-}
\ No newline at end of file
+}
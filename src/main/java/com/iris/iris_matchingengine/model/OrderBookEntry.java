@@ -1,49 +1,159 @@
 package com.iris.iris_matchingengine.model;
 
 import com.iris.common.model.NewOrder;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import java.time.Instant;
-import java.util.UUID;
 
+/**
+ * An order resting in (or matching against) an order book. Entries are mutable so the
+ * book can recycle them through its entry pool instead of allocating one per order.
+ * Prices and quantities are fixed-point mantissas at the book's price and quantity scale.
+ */
 @Data
-@Builder
+@NoArgsConstructor
 public class OrderBookEntry {
-    private final String orderId;
-    private final String clOrdId;
-    private final String instrumentId;
-    private final String side; // "BUY" or "SELL"
-    private final double originalQuantity;
-    private double remainingQuantity;
-    private final double price;
-    private final String orderType; // "LIMIT", "MARKET", etc.
-    private final String timeInForce; // "DAY", "IOC", "FOK", etc.
-    private final Instant entryTime;
-    private final String clientId;
-    private final String sourceIp;
+    private String orderId;
+    private String clOrdId;
+    private String instrumentId;
+    private String side; // "BUY" or "SELL"
+    private long originalQuantity;
+    private long remainingQuantity;
+    private long price;
+    private String orderType; // "LIMIT", "MARKET", etc.
+    private String timeInForce; // "DAY", "IOC", "FOK", etc.
+    private Instant entryTime;
+    private String clientId;
+    private String sourceIp;
 
     // For quick retrieval during matching
     private int sequenceNumber;
 
-    public static OrderBookEntry fromOrder(NewOrder newOrder, String clientId, int sequenceNumber) {
-        return OrderBookEntry.builder()
-                .orderId(newOrder.getOrderId() != null ? newOrder.getOrderId() : UUID.randomUUID().toString())
-                .clOrdId(newOrder.getClOrdId())
-                .instrumentId(newOrder.getInstrumentId())
-                .side(newOrder.getSide())
-                .originalQuantity(newOrder.getQuantity())
-                .remainingQuantity(newOrder.getQuantity())
-                .price(newOrder.getPrice() != null ? newOrder.getPrice() : 0)
-                .orderType(newOrder.getOrderType())
-                .timeInForce(newOrder.getTimeInForce())
-                .entryTime(Instant.now())
-                .clientId(clientId)
-                .sourceIp(newOrder.getSourceIpAddress())
-                .sequenceNumber(sequenceNumber)
-                .build();
+    // Intrusive links into the price level queue, maintained by PriceLevel
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    OrderBookEntry prev;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    OrderBookEntry next;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    PriceLevel level;
+
+    // Intrusive links into the owning client's order list, maintained by ClientOrders
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    OrderBookEntry clientPrev;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    OrderBookEntry clientNext;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    ClientOrders clientOrders;
+
+    // True while the entry sits in a book's entry pool
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    boolean pooled;
+
+    @Builder
+    public OrderBookEntry(String orderId, String clOrdId, String instrumentId, String side,
+                          long originalQuantity, long remainingQuantity, long price,
+                          String orderType, String timeInForce, Instant entryTime,
+                          String clientId, String sourceIp, int sequenceNumber) {
+        this.orderId = orderId;
+        this.clOrdId = clOrdId;
+        this.instrumentId = instrumentId;
+        this.side = side;
+        this.originalQuantity = originalQuantity;
+        this.remainingQuantity = remainingQuantity;
+        this.price = price;
+        this.orderType = orderType;
+        this.timeInForce = timeInForce;
+        this.entryTime = entryTime;
+        this.clientId = clientId;
+        this.sourceIp = sourceIp;
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    /**
+     * Fill this entry from a new order, typically one taken from a book's entry pool
+     * @param newOrder Order to copy
+     * @param orderId Order ID, either the order's own or one generated for it
+     * @param clientId Client ID
+     * @param price Price mantissa, 0 for market orders
+     * @param quantity Quantity mantissa
+     * @param entryTime Time the order was sequenced
+     * @return This entry
+     */
+    public OrderBookEntry init(NewOrder newOrder, String orderId, String clientId, long price, long quantity,
+                               Instant entryTime) {
+        this.orderId = orderId;
+        this.clOrdId = newOrder.getClOrdId();
+        this.instrumentId = newOrder.getInstrumentId();
+        this.side = newOrder.getSide();
+        this.originalQuantity = quantity;
+        this.remainingQuantity = quantity;
+        this.price = price;
+        this.orderType = newOrder.getOrderType();
+        this.timeInForce = newOrder.getTimeInForce();
+        this.entryTime = entryTime;
+        this.clientId = clientId;
+        this.sourceIp = newOrder.getSourceIpAddress();
+        this.sequenceNumber = 0;
+        return this;
+    }
+
+    /**
+     * Clear all fields before the entry goes back to a pool
+     */
+    void reset() {
+        orderId = null;
+        clOrdId = null;
+        instrumentId = null;
+        side = null;
+        originalQuantity = 0;
+        remainingQuantity = 0;
+        price = 0;
+        orderType = null;
+        timeInForce = null;
+        entryTime = null;
+        clientId = null;
+        sourceIp = null;
+        sequenceNumber = 0;
+        prev = null;
+        next = null;
+        level = null;
+        clientPrev = null;
+        clientNext = null;
+        clientOrders = null;
     }
 
     public boolean isFilled() {
         return remainingQuantity <= 0;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,11 @@
+package com.iris.iris_matchingengine.model;
+
+/**
+ * Price level storage used by an order book
+ */
+public enum OrderBookType {
+    // Price levels in a sorted map keyed by price
+    SORTED_MAP,
+    // Price levels in an array indexed by tick offset
+    TICK_LADDER
+}
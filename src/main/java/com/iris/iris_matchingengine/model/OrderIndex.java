@@ -0,0 +1,108 @@
+package com.iris.iris_matchingengine.model;
+
+/**
+ * Open-addressing map from order ID strings to book entries. Unlike HashMap it does not
+ * allocate a node per insert, so adding and removing orders produces no garbage once the
+ * table has grown to the working size of the book. Not thread-safe; the book is driven
+ * from a single thread.
+ */
+class OrderIndex {
+    private String[] keys;
+    private OrderBookEntry[] values;
+    private int mask;
+    private int size;
+
+    OrderIndex(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(initialCapacity, 16) - 1) << 1;
+        this.keys = new String[capacity];
+        this.values = new OrderBookEntry[capacity];
+        this.mask = capacity - 1;
+    }
+
+    OrderBookEntry get(String key) {
+        for (int i = slot(key); keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(key)) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    void put(String key, OrderBookEntry value) {
+        int i = slot(key);
+        for (; keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(key)) {
+                values[i] = value;
+                return;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length >> 1) {
+            resize(keys.length << 1);
+        }
+    }
+
+    OrderBookEntry remove(String key) {
+        int i = slot(key);
+        for (; keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(key)) {
+                break;
+            }
+        }
+        if (keys[i] == null) {
+            return null;
+        }
+
+        OrderBookEntry removed = values[i];
+        size--;
+
+        // Shift later entries of the probe run back so lookups never hit a gap
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == null) {
+                break;
+            }
+            int home = slot(keys[j]);
+            boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!between) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = null;
+        values[i] = null;
+        return removed;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(String key) {
+        // Order IDs are mostly sequential, and so are their hash codes; spread them so
+        // they do not pile up into one long probe run
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        OrderBookEntry[] oldValues = values;
+        keys = new String[capacity];
+        values = new OrderBookEntry[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int j = slot(oldKeys[i]);
+                while (keys[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
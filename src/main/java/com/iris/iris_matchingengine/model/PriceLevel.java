@@ -0,0 +1,107 @@
+package com.iris.iris_matchingengine.model;
+
+import lombok.Getter;
+
+/**
+ * All resting orders at a single price on one side of the book, kept in time priority.
+ *
+ * Orders are linked through their own prev/next fields, so appending at the tail and
+ * unlinking from anywhere in the queue are constant time. Orders only ever join at the
+ * tail with a new sequence number, which keeps the queue in sequence order.
+ */
+public class PriceLevel {
+    @Getter
+    private long price;
+
+    private OrderBookEntry head;
+    private OrderBookEntry tail;
+
+    @Getter
+    private int orderCount;
+
+    // Remaining quantity of every order in the queue, kept up as orders join, leave and fill
+    @Getter
+    private long totalQuantity;
+
+    public PriceLevel(long price) {
+        this.price = price;
+    }
+
+    /**
+     * Reuse an empty level for another price
+     * @param price New level price
+     */
+    void reset(long price) {
+        this.price = price;
+        this.head = null;
+        this.tail = null;
+        this.orderCount = 0;
+        this.totalQuantity = 0;
+    }
+
+    /**
+     * Append an order to the back of the queue
+     * @param entry Order to add
+     */
+    public void add(OrderBookEntry entry) {
+        entry.level = this;
+        entry.prev = tail;
+        entry.next = null;
+        if (tail == null) {
+            head = entry;
+        } else {
+            tail.next = entry;
+        }
+        tail = entry;
+        orderCount++;
+        totalQuantity += entry.getRemainingQuantity();
+    }
+
+    /**
+     * Unlink an order from the queue
+     * @param entry Order to remove, must belong to this level
+     */
+    public void remove(OrderBookEntry entry) {
+        if (entry.level != this) {
+            return;
+        }
+
+        if (entry.prev == null) {
+            head = entry.next;
+        } else {
+            entry.prev.next = entry.next;
+        }
+        if (entry.next == null) {
+            tail = entry.prev;
+        } else {
+            entry.next.prev = entry.prev;
+        }
+
+        entry.prev = null;
+        entry.next = null;
+        entry.level = null;
+        orderCount--;
+        totalQuantity -= entry.getRemainingQuantity();
+    }
+
+    /**
+     * Account for an order in this level losing quantity to a fill or an amend; call
+     * before its remaining quantity is lowered
+     * @param quantity Quantity lost
+     */
+    void reduce(long quantity) {
+        totalQuantity -= quantity;
+    }
+
+    /**
+     * Get the order with the highest time priority
+     * @return The first order or null if the level is empty
+     */
+    public OrderBookEntry peek() {
+        return head;
+    }
+
+    public boolean isEmpty() {
+        return head == null;
+    }
+}
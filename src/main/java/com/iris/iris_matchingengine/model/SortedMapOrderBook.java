@@ -0,0 +1,57 @@
+package com.iris.iris_matchingengine.model;
+
+import com.iris.common.id.IdGenerator;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Order book keeping its price levels in sorted maps keyed by price
+ */
+public class SortedMapOrderBook extends OrderBook {
+
+    // Buy levels are sorted in descending order by price (highest price first)
+    private final NavigableMap<Long, PriceLevel> buyLevels =
+            new TreeMap<>(Collections.reverseOrder());
+
+    // Sell levels are sorted in ascending order by price (lowest price first)
+    private final NavigableMap<Long, PriceLevel> sellLevels =
+            new TreeMap<>();
+
+    public SortedMapOrderBook(String instrumentId, String matchingAlgorithm,
+                              int priceScale, int quantityScale, IdGenerator tradeIds) {
+        super(instrumentId, matchingAlgorithm, priceScale, quantityScale, tradeIds);
+    }
+
+    @Override
+    protected PriceLevel getOrCreateLevel(boolean buy, long price) {
+        return levels(buy).computeIfAbsent(price, PriceLevel::new);
+    }
+
+    @Override
+    protected void removeLevel(boolean buy, PriceLevel level) {
+        levels(buy).remove(level.getPrice(), level);
+    }
+
+    @Override
+    protected PriceLevel getBestLevel(boolean buy) {
+        Map.Entry<Long, PriceLevel> best = levels(buy).firstEntry();
+        return best != null ? best.getValue() : null;
+    }
+
+    @Override
+    protected PriceLevel getLevel(boolean buy, long price) {
+        return levels(buy).get(price);
+    }
+
+    @Override
+    public Iterable<PriceLevel> getLevels(boolean buy) {
+        return levels(buy).values();
+    }
+
+    private NavigableMap<Long, PriceLevel> levels(boolean buy) {
+        return buy ? buyLevels : sellLevels;
+    }
+}
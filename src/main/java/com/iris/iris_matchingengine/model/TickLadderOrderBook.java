@@ -0,0 +1,341 @@
+package com.iris.iris_matchingengine.model;
+
+import com.iris.common.id.IdGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Order book keeping its price levels in arrays indexed by tick offset.
+ *
+ * Prices are turned into integer ticks by dividing the price mantissa by the tick size
+ * mantissa, which is exact because off-tick prices are rejected. Each side
+ * is a ring of levels covering a window of consecutive ticks; a tick lives in slot
+ * {@code tick & mask}, so the window can be moved (re-centred) without copying. Best and
+ * worst occupied ticks on each side are tracked as cursors, so finding the best level is
+ * a single array read and only emptying the best level needs a scan to the next one.
+ * Each side also keeps a bit per slot marking the occupied ones, so scans and walks over
+ * the levels skip 64 empty ticks at a time rather than reading every slot. Emptied levels
+ * are kept for reuse, so levels coming and going at the touch do not allocate. The ladder
+ * never grows past a maximum number of ticks; prices that would need more are not valid.
+ */
+@Slf4j
+public class TickLadderOrderBook extends OrderBook {
+    private static final long NONE = Long.MIN_VALUE;
+
+    // Tick size as a mantissa at the book's price scale
+    private final long tickSize;
+
+    private PriceLevel[] bids;
+    private PriceLevel[] asks;
+    private int mask;
+
+    // Most ticks the ladder may span, a power of two
+    private final int maxLevels;
+
+    // One bit per slot, set while the slot holds a level
+    private long[] bidSlots;
+    private long[] askSlots;
+
+    // Emptied levels waiting to be reused
+    private final ArrayDeque<PriceLevel> levelPool = new ArrayDeque<>();
+
+    // Window of ticks addressable without collisions: [baseTick, baseTick + capacity)
+    private long baseTick = NONE;
+
+    // Occupied tick cursors; bids are best at the top, asks are best at the bottom
+    private long bestBidTick = NONE;
+    private long worstBidTick = NONE;
+    private long bestAskTick = NONE;
+    private long worstAskTick = NONE;
+
+    public TickLadderOrderBook(String instrumentId, String matchingAlgorithm,
+                               int priceScale, int quantityScale, long tickSize, int initialLevels,
+                               int maxLevels, IdGenerator tradeIds) {
+        super(instrumentId, matchingAlgorithm, priceScale, quantityScale, tradeIds);
+        if (tickSize <= 0) {
+            throw new IllegalArgumentException("Tick size must be positive: " + tickSize);
+        }
+        if (maxLevels < 64 || maxLevels > (1 << 30)) {
+            throw new IllegalArgumentException("Tick ladder size must be between 64 and 2^30: " + maxLevels);
+        }
+        this.tickSize = tickSize;
+        this.maxLevels = Integer.highestOneBit(maxLevels);
+        // At least one whole word of slot bits
+        int capacity = Math.min(Integer.highestOneBit(Math.max(initialLevels, 64) - 1) << 1, this.maxLevels);
+        this.bids = new PriceLevel[capacity];
+        this.asks = new PriceLevel[capacity];
+        this.bidSlots = new long[capacity >>> 6];
+        this.askSlots = new long[capacity >>> 6];
+        this.mask = capacity - 1;
+    }
+
+    @Override
+    public boolean isValidPrice(long price) {
+        return price > 0 && price % tickSize == 0 && spanWith(toTick(price)) <= maxLevels;
+    }
+
+    @Override
+    protected PriceLevel getOrCreateLevel(boolean buy, long price) {
+        long tick = toTick(price);
+        ensureWindow(tick);
+
+        PriceLevel[] side = levels(buy);
+        int slot = slot(tick);
+        PriceLevel level = side[slot];
+        if (level == null) {
+            level = levelPool.pollFirst();
+            if (level == null) {
+                level = new PriceLevel(price);
+            } else {
+                level.reset(price);
+            }
+            side[slot] = level;
+            occupied(buy)[slot >>> 6] |= 1L << slot;
+
+            if (buy) {
+                if (bestBidTick == NONE || tick > bestBidTick) {
+                    bestBidTick = tick;
+                }
+                if (worstBidTick == NONE || tick < worstBidTick) {
+                    worstBidTick = tick;
+                }
+            } else {
+                if (bestAskTick == NONE || tick < bestAskTick) {
+                    bestAskTick = tick;
+                }
+                if (worstAskTick == NONE || tick > worstAskTick) {
+                    worstAskTick = tick;
+                }
+            }
+        }
+        return level;
+    }
+
+    @Override
+    protected void removeLevel(boolean buy, PriceLevel level) {
+        long tick = toTick(level.getPrice());
+        PriceLevel[] side = levels(buy);
+        int slot = slot(tick);
+        if (!inWindow(tick) || side[slot] != level) {
+            return;
+        }
+        side[slot] = null;
+        occupied(buy)[slot >>> 6] &= ~(1L << slot);
+        levelPool.addFirst(level);
+
+        // Another level is known to exist in the direction scanned
+        if (buy) {
+            if (bestBidTick == worstBidTick) {
+                bestBidTick = NONE;
+                worstBidTick = NONE;
+            } else if (tick == bestBidTick) {
+                bestBidTick = nextOccupied(bidSlots, tick - 1, worstBidTick, -1);
+            } else if (tick == worstBidTick) {
+                worstBidTick = nextOccupied(bidSlots, tick + 1, bestBidTick, 1);
+            }
+        } else {
+            if (bestAskTick == worstAskTick) {
+                bestAskTick = NONE;
+                worstAskTick = NONE;
+            } else if (tick == bestAskTick) {
+                bestAskTick = nextOccupied(askSlots, tick + 1, worstAskTick, 1);
+            } else if (tick == worstAskTick) {
+                worstAskTick = nextOccupied(askSlots, tick - 1, bestAskTick, -1);
+            }
+        }
+    }
+
+    @Override
+    protected PriceLevel getBestLevel(boolean buy) {
+        long tick = buy ? bestBidTick : bestAskTick;
+        return tick == NONE ? null : levels(buy)[slot(tick)];
+    }
+
+    @Override
+    protected PriceLevel getLevel(boolean buy, long price) {
+        long tick = toTick(price);
+        if (!isValidPrice(price) || !inWindow(tick)) {
+            return null;
+        }
+        return levels(buy)[slot(tick)];
+    }
+
+    @Override
+    public Iterable<PriceLevel> getLevels(boolean buy) {
+        long best = buy ? bestBidTick : bestAskTick;
+        long worst = buy ? worstBidTick : worstAskTick;
+        if (best == NONE) {
+            return Collections.emptyList();
+        }
+
+        // Walk lazily so callers that only want the top levels stop early
+        PriceLevel[] side = levels(buy);
+        long[] slots = occupied(buy);
+        long step = buy ? -1 : 1;
+        return () -> new Iterator<>() {
+            private long tick = best;
+
+            @Override
+            public boolean hasNext() {
+                if (tick != NONE && side[slot(tick)] == null) {
+                    tick = nextOccupied(slots, tick, worst, step);
+                }
+                return tick != NONE;
+            }
+
+            @Override
+            public PriceLevel next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                PriceLevel level = side[slot(tick)];
+                tick = tick == worst ? NONE : tick + step;
+                return level;
+            }
+        };
+    }
+
+    private long toTick(long price) {
+        return Math.floorDiv(price, tickSize);
+    }
+
+    private int slot(long tick) {
+        return (int) (tick & mask);
+    }
+
+    private boolean inWindow(long tick) {
+        return baseTick != NONE && tick >= baseTick && tick < baseTick + bids.length;
+    }
+
+    private PriceLevel[] levels(boolean buy) {
+        return buy ? bids : asks;
+    }
+
+    private long[] occupied(boolean buy) {
+        return buy ? bidSlots : askSlots;
+    }
+
+    /**
+     * Find the first occupied tick from one tick towards another, both included, a word
+     * of slot bits at a time. The range must lie within the occupied span of the side, so
+     * no two of its ticks share a slot.
+     * @return The tick, or NONE if the range is empty
+     */
+    private long nextOccupied(long[] slots, long from, long to, long step) {
+        long tick = from;
+        while (step > 0 ? tick <= to : tick >= to) {
+            int slot = slot(tick);
+            int bit = slot & 63;
+            long word = slots[slot >>> 6];
+            if (step > 0) {
+                word &= -1L << bit;
+                if (word != 0) {
+                    long found = tick + Long.numberOfTrailingZeros(word) - bit;
+                    return found <= to ? found : NONE;
+                }
+                tick += 64 - bit;
+            } else {
+                word &= -1L >>> (63 - bit);
+                if (word != 0) {
+                    long found = tick - bit + (63 - Long.numberOfLeadingZeros(word));
+                    return found >= to ? found : NONE;
+                }
+                tick -= bit + 1;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Make sure a tick falls inside the window. The window is re-centred on the occupied
+     * range when possible, and the ladder doubles in size when the range no longer fits.
+     */
+    private void ensureWindow(long tick) {
+        if (inWindow(tick)) {
+            return;
+        }
+
+        long lo = tick;
+        long hi = tick;
+        if (bestBidTick != NONE) {
+            lo = Math.min(lo, worstBidTick);
+            hi = Math.max(hi, bestBidTick);
+        }
+        if (bestAskTick != NONE) {
+            lo = Math.min(lo, bestAskTick);
+            hi = Math.max(hi, worstAskTick);
+        }
+
+        long span = hi - lo + 1;
+        if (span > bids.length) {
+            grow(span);
+        }
+
+        // Centre the window on the occupied range so the book can drift either way
+        int capacity = bids.length;
+        long centred = (lo + hi) / 2 - capacity / 2;
+        baseTick = Math.min(lo, Math.max(hi - capacity + 1, centred));
+    }
+
+    /**
+     * Number of ticks from the lowest to the highest occupied one on either side, once a
+     * tick is added
+     */
+    private long spanWith(long tick) {
+        long lo = tick;
+        long hi = tick;
+        if (bestBidTick != NONE) {
+            lo = Math.min(lo, worstBidTick);
+            hi = Math.max(hi, bestBidTick);
+        }
+        if (bestAskTick != NONE) {
+            lo = Math.min(lo, bestAskTick);
+            hi = Math.max(hi, worstAskTick);
+        }
+        return hi - lo + 1;
+    }
+
+    private void grow(long span) {
+        // Prices that would need more are turned away by isValidPrice
+        if (span > maxLevels) {
+            throw new IllegalStateException("Price range too wide for tick ladder on " + getInstrumentId());
+        }
+        int capacity = bids.length;
+        while (capacity < span) {
+            capacity <<= 1;
+        }
+        // Leave headroom so the next few re-centres do not grow again, up to the maximum
+        capacity = Math.min(capacity << 1, maxLevels);
+
+        PriceLevel[] newBids = new PriceLevel[capacity];
+        PriceLevel[] newAsks = new PriceLevel[capacity];
+        long[] newBidSlots = new long[capacity >>> 6];
+        long[] newAskSlots = new long[capacity >>> 6];
+        int newMask = capacity - 1;
+        for (PriceLevel level : bids) {
+            if (level != null) {
+                int slot = (int) (toTick(level.getPrice()) & newMask);
+                newBids[slot] = level;
+                newBidSlots[slot >>> 6] |= 1L << slot;
+            }
+        }
+        for (PriceLevel level : asks) {
+            if (level != null) {
+                int slot = (int) (toTick(level.getPrice()) & newMask);
+                newAsks[slot] = level;
+                newAskSlots[slot >>> 6] |= 1L << slot;
+            }
+        }
+
+        log.info("Growing tick ladder for {} from {} to {} levels", getInstrumentId(), bids.length, capacity);
+        bids = newBids;
+        asks = newAsks;
+        bidSlots = newBidSlots;
+        askSlots = newAskSlots;
+        mask = newMask;
+    }
+}
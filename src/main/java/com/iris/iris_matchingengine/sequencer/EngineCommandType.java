@@ -0,0 +1,32 @@
+package com.iris.iris_matchingengine.sequencer;
+
+import com.iris.common.kafka.CommandType;
+
+/**
+ * Kind of command carried by an engine event
+ */
+public enum EngineCommandType {
+    NEW_ORDER(CommandType.NEW_ORDER),
+    CANCEL_ORDER(CommandType.CANCEL_ORDER),
+    REPLACE_ORDER(CommandType.REPLACE_ORDER),
+    MASS_CANCEL(CommandType.MASS_CANCEL),
+    TRANSFER_OUT(CommandType.TRANSFER_OUT),
+    BOOK_TRANSFER(CommandType.BOOK_TRANSFER),
+    HANDOFF_RESULT(CommandType.HANDOFF_RESULT),
+    // Send a book again whose handoff was not confirmed before a restart or promotion
+    HANDOFF_RETRY(null),
+    BOOK_SNAPSHOT(null),
+    MARKET_DATA_SNAPSHOT(null),
+    SHARD_SNAPSHOT(null);
+
+    // Wire command this event came from; null for engine-internal requests, which are not journaled
+    private final CommandType commandType;
+
+    EngineCommandType(CommandType commandType) {
+        this.commandType = commandType;
+    }
+
+    public CommandType getCommandType() {
+        return commandType;
+    }
+}
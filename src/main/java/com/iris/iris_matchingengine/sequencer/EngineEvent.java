@@ -0,0 +1,258 @@
+package com.iris.iris_matchingengine.sequencer;
+
+import com.iris.common.model.db.Order;
+import com.iris.common.model.db.Trade;
+import com.iris.common.model.messages.CancelOrderMessage;
+import com.iris.common.model.messages.ExecutionReportMessage;
+import com.iris.common.model.messages.InstrumentTransferMessage;
+import com.iris.common.model.messages.MassCancelMessage;
+import com.iris.common.model.messages.NewOrderMessage;
+import com.iris.common.model.messages.ReplaceOrderMessage;
+import com.iris.iris_matchingengine.model.BookImage;
+import com.iris.iris_matchingengine.model.BookSnapshot;
+import com.iris.iris_matchingengine.model.MarketDataUpdate;
+import com.iris.iris_matchingengine.snapshot.ShardSnapshot;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A slot in the sequencer ring. Consumers fill in the command, the matching stage
+ * processes it and appends its outputs, and the publishing stages drain those outputs.
+ * Slots are pre-allocated and reused, so the output lists keep their capacity.
+ */
+@Getter
+public class EngineEvent {
+    private EngineCommandType type;
+    private String instrumentId;
+    private NewOrderMessage newOrder;
+    private CancelOrderMessage cancel;
+    private ReplaceOrderMessage replace;
+    private MassCancelMessage massCancel;
+    private InstrumentTransferMessage transfer;
+    // Book handed over by another node
+    private BookImage bookImage;
+
+    // Command as it arrived, for the journal; null for engine-internal requests
+    private byte[] payload;
+    // Inbound-orders partition and offset the command came from; -1 if not from Kafka
+    private int sourcePartition = -1;
+    private long sourceOffset = -1;
+    // Set by the journal stage once the command is written
+    private long journalSequence;
+    // Set by the journal stage when the command must not be applied: it could not be
+    // journaled, or the shard applied it before Kafka handed it back
+    private boolean dropped;
+    // Time the command was sequenced, in epoch millis; the only clock matching may read
+    private long timestamp;
+
+    // Book inspection: the matching stage copies the book, a later stage hands it over
+    private int snapshotDepth;
+    private Consumer<BookSnapshot> snapshotCallback;
+    private BookSnapshot snapshot;
+
+    // Shard snapshot: the matching stage images every book of the shard, a later stage hands it over
+    private int shard;
+    private Consumer<ShardSnapshot> shardSnapshotCallback;
+    private ShardSnapshot shardSnapshot;
+
+    // Outputs of the matching stage, read by the publishing stages
+    private final List<ExecutionReportMessage> executionReports = new ArrayList<>();
+    private final List<Order> orders = new ArrayList<>();
+    private final List<Trade> trades = new ArrayList<>();
+    // Level updates and trades made to the book, or a full copy on request
+    private final MarketDataUpdate marketData = new MarketDataUpdate();
+    // Book leaving this node, sent to the transfer's partition
+    private BookImage handoff;
+    // Partition to pass the command on to, when its book has left this node; -1 if none
+    private int forwardPartition = -1;
+    // Commands held while the book was on its way, passed on to the forward partition behind it
+    private final List<EngineEvent> forwards = new ArrayList<>();
+
+    void setNewOrder(NewOrderMessage message, byte[] payload) {
+        clear();
+        this.payload = payload;
+        this.type = EngineCommandType.NEW_ORDER;
+        this.instrumentId = message.getNewOrder().getInstrumentId();
+        this.newOrder = message;
+    }
+
+    void setCancel(CancelOrderMessage message, byte[] payload) {
+        clear();
+        this.payload = payload;
+        this.type = EngineCommandType.CANCEL_ORDER;
+        this.instrumentId = message.getCancel().getInstrumentId();
+        this.cancel = message;
+    }
+
+    void setReplace(ReplaceOrderMessage message, byte[] payload) {
+        clear();
+        this.payload = payload;
+        this.type = EngineCommandType.REPLACE_ORDER;
+        this.instrumentId = message.getReplace().getInstrumentId();
+        this.replace = message;
+    }
+
+    void setMassCancel(MassCancelMessage message, String instrumentId, byte[] payload) {
+        clear();
+        this.payload = payload;
+        this.type = EngineCommandType.MASS_CANCEL;
+        this.instrumentId = instrumentId;
+        this.massCancel = message;
+    }
+
+    void setTransferOut(InstrumentTransferMessage message, byte[] payload) {
+        clear();
+        this.payload = payload;
+        this.type = EngineCommandType.TRANSFER_OUT;
+        this.instrumentId = message.getInstrumentId();
+        this.transfer = message;
+    }
+
+    void setBookTransfer(BookImage image, byte[] payload) {
+        clear();
+        this.payload = payload;
+        this.type = EngineCommandType.BOOK_TRANSFER;
+        this.instrumentId = image.getInstrumentId();
+        this.bookImage = image;
+    }
+
+    void setHandoffResult(InstrumentTransferMessage message, byte[] payload) {
+        clear();
+        this.payload = payload;
+        this.type = EngineCommandType.HANDOFF_RESULT;
+        this.instrumentId = message.getInstrumentId();
+        this.transfer = message;
+    }
+
+    void setHandoffRetry(InstrumentTransferMessage transfer) {
+        clear();
+        this.type = EngineCommandType.HANDOFF_RETRY;
+        this.instrumentId = transfer.getInstrumentId();
+        this.transfer = transfer;
+    }
+
+    void setSnapshotRequest(String instrumentId, int depth, Consumer<BookSnapshot> callback) {
+        clear();
+        this.type = EngineCommandType.BOOK_SNAPSHOT;
+        this.instrumentId = instrumentId;
+        this.snapshotDepth = depth;
+        this.snapshotCallback = callback;
+    }
+
+    void setMarketDataSnapshotRequest(String instrumentId) {
+        clear();
+        this.type = EngineCommandType.MARKET_DATA_SNAPSHOT;
+        this.instrumentId = instrumentId;
+    }
+
+    void setShardSnapshotRequest(int shard, Consumer<ShardSnapshot> callback) {
+        clear();
+        this.type = EngineCommandType.SHARD_SNAPSHOT;
+        this.shard = shard;
+        this.shardSnapshotCallback = callback;
+    }
+
+    void setShardSnapshot(ShardSnapshot shardSnapshot) {
+        this.shardSnapshot = shardSnapshot;
+    }
+
+    void setJournalSequence(long journalSequence) {
+        this.journalSequence = journalSequence;
+    }
+
+    void setSource(int partition, long offset) {
+        this.sourcePartition = partition;
+        this.sourceOffset = offset;
+    }
+
+    void setDropped(boolean dropped) {
+        this.dropped = dropped;
+    }
+
+    void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public void setSnapshot(BookSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public void setHandoff(BookImage handoff) {
+        this.handoff = handoff;
+    }
+
+    public void setForwardPartition(int forwardPartition) {
+        this.forwardPartition = forwardPartition;
+    }
+
+    public void addForward(EngineEvent held) {
+        forwards.add(held);
+    }
+
+    /**
+     * Copy the command in this slot, to keep once the slot is reused
+     * @return A new event with the same command and no outputs
+     */
+    public EngineEvent copyCommand() {
+        EngineEvent copy = new EngineEvent();
+        copy.type = type;
+        copy.instrumentId = instrumentId;
+        copy.newOrder = newOrder;
+        copy.cancel = cancel;
+        copy.replace = replace;
+        copy.massCancel = massCancel;
+        copy.transfer = transfer;
+        copy.bookImage = bookImage;
+        copy.payload = payload;
+        copy.sourcePartition = sourcePartition;
+        copy.sourceOffset = sourceOffset;
+        copy.journalSequence = journalSequence;
+        copy.timestamp = timestamp;
+        return copy;
+    }
+
+    public void addExecutionReport(ExecutionReportMessage message) {
+        executionReports.add(message);
+    }
+
+    public void addOrder(Order order) {
+        orders.add(order);
+    }
+
+    public void addTrade(Trade trade) {
+        trades.add(trade);
+    }
+
+    private void clear() {
+        type = null;
+        instrumentId = null;
+        newOrder = null;
+        cancel = null;
+        replace = null;
+        massCancel = null;
+        transfer = null;
+        bookImage = null;
+        payload = null;
+        sourcePartition = -1;
+        sourceOffset = -1;
+        journalSequence = 0;
+        dropped = false;
+        timestamp = 0;
+        snapshotDepth = 0;
+        snapshotCallback = null;
+        snapshot = null;
+        shard = 0;
+        shardSnapshotCallback = null;
+        shardSnapshot = null;
+        executionReports.clear();
+        orders.clear();
+        trades.clear();
+        marketData.clear();
+        handoff = null;
+        forwardPartition = -1;
+        forwards.clear();
+    }
+}
@@ -0,0 +1,11 @@
+package com.iris.iris_matchingengine.sequencer;
+
+/**
+ * Role of a matching engine instance sharing a journal directory with another
+ */
+public enum EngineRole {
+    // Holds the journal lease, takes commands from Kafka and publishes the results
+    PRIMARY,
+    // Applies the primary's journal to its own books and publishes nothing until promoted
+    STANDBY
+}
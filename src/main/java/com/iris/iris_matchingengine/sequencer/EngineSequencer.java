@@ -0,0 +1,580 @@
+package com.iris.iris_matchingengine.sequencer;
+
+import com.iris.common.kafka.CommandType;
+import com.iris.common.model.db.Order;
+import com.iris.common.model.db.Trade;
+import com.iris.common.model.messages.CancelOrderMessage;
+import com.iris.common.model.messages.InstrumentTransferMessage;
+import com.iris.common.model.messages.MassCancelMessage;
+import com.iris.common.model.messages.NewOrderMessage;
+import com.iris.common.model.messages.ReplaceOrderMessage;
+import com.iris.iris_matchingengine.journal.CommandJournal;
+import com.iris.iris_matchingengine.journal.JournalSyncPolicy;
+import com.iris.iris_matchingengine.journal.JournalWriter;
+import com.iris.iris_matchingengine.model.BookImage;
+import com.iris.iris_matchingengine.model.BookSnapshot;
+import com.iris.iris_matchingengine.service.AsyncEventPublisher;
+import com.iris.iris_matchingengine.service.EngineShards;
+import com.iris.iris_matchingengine.service.ExecutionReportPublisher;
+import com.iris.iris_matchingengine.service.InstrumentHandoff;
+import com.iris.iris_matchingengine.service.MarketDataPublisher;
+import com.iris.iris_matchingengine.service.OrderBookManager;
+import com.iris.iris_matchingengine.service.OrderProcessingService;
+import com.iris.iris_matchingengine.snapshot.ShardSnapshot;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.EventTranslatorOneArg;
+import com.lmax.disruptor.EventTranslatorThreeArg;
+import com.lmax.disruptor.EventTranslatorTwoArg;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Sequences inbound commands into per-shard ring buffers.
+ *
+ * Instruments are spread over a fixed number of shards by symbol. Each shard has one
+ * matching thread that owns its books outright, so books need no locking and every
+ * command for an instrument is applied in ring order. Execution reports and persistence
+ * run as downstream stages on the same ring, after the matching stage has filled in
+ * their outputs.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EngineSequencer {
+    // Partition given to commands from a local transport, whose offsets are their transport positions
+    public static final int LOCAL_PARTITION = -1;
+
+    private static final EventTranslatorTwoArg<EngineEvent, NewOrderMessage, byte[]> NEW_ORDER =
+            (event, sequence, message, payload) -> event.setNewOrder(message, payload);
+    private static final EventTranslatorTwoArg<EngineEvent, CancelOrderMessage, byte[]> CANCEL_ORDER =
+            (event, sequence, message, payload) -> event.setCancel(message, payload);
+    private static final EventTranslatorTwoArg<EngineEvent, ReplaceOrderMessage, byte[]> REPLACE_ORDER =
+            (event, sequence, message, payload) -> event.setReplace(message, payload);
+    private static final EventTranslatorTwoArg<EngineEvent, InstrumentTransferMessage, byte[]> TRANSFER_OUT =
+            (event, sequence, message, payload) -> event.setTransferOut(message, payload);
+    private static final EventTranslatorTwoArg<EngineEvent, BookImage, byte[]> BOOK_TRANSFER =
+            (event, sequence, image, payload) -> event.setBookTransfer(image, payload);
+    private static final EventTranslatorTwoArg<EngineEvent, InstrumentTransferMessage, byte[]> HANDOFF_RESULT =
+            (event, sequence, message, payload) -> event.setHandoffResult(message, payload);
+    private static final EventTranslatorOneArg<EngineEvent, InstrumentTransferMessage> HANDOFF_RETRY =
+            (event, sequence, transfer) -> event.setHandoffRetry(transfer);
+    private static final EventTranslatorOneArg<EngineEvent, String> MARKET_DATA_SNAPSHOT =
+            (event, sequence, instrumentId) -> event.setMarketDataSnapshotRequest(instrumentId);
+    private static final EventTranslatorTwoArg<EngineEvent, Integer, Consumer<ShardSnapshot>> SHARD_SNAPSHOT =
+            (event, sequence, shard, callback) -> event.setShardSnapshotRequest(shard, callback);
+    private static final EventTranslatorThreeArg<EngineEvent, String, Integer, Consumer<BookSnapshot>> BOOK_SNAPSHOT =
+            (event, sequence, instrumentId, depth, callback) -> event.setSnapshotRequest(instrumentId, depth, callback);
+
+    private final OrderProcessingService orderProcessingService;
+    private final ExecutionReportPublisher executionReportPublisher;
+    private final AsyncEventPublisher asyncEventPublisher;
+    private final OrderBookManager orderBookManager;
+    private final CommandJournal commandJournal;
+    private final EngineRecovery engineRecovery;
+    private final EngineShards engineShards;
+    private final InstrumentHandoff instrumentHandoff;
+    private final MarketDataPublisher marketDataPublisher;
+
+    // PRIMARY takes commands from Kafka; STANDBY follows the primary's journal until it takes over
+    @Value("${matching.role:PRIMARY}")
+    private EngineRole role;
+
+    @Value("${matching.market-data.enabled:true}")
+    private boolean marketDataEnabled;
+
+    // Slots per shard ring, must be a power of two
+    @Value("${matching.sequencer.ring-size:8192}")
+    private int ringSize;
+
+    // BLOCKING, YIELDING or BUSY_SPIN
+    @Value("${matching.sequencer.wait-strategy:BLOCKING}")
+    private String waitStrategy;
+
+    private final List<Disruptor<EngineEvent>> disruptors = new ArrayList<>();
+    private final List<RingBuffer<EngineEvent>> rings = new ArrayList<>();
+    // Shards whose journal failed; they apply no further commands until the engine restarts
+    private final Set<Integer> haltedShards = ConcurrentHashMap.newKeySet();
+    // Per shard, the last ring sequence the journal stage has made durable
+    private AtomicLongArray journaled;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (role == EngineRole.STANDBY) {
+            // EngineStandby keeps the books in step and promotes this sequencer when the primary goes
+            log.info("Engine sequencer standing by");
+            return;
+        }
+        if (commandJournal.isEnabled() && !acquireLease()) {
+            throw new IllegalStateException("Journal lease " + commandJournal.lease().getFile()
+                    + " is held by another engine; start this instance with matching.role=STANDBY");
+        }
+
+        // Books must be back to where they were before any new command is taken
+        engineRecovery.recover(getShardCount());
+        startRings();
+    }
+
+    /**
+     * Start taking commands on a standby whose books are level with the journal.
+     * The caller must hold the journal lease.
+     */
+    public void promote() {
+        startRings();
+    }
+
+    /**
+     * Check whether the rings are taking commands; false on a standby until it is promoted
+     * @return True once started
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getShardCount() {
+        return engineShards.getShardCount();
+    }
+
+    private boolean acquireLease() {
+        try {
+            return commandJournal.lease().tryAcquire();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to take the journal lease", e);
+        }
+    }
+
+    private void startRings() {
+        int shardCount = getShardCount();
+        journaled = new AtomicLongArray(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            Disruptor<EngineEvent> disruptor = new Disruptor<>(
+                    EngineEvent::new,
+                    ringSize,
+                    threadFactory(shard),
+                    ProducerType.MULTI, // Several Kafka consumer threads publish
+                    createWaitStrategy());
+
+            if (commandJournal.isEnabled()) {
+                // Journal ahead of matching, so no command is applied before it is written
+                int index = shard;
+                JournalWriter writer = commandJournal.openWriter(shard);
+                // The journal stage's own copy; the matching stage keeps the shard's for snapshots
+                SourceOffsets journaledOffsets = engineShards.sourceOffsets(shard).copy();
+                journaled.set(shard, -1);
+                disruptor.handleEventsWith((event, sequence, endOfBatch) -> {
+                            journal(index, writer, journaledOffsets, event, endOfBatch);
+                            // Under BATCH, a command is only durable once the batch is synced
+                            if (endOfBatch || commandJournal.getSyncPolicy() != JournalSyncPolicy.BATCH) {
+                                journaled.lazySet(index, sequence);
+                            }
+                        })
+                        .then(this::match)
+                        .then(this::publishExecutionReports, this::publishMarketData, this::persist, this::deliverSnapshot,
+                                this::handOff);
+            } else {
+                disruptor.handleEventsWith(this::match)
+                        .then(this::publishExecutionReports, this::publishMarketData, this::persist, this::deliverSnapshot,
+                                this::handOff);
+            }
+
+            rings.add(disruptor.start());
+            disruptors.add(disruptor);
+        }
+        running = true;
+        // Handoffs the journal began but never heard back about; send their images again
+        for (InstrumentHandoff.PendingHandoff pending : instrumentHandoff.getPending().values()) {
+            ring(pending.getTransfer().getInstrumentId()).publishEvent(HANDOFF_RETRY, pending.getTransfer());
+        }
+        log.info("Started engine sequencer with {} shards, ring size {}, {} wait strategy",
+                shardCount, ringSize, waitStrategy);
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Disruptor<EngineEvent> disruptor : disruptors) {
+            try {
+                // Let in-flight commands drain before the books go away
+                disruptor.shutdown(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                log.warn("Engine sequencer shard did not drain in time, halting", e);
+                disruptor.halt();
+            }
+        }
+        log.info("Stopped engine sequencer");
+    }
+
+    /**
+     * Publish a new order
+     * @param message Decoded message
+     * @param payload Message as received, written to the journal
+     * @param partition Inbound-orders partition the message came from, or {@link #LOCAL_PARTITION}
+     * @param offset Offset of its record, or its local transport position; -1 if it has neither
+     */
+    public void publishNewOrder(NewOrderMessage message, byte[] payload, int partition, long offset) {
+        orderBookManager.registerClientInstrument(message.getClientId(), message.getNewOrder().getInstrumentId());
+        orderBookManager.registerInstrumentPartition(message.getNewOrder().getInstrumentId(), partition);
+        publishCommand(ring(message.getNewOrder().getInstrumentId()), NEW_ORDER, message, payload, partition, offset);
+    }
+
+    public void publishCancelOrder(CancelOrderMessage message, byte[] payload, int partition, long offset) {
+        publishCommand(ring(message.getCancel().getInstrumentId()), CANCEL_ORDER, message, payload, partition, offset);
+    }
+
+    public void publishReplaceOrder(ReplaceOrderMessage message, byte[] payload, int partition, long offset) {
+        publishCommand(ring(message.getReplace().getInstrumentId()), REPLACE_ORDER, message, payload, partition, offset);
+    }
+
+    /**
+     * Check whether a shard has stopped applying commands because its journal failed.
+     * Commands sent to it since are dropped, so the consumer must stop and leave them
+     * unacknowledged for the next start to take again.
+     * @return True if any shard is halted
+     */
+    public boolean isHalted() {
+        return !haltedShards.isEmpty();
+    }
+
+    /**
+     * Wait until the journal stage has written every command published so far, synced as
+     * the sync policy asks. Until then a crash loses those commands, so their offsets must
+     * not be committed.
+     * @param timeoutMs Longest wait
+     * @return True once written, false if the wait timed out or a shard halted
+     */
+    public boolean awaitJournaled(long timeoutMs) {
+        if (!commandJournal.isEnabled()) {
+            return true;
+        }
+        long[] published = new long[rings.size()];
+        for (int shard = 0; shard < published.length; shard++) {
+            published[shard] = rings.get(shard).getCursor();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        for (int shard = 0; shard < published.length; shard++) {
+            while (journaled.get(shard) < published[shard]) {
+                if (isHalted() || System.nanoTime() - deadline > 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Publish a mass cancel. One for a single instrument goes to that instrument's shard;
+     * one for all instruments is fanned out as a command per instrument the client has
+     * traded, each on its own shard.
+     *
+     * A mass cancel for all instruments comes on every inbound-orders partition. Each copy
+     * cancels the instruments whose orders come on its partition, so it lands in their
+     * rings behind every order sent before it. An instrument with no order since this
+     * engine started is cancelled by every copy. One from a local transport comes once
+     * and cancels every instrument.
+     * @param message Mass cancel message
+     * @param payload Message as received, written to the journal
+     * @param partition Inbound-orders partition the message came from, or {@link #LOCAL_PARTITION}
+     * @param offset Offset of its record, or its local transport position; -1 if it has neither
+     */
+    public void publishMassCancel(MassCancelMessage message, byte[] payload, int partition, long offset) {
+        String instrumentId = message.getMassCancel().getInstrumentId();
+        if (instrumentId != null) {
+            publishMassCancel(message, instrumentId, payload, partition, offset);
+            return;
+        }
+        for (String bookId : orderBookManager.getClientInstruments(message.getClientId())) {
+            int bookPartition = orderBookManager.getInstrumentPartition(bookId);
+            if (partition == LOCAL_PARTITION || bookPartition < 0 || bookPartition == partition) {
+                publishMassCancel(message, bookId, payload, partition, offset);
+            }
+        }
+    }
+
+    /**
+     * Publish a request to hand an instrument's book to another partition
+     * @param message Transfer message
+     * @param payload Message as received, written to the journal
+     * @param partition Inbound-orders partition the message came from, or {@link #LOCAL_PARTITION}
+     * @param offset Offset of its record, or its local transport position; -1 if it has neither
+     */
+    public void publishTransferOut(InstrumentTransferMessage message, byte[] payload, int partition, long offset) {
+        publishCommand(ring(message.getInstrumentId()), TRANSFER_OUT, message, payload, partition, offset);
+    }
+
+    /**
+     * Publish a book handed over by another node
+     * @param image Decoded book image
+     * @param payload Image as received, written to the journal
+     * @param partition Inbound-orders partition the image came from, or {@link #LOCAL_PARTITION}
+     * @param offset Offset of its record, or its local transport position; -1 if it has neither
+     */
+    public void publishBookTransfer(BookImage image, byte[] payload, int partition, long offset) {
+        // Registered now rather than when the book is restored, so a mass cancel behind it finds it
+        for (String clientId : image.getClientIds()) {
+            orderBookManager.registerClientInstrument(clientId, image.getInstrumentId());
+        }
+        orderBookManager.registerInstrumentPartition(image.getInstrumentId(), partition);
+        publishCommand(ring(image.getInstrumentId()), BOOK_TRANSFER, image, payload, partition, offset);
+    }
+
+    /**
+     * Publish the broker's answer to a book handoff, so it is journaled and applied in
+     * sequence with the commands held for the book
+     * @param message Handoff result
+     * @param payload Message as written to the journal
+     */
+    public void publishHandoffResult(InstrumentTransferMessage message, byte[] payload) {
+        publishCommand(ring(message.getInstrumentId()), HANDOFF_RESULT, message, payload, -1, -1);
+    }
+
+    /**
+     * Claim a slot, fill in the command and where it came from, and publish it
+     */
+    private static <A> void publishCommand(RingBuffer<EngineEvent> ring, EventTranslatorTwoArg<EngineEvent, A, byte[]> translator,
+                                           A message, byte[] payload, int partition, long offset) {
+        long sequence = ring.next();
+        try {
+            EngineEvent event = ring.get(sequence);
+            translator.translateTo(event, sequence, message, payload);
+            event.setSource(partition, offset);
+        } finally {
+            ring.publish(sequence);
+        }
+    }
+
+    private void publishMassCancel(MassCancelMessage message, String instrumentId, byte[] payload, int partition, long offset) {
+        RingBuffer<EngineEvent> ring = ring(instrumentId);
+        long sequence = ring.next();
+        try {
+            EngineEvent event = ring.get(sequence);
+            event.setMassCancel(message, instrumentId, payload);
+            event.setSource(partition, offset);
+        } finally {
+            ring.publish(sequence);
+        }
+    }
+
+    /**
+     * Request a copy of the top of a book. The copy is taken in sequence on the matching
+     * thread and the callback runs afterwards on a downstream stage thread.
+     * @param instrumentId Instrument ID
+     * @param depth Number of levels per side
+     * @param callback Receives the snapshot
+     */
+    public void publishSnapshotRequest(String instrumentId, int depth, Consumer<BookSnapshot> callback) {
+        ring(instrumentId).publishEvent(BOOK_SNAPSHOT, instrumentId, depth, callback);
+    }
+
+    /**
+     * Request a market data snapshot of every level of a book, published in sequence with
+     * the book's incremental updates
+     * @param instrumentId Instrument ID
+     */
+    public void publishMarketDataSnapshot(String instrumentId) {
+        ring(instrumentId).publishEvent(MARKET_DATA_SNAPSHOT, instrumentId);
+    }
+
+    /**
+     * Request an image of every book on a shard. The images are taken in sequence on the
+     * matching thread and the callback runs afterwards on a downstream stage thread.
+     * @param shard Shard index
+     * @param callback Receives the snapshot, or null if it could not be taken
+     */
+    public void publishShardSnapshot(int shard, Consumer<ShardSnapshot> callback) {
+        rings.get(shard).publishEvent(SHARD_SNAPSHOT, shard, callback);
+    }
+
+    /**
+     * Get the shard an instrument is processed on
+     * @param instrumentId Instrument ID
+     * @return Shard index
+     */
+    public int shardOf(String instrumentId) {
+        return engineShards.shardOf(instrumentId);
+    }
+
+    private RingBuffer<EngineEvent> ring(String instrumentId) {
+        return rings.get(shardOf(instrumentId));
+    }
+
+    /**
+     * Journal stage; writes each command before the matching stage may see it. A command
+     * that cannot be written halts the shard: applying it, or anything after it, would
+     * leave the books ahead of what a restart or the standby can rebuild. A command Kafka
+     * hands back after the journal took it is dropped, so it is not applied twice.
+     */
+    private void journal(int shard, JournalWriter writer, SourceOffsets journaledOffsets, EngineEvent event,
+                         boolean endOfBatch) {
+        event.setTimestamp(System.currentTimeMillis());
+        CommandType commandType = event.getType().getCommandType();
+        try {
+            if (commandType == null || event.getPayload() == null) {
+                // Everything journaled so far is ahead of this event in the ring
+                event.setJournalSequence(writer.getSequence());
+            } else if (haltedShards.contains(shard)) {
+                event.setDropped(true);
+                log.warn("Dropped {} for {}, shard {} is halted", event.getType(), event.getInstrumentId(), shard);
+            } else if (event.getSourceOffset() >= 0 && journaledOffsets.isDuplicate(event.getSourcePartition(),
+                    event.getSourceOffset(), event.getType())) {
+                event.setDropped(true);
+                log.info("Skipped {} for {} at offset {}-{}, already journaled", event.getType(),
+                        event.getInstrumentId(), event.getSourcePartition(), event.getSourceOffset());
+            } else {
+                event.setJournalSequence(writer.append(commandType, event.getInstrumentId(), event.getPayload(),
+                        event.getTimestamp(), event.getSourcePartition(), event.getSourceOffset()));
+                if (event.getSourceOffset() >= 0) {
+                    journaledOffsets.set(event.getSourcePartition(), event.getSourceOffset());
+                }
+                if (commandJournal.getSyncPolicy() == JournalSyncPolicy.EVERY) {
+                    writer.sync();
+                }
+            }
+            if (endOfBatch && commandJournal.getSyncPolicy() == JournalSyncPolicy.BATCH) {
+                writer.sync();
+            }
+        } catch (Exception e) {
+            haltedShards.add(shard);
+            event.setDropped(true);
+            log.error("Failed to journal {} for {}, halting shard {}", event.getType(), event.getInstrumentId(), shard, e);
+        }
+    }
+
+    /**
+     * Matching stage; the only stage that touches order books
+     */
+    private void match(EngineEvent event, long sequence, boolean endOfBatch) {
+        if (event.getTimestamp() == 0) {
+            // No journal stage ahead of this one
+            event.setTimestamp(System.currentTimeMillis());
+        }
+        if (event.isDropped()) {
+            return;
+        }
+        try {
+            if (event.getType() == EngineCommandType.SHARD_SNAPSHOT) {
+                event.setShardSnapshot(imageShard(event.getShard(), event.getJournalSequence()));
+                return;
+            }
+            orderProcessingService.process(event);
+            if (event.getSourceOffset() >= 0) {
+                engineShards.sourceOffsets(shardOf(event.getInstrumentId()))
+                        .set(event.getSourcePartition(), event.getSourceOffset());
+            }
+        } catch (Exception e) {
+            // Keep the shard alive; a failed command must not stall the instruments behind it
+            log.error("Error processing {} for {}", event.getType(), event.getInstrumentId(), e);
+        }
+    }
+
+    /**
+     * Copy every book the shard owns; runs on the shard's matching thread, so the copy
+     * is a consistent cut of the command stream
+     */
+    private ShardSnapshot imageShard(int shard, long journalSequence) {
+        for (String instrumentId : instrumentHandoff.getPending().keySet()) {
+            if (shardOf(instrumentId) == shard) {
+                // The held commands live only in the journal until the handoff result comes up
+                log.info("Skipping snapshot of shard {} while book {} is being handed off", shard, instrumentId);
+                return null;
+            }
+        }
+        List<BookImage> books = new ArrayList<>();
+        for (String instrumentId : orderBookManager.getInstrumentIds()) {
+            if (shardOf(instrumentId) == shard) {
+                books.add(orderBookManager.getOrderBook(instrumentId).image());
+            }
+        }
+        Map<String, Integer> handedOff = new HashMap<>();
+        for (Map.Entry<String, Integer> instrument : instrumentHandoff.getHandedOff().entrySet()) {
+            if (shardOf(instrument.getKey()) == shard) {
+                handedOff.put(instrument.getKey(), instrument.getValue());
+            }
+        }
+        return new ShardSnapshot(shard, journalSequence, engineShards.ids(shard).getCounter(), books, handedOff,
+                engineShards.sourceOffsets(shard).toMap());
+    }
+
+    private void publishExecutionReports(EngineEvent event, long sequence, boolean endOfBatch) {
+        // No flush here: it would hold every batch for a broker round trip; linger.ms bounds the wait
+        executionReportPublisher.publish(event.getExecutionReports());
+    }
+
+    private void publishMarketData(EngineEvent event, long sequence, boolean endOfBatch) {
+        if (marketDataEnabled && event.getMarketData().isStarted()) {
+            marketDataPublisher.publish(event.getMarketData(), event.getTimestamp());
+        }
+    }
+
+    private void persist(EngineEvent event, long sequence, boolean endOfBatch) {
+        for (Order order : event.getOrders()) {
+            asyncEventPublisher.publishOrder(order);
+        }
+        for (Trade trade : event.getTrades()) {
+            asyncEventPublisher.publishTrade(trade);
+        }
+    }
+
+    private void deliverSnapshot(EngineEvent event, long sequence, boolean endOfBatch) {
+        try {
+            if (event.getSnapshot() != null) {
+                event.getSnapshotCallback().accept(event.getSnapshot());
+            } else if (event.getType() == EngineCommandType.SHARD_SNAPSHOT) {
+                // Null if imaging failed, so the requester is never left waiting
+                event.getShardSnapshotCallback().accept(event.getShardSnapshot());
+            }
+        } catch (Exception e) {
+            log.error("Error delivering {} for {}", event.getType(), event.getInstrumentId(), e);
+        }
+    }
+
+    private void handOff(EngineEvent event, long sequence, boolean endOfBatch) {
+        if (event.getHandoff() != null || event.getForwardPartition() >= 0) {
+            instrumentHandoff.send(event, this::publishHandoffResult);
+        }
+    }
+
+    private WaitStrategy createWaitStrategy() {
+        switch (waitStrategy.toUpperCase()) {
+            case "BUSY_SPIN":
+                return new BusySpinWaitStrategy();
+            case "YIELDING":
+                return new YieldingWaitStrategy();
+            default:
+                return new BlockingWaitStrategy();
+        }
+    }
+
+    private static ThreadFactory threadFactory(int shard) {
+        AtomicInteger stage = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "engine-shard-" + shard + "-" + stage.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,197 @@
+package com.iris.iris_matchingengine.sequencer;
+
+import com.iris.iris_matchingengine.consumer.OrderConsumer;
+import com.iris.iris_matchingengine.journal.CommandJournal;
+import com.iris.iris_matchingengine.journal.JournalTailer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps a standby engine level with the primary. The standby shares the primary's journal
+ * directory: one follower thread per shard applies the primary's journal to this
+ * instance's books as it is written, and nothing is published while following.
+ *
+ * The primary holds the journal lease for as long as its process lives. When the standby
+ * takes the lease, the followers drain what is left of the journal, then the sequencer
+ * starts its rings on the same journals, continuing after the last sequence applied, and
+ * the Kafka listener starts.
+ *
+ * A follower that fails to read the journal starts again from its last applied sequence,
+ * backing off between attempts. Until it reads again the standby reports itself down, and
+ * it will not promote with a shard behind.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EngineStandby implements HealthIndicator {
+    private static final long MAX_RESTART_DELAY_MS = 30_000;
+
+    private final EngineSequencer engineSequencer;
+    private final EngineRecovery engineRecovery;
+    private final CommandJournal commandJournal;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final OrderConsumer orderConsumer;
+
+    @Value("${matching.role:PRIMARY}")
+    private EngineRole role;
+
+    // How often the followers look for new records and the lease is tried
+    @Value("${matching.standby.poll-interval-ms:1}")
+    private long pollIntervalMs;
+
+    private final List<Thread> threads = new ArrayList<>();
+    // Shards whose follower failed and has not read the journal since
+    private final Set<Integer> failingShards = ConcurrentHashMap.newKeySet();
+    private volatile boolean promoting;
+    private volatile boolean stopped;
+    private CountDownLatch drained;
+
+    @PostConstruct
+    public void follow() {
+        if (role != EngineRole.STANDBY) {
+            return;
+        }
+        if (!commandJournal.isEnabled()) {
+            throw new IllegalStateException("A standby engine follows the journal; enable matching.journal.enabled");
+        }
+
+        // Catch up from the latest snapshot and the journal so far, then follow the tail
+        int shardCount = engineSequencer.getShardCount();
+        long[] applied = engineRecovery.recover(shardCount);
+        drained = new CountDownLatch(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int index = shard;
+            long from = applied[shard] + 1;
+            threads.add(start("engine-standby-" + shard, () -> followShard(index, from)));
+        }
+        threads.add(start("engine-standby-lease", this::watchLease));
+        log.info("Standby following journal {}", commandJournal.lease().getFile().getParent());
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        for (Thread thread : threads) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public Health health() {
+        if (role != EngineRole.STANDBY || engineSequencer.isRunning()) {
+            return Health.up().withDetail("role", engineSequencer.isRunning() ? "PRIMARY" : role.name()).build();
+        }
+        if (stopped || !failingShards.isEmpty()) {
+            return Health.down().withDetail("role", role.name()).withDetail("failingShards", Set.copyOf(failingShards)).build();
+        }
+        return Health.up().withDetail("role", role.name()).build();
+    }
+
+    /**
+     * Apply one shard's journal as the primary writes it, until promotion drains it. A
+     * failed follower starts again after its last applied sequence.
+     */
+    private void followShard(int shard, long fromSequence) {
+        EngineEvent event = new EngineEvent();
+        long next = fromSequence;
+        long restartDelayMs = Math.max(pollIntervalMs, 1);
+        while (!stopped) {
+            JournalTailer tailer = new JournalTailer(commandJournal.shardDirectory(shard), next);
+            try (tailer) {
+                follow(shard, tailer, event);
+                break;
+            } catch (Exception e) {
+                failingShards.add(shard);
+                log.error("{} failed after journal sequence {}, restarting in {} ms", Thread.currentThread().getName(),
+                        tailer.getSequence(), restartDelayMs, e);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(restartDelayMs));
+                restartDelayMs = Math.min(restartDelayMs * 2, MAX_RESTART_DELAY_MS);
+            }
+            next = tailer.getSequence() + 1;
+        }
+        drained.countDown();
+    }
+
+    /**
+     * Poll a tailer until the journal is drained after promotion, or the standby stops
+     */
+    private void follow(int shard, JournalTailer tailer, EngineEvent event) throws IOException {
+        while (!stopped) {
+            // Read the flag first: once it is set the primary is gone, so an empty poll means drained
+            boolean last = promoting;
+            int read = tailer.poll(record -> engineRecovery.apply(event, record));
+            if (!failingShards.isEmpty() && failingShards.remove(shard)) {
+                log.info("{} reading the journal again at sequence {}", Thread.currentThread().getName(),
+                        tailer.getSequence());
+            }
+            if (last && read == 0) {
+                log.info("{} drained the journal at sequence {}", Thread.currentThread().getName(),
+                        tailer.getSequence());
+                return;
+            }
+            if (read == 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(pollIntervalMs));
+            }
+        }
+    }
+
+    /**
+     * Try the primary's lease until it is released, then take over
+     */
+    private void watchLease() {
+        try {
+            while (!stopped && !commandJournal.lease().tryAcquire()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(pollIntervalMs));
+            }
+            if (stopped) {
+                return;
+            }
+            long start = System.nanoTime();
+            log.warn("Primary released the journal lease, promoting standby");
+            promoting = true;
+            while (!drained.await(5, TimeUnit.SECONDS)) {
+                // A failing follower keeps promotion waiting, since its shard is behind the journal
+                log.warn("Promotion waiting for the journal to drain, failing shards {}", failingShards);
+            }
+            if (stopped) {
+                return;
+            }
+
+            engineSequencer.promote();
+            long promoted = System.nanoTime();
+            if (!orderConsumer.pollLocalTransport()) {
+                MessageListenerContainer listener = listenerRegistry.getListenerContainer(OrderConsumer.LISTENER_ID);
+                if (listener != null) {
+                    listener.start();
+                }
+            }
+            log.warn("Standby promoted to primary in {} ms, consuming commands", (promoted - start) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Standby promotion failed", e);
+        }
+    }
+
+    private static Thread start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
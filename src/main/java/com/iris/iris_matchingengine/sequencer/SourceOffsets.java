@@ -0,0 +1,94 @@
+package com.iris.iris_matchingengine.sequencer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The last inbound-orders offset one shard has taken from each partition. Offsets are
+ * committed only after the journal holds their commands, so after a restart or a promotion
+ * Kafka can hand back commands the journal already has; within a partition a shard sees
+ * commands in offset order, so anything at or below these offsets is one of them. Commands
+ * from a local transport are kept the same way, under {@link EngineSequencer#LOCAL_PARTITION}
+ * with their transport positions.
+ *
+ * Not thread-safe; each copy belongs to one thread.
+ */
+public class SourceOffsets {
+    // Slot 0 is the local transport's, partition p is at p + 1
+    private long[] offsets = new long[0];
+
+    /**
+     * Get the last offset taken from a partition
+     * @param partition Inbound-orders partition
+     * @return Offset, -1 if none
+     */
+    public long get(int partition) {
+        int slot = partition + 1;
+        return slot < offsets.length ? offsets[slot] : -1;
+    }
+
+    /**
+     * Record the offset of a command taken from a partition
+     * @param partition Inbound-orders partition
+     * @param offset Record offset
+     */
+    public void set(int partition, long offset) {
+        int slot = partition + 1;
+        if (slot >= offsets.length) {
+            int length = offsets.length;
+            offsets = Arrays.copyOf(offsets, slot + 1);
+            Arrays.fill(offsets, length, offsets.length, -1);
+        }
+        offsets[slot] = offset;
+    }
+
+    /**
+     * Check whether a command was already taken. A mass cancel for all instruments is
+     * one record fanned out to several instruments of a shard, so its offset may repeat;
+     * it is let through, since cancelling twice changes nothing.
+     * @param partition Inbound-orders partition
+     * @param offset Record offset
+     * @param type Command type
+     * @return True if the shard has it already
+     */
+    public boolean isDuplicate(int partition, long offset, EngineCommandType type) {
+        long last = get(partition);
+        return offset < last || offset == last && type != EngineCommandType.MASS_CANCEL;
+    }
+
+    /**
+     * Copy the offsets, for another thread to own
+     * @return A copy
+     */
+    public SourceOffsets copy() {
+        SourceOffsets copy = new SourceOffsets();
+        copy.offsets = offsets.clone();
+        return copy;
+    }
+
+    /**
+     * Get the offsets as a map, for a snapshot
+     * @return Map of partition to offset, without partitions never taken from
+     */
+    public Map<Integer, Long> toMap() {
+        Map<Integer, Long> map = new HashMap<>();
+        for (int slot = 0; slot < offsets.length; slot++) {
+            if (offsets[slot] >= 0) {
+                map.put(slot - 1, offsets[slot]);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Replace the offsets with those of a snapshot
+     * @param map Map of partition to offset
+     */
+    public void restore(Map<Integer, Long> map) {
+        offsets = new long[0];
+        for (Map.Entry<Integer, Long> entry : map.entrySet()) {
+            set(entry.getKey(), entry.getValue());
+        }
+    }
+}
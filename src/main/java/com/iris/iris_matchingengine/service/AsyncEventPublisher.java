@@ -1,6 +1,7 @@
 package com.iris.iris_matchingengine.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.common.ipc.InProcessTransport;
 import com.iris.common.model.db.Order;
 import com.iris.common.model.db.Trade;
 import com.iris.common.model.db.OrderBookState;
@@ -10,12 +11,16 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.Optional;
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class AsyncEventPublisher {
     private final KafkaTemplate<String, byte[]> kafkaTemplate; // Using byte[] for serialized messages
     private final ObjectMapper objectMapper; // Used for JSON serialization
+    // Present when the DB writer runs in this JVM; it is handed the entities as they are
+    private final Optional<InProcessTransport> inProcess;
 
     private static final String ORDER_TOPIC = "iris.db.orders";
     private static final String TRADE_TOPIC = "iris.db.trades";
@@ -29,8 +34,12 @@ public class AsyncEventPublisher {
     @Async("eventPublisherExecutor")
     public void publishOrder(Order order) {
         try {
-            byte[] message = objectMapper.writeValueAsBytes(order);
-            kafkaTemplate.send(ORDER_TOPIC, order.getOrderId(), message);
+            if (inProcess.isPresent()) {
+                inProcess.get().sendDbEvent(order);
+            } else {
+                byte[] message = objectMapper.writeValueAsBytes(order);
+                kafkaTemplate.send(ORDER_TOPIC, order.getOrderId(), message);
+            }
             log.debug("Published Order: {}", order.getOrderId());
         } catch (Exception e) {
             log.error("Failed to publish Order: {}", order.getOrderId(), e);
@@ -45,8 +54,12 @@ public class AsyncEventPublisher {
     @Async("eventPublisherExecutor")
     public void publishTrade(Trade trade) {
         try {
-            byte[] message = objectMapper.writeValueAsBytes(trade);
-            kafkaTemplate.send(TRADE_TOPIC, trade.getTradeId(), message);
+            if (inProcess.isPresent()) {
+                inProcess.get().sendDbEvent(trade);
+            } else {
+                byte[] message = objectMapper.writeValueAsBytes(trade);
+                kafkaTemplate.send(TRADE_TOPIC, trade.getTradeId(), message);
+            }
             log.debug("Published Trade: {}", trade.getTradeId());
         } catch (Exception e) {
             log.error("Failed to publish Trade: {}", trade.getTradeId(), e);
@@ -61,10 +74,14 @@ public class AsyncEventPublisher {
     @Async("eventPublisherExecutor")
     public void publishOrderBookState(OrderBookState orderBookState) {
         try {
-            byte[] message = objectMapper.writeValueAsBytes(orderBookState);
-            kafkaTemplate.send(ORDER_BOOK_STATE_TOPIC,
-                    orderBookState.getInstrumentId(),
-                    message);
+            if (inProcess.isPresent()) {
+                inProcess.get().sendDbEvent(orderBookState);
+            } else {
+                byte[] message = objectMapper.writeValueAsBytes(orderBookState);
+                kafkaTemplate.send(ORDER_BOOK_STATE_TOPIC,
+                        orderBookState.getInstrumentId(),
+                        message);
+            }
             log.debug("Published OrderBookState for Instrument ID: {}",
                     orderBookState.getInstrumentId());
         } catch (Exception e) {
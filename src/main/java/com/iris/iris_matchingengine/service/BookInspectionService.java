@@ -0,0 +1,78 @@
+package com.iris.iris_matchingengine.service;
+
+import com.iris.iris_matchingengine.model.BookSnapshot;
+import com.iris.iris_matchingengine.sequencer.EngineSequencer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Samples order book depth in the background. Snapshot requests go through the
+ * sequencer so the copy is consistent with the command stream, and the matching
+ * thread only copies raw levels; logging and formatting happen here.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookInspectionService {
+    private final EngineSequencer engineSequencer;
+    private final OrderBookManager orderBookManager;
+    private final InstrumentHandoff instrumentHandoff;
+
+    @Value("${matching.inspection.depth:10}")
+    private int depth;
+
+    @Value("${matching.inspection.log-enabled:false}")
+    private boolean logEnabled;
+
+    // Latest snapshot per instrument
+    private final Map<String, BookSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Request a fresh snapshot of every book, at most once per interval
+     */
+    @Scheduled(fixedDelayString = "${matching.inspection.interval-ms:1000}")
+    public void sample() {
+        if (!engineSequencer.isRunning()) {
+            return;
+        }
+        // Books handed to another node are no longer shown here
+        snapshots.keySet().removeIf(instrumentId -> instrumentHandoff.handedTo(instrumentId) != null);
+        for (String instrumentId : orderBookManager.getInstrumentIds()) {
+            engineSequencer.publishSnapshotRequest(instrumentId, depth, this::onSnapshot);
+        }
+    }
+
+    /**
+     * Get the latest snapshot of a book
+     * @param instrumentId Instrument ID
+     * @return The snapshot, or null if the book has not been sampled yet
+     */
+    public BookSnapshot getSnapshot(String instrumentId) {
+        return snapshots.get(instrumentId);
+    }
+
+    /**
+     * Get the latest snapshot of every sampled book
+     * @return Map of instrument ID to snapshot
+     */
+    public Map<String, BookSnapshot> getSnapshots() {
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+    private void onSnapshot(BookSnapshot snapshot) {
+        BookSnapshot previous = snapshots.put(snapshot.getInstrumentId(), snapshot);
+
+        // Only log books that changed since the last sample
+        if (logEnabled && log.isInfoEnabled()
+                && (previous == null || previous.getVersion() != snapshot.getVersion())) {
+            log.info(snapshot.format());
+        }
+    }
+}
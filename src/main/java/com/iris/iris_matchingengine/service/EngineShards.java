@@ -0,0 +1,73 @@
+package com.iris.iris_matchingengine.service;
+
+import com.iris.common.id.IdGenerator;
+import com.iris.iris_matchingengine.sequencer.SourceOffsets;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Spreads instruments over the sequencer shards and owns each shard's ID generator and
+ * the inbound-orders offsets it has applied.
+ *
+ * Everything a shard issues while matching (order, execution, message and trade IDs) comes
+ * from its own laned generator, moved forward by the timestamps of the commands the shard
+ * sequences. A replica applying the same journal therefore issues the same IDs, and shards
+ * sharing the engine's node ID never collide.
+ */
+@Component
+public class EngineShards {
+    private final int shardCount;
+    private final IdGenerator[] ids;
+    private final SourceOffsets[] sourceOffsets;
+
+    public EngineShards(IdGenerator idGenerator, @Value("${matching.sequencer.shards:2}") int shardCount) {
+        this.shardCount = shardCount;
+        this.ids = new IdGenerator[shardCount];
+        this.sourceOffsets = new SourceOffsets[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            ids[shard] = new IdGenerator(idGenerator.getNodeId(), shard, shardCount);
+            sourceOffsets[shard] = new SourceOffsets();
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Get the shard an instrument is processed on
+     * @param instrumentId Instrument ID
+     * @return Shard index
+     */
+    public int shardOf(String instrumentId) {
+        return instrumentId == null ? 0 : Math.floorMod(instrumentId.hashCode(), shardCount);
+    }
+
+    /**
+     * Get a shard's ID generator; only the shard's own thread may use it
+     * @param shard Shard index
+     * @return The generator
+     */
+    public IdGenerator ids(int shard) {
+        return ids[shard];
+    }
+
+    /**
+     * Get the ID generator of the shard an instrument is processed on
+     * @param instrumentId Instrument ID
+     * @return The generator
+     */
+    public IdGenerator idsFor(String instrumentId) {
+        return ids[shardOf(instrumentId)];
+    }
+
+    /**
+     * Get the inbound-orders offsets a shard has applied; only the thread applying the
+     * shard's commands may use them
+     * @param shard Shard index
+     * @return The offsets
+     */
+    public SourceOffsets sourceOffsets(int shard) {
+        return sourceOffsets[shard];
+    }
+}
@@ -0,0 +1,66 @@
+package com.iris.iris_matchingengine.service;
+
+import com.iris.common.codec.EngineMessageCodec;
+import com.iris.common.codec.ExecutionReportBatchCodec;
+import com.iris.common.ipc.EngineTransport;
+import com.iris.common.kafka.ClientPartitioner;
+import com.iris.common.kafka.KafkaTopics;
+import com.iris.common.model.messages.ExecutionReportMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExecutionReportPublisher {
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final EngineMessageCodec messageCodec;
+    private final KafkaTopics kafkaTopics;
+    private final ClientPartitioner clientPartitioner;
+    // Present when reports go to a gateway on this host or in this JVM
+    private final Optional<EngineTransport> localTransport;
+
+    /**
+     * Publishes the execution reports one command produced. Each client's reports go out as
+     * one record, framed as a batch when there are several, so a sweep costs a record per
+     * client rather than per report and a client's reports arrive together and in order.
+     * Records go to the client's partition of the outbound executions topic, where only the
+     * gateway the client is logged on to reads them, or straight to a local gateway.
+     *
+     * @param reports the execution reports, in the order the engine produced them
+     */
+    public void publish(List<ExecutionReportMessage> reports) {
+        if (reports.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, List<byte[]>> byClient = new LinkedHashMap<>();
+            for (ExecutionReportMessage report : reports) {
+                byClient.computeIfAbsent(report.getClientId(), clientId -> new ArrayList<>())
+                        .add(messageCodec.encodeExecutionReport(report));
+            }
+            for (Map.Entry<String, List<byte[]>> client : byClient.entrySet()) {
+                List<byte[]> encoded = client.getValue();
+                // A lone report goes as it is, as readers from before batching expect
+                byte[] payload = encoded.size() == 1 ? encoded.get(0) : ExecutionReportBatchCodec.encode(encoded);
+                if (localTransport.isPresent()) {
+                    localTransport.get().sendExecutionReport(payload);
+                } else {
+                    kafkaTemplate.send(kafkaTopics.getOutboundExecutionsTopic(),
+                            clientPartitioner.partitionOf(client.getKey()), client.getKey(), payload);
+                }
+                log.debug("Sent {} execution reports to client {}", encoded.size(), client.getKey());
+            }
+        } catch (Exception e) {
+            log.error("Error sending execution reports", e);
+        }
+    }
+}
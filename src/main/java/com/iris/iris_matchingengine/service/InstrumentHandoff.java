@@ -0,0 +1,231 @@
+package com.iris.iris_matchingengine.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.common.kafka.CommandEnvelope;
+import com.iris.common.kafka.CommandType;
+import com.iris.common.kafka.KafkaTopics;
+import com.iris.common.model.messages.InstrumentTransferMessage;
+import com.iris.iris_matchingengine.sequencer.EngineCommandType;
+import com.iris.iris_matchingengine.sequencer.EngineEvent;
+import com.iris.iris_matchingengine.snapshot.BookImageCodec;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Hands books to other engine nodes without halting the instrument.
+ *
+ * The matching stage images a book when its transfer command comes up, and this class
+ * sends the image to the new partition as a book transfer command. The book stays here,
+ * and commands for it are held, until the broker has taken the image. The outcome comes
+ * back through the ring as a journaled handoff result, so a replica reaches the same
+ * state. If the image was taken, the book is dropped and the held commands are forwarded
+ * to the new partition. Only once they are sent does the move go out on the
+ * system-control topic, so every command a gateway routes to the new partition
+ * afterwards lands behind them. If the broker did not take the image, the book stays
+ * and the held commands are applied to it in order.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InstrumentHandoff {
+    public static final String HANDOFF_SENT = "HandoffSent";
+    public static final String HANDOFF_FAILED = "HandoffFailed";
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final KafkaTopics kafkaTopics;
+    private final ObjectMapper objectMapper;
+
+    // Instruments whose books this node handed away, and the partition they went to
+    private final Map<String, Integer> handedOff = new ConcurrentHashMap<>();
+
+    // Instruments whose books are on their way to another partition
+    private final Map<String, PendingHandoff> pending = new ConcurrentHashMap<>();
+
+    /**
+     * A handoff waiting for the broker to take the book
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class PendingHandoff {
+        private final InstrumentTransferMessage transfer;
+        // Commands that came up for the book meanwhile, in sequence
+        private final List<EngineEvent> held = new ArrayList<>();
+    }
+
+    /**
+     * Get the partition an instrument's book was handed to
+     * @param instrumentId Instrument ID
+     * @return Partition, or null if the book was not handed away
+     */
+    public Integer handedTo(String instrumentId) {
+        return instrumentId == null ? null : handedOff.get(instrumentId);
+    }
+
+    /**
+     * Record that a book was handed to another partition; matching thread only
+     * @param instrumentId Instrument ID
+     * @param partition Partition it went to
+     */
+    public void handOff(String instrumentId, int partition) {
+        handedOff.put(instrumentId, partition);
+    }
+
+    /**
+     * Record that a book was handed to this node; matching thread only
+     * @param instrumentId Instrument ID
+     */
+    public void receive(String instrumentId) {
+        handedOff.remove(instrumentId);
+    }
+
+    public Map<String, Integer> getHandedOff() {
+        return Collections.unmodifiableMap(handedOff);
+    }
+
+    /**
+     * Restore handed off instruments from a snapshot cut
+     * @param instruments Map of instrument ID to partition
+     */
+    public void restore(Map<String, Integer> instruments) {
+        handedOff.putAll(instruments);
+    }
+
+    /**
+     * Record that a book's image is being sent; matching thread only
+     * @param transfer Transfer command
+     */
+    public void begin(InstrumentTransferMessage transfer) {
+        pending.put(transfer.getInstrumentId(), new PendingHandoff(transfer));
+    }
+
+    /**
+     * Check whether an instrument's book is on its way to another partition
+     * @param instrumentId Instrument ID
+     * @return True until the handoff result comes up
+     */
+    public boolean isPending(String instrumentId) {
+        return !pending.isEmpty() && instrumentId != null && pending.containsKey(instrumentId);
+    }
+
+    /**
+     * Hold a command for a book on its way; matching thread only
+     * @param event Command, copied since its slot is reused
+     */
+    public void hold(EngineEvent event) {
+        pending.get(event.getInstrumentId()).getHeld().add(event.copyCommand());
+    }
+
+    /**
+     * End a handoff when its result comes up; matching thread only
+     * @param instrumentId Instrument ID
+     * @return The handoff and the commands held for it, or null if none was pending
+     */
+    public PendingHandoff complete(String instrumentId) {
+        return pending.remove(instrumentId);
+    }
+
+    public Map<String, PendingHandoff> getPending() {
+        return Collections.unmodifiableMap(pending);
+    }
+
+    /**
+     * Send a book image; forward the commands held for a book that has left, then announce
+     * the move; or forward a command for a book that left earlier. Runs on a stage after
+     * matching, in ring order, and never waits for the broker.
+     * @param event Matched event
+     * @param onResult Receives the handoff result to sequence, once the broker has
+     *                 taken the image or failed to; called off the producer thread
+     */
+    public void send(EngineEvent event, BiConsumer<InstrumentTransferMessage, byte[]> onResult) {
+        try {
+            if (event.getHandoff() != null) {
+                sendBook(event, onResult);
+            } else if (event.getType() == EngineCommandType.HANDOFF_RESULT) {
+                if (event.getForwardPartition() >= 0) {
+                    completeMove(event);
+                }
+            } else if (event.getForwardPartition() >= 0) {
+                forward(event, event.getForwardPartition());
+            }
+        } catch (Exception e) {
+            log.error("Failed to hand off {} for {}", event.getType(), event.getInstrumentId(), e);
+        }
+    }
+
+    private void sendBook(EngineEvent event, BiConsumer<InstrumentTransferMessage, byte[]> onResult) {
+        InstrumentTransferMessage transfer = event.getTransfer();
+        int orders = event.getHandoff().getCount();
+        kafkaTemplate.send(CommandEnvelope.record(kafkaTopics.getInboundOrdersTopic(), transfer.getToPartition(),
+                        transfer.getInstrumentId(), CommandType.BOOK_TRANSFER, BookImageCodec.encode(event.getHandoff())))
+                // Off the producer thread, which must never wait on a full ring
+                .whenCompleteAsync((result, error) -> {
+                    if (error != null) {
+                        log.error("Failed to send book {} to partition {}, keeping it", transfer.getInstrumentId(),
+                                transfer.getToPartition(), error);
+                    } else {
+                        log.info("Sent book {} with {} orders to partition {}", transfer.getInstrumentId(), orders,
+                                transfer.getToPartition());
+                    }
+                    InstrumentTransferMessage handoffResult = InstrumentTransferMessage.builder()
+                            .messageType(error == null ? HANDOFF_SENT : HANDOFF_FAILED)
+                            .messageId(transfer.getMessageId())
+                            .timestamp(transfer.getTimestamp())
+                            .instrumentId(transfer.getInstrumentId())
+                            .toPartition(transfer.getToPartition())
+                            .build();
+                    try {
+                        onResult.accept(handoffResult, objectMapper.writeValueAsBytes(handoffResult));
+                    } catch (Exception e) {
+                        log.error("Failed to sequence handoff result for {}", transfer.getInstrumentId(), e);
+                    }
+                });
+    }
+
+    private void completeMove(EngineEvent event) {
+        InstrumentTransferMessage transfer = event.getTransfer();
+        List<CompletableFuture<?>> sends = new ArrayList<>();
+        for (EngineEvent held : event.getForwards()) {
+            sends.add(forward(held, event.getForwardPartition()));
+        }
+        // Gateways route to the new partition once they see the move, so it goes out behind the held commands
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).whenComplete((result, error) -> {
+            if (error != null) {
+                log.error("Failed to forward commands held for {}", transfer.getInstrumentId(), error);
+            }
+            announceMove(transfer, event.getTimestamp());
+        });
+    }
+
+    private CompletableFuture<?> forward(EngineEvent event, int partition) {
+        return kafkaTemplate.send(CommandEnvelope.record(kafkaTopics.getInboundOrdersTopic(), partition,
+                event.getInstrumentId(), event.getType().getCommandType(), event.getPayload()));
+    }
+
+    private void announceMove(InstrumentTransferMessage transfer, long timestamp) {
+        try {
+            InstrumentTransferMessage moved = InstrumentTransferMessage.builder()
+                    .messageType("InstrumentMoved")
+                    .messageId(transfer.getMessageId())
+                    .timestamp(timestamp)
+                    .instrumentId(transfer.getInstrumentId())
+                    .toPartition(transfer.getToPartition())
+                    .build();
+            kafkaTemplate.send(kafkaTopics.getSystemControlTopic(), transfer.getInstrumentId(),
+                    objectMapper.writeValueAsBytes(moved));
+            log.info("Handed book {} to partition {}", transfer.getInstrumentId(), transfer.getToPartition());
+        } catch (Exception e) {
+            log.error("Failed to announce move of {}", transfer.getInstrumentId(), e);
+        }
+    }
+}
@@ -16,6 +16,8 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 @Service
 public class InstrumentService {
+    private static final double DEFAULT_PRICE_TICK_SIZE = 0.01;
+
     private final Map<String, Instrument> instruments = new ConcurrentHashMap<>();
     private final RestTemplate restTemplate = new RestTemplate();
 
@@ -36,6 +38,7 @@ public class InstrumentService {
                     try {
                         double lastSettlementPrice = getDoubleValue(data.get("lastSettlementPrice"));
                         double volumeTickSize = getDoubleValue(data.get("volumeTickSize"));
+                        double priceTickSize = getDoubleValue(data.get("priceTickSize"));
                         String tradingHours = (String) data.get("tradingHours");
 
                         Instrument instrument = Instrument.builder()
@@ -43,6 +46,7 @@ public class InstrumentService {
                                 .lastTradePrice(lastSettlementPrice) // Initialize with settlement price
                                 .lastSettlementPrice(lastSettlementPrice)
                                 .volumeTickSize(volumeTickSize)
+                                .priceTickSize(priceTickSize > 0 ? priceTickSize : DEFAULT_PRICE_TICK_SIZE)
                                 .tradingHours(tradingHours)
                                 .active(true)
                                 .build();
@@ -145,7 +149,17 @@ public class InstrumentService {
      */
     public double getVolumeTickSize(String instrumentId) {
         Instrument instrument = instruments.get(instrumentId);
-        return instrument != null ? instrument.getVolumeTickSize() : 1.0; // Default to 1.0 if not found
+        return instrument != null && instrument.getVolumeTickSize() > 0 ?
+                instrument.getVolumeTickSize() : 1.0; // Default to 1.0 if not found
+    }
+
+    /**
+     * Get the price tick size for an instrument
+     */
+    public double getPriceTickSize(String instrumentId) {
+        Instrument instrument = instruments.get(instrumentId);
+        return instrument != null && instrument.getPriceTickSize() > 0 ?
+                instrument.getPriceTickSize() : DEFAULT_PRICE_TICK_SIZE;
     }
 
     /**
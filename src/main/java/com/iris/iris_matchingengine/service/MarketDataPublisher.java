@@ -0,0 +1,85 @@
+package com.iris.iris_matchingengine.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.common.ipc.InProcessTransport;
+import com.iris.common.kafka.KafkaTopics;
+import com.iris.common.model.FixedPoint;
+import com.iris.common.model.MarketDataAction;
+import com.iris.common.model.MarketDataEntry;
+import com.iris.common.model.messages.MarketDataUpdateMessage;
+import com.iris.iris_matchingengine.model.MarketDataUpdate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Publishes recorded book updates to the market-data topic, keyed by instrument so each
+ * instrument's updates stay in order on one partition
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MarketDataPublisher {
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final KafkaTopics kafkaTopics;
+    private final ObjectMapper objectMapper;
+    // Present when the gateway runs in this JVM
+    private final Optional<InProcessTransport> inProcess;
+
+    /**
+     * Publish one update
+     * @param update Recorded update
+     * @param timestamp Time the command was sequenced, in epoch millis
+     */
+    public void publish(MarketDataUpdate update, long timestamp) {
+        try {
+            MarketDataUpdateMessage message = toMessage(update, timestamp);
+            byte[] payload = objectMapper.writeValueAsBytes(message);
+            if (inProcess.isPresent()) {
+                inProcess.get().sendMarketData(payload);
+            } else {
+                kafkaTemplate.send(kafkaTopics.getMarketDataTopic(), update.getInstrumentId(), payload);
+            }
+            log.debug("Sent market data {} {} for {}", message.getMessageType(), update.getSequence(),
+                    update.getInstrumentId());
+        } catch (Exception e) {
+            log.error("Error sending market data for {}", update.getInstrumentId(), e);
+        }
+    }
+
+    private static MarketDataUpdateMessage toMessage(MarketDataUpdate update, long timestamp) {
+        MarketDataUpdateMessage message = MarketDataUpdateMessage.builder()
+                .messageType(update.isSnapshot() ? "MarketDataSnapshot" : "MarketDataIncrementalRefresh")
+                .messageId((update.isSnapshot() ? "MDS-" : "MDI-") + update.getInstrumentId() + "-" + update.getSequence())
+                .timestamp(timestamp)
+                .instrumentId(update.getInstrumentId())
+                .sequence(update.getSequence())
+                .build();
+
+        List<MarketDataEntry> entries = new ArrayList<>(update.getCount());
+        for (int i = 0; i < update.getCount(); i++) {
+            double price = FixedPoint.toDouble(update.getPrice(i), update.getPriceScale());
+            double quantity = FixedPoint.toDouble(update.getQuantity(i), update.getQuantityScale());
+            entries.add(MarketDataEntry.builder()
+                    .action(update.getAction(i))
+                    .side(update.isBuy(i) ? "BUY" : "SELL")
+                    .price(price)
+                    .quantity(quantity)
+                    .orderCount(update.getOrderCount(i))
+                    .build());
+            // Last trade of the command, for consumers that only track prices
+            if (update.getAction(i) == MarketDataAction.TRADE) {
+                message.setLastTradePrice(price);
+                message.setLastTradeQuantity(quantity);
+                message.setLastTradeTime(timestamp);
+            }
+        }
+        message.setEntries(entries);
+        return message;
+    }
+}
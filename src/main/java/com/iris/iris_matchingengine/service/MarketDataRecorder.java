@@ -0,0 +1,75 @@
+package com.iris.iris_matchingengine.service;
+
+import com.iris.common.model.MarketDataAction;
+import com.iris.iris_matchingengine.model.BookListener;
+import com.iris.iris_matchingengine.model.MarketDataUpdate;
+import com.iris.iris_matchingengine.model.OrderBook;
+import com.iris.iris_matchingengine.model.PriceLevel;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listens to every order book and records each level change and trade into the market
+ * data update of the command being processed on the calling thread. Each change costs one
+ * append; levels are never rescanned. Changes made outside a command, such as a restore,
+ * are not recorded.
+ */
+@Component
+public class MarketDataRecorder implements BookListener {
+    // Update of the command in progress on each matching thread
+    private final ThreadLocal<MarketDataUpdate> current = new ThreadLocal<>();
+
+    /**
+     * Record book changes into an update until {@link #end} is called
+     * @param update Update of the command about to be processed
+     */
+    public void begin(MarketDataUpdate update) {
+        current.set(update);
+    }
+
+    public void end() {
+        current.set(null);
+    }
+
+    @Override
+    public void onLevel(OrderBook book, MarketDataAction action, boolean buy, PriceLevel level) {
+        MarketDataUpdate update = updateFor(book);
+        if (update != null) {
+            update.add(action, buy, level.getPrice(), level.getTotalQuantity(), level.getOrderCount());
+        }
+    }
+
+    @Override
+    public void onTrade(OrderBook book, boolean aggressorBuy, long price, long quantity) {
+        MarketDataUpdate update = updateFor(book);
+        if (update != null) {
+            update.add(MarketDataAction.TRADE, aggressorBuy, price, quantity, 0);
+        }
+    }
+
+    /**
+     * Copy every level of a book into an update, at the book's current market data sequence
+     * @param book The book
+     * @param update Update to fill
+     */
+    public void snapshot(OrderBook book, MarketDataUpdate update) {
+        update.start(book, book.getMarketDataSequence(), true);
+        for (PriceLevel level : book.getLevels(true)) {
+            update.add(MarketDataAction.NEW, true, level.getPrice(), level.getTotalQuantity(), level.getOrderCount());
+        }
+        for (PriceLevel level : book.getLevels(false)) {
+            update.add(MarketDataAction.NEW, false, level.getPrice(), level.getTotalQuantity(), level.getOrderCount());
+        }
+    }
+
+    /**
+     * Get the update to record into; the first change a command makes takes the book's
+     * next sequence
+     */
+    private MarketDataUpdate updateFor(OrderBook book) {
+        MarketDataUpdate update = current.get();
+        if (update != null && !update.isStarted()) {
+            update.start(book, book.nextMarketDataSequence(), false);
+        }
+        return update;
+    }
+}
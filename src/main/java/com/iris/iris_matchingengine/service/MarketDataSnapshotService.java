@@ -0,0 +1,36 @@
+package com.iris.iris_matchingengine.service;
+
+import com.iris.iris_matchingengine.sequencer.EngineSequencer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Publishes a full market data snapshot of every book at a fixed interval, so a consumer
+ * that missed an incremental update can start over from the next snapshot. The request
+ * goes through the sequencer, so the snapshot is taken between two commands and carries
+ * the sequence of the last update it includes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MarketDataSnapshotService {
+    private final EngineSequencer engineSequencer;
+    private final OrderBookManager orderBookManager;
+
+    @Value("${matching.market-data.enabled:true}")
+    private boolean enabled;
+
+    @Scheduled(fixedDelayString = "${matching.market-data.snapshot-interval-ms:5000}")
+    public void publishSnapshots() {
+        if (!enabled || !engineSequencer.isRunning()) {
+            return;
+        }
+        for (String instrumentId : orderBookManager.getInstrumentIds()) {
+            engineSequencer.publishMarketDataSnapshot(instrumentId);
+        }
+        log.debug("Requested market data snapshots of {} books", orderBookManager.getInstrumentIds().size());
+    }
+}
@@ -1,21 +1,56 @@
 package com.iris.iris_matchingengine.service;
 
+import com.iris.common.model.FixedPoint;
 import com.iris.iris_matchingengine.model.OrderBook;
+import com.iris.iris_matchingengine.model.OrderBookType;
+import com.iris.iris_matchingengine.model.SortedMapOrderBook;
+import com.iris.iris_matchingengine.model.TickLadderOrderBook;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class OrderBookManager {
     // Default matching algorithm
     private static final String DEFAULT_ALGORITHM = "PRICE_TIME_PRIORITY";
 
+    // Per-instrument book type override, e.g. matching.orderbook.type.AAPL=TICK_LADDER
+    private static final String BOOK_TYPE_PROPERTY_PREFIX = "matching.orderbook.type.";
+
+    private final InstrumentService instrumentService;
+    private final Environment environment;
+    private final EngineShards engineShards;
+    private final MarketDataRecorder marketDataRecorder;
+
+    @Value("${matching.orderbook.default-type:SORTED_MAP}")
+    private OrderBookType defaultBookType;
+
+    @Value("${matching.orderbook.ladder.initial-levels:4096}")
+    private int ladderInitialLevels;
+
+    @Value("${matching.orderbook.ladder.max-levels:1048576}")
+    private int ladderMaxLevels;
+
     // Map of instrument ID to order book
     private final Map<String, OrderBook> orderBooks = new ConcurrentHashMap<>();
 
+    // Instruments each client has sent orders for. Only ever grows, so a mass cancel
+    // fanned out from it cannot miss a book an earlier order is still on its way to.
+    private final Map<String, Set<String>> clientInstruments = new ConcurrentHashMap<>();
+
+    // Inbound-orders partition each instrument's orders last came on; a mass cancel for all
+    // instruments arrives on every partition, and each copy is in sequence only with its own
+    private final Map<String, Integer> instrumentPartitions = new ConcurrentHashMap<>();
+
     /**
      * Get or create an order book for an instrument
      * @param instrumentId Instrument ID
@@ -23,19 +58,114 @@ public class OrderBookManager {
      */
     public OrderBook getOrderBook(String instrumentId) {
         return orderBooks.computeIfAbsent(instrumentId,
-                id -> createOrderBook(id, DEFAULT_ALGORITHM));
+                id -> createOrderBook(id, DEFAULT_ALGORITHM, getBookType(id)));
+    }
+
+    /**
+     * Drop an instrument's book, once it has been handed to another node
+     * @param instrumentId Instrument ID
+     * @return The book, or null if there was none
+     */
+    public OrderBook removeOrderBook(String instrumentId) {
+        return orderBooks.remove(instrumentId);
+    }
+
+    /**
+     * Get the instruments that currently have a book
+     * @return Instrument IDs
+     */
+    public Set<String> getInstrumentIds() {
+        return orderBooks.keySet();
+    }
+
+    /**
+     * Record that a client has sent an order for an instrument
+     * @param clientId Client ID
+     * @param instrumentId Instrument ID
+     */
+    public void registerClientInstrument(String clientId, String instrumentId) {
+        if (clientId == null || instrumentId == null) {
+            return;
+        }
+        Set<String> instruments = clientInstruments.get(clientId);
+        if (instruments == null) {
+            instruments = clientInstruments.computeIfAbsent(clientId, id -> ConcurrentHashMap.newKeySet());
+        }
+        if (!instruments.contains(instrumentId)) {
+            instruments.add(instrumentId);
+        }
+    }
+
+    /**
+     * Record the inbound-orders partition an instrument's orders came on
+     * @param instrumentId Instrument ID
+     * @param partition Partition, ignored if negative
+     */
+    public void registerInstrumentPartition(String instrumentId, int partition) {
+        if (instrumentId == null || partition < 0) {
+            return;
+        }
+        Integer current = instrumentPartitions.get(instrumentId);
+        if (current == null || current != partition) {
+            instrumentPartitions.put(instrumentId, partition);
+        }
+    }
+
+    /**
+     * Get the inbound-orders partition an instrument's orders come on
+     * @param instrumentId Instrument ID
+     * @return Partition, or -1 if none has come since this engine started
+     */
+    public int getInstrumentPartition(String instrumentId) {
+        return instrumentPartitions.getOrDefault(instrumentId, -1);
+    }
+
+    /**
+     * Get the instruments a client may have resting orders in
+     * @param clientId Client ID
+     * @return Instrument IDs
+     */
+    public Set<String> getClientInstruments(String clientId) {
+        return clientInstruments.getOrDefault(clientId, Collections.emptySet());
+    }
+
+    /**
+     * Get the configured book type for an instrument
+     * @param instrumentId Instrument ID
+     * @return The book type
+     */
+    public OrderBookType getBookType(String instrumentId) {
+        return environment.getProperty(BOOK_TYPE_PROPERTY_PREFIX + instrumentId,
+                OrderBookType.class, defaultBookType);
     }
 
     /**
      * Create a new order book with the specified algorithm
      * @param instrumentId Instrument ID
      * @param algorithm Matching algorithm
+     * @param type Price level storage
      * @return The new order book
      */
-    private OrderBook createOrderBook(String instrumentId, String algorithm) {
-        log.info("Creating new order book for instrument: {} with algorithm: {}",
-                instrumentId, algorithm);
+    private OrderBook createOrderBook(String instrumentId, String algorithm, OrderBookType type) {
+        // Mantissa scales follow the tick sizes so every valid price and quantity is exact
+        double priceTickSize = instrumentService.getPriceTickSize(instrumentId);
+        int priceScale = FixedPoint.scaleOf(priceTickSize);
+        int quantityScale = FixedPoint.scaleOf(instrumentService.getVolumeTickSize(instrumentId));
+
+        log.info("Creating new {} order book for instrument: {} with algorithm: {}, price scale: {}, quantity scale: {}",
+                type, instrumentId, algorithm, priceScale, quantityScale);
 
-        return new OrderBook(instrumentId, algorithm);
+        // Trade IDs come from the owning shard, so replicas issue the same ones
+        OrderBook book;
+        if (type == OrderBookType.TICK_LADDER) {
+            book = new TickLadderOrderBook(instrumentId, algorithm, priceScale, quantityScale,
+                    FixedPoint.toMantissa(priceTickSize, priceScale), ladderInitialLevels,
+                    ladderMaxLevels, engineShards.idsFor(instrumentId));
+        } else {
+            book = new SortedMapOrderBook(instrumentId, algorithm, priceScale, quantityScale,
+                    engineShards.idsFor(instrumentId));
+        }
+        book.setListener(marketDataRecorder);
+        return book;
     }
-}
\ No newline at end of file
+}
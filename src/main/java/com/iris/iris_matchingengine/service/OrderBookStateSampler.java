@@ -0,0 +1,112 @@
+package com.iris.iris_matchingengine.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.common.model.db.OrderBookState;
+import com.iris.iris_matchingengine.model.BookSnapshot;
+import com.iris.iris_matchingengine.sequencer.EngineSequencer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Samples every book at a fixed cadence and records its depth for history. Samples are
+ * the same level copies the inspection endpoint uses, taken through the sequencer from
+ * the levels' running totals, and a book's state is published only when its top of book
+ * moved since the last one published.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderBookStateSampler {
+    private final EngineSequencer engineSequencer;
+    private final OrderBookManager orderBookManager;
+    private final InstrumentHandoff instrumentHandoff;
+    private final AsyncEventPublisher asyncEventPublisher;
+    private final ObjectMapper objectMapper;
+
+    @Value("${matching.book-state.enabled:true}")
+    private boolean enabled;
+
+    @Value("${matching.book-state.depth:10}")
+    private int depth;
+
+    // Top of book last published per instrument
+    private final Map<String, TopOfBook> published = new ConcurrentHashMap<>();
+
+    private record TopOfBook(BookSnapshot.DepthLevel bid, BookSnapshot.DepthLevel ask) {
+    }
+
+    @Scheduled(fixedDelayString = "${matching.book-state.interval-ms:1000}")
+    public void sample() {
+        if (!enabled || !engineSequencer.isRunning()) {
+            return;
+        }
+        // Books handed to another node are recorded there
+        published.keySet().removeIf(instrumentId -> instrumentHandoff.handedTo(instrumentId) != null);
+        for (String instrumentId : orderBookManager.getInstrumentIds()) {
+            engineSequencer.publishSnapshotRequest(instrumentId, depth, this::onSnapshot);
+        }
+    }
+
+    private void onSnapshot(BookSnapshot snapshot) {
+        List<BookSnapshot.DepthLevel> bids = snapshot.getBids();
+        List<BookSnapshot.DepthLevel> asks = snapshot.getAsks();
+        TopOfBook top = new TopOfBook(level(bids, 0), level(asks, 0));
+        if (top.equals(published.get(snapshot.getInstrumentId()))) {
+            return;
+        }
+
+        try {
+            asyncEventPublisher.publishOrderBookState(toState(snapshot, bids, asks));
+            published.put(snapshot.getInstrumentId(), top);
+        } catch (Exception e) {
+            log.error("Failed to record book state for {}", snapshot.getInstrumentId(), e);
+        }
+    }
+
+    private OrderBookState toState(BookSnapshot snapshot, List<BookSnapshot.DepthLevel> bids,
+                                   List<BookSnapshot.DepthLevel> asks) throws Exception {
+        return OrderBookState.builder()
+                .instrumentId(snapshot.getInstrumentId())
+                .timestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(snapshot.getTimestamp()), ZoneId.systemDefault()))
+                .bestBidPrice(price(bids, 0))
+                .bestBidQuantity(quantity(bids, 0))
+                .secondBidPrice(price(bids, 1))
+                .secondBidQuantity(quantity(bids, 1))
+                .thirdBidPrice(price(bids, 2))
+                .thirdBidQuantity(quantity(bids, 2))
+                .bestAskPrice(price(asks, 0))
+                .bestAskQuantity(quantity(asks, 0))
+                .secondAskPrice(price(asks, 1))
+                .secondAskQuantity(quantity(asks, 1))
+                .thirdAskPrice(price(asks, 2))
+                .thirdAskQuantity(quantity(asks, 2))
+                .bidsJson(objectMapper.writeValueAsString(bids))
+                .asksJson(objectMapper.writeValueAsString(asks))
+                .build();
+    }
+
+    private static BookSnapshot.DepthLevel level(List<BookSnapshot.DepthLevel> levels, int i) {
+        return i < levels.size() ? levels.get(i) : null;
+    }
+
+    private static BigDecimal price(List<BookSnapshot.DepthLevel> levels, int i) {
+        BookSnapshot.DepthLevel level = level(levels, i);
+        return level == null ? null : BigDecimal.valueOf(level.getPrice());
+    }
+
+    private static BigDecimal quantity(List<BookSnapshot.DepthLevel> levels, int i) {
+        BookSnapshot.DepthLevel level = level(levels, i);
+        return level == null ? null : BigDecimal.valueOf(level.getQuantity());
+    }
+}
@@ -1,25 +1,28 @@
 package com.iris.iris_matchingengine.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.common.id.IdGenerator;
+import com.iris.common.kafka.ShardMap;
 import com.iris.common.model.Execution;
-
+import com.iris.common.model.FixedPoint;
 import com.iris.common.model.NewOrder;
 import com.iris.common.model.db.Order;
 import com.iris.common.model.db.Trade;
 import com.iris.common.model.messages.*;
+import com.iris.iris_matchingengine.model.BookImage;
 import com.iris.iris_matchingengine.model.MatchResult;
+import com.iris.iris_matchingengine.model.MatchSink;
 import com.iris.iris_matchingengine.model.OrderBook;
 import com.iris.iris_matchingengine.model.OrderBookEntry;
+import com.iris.iris_matchingengine.sequencer.EngineCommandType;
+import com.iris.iris_matchingengine.sequencer.EngineEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.UUID;
+import java.time.ZoneId;
+import java.util.Objects;
 
 @Slf4j
 @Service
@@ -27,39 +30,40 @@ import java.util.UUID;
 public class OrderProcessingService {
     private final InstrumentService instrumentService;
     private final OrderBookManager orderBookManager;
-    private final KafkaTemplate<String, byte[]> kafkaTemplate;
-    private final String executionTopic = "outbound-executions";
-    private final ObjectMapper objectMapper;
-
+    private final EngineShards engineShards;
+    private final InstrumentHandoff instrumentHandoff;
+    private final ShardMap shardMap;
+    private final MarketDataRecorder marketDataRecorder;
 
-    private final AsyncEventPublisher asyncEventPublisher;
+    // Reused for every match; one per sequencer shard thread
+    private final ThreadLocal<ExecutionSink> executionSinks = ThreadLocal.withInitial(ExecutionSink::new);
 
     // Add these helper methods to create DB entities
-    private Order createDbOrder(OrderBookEntry entry, String status) {
+    private Order createDbOrder(EngineEvent event, OrderBook orderBook, OrderBookEntry entry, String status) {
         return Order.builder()
                 .orderId(entry.getOrderId())
                 .clOrdId(entry.getClOrdId())
                 .instrumentId(entry.getInstrumentId())
                 .side(entry.getSide())
-                .quantity(BigDecimal.valueOf(entry.getOriginalQuantity()))
-                .remainingQuantity(BigDecimal.valueOf(entry.getRemainingQuantity()))
-                .price(BigDecimal.valueOf(entry.getPrice()))
+                .quantity(FixedPoint.toDecimal(entry.getOriginalQuantity(), orderBook.getQuantityScale()))
+                .remainingQuantity(FixedPoint.toDecimal(entry.getRemainingQuantity(), orderBook.getQuantityScale()))
+                .price(FixedPoint.toDecimal(entry.getPrice(), orderBook.getPriceScale()))
                 .orderType(entry.getOrderType())
                 .timeInForce(entry.getTimeInForce())
                 .clientId(entry.getClientId())
                 .sourceIp(entry.getSourceIp())
-                .entryTime(LocalDateTime.now())
-                .lastUpdatedTime(LocalDateTime.now())
+                .entryTime(sequencedAt(event))
+                .lastUpdatedTime(sequencedAt(event))
                 .status(status)
                 .build();
     }
 
-    private Trade createDbTrade(MatchResult match) {
+    private Trade createDbTrade(EngineEvent event, OrderBook orderBook, MatchResult match, String tradeId) {
         return Trade.builder()
-                .tradeId(match.getTradeId())
+                .tradeId(tradeId)
                 .instrumentId(match.getAggressorOrder().getInstrumentId())
-                .price(BigDecimal.valueOf(match.getMatchPrice()))
-                .quantity(BigDecimal.valueOf(match.getMatchedQuantity()))
+                .price(FixedPoint.toDecimal(match.getMatchPrice(), orderBook.getPriceScale()))
+                .quantity(FixedPoint.toDecimal(match.getMatchedQuantity(), orderBook.getQuantityScale()))
                 .buyerOrderId(match.getAggressorOrder().getSide().equals("BUY") ?
                         match.getAggressorOrder().getOrderId() :
                         match.getRestingOrder().getOrderId())
@@ -78,29 +82,243 @@ public class OrderProcessingService {
                 .sellerClientId(match.getAggressorOrder().getSide().equals("SELL") ?
                         match.getAggressorOrder().getClientId() :
                         match.getRestingOrder().getClientId())
-                .tradeTime(LocalDateTime.now())
+                .tradeTime(sequencedAt(event))
                 .build();
     }
 
 
 
+    /**
+     * Process a sequenced command. Must be called from the shard thread that owns
+     * the command's order book; outputs are appended to the event.
+     * @param event Sequenced command
+     */
+    public void process(EngineEvent event) {
+        // Only journaled commands move the IDs on; a replica never sees the others
+        if (event.getType().getCommandType() != null) {
+            ids(event).advanceTo(event.getTimestamp());
+        }
+        // The book has gone to another node; whatever was still on its way here follows it
+        Integer handedTo = instrumentHandoff.handedTo(event.getInstrumentId());
+        if (handedTo != null && forward(event, handedTo)) {
+            return;
+        }
+        // The book is on its way; what comes up for it meanwhile waits for the broker's answer
+        if (instrumentHandoff.isPending(event.getInstrumentId()) && hold(event)) {
+            return;
+        }
+        // Book changes are recorded as they are made, into this event's market data
+        marketDataRecorder.begin(event.getMarketData());
+        try {
+            dispatch(event);
+        } finally {
+            marketDataRecorder.end();
+        }
+    }
+
+    /**
+     * Apply a command to its book, or copy the book for a request
+     * @param event Sequenced command
+     */
+    private void dispatch(EngineEvent event) {
+        switch (event.getType()) {
+            case NEW_ORDER:
+                processNewOrder(event.getNewOrder(), event);
+                break;
+            case CANCEL_ORDER:
+                processCancelOrder(event.getCancel(), event);
+                break;
+            case REPLACE_ORDER:
+                processReplaceOrder(event.getReplace(), event);
+                break;
+            case MASS_CANCEL:
+                processMassCancel(event.getMassCancel(), event);
+                break;
+            case TRANSFER_OUT:
+                processTransferOut(event.getTransfer(), event);
+                break;
+            case BOOK_TRANSFER:
+                processBookTransfer(event.getBookImage());
+                break;
+            case HANDOFF_RESULT:
+                processHandoffResult(event.getTransfer(), event);
+                break;
+            case HANDOFF_RETRY:
+                // Not journaled; sends the image again after a restart that lost the answer
+                if (instrumentHandoff.isPending(event.getInstrumentId())) {
+                    event.setHandoff(orderBookManager.getOrderBook(event.getInstrumentId()).image());
+                }
+                break;
+            case MARKET_DATA_SNAPSHOT:
+                marketDataRecorder.snapshot(orderBookManager.getOrderBook(event.getInstrumentId()),
+                        event.getMarketData());
+                break;
+            case BOOK_SNAPSHOT:
+                // Copy only; formatting happens on the stage that delivers it
+                event.setSnapshot(orderBookManager.getOrderBook(event.getInstrumentId())
+                        .snapshot(event.getSnapshotDepth()));
+                break;
+        }
+    }
+
+    /**
+     * Pass a command on to the partition its book was handed to
+     * @param event Sequenced command
+     * @param partition Partition holding the book
+     * @return False if the command is to be processed here after all
+     */
+    private boolean forward(EngineEvent event, int partition) {
+        switch (event.getType()) {
+            case NEW_ORDER:
+            case CANCEL_ORDER:
+            case REPLACE_ORDER:
+                event.setForwardPartition(partition);
+                return true;
+            case MASS_CANCEL:
+                // A mass cancel for all instruments reached every partition already
+                if (event.getMassCancel().getMassCancel().getInstrumentId() != null) {
+                    event.setForwardPartition(partition);
+                }
+                return true;
+            case TRANSFER_OUT:
+                log.warn("Book {} was already handed to partition {}", event.getInstrumentId(), partition);
+                return true;
+            case BOOK_TRANSFER:
+                // The book is coming back
+                return false;
+            default:
+                // Nothing to inspect here any more
+                return true;
+        }
+    }
+
+    /**
+     * Hold a command for a book on its way to another partition
+     * @param event Sequenced command
+     * @return False if the command is to be processed here now
+     */
+    private boolean hold(EngineEvent event) {
+        switch (event.getType()) {
+            case NEW_ORDER:
+            case CANCEL_ORDER:
+            case REPLACE_ORDER:
+            case MASS_CANCEL:
+                instrumentHandoff.hold(event);
+                return true;
+            case TRANSFER_OUT:
+                log.warn("Book {} is already being handed to another partition", event.getInstrumentId());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Hand a book to another partition. The book is imaged in sequence, so every command
+     * before this one was applied to it; it stays here until the broker has the image,
+     * and the commands after this one are held until then.
+     * @param message Transfer message
+     * @param event Event receiving the image to send
+     */
+    private void processTransferOut(InstrumentTransferMessage message, EngineEvent event) {
+        String instrumentId = message.getInstrumentId();
+        shardMap.checkPartition(message.getToPartition());
+        OrderBook orderBook = orderBookManager.getOrderBook(instrumentId);
+        BookImage image = orderBook.image();
+        instrumentHandoff.begin(message);
+        event.setHandoff(image);
+        log.info("Handing book {} with {} orders to partition {}", instrumentId, image.getCount(),
+                message.getToPartition());
+    }
+
+    /**
+     * Finish a handoff once the broker has answered. If it took the image, the book is
+     * dropped and the held commands follow it; if not, the book stays and they are
+     * applied to it, as if the transfer had never been asked for.
+     * @param message Handoff result
+     * @param event Event receiving the held commands to forward, or their outputs
+     */
+    private void processHandoffResult(InstrumentTransferMessage message, EngineEvent event) {
+        String instrumentId = message.getInstrumentId();
+        InstrumentHandoff.PendingHandoff pending = instrumentHandoff.complete(instrumentId);
+        if (pending == null) {
+            log.warn("No handoff of {} waiting for a result", instrumentId);
+            return;
+        }
+        if (InstrumentHandoff.HANDOFF_SENT.equals(message.getMessageType())) {
+            int partition = pending.getTransfer().getToPartition();
+            orderBookManager.removeOrderBook(instrumentId);
+            instrumentHandoff.handOff(instrumentId, partition);
+            event.setForwardPartition(partition);
+            for (EngineEvent held : pending.getHeld()) {
+                // Same rule as for commands that come up after the book left
+                if (held.getType() != EngineCommandType.MASS_CANCEL
+                        || held.getMassCancel().getMassCancel().getInstrumentId() != null) {
+                    event.addForward(held);
+                }
+            }
+            log.info("Handed book {} to partition {}, forwarding {} held commands", instrumentId, partition,
+                    event.getForwards().size());
+            return;
+        }
+        log.warn("Handoff of {} failed, applying {} held commands here", instrumentId, pending.getHeld().size());
+        for (EngineEvent held : pending.getHeld()) {
+            switch (held.getType()) {
+                case NEW_ORDER:
+                    processNewOrder(held.getNewOrder(), event);
+                    break;
+                case CANCEL_ORDER:
+                    processCancelOrder(held.getCancel(), event);
+                    break;
+                case REPLACE_ORDER:
+                    processReplaceOrder(held.getReplace(), event);
+                    break;
+                case MASS_CANCEL:
+                    processMassCancel(held.getMassCancel(), event);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Take over a book handed over by another node
+     * @param image Book image
+     */
+    private void processBookTransfer(BookImage image) {
+        OrderBook existing = orderBookManager.getOrderBook(image.getInstrumentId());
+        // A sender that restarted before hearing back sends its image again
+        if (image.getMarketDataSequence() > 0 && existing.getMarketDataSequence() >= image.getMarketDataSequence()) {
+            log.warn("Ignoring image of book {} older than the book here", image.getInstrumentId());
+            return;
+        }
+        instrumentHandoff.receive(image.getInstrumentId());
+        orderBookManager.getOrderBook(image.getInstrumentId()).restore(image);
+        for (String clientId : image.getClientIds()) {
+            orderBookManager.registerClientInstrument(clientId, image.getInstrumentId());
+        }
+        log.info("Took over book {} with {} orders", image.getInstrumentId(), image.getCount());
+    }
+
     /**
      * Process a new order
      * @param message New order message
+     * @param event Event receiving the outputs
      */
-    public void processNewOrder(NewOrderMessage message) {
+    private void processNewOrder(NewOrderMessage message, EngineEvent event) {
         NewOrder newOrder = message.getNewOrder();
         String clientId = message.getClientId();
 
         // Validate instrument
         if (!instrumentService.isValidInstrument(newOrder.getInstrumentId())) {
-            sendRejection(newOrder, clientId, "Invalid instrument");
+            sendRejection(event, newOrder, clientId, "Invalid instrument");
             return;
         }
 
         // Validate order type and other fields
         if (!isValidOrderType(newOrder)) {
-            sendRejection(newOrder, clientId, "Invalid order type or parameters");
+            sendRejection(event, newOrder, clientId, "Invalid order type or parameters");
             return;
         }
 
@@ -110,45 +328,67 @@ public class OrderProcessingService {
         } else if ("SELL".equalsIgnoreCase(newOrder.getSide())) {
             isBuyOrder = false;
         } else {
-            sendRejection(newOrder, clientId, "Invalid order side: " + newOrder.getSide());
+            sendRejection(event, newOrder, clientId, "Invalid order side: " + newOrder.getSide());
             return;
         }
 
-        // Create order book entry
-        OrderBookEntry entry = OrderBookEntry.fromOrder(newOrder, clientId, 0);
-        asyncEventPublisher.publishOrder(createDbOrder(entry, "NEW"));
-
-
         // Process order depending on side (buy or sell)
         OrderBook orderBook = orderBookManager.getOrderBook(newOrder.getInstrumentId());
-        List<MatchResult> matches;
+        boolean isMarketOrder = "MARKET".equalsIgnoreCase(newOrder.getOrderType());
 
+        // Convert to fixed point once on the way in; everything downstream works on mantissas
+        if (!FixedPoint.isExact(newOrder.getQuantity(), orderBook.getQuantityScale())) {
+            sendRejection(event, newOrder, clientId, "Quantity not on lot size: " + newOrder.getQuantity());
+            return;
+        }
+        long quantity = FixedPoint.toMantissa(newOrder.getQuantity(), orderBook.getQuantityScale());
+        long price = 0;
+        if (!isMarketOrder) {
+            price = FixedPoint.toMantissa(newOrder.getPrice(), orderBook.getPriceScale());
+            if (!FixedPoint.isExact(newOrder.getPrice(), orderBook.getPriceScale()) || !orderBook.isValidPrice(price)) {
+                sendRejection(event, newOrder, clientId, "Price not on tick or out of range: " + newOrder.getPrice());
+                return;
+            }
+        }
+
+        // Create order book entry
+        OrderBookEntry entry = orderBook.acquireEntry().init(newOrder, orderId(event, newOrder.getOrderId()),
+                clientId, price, quantity, Instant.ofEpochMilli(event.getTimestamp()));
+        event.addOrder(createDbOrder(event, orderBook, entry, "NEW"));
+
+        // Match and send execution reports as fills happen
+        ExecutionSink executionSink = executionSinks.get();
+        executionSink.start(event, orderBook, entry, clientId);
         if (isBuyOrder) {
-            matches = orderBook.matchBuyOrder(entry);
+            orderBook.matchBuyOrder(entry, executionSink);
         } else {
-            matches = orderBook.matchSellOrder(entry);
+            orderBook.matchSellOrder(entry, executionSink);
         }
+        executionSink.finish();
 
-        // Process matches and send execution reports
-        processMatches(matches, entry, clientId);
-
-        // If order has remaining quantity and is not IOC, add to book
-        if (entry.getRemainingQuantity() > 0 && !"IOC".equals(entry.getTimeInForce())) {
+        // If order has remaining quantity and is not IOC or market, add to book
+        if (entry.getRemainingQuantity() > 0 && !"IOC".equals(entry.getTimeInForce()) && !isMarketOrder) {
             orderBook.addOrder(entry);
-            sendExecutionReport(entry, clientId, "NEW", null, null);
-            asyncEventPublisher.publishOrder(createDbOrder(entry, "NEW"));
-        } else if ("IOC".equals(entry.getTimeInForce()) && entry.getRemainingQuantity() > 0) {
-            // For IOC orders, cancel any remaining quantity
-            sendExecutionReport(entry, clientId, "CANCELED", "Immediate-or-cancel", null);
-            asyncEventPublisher.publishOrder(createDbOrder(entry, "CANCELED"));
+            sendExecutionReport(event, orderBook, entry, clientId, "NEW", null, null);
+            event.addOrder(createDbOrder(event, orderBook, entry, "NEW"));
+            return;
+        } else if (entry.getRemainingQuantity() > 0) {
+            // For IOC and market orders, cancel any remaining quantity
+            sendExecutionReport(event, orderBook, entry, clientId, "CANCELED",
+                    isMarketOrder ? "Market order remainder canceled" : "Immediate-or-cancel", null);
+            event.addOrder(createDbOrder(event, orderBook, entry, "CANCELED"));
         }
+
+        // The order never rested, so its entry can be recycled
+        orderBook.releaseEntry(entry);
     }
 
     /**
      * Process a cancel order request
      * @param message Cancel order message
+     * @param event Event receiving the outputs
      */
-    public void processCancelOrder(CancelOrderMessage message) {
+    private void processCancelOrder(CancelOrderMessage message, EngineEvent event) {
         CancelOrderRequest cancel = message.getCancel();
         String clientId = message.getClientId();
 
@@ -160,12 +400,13 @@ public class OrderProcessingService {
         if (cancel.getOrigOrderId() != null) {
             order = orderBook.getOrderById(cancel.getOrigOrderId());
         } else if (cancel.getOrigClOrdId() != null) {
-            order = orderBook.getOrderByClientOrderId(cancel.getOrigClOrdId());
+            order = orderBook.getOrderByClientOrderId(clientId, cancel.getOrigClOrdId());
         }
 
-        if (order == null) {
+        // Another client's order is treated as not found, so its existence is not given away
+        if (order == null || !Objects.equals(order.getClientId(), clientId)) {
             // Order not found, send rejection
-            sendCancelReject(cancel, clientId, "Order not found");
+            sendCancelReject(event, cancel, clientId, "Order not found");
             return;
         }
 
@@ -174,15 +415,38 @@ public class OrderProcessingService {
 
         // Send execution report
         if (canceledOrder != null) {
-            sendExecutionReport(canceledOrder, clientId, "CANCELED", "Order canceled by user", cancel.getClOrdId());
+            sendExecutionReport(event, orderBook, canceledOrder, clientId, "CANCELED", "Order canceled by user", cancel.getClOrdId());
+            orderBook.releaseEntry(canceledOrder);
         }
     }
 
+    /**
+     * Process a mass cancel for the event's instrument; the sequencer fans out mass
+     * cancels for all instruments into one event per book. Only the client's own orders
+     * are visited, through the book's client index.
+     * @param message Mass cancel message
+     * @param event Event receiving the outputs
+     */
+    private void processMassCancel(MassCancelMessage message, EngineEvent event) {
+        MassCancelRequest massCancel = message.getMassCancel();
+        String clientId = message.getClientId();
+        OrderBook orderBook = orderBookManager.getOrderBook(event.getInstrumentId());
+
+        String text = "CANCEL_ON_DISCONNECT".equals(massCancel.getCancelType()) ?
+                "Order canceled on disconnect" : "Order canceled by mass cancel";
+        int canceled = orderBook.cancelClientOrders(clientId, massCancel.getSide(), order ->
+                sendExecutionReport(event, orderBook, order, clientId, "CANCELED", text, null));
+
+        log.info("Mass cancel {} for client {} canceled {} orders in {}",
+                massCancel.getClOrdId(), clientId, canceled, event.getInstrumentId());
+    }
+
     /**
      * Process a replace order request
      * @param message Replace order message
+     * @param event Event receiving the outputs
      */
-    public void processReplaceOrder(ReplaceOrderMessage message) {
+    private void processReplaceOrder(ReplaceOrderMessage message, EngineEvent event) {
         ReplaceOrderRequest replace = message.getReplace();
         String clientId = message.getClientId();
 
@@ -194,89 +458,139 @@ public class OrderProcessingService {
         if (replace.getOrigOrderId() != null) {
             origOrder = orderBook.getOrderById(replace.getOrigOrderId());
         } else if (replace.getOrigClOrdId() != null) {
-            origOrder = orderBook.getOrderByClientOrderId(replace.getOrigClOrdId());
+            origOrder = orderBook.getOrderByClientOrderId(clientId, replace.getOrigClOrdId());
         }
 
-        if (origOrder == null) {
+        // Another client's order is treated as not found, so its existence is not given away
+        if (origOrder == null || !Objects.equals(origOrder.getClientId(), clientId)) {
             // Order not found, send rejection
-            sendReplaceReject(replace, clientId, "Original order not found");
+            sendReplaceReject(event, replace, clientId, "Original order not found");
             return;
         }
 
-        // Create new order with replace parameters
-        OrderBookEntry newOrder = OrderBookEntry.builder()
-                .orderId(replace.getNewOrderId() != null ? replace.getNewOrderId() : UUID.randomUUID().toString())
-                .clOrdId(replace.getClOrdId())
-                .instrumentId(replace.getInstrumentId())
-                .side(replace.getSide())
-                .originalQuantity(replace.getQuantity())
-                .remainingQuantity(replace.getQuantity())
-                .price(replace.getPrice())
-                .orderType(replace.getOrderType())
-                .timeInForce(origOrder.getTimeInForce()) // Typically doesn't change
-                .entryTime(Instant.now())
-                .clientId(clientId)
-                .sourceIp(replace.getSourceIpAddress())
-                .build();
-
-        // Replace the order (cancel-replace)
-        OrderBookEntry canceledOrder = orderBook.replaceOrder(origOrder.getOrderId(), newOrder);
-
-        // Send execution reports
-        if (canceledOrder != null) {
-            // Send canceled for original order
-            sendExecutionReport(canceledOrder, clientId, "REPLACED", "Order replaced", replace.getClOrdId());
+        if (replace.getPrice() == null) {
+            sendReplaceReject(event, replace, clientId, "Price is required for replace");
+            return;
+        }
+        if (!FixedPoint.isExact(replace.getQuantity(), orderBook.getQuantityScale())) {
+            sendReplaceReject(event, replace, clientId, "Quantity not on lot size: " + replace.getQuantity());
+            return;
+        }
+        long price = FixedPoint.toMantissa(replace.getPrice(), orderBook.getPriceScale());
+        if (!FixedPoint.isExact(replace.getPrice(), orderBook.getPriceScale()) || !orderBook.isValidPrice(price)) {
+            sendReplaceReject(event, replace, clientId, "Price not on tick or out of range: " + replace.getPrice());
+            return;
+        }
+        long quantity = FixedPoint.toMantissa(replace.getQuantity(), orderBook.getQuantityScale());
 
-            // Process the new order like a regular new order
-            List<MatchResult> matches;
+        if (replace.getSide() != null && !replace.getSide().equalsIgnoreCase(origOrder.getSide())) {
+            sendReplaceReject(event, replace, clientId, "Side cannot be changed");
+            return;
+        }
+        long filled = origOrder.getOriginalQuantity() - origOrder.getRemainingQuantity();
+        if (quantity <= filled) {
+            sendReplaceReject(event, replace, clientId, "Quantity not above filled quantity");
+            return;
+        }
 
-            if ("BUY".equalsIgnoreCase(newOrder.getSide())) {
-                matches = orderBook.matchBuyOrder(newOrder);
-            } else {
-                matches = orderBook.matchSellOrder(newOrder);
-            }
+        // Fast path: same price and no more quantity keeps the order where it sits
+        boolean sameType = replace.getOrderType() == null || replace.getOrderType().equalsIgnoreCase(origOrder.getOrderType());
+        if (price == origOrder.getPrice() && sameType && orderBook.amendOrder(origOrder, replace.getClOrdId(), quantity)) {
+            sendExecutionReport(event, orderBook, origOrder, clientId, "REPLACED", "Order amended", null);
+            event.addOrder(createDbOrder(event, orderBook, origOrder, "REPLACED"));
+            return;
+        }
 
-            // Process matches and send execution reports
-            processMatches(matches, newOrder, clientId);
+        // Price changes and quantity increases lose priority: cancel, then enter the rest as a new order
+        OrderBookEntry canceledOrder = orderBook.cancelOrder(origOrder.getOrderId());
+        sendExecutionReport(event, orderBook, canceledOrder, clientId, "REPLACED", "Order replaced", replace.getClOrdId());
+        String side = canceledOrder.getSide();
+        String orderType = replace.getOrderType() != null ? replace.getOrderType() : canceledOrder.getOrderType();
+        String timeInForce = canceledOrder.getTimeInForce(); // Typically doesn't change
+        orderBook.releaseEntry(canceledOrder);
+
+        OrderBookEntry newOrder = orderBook.acquireEntry();
+        newOrder.setOrderId(orderId(event, replace.getNewOrderId()));
+        newOrder.setClOrdId(replace.getClOrdId());
+        newOrder.setInstrumentId(replace.getInstrumentId());
+        newOrder.setSide(side);
+        newOrder.setOriginalQuantity(quantity);
+        newOrder.setRemainingQuantity(quantity - filled);
+        newOrder.setPrice(price);
+        newOrder.setOrderType(orderType);
+        newOrder.setTimeInForce(timeInForce);
+        newOrder.setEntryTime(Instant.ofEpochMilli(event.getTimestamp()));
+        newOrder.setClientId(clientId);
+        newOrder.setSourceIp(replace.getSourceIpAddress());
+
+        // Process the new order like a regular new order
+        ExecutionSink executionSink = executionSinks.get();
+        executionSink.start(event, orderBook, newOrder, clientId);
+        if ("BUY".equalsIgnoreCase(newOrder.getSide())) {
+            orderBook.matchBuyOrder(newOrder, executionSink);
+        } else {
+            orderBook.matchSellOrder(newOrder, executionSink);
+        }
+        executionSink.finish();
 
-            // If order has remaining quantity, add to book (already done in replaceOrder)
-            if (newOrder.getRemainingQuantity() > 0) {
-                sendExecutionReport(newOrder, clientId, "NEW", "Replacement order", null);
-            }
+        // If order has remaining quantity, rest it with a new time priority
+        if (newOrder.getRemainingQuantity() > 0) {
+            orderBook.addOrder(newOrder);
+            sendExecutionReport(event, orderBook, newOrder, clientId, "NEW", "Replacement order", null);
+            event.addOrder(createDbOrder(event, orderBook, newOrder, "NEW"));
+        } else {
+            orderBook.releaseEntry(newOrder);
         }
     }
 
     /**
-     * Process matches and send execution reports
-     * @param matches List of matches
-     * @param aggressorOrder Incoming order
-     * @param clientId Client ID
+     * Sends execution reports and DB updates for each fill of an incoming order
      */
-    private void processMatches(List<MatchResult> matches, OrderBookEntry aggressorOrder, String clientId) {
-        if (matches.isEmpty()) {
-            return;
+    private class ExecutionSink implements MatchSink {
+        private EngineEvent event;
+        private OrderBook orderBook;
+        private OrderBookEntry aggressorOrder;
+        private String clientId;
+        private long cumulativeQty;
+        // Sum of price * quantity mantissas, for the average price
+        private long notional;
+
+        void start(EngineEvent event, OrderBook orderBook, OrderBookEntry aggressorOrder, String clientId) {
+            this.event = event;
+            this.orderBook = orderBook;
+            this.aggressorOrder = aggressorOrder;
+            this.clientId = clientId;
+            this.cumulativeQty = 0;
+            this.notional = 0;
         }
 
-        double cumulativeQty = 0;
-        double avgPrice = 0;
+        void finish() {
+            this.event = null;
+            this.orderBook = null;
+            this.aggressorOrder = null;
+            this.clientId = null;
+        }
 
-        // Process each match
-        for (MatchResult match : matches) {
+        @Override
+        public void onMatch(MatchResult match) {
             cumulativeQty += match.getMatchedQuantity();
-            avgPrice = ((avgPrice * (cumulativeQty - match.getMatchedQuantity())) +
-                    (match.getMatchPrice() * match.getMatchedQuantity())) / cumulativeQty;
+            notional += match.getMatchPrice() * match.getMatchedQuantity();
+            double avgPrice = FixedPoint.toDouble(notional, orderBook.getPriceScale()) / cumulativeQty;
 
-            asyncEventPublisher.publishTrade(createDbTrade(match));
+            String tradeId = formatTradeId(match);
+            event.addTrade(createDbTrade(event, orderBook, match, tradeId));
 
             // Update orders in DB
-            asyncEventPublisher.publishOrder(createDbOrder(aggressorOrder,
+            event.addOrder(createDbOrder(event, orderBook, aggressorOrder,
                     aggressorOrder.getRemainingQuantity() > 0 ? "PARTIALLY_FILLED" : "FILLED"));
-            asyncEventPublisher.publishOrder(createDbOrder(match.getRestingOrder(),
+            event.addOrder(createDbOrder(event, orderBook, match.getRestingOrder(),
                     match.getRestingOrder().getRemainingQuantity() > 0 ? "PARTIALLY_FILLED" : "FILLED"));
 
 
             // Send fill for the aggressor order
             sendExecutionReport(
+                    event,
+                    orderBook,
                     aggressorOrder,
                     clientId,
                     aggressorOrder.getRemainingQuantity() > 0 ? "PARTIAL_FILL" : "FILL",
@@ -286,12 +600,14 @@ public class OrderProcessingService {
                     match.getMatchPrice(),
                     cumulativeQty,
                     avgPrice,
-                    match.getTradeId(),
+                    tradeId,
                     match.getRestingOrder().getClientId()
             );
 
             // Send fill for the resting order
             sendExecutionReport(
+                    event,
+                    orderBook,
                     match.getRestingOrder(),
                     match.getRestingOrder().getClientId(),
                     match.getRestingOrder().getRemainingQuantity() > 0 ? "PARTIAL_FILL" : "FILL",
@@ -300,56 +616,103 @@ public class OrderProcessingService {
                     match.getMatchedQuantity(),
                     match.getMatchPrice(),
                     match.getRestingOrder().getOriginalQuantity() - match.getRestingOrder().getRemainingQuantity(),
-                    match.getMatchPrice(), // Simplified for this example
-                    match.getTradeId(),
+                    FixedPoint.toDouble(match.getMatchPrice(), orderBook.getPriceScale()), // Simplified for this example
+                    tradeId,
                     clientId
             );
         }
     }
 
+    /**
+     * Format a trade ID for reports and persistence
+     * @param match Match
+     * @return Trade ID, unique across instruments
+     */
+    private String formatTradeId(MatchResult match) {
+        return IdGenerator.encode(match.getTradeId());
+    }
+
+    /**
+     * Use the ID the gateway assigned, or generate one if it did not
+     * @param event Command being processed
+     * @param orderId Order ID from the message, may be null
+     * @return Order ID
+     */
+    private String orderId(EngineEvent event, String orderId) {
+        return orderId != null ? orderId : ids(event).nextIdString();
+    }
+
+    /**
+     * Get the ID generator of the shard processing a command
+     * @param event Command being processed
+     * @return The shard's generator
+     */
+    private IdGenerator ids(EngineEvent event) {
+        return engineShards.idsFor(event.getInstrumentId());
+    }
+
+    /**
+     * Get the time a command was sequenced; used instead of the clock so that replaying
+     * the journal reproduces the same state
+     * @param event Command being processed
+     * @return Local time the command was sequenced
+     */
+    private static LocalDateTime sequencedAt(EngineEvent event) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(event.getTimestamp()), ZoneId.systemDefault());
+    }
+
     /**
      * Send an execution report
+     * @param event Event receiving the report
+     * @param orderBook Order book the order belongs to
      * @param order Order
      * @param clientId Client ID
      * @param execType Execution type
      * @param text Text
      * @param clOrdId Client order ID
      */
-    private void sendExecutionReport(OrderBookEntry order, String clientId, String execType,
-                                     String text, String clOrdId) {
-        sendExecutionReport(order, clientId, execType, text, clOrdId, 0, 0, 0, 0, null, null);
+    private void sendExecutionReport(EngineEvent event, OrderBook orderBook, OrderBookEntry order, String clientId,
+                                     String execType, String text, String clOrdId) {
+        sendExecutionReport(event, orderBook, order, clientId, execType, text, clOrdId, 0, 0, 0, 0, null, null);
     }
 
     /**
      * Send an execution report
+     * @param event Event receiving the report
+     * @param orderBook Order book the order belongs to
      * @param order Order
      * @param clientId Client ID
      * @param execType Execution type
      * @param text Text
      * @param clOrdId Client order ID
-     * @param lastQty Last executed quantity
-     * @param lastPrice Last executed price
-     * @param cumQty Cumulative executed quantity
+     * @param lastQty Last executed quantity mantissa
+     * @param lastPrice Last executed price mantissa
+     * @param cumQty Cumulative executed quantity mantissa
      * @param avgPrice Average execution price
      * @param tradeId Trade ID
      * @param contraParty Contra party
      */
-    private void sendExecutionReport(OrderBookEntry order, String clientId, String execType,
-                                     String text, String clOrdId, double lastQty, double lastPrice,
-                                     double cumQty, double avgPrice, String tradeId, String contraParty) {
+    private void sendExecutionReport(EngineEvent event, OrderBook orderBook, OrderBookEntry order, String clientId,
+                                     String execType, String text, String clOrdId, long lastQty, long lastPrice,
+                                     long cumQty, double avgPrice, String tradeId, String contraParty) {
+        // Back to decimals for the wire
+        int priceScale = orderBook.getPriceScale();
+        int quantityScale = orderBook.getQuantityScale();
+        long filledQty = cumQty > 0 ? cumQty : (order.getOriginalQuantity() - order.getRemainingQuantity());
+
         Execution execution = Execution.builder()
                 .orderId(order.getOrderId())
                 .clOrdId(clOrdId != null ? clOrdId : order.getClOrdId())
-                .execId(UUID.randomUUID().toString())
+                .execId(ids(event).nextIdString())
                 .instrumentId(order.getInstrumentId())
                 .side(order.getSide())
                 .execType(execType)
                 .orderStatus(getOrderStatus(execType, order))
-                .filledQuantity(cumQty > 0 ? cumQty : (order.getOriginalQuantity() - order.getRemainingQuantity()))
-                .remainingQuantity(order.getRemainingQuantity())
-                .price(order.getPrice())
-                .lastPrice(lastPrice > 0 ? lastPrice : null)
-                .lastQuantity(lastQty > 0 ? lastQty : null)
+                .filledQuantity(FixedPoint.toDouble(filledQty, quantityScale))
+                .remainingQuantity(FixedPoint.toDouble(order.getRemainingQuantity(), quantityScale))
+                .price(FixedPoint.toDouble(order.getPrice(), priceScale))
+                .lastPrice(lastPrice > 0 ? FixedPoint.toDouble(lastPrice, priceScale) : null)
+                .lastQuantity(lastQty > 0 ? FixedPoint.toDouble(lastQty, quantityScale) : null)
                 .avgPrice(avgPrice > 0 ? avgPrice : 0)
                 .text(text)
                 .tradeId(tradeId)
@@ -358,32 +721,28 @@ public class OrderProcessingService {
 
         ExecutionReportMessage message = ExecutionReportMessage.builder()
                 .messageType("EXECUTION_REPORT")
-                .messageId(UUID.randomUUID().toString())
-                .timestamp(Instant.now().toEpochMilli())
+                .messageId(ids(event).nextIdString())
+                .timestamp(event.getTimestamp())
                 .clientId(clientId)
                 .execution(execution)
                 .build();
 
-        // Send to Kafka
-        try {
-            kafkaTemplate.send(executionTopic, objectMapper.writeValueAsBytes(message));
-            log.debug("Sent execution report: {}", message);
-        } catch (Exception e) {
-            log.error("Error sending execution report", e);
-        }
+        // Published to Kafka by the sequencer once matching is done
+        event.addExecutionReport(message);
     }
 
     /**
      * Send a cancel reject
+     * @param event Event receiving the report
      * @param cancel Cancel request
      * @param clientId Client ID
      * @param reason Rejection reason
      */
-    private void sendCancelReject(CancelOrderRequest cancel, String clientId, String reason) {
+    private void sendCancelReject(EngineEvent event, CancelOrderRequest cancel, String clientId, String reason) {
         Execution execution = Execution.builder()
                 .orderId(cancel.getOrigOrderId())
                 .clOrdId(cancel.getClOrdId())
-                .execId(UUID.randomUUID().toString())
+                .execId(ids(event).nextIdString())
                 .instrumentId(cancel.getInstrumentId())
                 .side(cancel.getSide())
                 .execType("CANCELED_REJECTED")
@@ -393,31 +752,28 @@ public class OrderProcessingService {
 
         ExecutionReportMessage message = ExecutionReportMessage.builder()
                 .messageType("EXECUTION_REPORT")
-                .messageId(UUID.randomUUID().toString())
-                .timestamp(Instant.now().toEpochMilli())
+                .messageId(ids(event).nextIdString())
+                .timestamp(event.getTimestamp())
                 .clientId(clientId)
                 .execution(execution)
                 .build();
 
-        // Send to Kafka
-        try {
-            kafkaTemplate.send(executionTopic, objectMapper.writeValueAsBytes(message));
-        } catch (Exception e) {
-            log.error("Error sending cancel reject", e);
-        }
+        // Published to Kafka by the sequencer once matching is done
+        event.addExecutionReport(message);
     }
 
     /**
      * Send a replace reject
+     * @param event Event receiving the report
      * @param replace Replace request
      * @param clientId Client ID
      * @param reason Rejection reason
      */
-    private void sendReplaceReject(ReplaceOrderRequest replace, String clientId, String reason) {
+    private void sendReplaceReject(EngineEvent event, ReplaceOrderRequest replace, String clientId, String reason) {
         Execution execution = Execution.builder()
                 .orderId(replace.getOrigOrderId())
                 .clOrdId(replace.getClOrdId())
-                .execId(UUID.randomUUID().toString())
+                .execId(ids(event).nextIdString())
                 .instrumentId(replace.getInstrumentId())
                 .side(replace.getSide())
                 .execType("REPLACE_REJECTED")
@@ -427,31 +783,28 @@ public class OrderProcessingService {
 
         ExecutionReportMessage message = ExecutionReportMessage.builder()
                 .messageType("EXECUTION_REPORT")
-                .messageId(UUID.randomUUID().toString())
-                .timestamp(Instant.now().toEpochMilli())
+                .messageId(ids(event).nextIdString())
+                .timestamp(event.getTimestamp())
                 .clientId(clientId)
                 .execution(execution)
                 .build();
 
-        // Send to Kafka
-        try {
-            kafkaTemplate.send(executionTopic, objectMapper.writeValueAsBytes(message));
-        } catch (Exception e) {
-            log.error("Error sending replace reject", e);
-        }
+        // Published to Kafka by the sequencer once matching is done
+        event.addExecutionReport(message);
     }
 
     /**
      * Send a rejection for an invalid order
+     * @param event Event receiving the report
      * @param newOrder Order
      * @param clientId Client ID
      * @param reason Rejection reason
      */
-    private void sendRejection(NewOrder newOrder, String clientId, String reason) {
+    private void sendRejection(EngineEvent event, NewOrder newOrder, String clientId, String reason) {
         Execution execution = Execution.builder()
                 .orderId(newOrder.getOrderId())
                 .clOrdId(newOrder.getClOrdId())
-                .execId(UUID.randomUUID().toString())
+                .execId(ids(event).nextIdString())
                 .instrumentId(newOrder.getInstrumentId())
                 .side(newOrder.getSide())
                 .execType("REJECTED")
@@ -461,18 +814,14 @@ public class OrderProcessingService {
 
         ExecutionReportMessage message = ExecutionReportMessage.builder()
                 .messageType("EXECUTION_REPORT")
-                .messageId(UUID.randomUUID().toString())
-                .timestamp(Instant.now().toEpochMilli())
+                .messageId(ids(event).nextIdString())
+                .timestamp(event.getTimestamp())
                 .clientId(clientId)
                 .execution(execution)
                 .build();
 
-        // Send to Kafka
-        try {
-            kafkaTemplate.send(executionTopic, objectMapper.writeValueAsBytes(message));
-        } catch (Exception e) {
-            log.error("Error sending rejection", e);
-        }
+        // Published to Kafka by the sequencer once matching is done
+        event.addExecutionReport(message);
     }
 
     /**
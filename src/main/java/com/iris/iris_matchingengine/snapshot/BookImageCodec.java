@@ -0,0 +1,122 @@
+package com.iris.iris_matchingengine.snapshot;
+
+import com.iris.iris_matchingengine.model.BookImage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Binary form of a book image, shared by snapshot book files and books handed to
+ * another engine node
+ */
+public final class BookImageCodec {
+    private static final int BOOK_MAGIC = 0x49424B32; // "IBK2"
+    // Before images carried the market data sequence
+    private static final int BOOK_MAGIC_V1 = 0x49424B31; // "IBK1"
+
+    private BookImageCodec() {
+    }
+
+    /**
+     * Write a book image
+     * @param out Destination
+     * @param image Image to write
+     */
+    public static void write(DataOutput out, BookImage image) throws IOException {
+        out.writeInt(BOOK_MAGIC);
+        out.writeUTF(image.getInstrumentId());
+        out.writeInt(image.getSequence());
+        out.writeLong(image.getMarketDataSequence());
+        out.writeInt(image.getCount());
+        for (int i = 0; i < image.getCount(); i++) {
+            out.writeUTF(image.getOrderIds()[i]);
+            writeNullable(out, image.getClOrdIds()[i]);
+            out.writeBoolean(image.getBuy()[i]);
+            out.writeLong(image.getOriginalQuantities()[i]);
+            out.writeLong(image.getRemainingQuantities()[i]);
+            out.writeLong(image.getPrices()[i]);
+            writeNullable(out, image.getOrderTypes()[i]);
+            writeNullable(out, image.getTimeInForces()[i]);
+            out.writeLong(image.getEntryTimes()[i]);
+            writeNullable(out, image.getClientIds()[i]);
+            writeNullable(out, image.getSourceIps()[i]);
+            out.writeInt(image.getSequenceNumbers()[i]);
+        }
+    }
+
+    /**
+     * Read a book image
+     * @param in Source
+     * @return The book image
+     */
+    public static BookImage read(DataInput in) throws IOException {
+        int magic = in.readInt();
+        if (magic != BOOK_MAGIC && magic != BOOK_MAGIC_V1) {
+            throw new IOException("Not a book image");
+        }
+        String instrumentId = in.readUTF();
+        int sequence = in.readInt();
+        long marketDataSequence = magic == BOOK_MAGIC ? in.readLong() : 0;
+        BookImage image = new BookImage(instrumentId, sequence, marketDataSequence, in.readInt());
+        for (int i = 0; i < image.getCount(); i++) {
+            image.getOrderIds()[i] = in.readUTF();
+            image.getClOrdIds()[i] = readNullable(in);
+            image.getBuy()[i] = in.readBoolean();
+            image.getOriginalQuantities()[i] = in.readLong();
+            image.getRemainingQuantities()[i] = in.readLong();
+            image.getPrices()[i] = in.readLong();
+            image.getOrderTypes()[i] = readNullable(in);
+            image.getTimeInForces()[i] = readNullable(in);
+            image.getEntryTimes()[i] = in.readLong();
+            image.getClientIds()[i] = readNullable(in);
+            image.getSourceIps()[i] = readNullable(in);
+            image.getSequenceNumbers()[i] = in.readInt();
+        }
+        return image;
+    }
+
+    /**
+     * Encode a book image as a message payload
+     * @param image Image to encode
+     * @return Encoded image
+     */
+    public static byte[] encode(BookImage image) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + image.getCount() * 96);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out, image);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode book " + image.getInstrumentId(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode a book image from a message payload
+     * @param payload Encoded image
+     * @return The book image
+     */
+    public static BookImage decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            return read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode book image", e);
+        }
+    }
+
+    private static void writeNullable(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
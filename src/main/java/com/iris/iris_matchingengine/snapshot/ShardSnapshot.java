@@ -0,0 +1,24 @@
+package com.iris.iris_matchingengine.snapshot;
+
+import com.iris.iris_matchingengine.model.BookImage;
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every book of one shard at a single point in the shard's command sequence
+ */
+@Value
+public class ShardSnapshot {
+    int shard;
+    // Last journaled command applied before the cut; replay resumes after it
+    long journalSequence;
+    // Position of the shard's ID generator at the cut
+    long idCounter;
+    List<BookImage> books;
+    // Instruments of the shard whose books were handed to another partition, and where to
+    Map<String, Integer> handedOff;
+    // Last inbound-orders offset applied per partition, so commands Kafka hands back are skipped
+    Map<Integer, Long> sourceOffsets;
+}
@@ -0,0 +1,106 @@
+package com.iris.iris_matchingengine.snapshot;
+
+import com.iris.iris_matchingengine.journal.CommandJournal;
+import com.iris.iris_matchingengine.sequencer.EngineSequencer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Takes periodic shard snapshots so a restart only has to replay the journal written
+ * since the last one. The images are taken in sequence on the matching thread; encoding
+ * and writing them happens on a background writer.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SnapshotService {
+    private final EngineSequencer engineSequencer;
+    private final SnapshotStore snapshotStore;
+    private final CommandJournal commandJournal;
+
+    @Value("${matching.snapshot.enabled:true}")
+    private boolean enabled;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "snapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Journal sequence of the last cut written per shard
+    private final Map<Integer, Long> lastWritten = new ConcurrentHashMap<>();
+
+    // Shards with a snapshot in flight, so a slow write is never queued behind another
+    private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Request a snapshot of every shard, at most once per interval
+     */
+    @Scheduled(fixedDelayString = "${matching.snapshot.interval-ms:60000}",
+            initialDelayString = "${matching.snapshot.interval-ms:60000}")
+    public void snapshot() {
+        // Without a journal there is no tail to replay and a cut could not be placed in it
+        if (!enabled || !commandJournal.isEnabled() || !engineSequencer.isRunning()) {
+            return;
+        }
+        for (int shard = 0; shard < engineSequencer.getShardCount(); shard++) {
+            int target = shard;
+            if (pending.add(target)) {
+                engineSequencer.publishShardSnapshot(target, snapshot -> onSnapshot(target, snapshot));
+            }
+        }
+    }
+
+    private void onSnapshot(int shard, ShardSnapshot snapshot) {
+        if (snapshot == null) {
+            pending.remove(shard);
+            return;
+        }
+        writer.execute(() -> write(shard, snapshot));
+    }
+
+    private void write(int shard, ShardSnapshot snapshot) {
+        try {
+            // Nothing journaled since the last cut means the books have not changed
+            if (snapshot.getJournalSequence() <= lastWritten.computeIfAbsent(shard, this::latestSequence)) {
+                return;
+            }
+            long start = System.nanoTime();
+            Path cut = snapshotStore.write(snapshot);
+            lastWritten.put(shard, snapshot.getJournalSequence());
+            log.info("Wrote shard {} snapshot of {} books to {} in {} ms", shard, snapshot.getBooks().size(),
+                    cut, (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Failed to write shard {} snapshot at journal sequence {}", shard,
+                    snapshot.getJournalSequence(), e);
+        } finally {
+            pending.remove(shard);
+        }
+    }
+
+    private long latestSequence(int shard) {
+        try {
+            Path cut = snapshotStore.latestCut(shard);
+            return cut == null ? -1 : snapshotStore.journalSequence(cut);
+        } catch (Exception e) {
+            log.warn("Could not read latest snapshot of shard {}", shard, e);
+            return -1;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        writer.shutdown();
+    }
+}
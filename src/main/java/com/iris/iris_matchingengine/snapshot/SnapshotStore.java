@@ -0,0 +1,256 @@
+package com.iris.iris_matchingengine.snapshot;
+
+import com.iris.iris_matchingengine.model.BookImage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Reads and writes shard snapshots.
+ *
+ * Each cut is a directory under the shard's snapshot directory, named after the journal
+ * sequence it covers, holding one binary file per book and a manifest. The manifest is
+ * written last and moved into place, so a cut without one is incomplete and ignored.
+ * Every file is forced to disk before the manifest is moved, and the directories after,
+ * so a cut that has a manifest after a power failure also has all of its books.
+ */
+@Slf4j
+@Component
+public class SnapshotStore {
+    private static final String MANIFEST = "manifest";
+    private static final String BOOK_SUFFIX = ".book";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    @Value("${matching.snapshot.dir:snapshot}")
+    private String directory;
+
+    // Complete cuts kept per shard
+    @Value("${matching.snapshot.retain:2}")
+    private int retain;
+
+    public Path shardDirectory(int shard) {
+        return Paths.get(directory, "shard-" + shard);
+    }
+
+    /**
+     * Write a shard snapshot as a new cut and drop cuts beyond the retention count
+     * @param snapshot Snapshot to write
+     * @return Cut directory
+     */
+    public Path write(ShardSnapshot snapshot) throws IOException {
+        Path shardDir = shardDirectory(snapshot.getShard());
+        Path cut = shardDir.resolve(String.format("%020d", snapshot.getJournalSequence()));
+        Files.createDirectories(cut);
+
+        List<BookImage> books = snapshot.getBooks();
+        for (int i = 0; i < books.size(); i++) {
+            writeBook(cut.resolve(i + BOOK_SUFFIX), books.get(i));
+        }
+
+        Path tmp = cut.resolve(MANIFEST + ".tmp");
+        try (FileChannel channel = create(tmp)) {
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+            out.writeLong(snapshot.getJournalSequence());
+            out.writeLong(snapshot.getIdCounter());
+            out.writeInt(books.size());
+            out.writeInt(snapshot.getHandedOff().size());
+            for (Map.Entry<String, Integer> handedOff : snapshot.getHandedOff().entrySet()) {
+                out.writeUTF(handedOff.getKey());
+                out.writeInt(handedOff.getValue());
+            }
+            out.writeInt(snapshot.getSourceOffsets().size());
+            for (Map.Entry<Integer, Long> offset : snapshot.getSourceOffsets().entrySet()) {
+                out.writeInt(offset.getKey());
+                out.writeLong(offset.getValue());
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, cut.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE);
+        // The rename, and the cut directory itself, are only durable once their directories are synced
+        fsyncDirectory(cut);
+        fsyncDirectory(shardDir);
+
+        prune(shardDir);
+        return cut;
+    }
+
+    /**
+     * Find the latest complete cut of a shard
+     * @param shard Shard index
+     * @return Cut directory, or null if there is none
+     */
+    public Path latestCut(int shard) throws IOException {
+        List<Path> cuts = completeCuts(shardDirectory(shard));
+        return cuts.isEmpty() ? null : cuts.get(cuts.size() - 1);
+    }
+
+    /**
+     * Get the journal sequence a cut covers
+     * @param cut Cut directory
+     * @return Journal sequence
+     */
+    public long journalSequence(Path cut) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(cut.resolve(MANIFEST)))) {
+            return in.readLong();
+        }
+    }
+
+    /**
+     * Get the position of the shard's ID generator at a cut
+     * @param cut Cut directory
+     * @return ID generator counter
+     */
+    public long idCounter(Path cut) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(cut.resolve(MANIFEST)))) {
+            in.readLong();
+            return in.readLong();
+        }
+    }
+
+    /**
+     * Get the instruments whose books had been handed to another partition at a cut
+     * @param cut Cut directory
+     * @return Map of instrument ID to the partition it was handed to
+     */
+    public Map<String, Integer> handedOff(Path cut) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(cut.resolve(MANIFEST)))) {
+            in.readLong();
+            in.readLong();
+            in.readInt();
+            int count = in.readInt();
+            Map<String, Integer> handedOff = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                handedOff.put(in.readUTF(), in.readInt());
+            }
+            return handedOff;
+        }
+    }
+
+    /**
+     * Get the inbound-orders offsets a shard had applied at a cut
+     * @param cut Cut directory
+     * @return Map of partition to offset
+     */
+    public Map<Integer, Long> sourceOffsets(Path cut) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(cut.resolve(MANIFEST)))) {
+            in.readLong();
+            in.readLong();
+            in.readInt();
+            int handedOff = in.readInt();
+            for (int i = 0; i < handedOff; i++) {
+                in.readUTF();
+                in.readInt();
+            }
+            int count = in.readInt();
+            Map<Integer, Long> offsets = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                offsets.put(in.readInt(), in.readLong());
+            }
+            return offsets;
+        }
+    }
+
+    /**
+     * List the book files of a cut, so they can be loaded in parallel
+     * @param cut Cut directory
+     * @return Book files
+     */
+    public List<Path> bookFiles(Path cut) throws IOException {
+        int count;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(cut.resolve(MANIFEST)))) {
+            in.readLong();
+            in.readLong();
+            count = in.readInt();
+        }
+        List<Path> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            files.add(cut.resolve(i + BOOK_SUFFIX));
+        }
+        return files;
+    }
+
+    /**
+     * Read one book file
+     * @param file Book file
+     * @return The book image
+     */
+    public BookImage readBook(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            return BookImageCodec.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read book snapshot " + file, e);
+        }
+    }
+
+    private void writeBook(Path file, BookImage image) throws IOException {
+        try (FileChannel channel = create(file)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            BookImageCodec.write(out, image);
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    private static FileChannel create(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void fsyncDirectory(Path dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private List<Path> completeCuts(Path shardDir) throws IOException {
+        List<Path> cuts = new ArrayList<>();
+        if (!Files.isDirectory(shardDir)) {
+            return cuts;
+        }
+        try (Stream<Path> dirs = Files.list(shardDir)) {
+            dirs.filter(dir -> Files.exists(dir.resolve(MANIFEST)))
+                    .sorted()
+                    .forEach(cuts::add);
+        }
+        return cuts;
+    }
+
+    private void prune(Path shardDir) throws IOException {
+        List<Path> cuts = completeCuts(shardDir);
+        for (int i = 0; i < cuts.size() - retain; i++) {
+            delete(cuts.get(i));
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    log.warn("Failed to delete old snapshot file {}", path, e);
+                }
+            });
+        }
+    }
+}
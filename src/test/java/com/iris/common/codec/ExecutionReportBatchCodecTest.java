@@ -0,0 +1,144 @@
+package com.iris.common.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.common.model.Execution;
+import com.iris.common.model.messages.ExecutionReportMessage;
+import com.iris.iris_appserver.engine.GatewayMessageCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExecutionReportBatchCodecTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final EngineMessageCodec engine = new EngineMessageCodec(objectMapper);
+    private final GatewayMessageCodec gateway = new GatewayMessageCodec(objectMapper);
+
+    private List<byte[]> reports;
+    private byte[] batch;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // A sweep's reports, written in both formats, as a rolling upgrade would mix them
+        reports = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ReflectionTestUtils.setField(engine, "format", i % 2 == 0 ? WireFormat.BINARY : WireFormat.JSON);
+            reports.add(engine.encodeExecutionReport(report(i)));
+        }
+        batch = ExecutionReportBatchCodec.encode(reports);
+    }
+
+    @Test
+    void gatewayReadsEveryReportInOrder() throws IOException {
+        assertTrue(ExecutionReportBatchCodec.isBatch(batch));
+
+        List<com.iris.iris_appserver.model.messages.ExecutionReportMessage> decoded =
+                gateway.decodeExecutionReports(batch);
+
+        assertEquals(4, decoded.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(objectMapper.valueToTree(report(i)), objectMapper.valueToTree(decoded.get(i)));
+        }
+    }
+
+    @Test
+    void decoderPointsAtEachReportInPlace() {
+        ExecutionReportBatchCodec.Decoder decoder = new ExecutionReportBatchCodec.Decoder().wrap(batch);
+
+        assertEquals(4, decoder.count());
+        for (byte[] report : reports) {
+            assertTrue(decoder.next());
+            assertArrayEquals(report, Arrays.copyOfRange(batch, decoder.offset(), decoder.offset() + decoder.length()));
+        }
+        assertFalse(decoder.next());
+    }
+
+    @Test
+    void singleReportsAreNotBatches() throws IOException {
+        for (WireFormat format : WireFormat.values()) {
+            ReflectionTestUtils.setField(engine, "format", format);
+            byte[] single = engine.encodeExecutionReport(report(7));
+
+            assertFalse(ExecutionReportBatchCodec.isBatch(single));
+            assertEquals(1, gateway.decodeExecutionReports(single).size());
+            assertThrows(IllegalArgumentException.class, () -> new ExecutionReportBatchCodec.Decoder().wrap(single));
+        }
+        assertEquals(List.of(), gateway.decodeExecutionReports(ExecutionReportBatchCodec.encode(List.of())));
+    }
+
+    @Test
+    void rejectsABatchCutAnywhere() {
+        // From just past the message header, through the count, every length prefix and every report
+        for (int length = BinaryFlyweight.HEADER_LENGTH; length < batch.length; length++) {
+            byte[] truncated = Arrays.copyOf(batch, length);
+            assertThrows(IllegalArgumentException.class, () -> gateway.decodeExecutionReports(truncated),
+                    "Batch cut to " + length + " bytes");
+        }
+    }
+
+    @Test
+    void rejectsAReportLengthThatOverrunsTheBatch() {
+        int firstLength = BinaryFlyweight.HEADER_LENGTH + 4;
+        for (int length : new int[]{batch.length, Integer.MAX_VALUE, -1}) {
+            byte[] corrupt = batch.clone();
+            ByteBuffer.wrap(corrupt).order(ByteOrder.LITTLE_ENDIAN).putInt(firstLength, length);
+
+            ExecutionReportBatchCodec.Decoder decoder = new ExecutionReportBatchCodec.Decoder().wrap(corrupt);
+            assertThrows(IllegalArgumentException.class, decoder::next, "Report length " + length);
+        }
+    }
+
+    @Test
+    void skipsABlockGrownByANewerSchema() throws IOException {
+        byte[] report = reports.get(0);
+        ByteBuffer grown = ByteBuffer.allocate(BinaryFlyweight.HEADER_LENGTH + 12 + 4 + report.length)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .put(BinaryFlyweight.MAGIC)
+                .put(BinaryFlyweight.SCHEMA_VERSION)
+                .putShort((short) ExecutionReportBatchCodec.TEMPLATE_ID)
+                .putShort((short) 12)
+                .putInt(1)
+                .putLong(Long.MAX_VALUE)
+                .putInt(report.length)
+                .put(report);
+
+        List<com.iris.iris_appserver.model.messages.ExecutionReportMessage> decoded =
+                gateway.decodeExecutionReports(grown.array());
+
+        assertEquals(1, decoded.size());
+        assertEquals(objectMapper.valueToTree(report(0)), objectMapper.valueToTree(decoded.get(0)));
+    }
+
+    private static ExecutionReportMessage report(int i) {
+        boolean last = i == 3;
+        return new ExecutionReportMessage(ExecutionReportCodec.MESSAGE_TYPE, "M-" + i, 1_700_000_000_000L + i, "C-1",
+                Execution.builder()
+                        .orderId("O-1")
+                        .clOrdId("CL-1")
+                        .execId("E-" + i)
+                        .instrumentId("AAPL")
+                        .side("BUY")
+                        .execType(last ? "FILL" : "PARTIAL_FILL")
+                        .orderStatus(last ? "FILLED" : "PARTIALLY_FILLED")
+                        .filledQuantity(10.0 * (i + 1))
+                        .remainingQuantity(10.0 * (3 - i))
+                        .price(101.25)
+                        .lastPrice(100.0 + i)
+                        .lastQuantity(10.0)
+                        .avgPrice(100.0 + i / 2.0)
+                        .tradeId("T-" + i)
+                        .build());
+    }
+}
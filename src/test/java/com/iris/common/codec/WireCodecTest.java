@@ -0,0 +1,206 @@
+package com.iris.common.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iris.common.model.Execution;
+import com.iris.common.model.messages.ExecutionReportMessage;
+import com.iris.common.model.messages.NewOrderMessage;
+import com.iris.iris_appserver.engine.GatewayMessageCodec;
+import com.iris.iris_appserver.model.ClientInfo;
+import com.iris.iris_appserver.model.Order;
+import com.iris.iris_appserver.model.messages.CancelOrderMessage;
+import com.iris.iris_appserver.model.messages.CancelOrderRequest;
+import com.iris.iris_appserver.model.messages.MassCancelMessage;
+import com.iris.iris_appserver.model.messages.MassCancelRequest;
+import com.iris.iris_appserver.model.messages.ReplaceOrderMessage;
+import com.iris.iris_appserver.model.messages.ReplaceOrderRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Commands go from the gateway's codec to the engine's, and execution reports back. Each
+ * case is written in both formats and read by the same reader. The two sides have their
+ * own message classes with the same fields, so they are compared field by field.
+ */
+class WireCodecTest {
+    private static final String NON_ASCII = "Zürich-Ω-日本-🚀";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final EngineMessageCodec engine = new EngineMessageCodec(objectMapper);
+    private final GatewayMessageCodec gateway = new GatewayMessageCodec(objectMapper);
+
+    private void writeAs(WireFormat format) {
+        ReflectionTestUtils.setField(engine, "format", format);
+        ReflectionTestUtils.setField(gateway, "format", format);
+    }
+
+    private void assertSameFields(Object expected, Object actual) {
+        assertEquals(objectMapper.valueToTree(expected), objectMapper.valueToTree(actual));
+    }
+
+    @ParameterizedTest
+    @EnumSource(WireFormat.class)
+    void newOrderRoundTrips(WireFormat format) throws Exception {
+        writeAs(format);
+        com.iris.iris_appserver.model.messages.NewOrderMessage message =
+                new com.iris.iris_appserver.model.messages.NewOrderMessage(NewOrderCodec.MESSAGE_TYPE, "M-1",
+                        1_700_000_000_123L, NON_ASCII,
+                Order.builder()
+                        .orderId("O-1")
+                        .clOrdId("CL-" + NON_ASCII)
+                        .instrumentId("AAPL")
+                        .side("BUY")
+                        .quantity(125.5)
+                        .orderType("LIMIT")
+                        .price(101.25)
+                        .timeInForce("GTC")
+                        .sourceIpAddress("10.0.0.1")
+                        .clientInfo(new ClientInfo("ACC-" + NON_ASCII, "user"))
+                        .build());
+
+        NewOrderMessage decoded = engine.decodeNewOrder(gateway.encode(message));
+
+        assertEquals(NON_ASCII, decoded.getClientId());
+        assertEquals(message.getTimestamp(), decoded.getTimestamp());
+        assertSameFields(message.getOrder(), decoded.getNewOrder());
+    }
+
+    @ParameterizedTest
+    @EnumSource(WireFormat.class)
+    void newOrderKeepsNullsAndValuesOutsideTheCodeTables(WireFormat format) throws Exception {
+        writeAs(format);
+        com.iris.iris_appserver.model.messages.NewOrderMessage message =
+                new com.iris.iris_appserver.model.messages.NewOrderMessage(NewOrderCodec.MESSAGE_TYPE, "M-2", 0, "C-1",
+                Order.builder()
+                        .orderId("O-2")
+                        .instrumentId("AAPL")
+                        .side("SELL_SHORT")
+                        .quantity(1)
+                        .orderType("STOP_LIMIT")
+                        .build());
+
+        NewOrderMessage decoded = engine.decodeNewOrder(gateway.encode(message));
+
+        assertSameFields(message.getOrder(), decoded.getNewOrder());
+        assertEquals("SELL_SHORT", decoded.getNewOrder().getSide());
+        assertEquals("STOP_LIMIT", decoded.getNewOrder().getOrderType());
+        assertNull(decoded.getNewOrder().getClOrdId());
+        assertNull(decoded.getNewOrder().getPrice());
+        assertNull(decoded.getNewOrder().getClientInfo());
+    }
+
+    @Test
+    void oneReaderTakesBothFormats() throws Exception {
+        MassCancelMessage message = new MassCancelMessage(MassCancelCodec.MESSAGE_TYPE, "M-7", 46, NON_ASCII,
+                MassCancelRequest.builder()
+                        .clOrdId("CL-4")
+                        .instrumentId("AAPL")
+                        .side("BUY")
+                        .build());
+        writeAs(WireFormat.JSON);
+        byte[] json = gateway.encode(message);
+        writeAs(WireFormat.BINARY);
+        byte[] binary = gateway.encode(message);
+
+        assertFalse(BinaryFlyweight.isBinary(json));
+        assertTrue(BinaryFlyweight.isBinary(binary));
+        assertEquals(engine.decodeMassCancel(json), engine.decodeMassCancel(binary));
+    }
+
+    @ParameterizedTest
+    @EnumSource(WireFormat.class)
+    void cancelRoundTrips(WireFormat format) throws Exception {
+        writeAs(format);
+        CancelOrderMessage message = new CancelOrderMessage(CancelOrderCodec.MESSAGE_TYPE, "M-3", 42, "C-1",
+                CancelOrderRequest.builder()
+                        .origClOrdId("CL-1")
+                        .clOrdId("CL-" + NON_ASCII)
+                        .instrumentId("AAPL")
+                        .side("SELL")
+                        .build());
+
+        assertSameFields(message, engine.decodeCancel(gateway.encode(message)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(WireFormat.class)
+    void replaceRoundTrips(WireFormat format) throws Exception {
+        writeAs(format);
+        ReplaceOrderMessage message = new ReplaceOrderMessage(ReplaceOrderCodec.MESSAGE_TYPE, "M-4", 43, "C-1",
+                ReplaceOrderRequest.builder()
+                        .origOrderId("O-1")
+                        .origClOrdId("CL-1")
+                        .newOrderId("O-9")
+                        .clOrdId("CL-2")
+                        .instrumentId(NON_ASCII)
+                        .side("BUY")
+                        .quantity(50)
+                        .orderType("MARKET")
+                        .timeInForce("IOC")
+                        .sourceIpAddress("::1")
+                        .build());
+
+        assertSameFields(message, engine.decodeReplace(gateway.encode(message)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(WireFormat.class)
+    void massCancelRoundTrips(WireFormat format) throws Exception {
+        writeAs(format);
+        MassCancelMessage message = new MassCancelMessage(MassCancelCodec.MESSAGE_TYPE, "M-5", 44, "C-1",
+                MassCancelRequest.builder()
+                        .clOrdId("CL-3")
+                        .cancelType("CANCEL_ON_DISCONNECT")
+                        .build());
+
+        assertSameFields(message, engine.decodeMassCancel(gateway.encode(message)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(WireFormat.class)
+    void executionReportRoundTrips(WireFormat format) throws Exception {
+        writeAs(format);
+        ExecutionReportMessage fill = report("FILL", "FILLED", NON_ASCII);
+        ExecutionReportMessage unknown = report("RESTATED", "SUSPENDED", null);
+
+        List<com.iris.iris_appserver.model.messages.ExecutionReportMessage> decoded =
+                gateway.decodeExecutionReports(engine.encodeExecutionReport(fill));
+        assertEquals(1, decoded.size());
+        assertSameFields(fill, decoded.get(0));
+
+        decoded = gateway.decodeExecutionReports(engine.encodeExecutionReport(unknown));
+        assertSameFields(unknown, decoded.get(0));
+        assertEquals("RESTATED", decoded.get(0).getExecution().getExecType());
+        assertEquals("SUSPENDED", decoded.get(0).getExecution().getOrderStatus());
+        assertNull(decoded.get(0).getExecution().getText());
+    }
+
+    private static ExecutionReportMessage report(String execType, String orderStatus, String text) {
+        return new ExecutionReportMessage(ExecutionReportCodec.MESSAGE_TYPE, "M-6", 45, "C-1",
+                Execution.builder()
+                        .orderId("O-1")
+                        .clOrdId("CL-1")
+                        .execId("E-1")
+                        .instrumentId("AAPL")
+                        .side("BUY")
+                        .execType(execType)
+                        .orderStatus(orderStatus)
+                        .filledQuantity(10)
+                        .remainingQuantity(0)
+                        .price(101.25)
+                        .lastPrice(101.0)
+                        .lastQuantity(10.0)
+                        .avgPrice(101.0)
+                        .text(text)
+                        .tradeId("T-1")
+                        .build());
+    }
+}
@@ -0,0 +1,204 @@
+package com.iris.common.ipc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedRingTest {
+    private static final int SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void deliversRecordsInOrderAcrossManyWraps() throws IOException {
+        try (MappedRing ring = new MappedRing(directory.resolve("ring"), SIZE)) {
+            List<byte[]> received = new ArrayList<>();
+            int sent = 0;
+            // Lengths that do not divide the ring, so records land on every offset and padding is needed
+            while (sent < 2_000) {
+                while (ring.offer(sent, payload(sent))) {
+                    sent++;
+                }
+                assertTrue(sent > received.size(), "A ring with room took nothing");
+                ring.poll((type, payload, position) -> {
+                    assertEquals(received.size(), type);
+                    received.add(payload);
+                }, 3);
+            }
+            while (ring.poll((type, payload, position) -> received.add(payload), Integer.MAX_VALUE) > 0) {
+            }
+
+            assertEquals(sent, received.size());
+            for (int i = 0; i < sent; i++) {
+                assertArrayEquals(payload(i), received.get(i));
+            }
+        }
+    }
+
+    @Test
+    void refusesARecordOnlyWhenTheRingIsFull() throws IOException {
+        try (MappedRing ring = new MappedRing(directory.resolve("ring"), SIZE)) {
+            byte[] half = new byte[ring.maxPayloadLength()];
+            assertTrue(ring.offer(1, half));
+            assertTrue(ring.offer(2, half));
+            assertFalse(ring.offer(3, new byte[0]));
+
+            assertEquals(1, ring.poll((type, payload, position) -> assertEquals(1, type), 1));
+            // Room for one half-ring record again, at the start of the ring
+            assertTrue(ring.offer(3, half));
+            assertFalse(ring.offer(4, new byte[0]));
+            assertThrows(IllegalArgumentException.class, () -> ring.offer(5, new byte[ring.maxPayloadLength() + 1]));
+        }
+    }
+
+    @Test
+    void carriesOnFromTheStoredPositionsWhenReopened() throws IOException {
+        Path path = directory.resolve("ring");
+        List<Integer> received = new ArrayList<>();
+        try (MappedRing ring = new MappedRing(path, SIZE)) {
+            for (int i = 0; i < 40; i++) {
+                while (!ring.offer(i, payload(i))) {
+                    ring.poll((type, payload, position) -> received.add(type), 1);
+                }
+            }
+            // Leave room for one more, with records still unread
+            ring.poll((type, payload, position) -> received.add(type), 5);
+        }
+
+        // A restarted consumer picks up after the last record it read, and a restarted producer appends after its own
+        try (MappedRing consumer = new MappedRing(path, SIZE);
+             MappedRing producer = new MappedRing(path, SIZE)) {
+            assertTrue(producer.offer(40, payload(40)));
+            while (consumer.poll((type, payload, position) -> {
+                assertArrayEquals(payload(type), payload);
+                received.add(type);
+            }, Integer.MAX_VALUE) > 0) {
+            }
+        }
+
+        assertEquals(41, received.size());
+        for (int i = 0; i <= 40; i++) {
+            assertEquals(i, received.get(i));
+        }
+        assertThrows(IOException.class, () -> new MappedRing(path, SIZE * 2));
+    }
+
+    @Test
+    void readsAgainWhatItHadNotReleasedWhenReopened() throws IOException {
+        Path path = directory.resolve("ring");
+        List<Long> unreleased = new ArrayList<>();
+        try (MappedRing ring = new MappedRing(path, SIZE)) {
+            ring.offer(1, payload(1));
+            assertEquals(1, ring.read((type, payload, position) -> {
+            }, 10));
+            ring.release();
+
+            ring.offer(2, payload(2));
+            ring.offer(3, payload(3));
+            assertEquals(2, ring.read((type, payload, position) -> unreleased.add(position), 10));
+            assertEquals(0, ring.read((type, payload, position) -> {
+            }, 10));
+        }
+
+        List<Integer> types = new ArrayList<>();
+        List<Long> positions = new ArrayList<>();
+        try (MappedRing ring = new MappedRing(path, SIZE)) {
+            ring.poll((type, payload, position) -> {
+                types.add(type);
+                positions.add(position);
+            }, 10);
+        }
+        assertEquals(List.of(2, 3), types);
+        assertEquals(unreleased, positions);
+    }
+
+    @Test
+    void startsANewRingAtItsCreationTime() throws IOException {
+        long before = System.currentTimeMillis() * 1_000_000;
+        try (MappedRing ring = new MappedRing(directory.resolve("ring"), SIZE)) {
+            ring.offer(1, payload(1));
+            List<Long> positions = new ArrayList<>();
+            ring.poll((type, payload, position) -> positions.add(position), 10);
+
+            // Above any position a ring created earlier reached at under a byte a nanosecond
+            assertTrue(positions.get(0) > before - SIZE);
+            assertEquals(0, positions.get(0) % SIZE);
+        }
+    }
+
+    @Test
+    void countsARecordWhoseHandlerFailedAsRead() throws IOException {
+        try (MappedRing ring = new MappedRing(directory.resolve("ring"), SIZE)) {
+            ring.offer(1, payload(1));
+            ring.offer(2, payload(2));
+
+            assertThrows(IllegalStateException.class, () -> ring.poll((type, payload, position) -> {
+                throw new IllegalStateException("poison");
+            }, 10));
+
+            List<Integer> received = new ArrayList<>();
+            ring.poll((type, payload, position) -> received.add(type), 10);
+            assertEquals(List.of(2), received);
+        }
+    }
+
+    @Test
+    void passesRecordsBetweenTwoMappingsOnSeparateThreads() throws Exception {
+        Path path = directory.resolve("ring");
+        int count = 5_000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try (MappedRing producer = new MappedRing(path, SIZE);
+             MappedRing consumer = new MappedRing(path, SIZE)) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        while (!producer.offer(i, payload(i))) {
+                            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            thread.start();
+
+            List<byte[]> received = new ArrayList<>();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (received.size() < count && System.nanoTime() < deadline) {
+                if (consumer.poll((type, payload, position) -> {
+                    assertEquals(received.size(), type);
+                    received.add(payload);
+                }, 64) == 0) {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                }
+            }
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+
+            assertNull(failure.get());
+            assertEquals(count, received.size());
+            for (int i = 0; i < count; i++) {
+                assertArrayEquals(payload(i), received.get(i));
+            }
+        }
+    }
+
+    private static byte[] payload(int i) {
+        return ("record-" + i + "-" + "x".repeat(i % 97)).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,90 @@
+package com.iris.iris_appserver.marketdata;
+
+import com.iris.common.model.MarketDataAction;
+import com.iris.common.model.MarketDataEntry;
+import com.iris.iris_appserver.model.messages.MarketDataUpdateMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookReplicaTest {
+    private final BookReplica replica = new BookReplica("AAPL");
+
+    @Test
+    void goesStaleOnAGapUntilTheNextSnapshot() {
+        assertEquals(BookReplica.Result.APPLIED, replica.apply(refresh(1, level(MarketDataAction.NEW, "BUY", 99.5, 10))));
+        assertEquals(BookReplica.Result.IGNORED, replica.apply(refresh(3, level(MarketDataAction.NEW, "SELL", 100.5, 4))));
+        assertFalse(replica.isSynced());
+
+        // Even the missing refresh is not applied once the replica is stale
+        assertEquals(BookReplica.Result.IGNORED, replica.apply(refresh(2, level(MarketDataAction.CHANGE, "BUY", 99.5, 6))));
+        assertEquals(1, replica.getSequence());
+        assertEquals(10, replica.getLevel(true, 99.5).quantity());
+
+        assertEquals(BookReplica.Result.RESYNCED, replica.apply(snapshot(3,
+                level(MarketDataAction.NEW, "BUY", 99.5, 6), level(MarketDataAction.NEW, "SELL", 100.5, 4))));
+        assertTrue(replica.isSynced());
+        assertEquals(3, replica.getSequence());
+        assertEquals(6, replica.getLevel(true, 99.5).quantity());
+        assertEquals(4, replica.getLevel(false, 100.5).quantity());
+        assertEquals(BookReplica.Result.APPLIED, replica.apply(refresh(4, level(MarketDataAction.DELETE, "SELL", 100.5, 0))));
+    }
+
+    @Test
+    void resetsToASnapshotBehindIt() {
+        replica.apply(refresh(1, level(MarketDataAction.NEW, "BUY", 99.5, 10)));
+        replica.apply(refresh(2, level(MarketDataAction.NEW, "SELL", 100.5, 4)));
+        // A snapshot of the sequence already held only confirms the book
+        assertEquals(BookReplica.Result.IGNORED, replica.apply(snapshot(2)));
+
+        // The engine rebuilt the book and started its sequence over
+        assertEquals(BookReplica.Result.RESYNCED, replica.apply(snapshot(0, level(MarketDataAction.NEW, "BUY", 98.0, 3))));
+        assertEquals(0, replica.getSequence());
+        assertNull(replica.getLevel(true, 99.5));
+        assertNull(replica.getLevel(false, 100.5));
+        assertEquals(3, replica.getLevel(true, 98.0).quantity());
+        assertEquals(BookReplica.Result.APPLIED, replica.apply(refresh(1, level(MarketDataAction.CHANGE, "BUY", 98.0, 1))));
+    }
+
+    @Test
+    void leavesTradesOutOfTheLevels() {
+        replica.apply(refresh(1, level(MarketDataAction.NEW, "SELL", 100.5, 4),
+                level(MarketDataAction.TRADE, "BUY", 100.5, 2)));
+
+        assertEquals(List.of(100.5), List.copyOf(replica.getLevels(false).keySet()));
+        assertTrue(replica.getLevels(true).isEmpty());
+    }
+
+    static MarketDataUpdateMessage refresh(long sequence, MarketDataEntry... entries) {
+        return message("MarketDataIncrementalRefresh", sequence, entries);
+    }
+
+    static MarketDataUpdateMessage snapshot(long sequence, MarketDataEntry... entries) {
+        return message("MarketDataSnapshot", sequence, entries);
+    }
+
+    static MarketDataEntry level(MarketDataAction action, String side, double price, double quantity) {
+        return MarketDataEntry.builder()
+                .action(action)
+                .side(side)
+                .price(price)
+                .quantity(quantity)
+                .orderCount(quantity > 0 ? 1 : 0)
+                .build();
+    }
+
+    private static MarketDataUpdateMessage message(String type, long sequence, MarketDataEntry... entries) {
+        return MarketDataUpdateMessage.builder()
+                .messageType(type)
+                .instrumentId("AAPL")
+                .sequence(sequence)
+                .timestamp(sequence)
+                .entries(List.of(entries))
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.iris.iris_appserver.marketdata;
+
+import com.iris.common.model.MarketDataAction;
+import com.iris.iris_appserver.model.messages.MarketDataUpdateMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.iris.iris_appserver.marketdata.BookReplicaTest.level;
+import static com.iris.iris_appserver.marketdata.BookReplicaTest.refresh;
+import static com.iris.iris_appserver.marketdata.BookReplicaTest.snapshot;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MarketDataConflatorTest {
+    // Long enough that only the test flushes
+    private static final long INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final MarketDataConflator conflator = new MarketDataConflator();
+    private final List<MarketDataUpdateMessage> received = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        conflator.shutdown();
+    }
+
+    @Test
+    void deliversTheCurrentStateOfEachLevelThatChanged() {
+        conflator.onMarketData(refresh(1, level(MarketDataAction.NEW, "BUY", 99.5, 10)));
+        MarketDataSubscription subscription = conflator.subscribe("AAPL", received::add, INTERVAL_MS);
+        assertEquals(List.of("NEW B 99.5x10.0"), entries(received.get(0)));
+
+        // The level existed at the last delivery, so however it got here it has changed
+        conflator.onMarketData(refresh(2, level(MarketDataAction.CHANGE, "BUY", 99.5, 5)));
+        conflator.onMarketData(refresh(3, level(MarketDataAction.DELETE, "BUY", 99.5, 0)));
+        conflator.onMarketData(refresh(4, level(MarketDataAction.NEW, "BUY", 99.5, 7)));
+        // A level that came and went since the last delivery is not mentioned
+        conflator.onMarketData(refresh(5, level(MarketDataAction.NEW, "SELL", 100.5, 3)));
+        conflator.onMarketData(refresh(6, level(MarketDataAction.DELETE, "SELL", 100.5, 0)));
+        conflator.onMarketData(refresh(7, level(MarketDataAction.NEW, "BUY", 99.0, 2)));
+        conflator.flush(subscription);
+
+        assertEquals(2, received.size());
+        assertEquals(List.of("CHANGE B 99.5x7.0", "NEW B 99.0x2.0"), entries(received.get(1)));
+        assertEquals(7, received.get(1).getSequence());
+
+        // The next delivery starts from the levels as last delivered
+        conflator.onMarketData(refresh(8, level(MarketDataAction.DELETE, "BUY", 99.5, 0)));
+        conflator.onMarketData(refresh(9, level(MarketDataAction.NEW, "SELL", 101.0, 1),
+                level(MarketDataAction.DELETE, "BUY", 99.0, 0)));
+        conflator.flush(subscription);
+        conflator.flush(subscription);
+
+        assertEquals(3, received.size());
+        assertEquals(List.of("DELETE B 99.5x0.0", "NEW S 101.0x1.0", "DELETE B 99.0x0.0"), entries(received.get(2)));
+    }
+
+    @Test
+    void mergesTradesIntoTheLastPriceAndTheirTotalQuantity() {
+        MarketDataSubscription subscription = conflator.subscribe("AAPL", received::add, INTERVAL_MS);
+        conflator.onMarketData(refresh(1, level(MarketDataAction.TRADE, "BUY", 100.5, 3)));
+        conflator.onMarketData(refresh(2, level(MarketDataAction.TRADE, "SELL", 100.0, 4)));
+        conflator.flush(subscription);
+
+        MarketDataUpdateMessage merged = received.get(1);
+        assertEquals(List.of("TRADE S 100.0x7.0"), entries(merged));
+        assertEquals(100.0, merged.getLastTradePrice());
+        assertEquals(7, merged.getLastTradeQuantity());
+        assertEquals(2, merged.getLastTradeTime());
+    }
+
+    @Test
+    void sendsTheWholeBookAfterTheReplicaIsRebuilt() {
+        MarketDataSubscription throttled = conflator.subscribe("AAPL", received::add, INTERVAL_MS);
+        List<MarketDataUpdateMessage> direct = new ArrayList<>();
+        conflator.subscribe("AAPL", direct::add, 0);
+
+        conflator.onMarketData(refresh(1, level(MarketDataAction.NEW, "BUY", 99.5, 10)));
+        // A gap leaves the replica stale, so nothing goes out until the snapshot
+        conflator.onMarketData(refresh(3, level(MarketDataAction.NEW, "SELL", 100.5, 4)));
+        conflator.flush(throttled);
+        assertEquals(1, received.size());
+
+        MarketDataUpdateMessage rebuilt = snapshot(3, level(MarketDataAction.NEW, "SELL", 100.5, 4));
+        conflator.onMarketData(rebuilt);
+        assertSame(rebuilt, direct.get(direct.size() - 1));
+        conflator.flush(throttled);
+
+        MarketDataUpdateMessage whole = received.get(received.size() - 1);
+        assertEquals("MarketDataSnapshot", whole.getMessageType());
+        assertEquals(List.of("NEW S 100.5x4.0"), entries(whole));
+        assertEquals(3, whole.getSequence());
+    }
+
+    private static List<String> entries(MarketDataUpdateMessage message) {
+        return message.getEntries().stream()
+                .map(entry -> entry.getAction() + " " + entry.getSide().charAt(0) + " " + entry.getPrice() + "x" + entry.getQuantity())
+                .toList();
+    }
+}
@@ -0,0 +1,178 @@
+package com.iris.iris_matchingengine.journal;
+
+import com.iris.common.kafka.CommandType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalTest {
+    // Room for a handful of records, so the tests cross segments
+    private static final int SEGMENT_SIZE = 512;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackWhatWasAppendedAcrossSegments() throws IOException {
+        try (JournalWriter writer = new JournalWriter(directory, SEGMENT_SIZE)) {
+            for (int i = 1; i <= 40; i++) {
+                assertEquals(i, append(writer, i));
+            }
+        }
+        assertTrue(JournalReader.segments(directory).size() > 1);
+
+        List<JournalRecord> records = readAll(1);
+        assertEquals(40, records.size());
+        for (int i = 1; i <= 40; i++) {
+            assertRecord(i, records.get(i - 1));
+        }
+        assertEquals(40, JournalReader.lastSequence(directory));
+
+        // From the middle of a later segment
+        List<JournalRecord> tail = readAll(27);
+        assertEquals(14, tail.size());
+        assertEquals(27, tail.get(0).getSequence());
+    }
+
+    @Test
+    void carriesTheSourceOfCommandsTakenFromKafka() throws IOException {
+        try (JournalWriter writer = new JournalWriter(directory, SEGMENT_SIZE)) {
+            writer.append(CommandType.NEW_ORDER, "AAPL", bytes("sourced"), 1000, 2, 123_456_789_012L);
+            writer.append(CommandType.TRANSFER_OUT, "AAPL", bytes("local"), 1001, 2, -1);
+            writer.append(CommandType.MASS_CANCEL, "ÅÄÖ", bytes("zero offset"), 1002, 0, 0);
+        }
+
+        List<JournalRecord> records = readAll(1);
+
+        assertEquals(2, records.get(0).getPartition());
+        assertEquals(123_456_789_012L, records.get(0).getOffset());
+        assertEquals(CommandType.NEW_ORDER, records.get(0).getType());
+        assertArrayEquals(bytes("sourced"), records.get(0).getPayload());
+
+        assertEquals(-1, records.get(1).getPartition());
+        assertEquals(-1, records.get(1).getOffset());
+        assertEquals(CommandType.TRANSFER_OUT, records.get(1).getType());
+
+        assertEquals(0, records.get(2).getOffset());
+        assertEquals("ÅÄÖ", records.get(2).getInstrumentId());
+        assertArrayEquals(bytes("zero offset"), records.get(2).getPayload());
+    }
+
+    @Test
+    void stopsAtATornRecordAtTheEndOfASegmentAndWritesOverIt() throws IOException {
+        try (JournalWriter writer = new JournalWriter(directory, SEGMENT_SIZE)) {
+            for (int i = 1; i <= 10; i++) {
+                append(writer, i);
+            }
+        }
+        Path last = lastSegment();
+        List<Integer> offsets = recordOffsets(last);
+        long torn = JournalReader.firstSequence(last) + offsets.size() - 1;
+        corruptChecksum(last, offsets.get(offsets.size() - 1));
+
+        assertEquals(torn - 1, JournalReader.lastSequence(directory));
+        assertEquals(torn - 1, readAll(1).size());
+
+        // A writer opened afterwards carries on from the last intact record
+        try (JournalWriter writer = new JournalWriter(directory, SEGMENT_SIZE)) {
+            assertEquals(torn - 1, writer.getSequence());
+            assertEquals(torn, writer.append(CommandType.CANCEL_ORDER, "MSFT", bytes("again"), 99, 1, 77));
+        }
+        List<JournalRecord> records = readAll(1);
+        assertEquals(torn, records.size());
+        JournalRecord rewritten = records.get(records.size() - 1);
+        assertEquals(torn, rewritten.getSequence());
+        assertArrayEquals(bytes("again"), rewritten.getPayload());
+        assertEquals(77, rewritten.getOffset());
+    }
+
+    @Test
+    void dropsStaleRecordsBehindATornFirstRecordWhenTheSegmentIsReopened() throws IOException {
+        try (JournalWriter writer = new JournalWriter(directory, SEGMENT_SIZE)) {
+            // Past the first segment, and until the last one holds a few records
+            int i = 0;
+            while (i < 20 || recordOffsets(lastSegment()).size() < 3) {
+                append(writer, ++i);
+            }
+        }
+        Path last = lastSegment();
+        long first = JournalReader.firstSequence(last);
+        corruptChecksum(last, 0);
+        assertEquals(first - 1, JournalReader.lastSequence(directory));
+
+        try (JournalWriter writer = new JournalWriter(directory, SEGMENT_SIZE)) {
+            assertEquals(first, writer.append(CommandType.NEW_ORDER, "MSFT", bytes("new"), 5, 0, 1));
+        }
+
+        // The records that followed the torn one in the old file must not come back
+        List<JournalRecord> records = readAll(1);
+        assertEquals(first, records.size());
+        assertArrayEquals(bytes("new"), records.get(records.size() - 1).getPayload());
+    }
+
+    private static long append(JournalWriter writer, int i) throws IOException {
+        // Every third command is not from Kafka, so both layouts are mixed in each segment
+        long offset = i % 3 == 0 ? -1 : 1000L + i;
+        return writer.append(CommandType.NEW_ORDER, "INST-" + i % 4, bytes("payload-" + i), 10_000L + i, i % 3, offset);
+    }
+
+    private static void assertRecord(int i, JournalRecord record) {
+        assertEquals(i, record.getSequence());
+        assertEquals(10_000L + i, record.getTimestamp());
+        assertEquals(CommandType.NEW_ORDER, record.getType());
+        assertEquals("INST-" + i % 4, record.getInstrumentId());
+        assertArrayEquals(bytes("payload-" + i), record.getPayload());
+        assertEquals(i % 3 == 0 ? -1 : i % 3, record.getPartition());
+        assertEquals(i % 3 == 0 ? -1 : 1000L + i, record.getOffset());
+    }
+
+    private List<JournalRecord> readAll(long fromSequence) throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        JournalReader.read(directory, fromSequence, records::add);
+        return records;
+    }
+
+    private Path lastSegment() throws IOException {
+        List<Path> segments = JournalReader.segments(directory);
+        return segments.get(segments.size() - 1);
+    }
+
+    private static List<Integer> recordOffsets(Path segment) throws IOException {
+        List<Integer> offsets = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int position = 0;
+            while (position + JournalWriter.HEADER_SIZE <= buffer.capacity() && buffer.getInt(position) != 0) {
+                offsets.add(position);
+                position += JournalWriter.HEADER_SIZE + buffer.getInt(position);
+            }
+        }
+        return offsets;
+    }
+
+    private static void corruptChecksum(Path segment, int recordOffset) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer checksum = ByteBuffer.allocate(4).order(ByteOrder.BIG_ENDIAN);
+            channel.read(checksum, recordOffset + 4);
+            checksum.putInt(0, ~checksum.getInt(0)).rewind();
+            channel.write(checksum, recordOffset + 4);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
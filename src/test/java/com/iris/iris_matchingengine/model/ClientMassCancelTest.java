@@ -0,0 +1,122 @@
+package com.iris.iris_matchingengine.model;
+
+import com.iris.common.id.IdGenerator;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientMassCancelTest {
+    private static final int CLIENT_ORDERS = 50_000;
+    private static final int OTHER_ORDERS = 5_000;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void cancelsEveryOrderOfTheClientAndEmptiesItsIndex(boolean tickLadder) {
+        OrderBook book = book(tickLadder);
+        // Buys below 100.00 and sells above, so nothing crosses
+        for (int i = 0; i < CLIENT_ORDERS; i++) {
+            book.addOrder(entry(book, "A-" + i, "A", i % 2 == 0 ? "BUY" : "SELL", i % 2 == 0 ? 9999 - i % 500 : 10001 + i % 500));
+            if (i % (CLIENT_ORDERS / OTHER_ORDERS) == 0) {
+                book.addOrder(entry(book, "B-" + i, "B", "SELL", 10001 + i % 500));
+            }
+        }
+        assertEquals(CLIENT_ORDERS, book.getClientOrderCount("A"));
+
+        Set<String> canceled = new HashSet<>();
+        int count = book.cancelClientOrders("A", null, order -> {
+            assertEquals("A", order.getClientId());
+            canceled.add(order.getOrderId());
+        });
+
+        assertEquals(CLIENT_ORDERS, count);
+        assertEquals(CLIENT_ORDERS, canceled.size());
+        assertEquals(0, book.getClientOrderCount("A"));
+        for (int i = 0; i < CLIENT_ORDERS; i++) {
+            assertNull(book.getOrderById("A-" + i));
+            assertNull(book.getOrderByClientOrderId("A", "CL-A-" + i));
+        }
+
+        // The other client's orders, and the levels they rest on, are untouched
+        assertEquals(OTHER_ORDERS, book.getOrderCount());
+        assertEquals(OTHER_ORDERS, book.getClientOrderCount("B"));
+        assertNotNull(book.getOrderById("B-0"));
+        assertEquals(0, book.getDepthTo(true, 0));
+
+        // A second mass cancel finds nothing, and the emptied index takes new orders
+        assertEquals(0, book.cancelClientOrders("A", null, order -> { }));
+        book.addOrder(entry(book, "A-again", "A", "BUY", 9000));
+        assertEquals(1, book.getClientOrderCount("A"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void cancelsOnlyTheRequestedSide(boolean tickLadder) {
+        OrderBook book = book(tickLadder);
+        for (int i = 0; i < CLIENT_ORDERS; i++) {
+            boolean buy = i % 3 == 0;
+            book.addOrder(entry(book, "A-" + i, "A", buy ? "BUY" : "SELL", buy ? 9999 - i % 100 : 10001 + i % 100));
+        }
+        int buys = (CLIENT_ORDERS + 2) / 3;
+
+        int count = book.cancelClientOrders("A", "SELL", order -> assertEquals("SELL", order.getSide()));
+
+        assertEquals(CLIENT_ORDERS - buys, count);
+        assertEquals(buys, book.getClientOrderCount("A"));
+        assertEquals(buys, book.getOrderCount());
+        assertEquals(0, book.getDepthTo(false, Long.MAX_VALUE));
+        assertTrue(book.getDepthTo(true, 0) > 0);
+
+        assertEquals(buys, book.cancelClientOrders("A", "BUY", order -> { }));
+        assertEquals(0, book.getClientOrderCount("A"));
+        assertEquals(0, book.getOrderCount());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void keepsTheSameClOrdIdApartForTwoClients(boolean tickLadder) {
+        OrderBook book = book(tickLadder);
+        OrderBookEntry a = entry(book, "A-1", "A", "BUY", 9999);
+        a.setClOrdId("SAME");
+        book.addOrder(a);
+        OrderBookEntry b = entry(book, "B-1", "B", "BUY", 9998);
+        b.setClOrdId("SAME");
+        book.addOrder(b);
+
+        assertEquals("A-1", book.getOrderByClientOrderId("A", "SAME").getOrderId());
+        assertEquals("B-1", book.getOrderByClientOrderId("B", "SAME").getOrderId());
+        assertNull(book.getOrderByClientOrderId("C", "SAME"));
+
+        book.cancelOrder("A-1");
+        assertNull(book.getOrderByClientOrderId("A", "SAME"));
+        assertEquals("B-1", book.getOrderByClientOrderId("B", "SAME").getOrderId());
+    }
+
+    private static OrderBook book(boolean tickLadder) {
+        // Two price decimals, whole quantities, tick of 0.01
+        return tickLadder
+                ? new TickLadderOrderBook("TEST", "PRICE_TIME_PRIORITY", 2, 0, 1, 1024, 1 << 20, new IdGenerator(0))
+                : new SortedMapOrderBook("TEST", "PRICE_TIME_PRIORITY", 2, 0, new IdGenerator(0));
+    }
+
+    private static OrderBookEntry entry(OrderBook book, String orderId, String clientId, String side, long price) {
+        OrderBookEntry entry = book.acquireEntry();
+        entry.setOrderId(orderId);
+        entry.setClOrdId("CL-" + orderId);
+        entry.setClientId(clientId);
+        entry.setInstrumentId("TEST");
+        entry.setSide(side);
+        entry.setOriginalQuantity(10);
+        entry.setRemainingQuantity(10);
+        entry.setPrice(price);
+        entry.setOrderType("LIMIT");
+        entry.setTimeInForce("GTC");
+        return entry;
+    }
+}
@@ -0,0 +1,86 @@
+package com.iris.iris_matchingengine.model;
+
+import com.iris.common.id.IdGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OrderBookAllocationTest {
+    private static final int ID_COUNT = 1024;
+    private static final int WARMUP_ORDERS = 200_000;
+    private static final int MEASURED_ORDERS = 100_000;
+
+    private final String[] orderIds = new String[ID_COUNT];
+    private final String[] clOrdIds = new String[ID_COUNT];
+    private final CountingSink sink = new CountingSink();
+
+    @Test
+    void matchingDoesNotAllocateInSteadyState() {
+        for (int i = 0; i < ID_COUNT; i++) {
+            orderIds[i] = "ORD-" + i;
+            clOrdIds[i] = "CL-" + i;
+            orderIds[i].hashCode();
+            clOrdIds[i].hashCode();
+        }
+
+        // Two price decimals, whole quantities, tick of 0.01
+        OrderBook book = new TickLadderOrderBook("TEST", "PRICE_TIME_PRIORITY", 2, 0, 1, 4096, 1 << 20, new IdGenerator(0));
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        runOrders(book, 0, WARMUP_ORDERS);
+
+        long fillsBefore = sink.fills;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        runOrders(book, WARMUP_ORDERS, MEASURED_ORDERS);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(MEASURED_ORDERS, sink.fills - fillsBefore);
+        assertEquals(0, book.getOrderCount());
+        assertEquals(0, allocated / MEASURED_ORDERS, "Bytes allocated per order: " + allocated);
+    }
+
+    /**
+     * Each round rests two sells, cancels one and lifts the other with an incoming buy
+     */
+    private void runOrders(OrderBook book, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            long price = 10000 + (i % 16);
+            int id = (i * 3) % ID_COUNT;
+
+            book.addOrder(entry(book, id, "SELL", price));
+            book.addOrder(entry(book, id + 1, "SELL", price + 1));
+
+            book.releaseEntry(book.cancelOrder(orderIds[(id + 1) % ID_COUNT]));
+
+            OrderBookEntry buy = entry(book, id + 2, "BUY", price);
+            book.matchBuyOrder(buy, sink);
+            book.releaseEntry(buy);
+        }
+    }
+
+    private OrderBookEntry entry(OrderBook book, int id, String side, long price) {
+        OrderBookEntry entry = book.acquireEntry();
+        entry.setOrderId(orderIds[id % ID_COUNT]);
+        entry.setClOrdId(clOrdIds[id % ID_COUNT]);
+        entry.setInstrumentId("TEST");
+        entry.setSide(side);
+        entry.setOriginalQuantity(10);
+        entry.setRemainingQuantity(10);
+        entry.setPrice(price);
+        entry.setOrderType("LIMIT");
+        entry.setTimeInForce("GTC");
+        return entry;
+    }
+
+    private static class CountingSink implements MatchSink {
+        private long fills;
+
+        @Override
+        public void onMatch(MatchResult match) {
+            fills++;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.iris.iris_matchingengine.model;
+
+import com.iris.common.id.IdGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TickLadderOrderBookTest {
+
+    @Test
+    void walksTheSameLevelsAsASortedBookOverSparseTicks() {
+        TickLadderOrderBook ladder = new TickLadderOrderBook("TEST", "PRICE_TIME_PRIORITY", 2, 0, 1, 64, 1 << 20, new IdGenerator(0));
+        SortedMapOrderBook sorted = new SortedMapOrderBook("TEST", "PRICE_TIME_PRIORITY", 2, 0, new IdGenerator(0));
+        Random random = new Random(7);
+        List<String> resting = new ArrayList<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            if (!resting.isEmpty() && random.nextInt(3) == 0) {
+                String orderId = resting.remove(random.nextInt(resting.size()));
+                ladder.cancelOrder(orderId);
+                sorted.cancelOrder(orderId);
+            } else {
+                // Levels hundreds of ticks apart either side of 1310.72, a multiple of every ladder size, so most
+                // ticks are empty and the occupied ones wrap around the end of the slots
+                boolean buy = random.nextBoolean();
+                long price = buy ? 131_071 - random.nextInt(40) * 317L : 131_073 + random.nextInt(40) * 317L;
+                String orderId = "O-" + i;
+                ladder.addOrder(entry(ladder, orderId, buy, price));
+                sorted.addOrder(entry(sorted, orderId, buy, price));
+                resting.add(orderId);
+            }
+            if (i % 97 == 0) {
+                assertSameLevels(ladder, sorted, true);
+                assertSameLevels(ladder, sorted, false);
+                long limit = 118_000 + random.nextInt(26_000);
+                assertEquals(sorted.getDepthTo(true, limit), ladder.getDepthTo(true, limit));
+                assertEquals(sorted.getDepthTo(false, limit), ladder.getDepthTo(false, limit));
+            }
+        }
+    }
+
+    @Test
+    void rejectsPricesThatWouldStretchTheLadderPastItsMaximum() {
+        TickLadderOrderBook ladder = new TickLadderOrderBook("TEST", "PRICE_TIME_PRIORITY", 2, 0, 1, 64, 1024, new IdGenerator(0));
+        ladder.addOrder(entry(ladder, "O-1", true, 10_000));
+
+        assertTrue(ladder.isValidPrice(10_000 + 1023));
+        assertTrue(ladder.isValidPrice(10_000 - 1023));
+        assertFalse(ladder.isValidPrice(10_000 + 1024));
+        assertFalse(ladder.isValidPrice(10_000 - 1024));
+
+        // Growing to the whole range stays within the maximum
+        ladder.addOrder(entry(ladder, "O-2", false, 10_000 + 1023));
+        assertFalse(ladder.isValidPrice(10_000 - 1));
+        assertEquals(2, ladder.getOrderCount());
+    }
+
+    @Test
+    void leavesAnOrderItCannotHoldOutOfEveryIndex() {
+        TickLadderOrderBook ladder = new TickLadderOrderBook("TEST", "PRICE_TIME_PRIORITY", 2, 0, 1, 64, 1024, new IdGenerator(0));
+        ladder.addOrder(entry(ladder, "O-1", true, 10_000));
+
+        assertThrows(IllegalStateException.class, () -> ladder.addOrder(entry(ladder, "O-2", false, 20_000)));
+        assertNull(ladder.getOrderById("O-2"));
+        assertNull(ladder.getOrderByClientOrderId("A", "CL-O-2"));
+        assertEquals(1, ladder.getClientOrderCount("A"));
+        assertEquals(1, ladder.getOrderCount());
+    }
+
+    private static void assertSameLevels(OrderBook ladder, OrderBook sorted, boolean buy) {
+        List<String> expected = new ArrayList<>();
+        for (PriceLevel level : sorted.getLevels(buy)) {
+            expected.add(level.getPrice() + "x" + level.getTotalQuantity());
+        }
+        List<String> actual = new ArrayList<>();
+        for (PriceLevel level : ladder.getLevels(buy)) {
+            actual.add(level.getPrice() + "x" + level.getTotalQuantity());
+        }
+        assertEquals(expected, actual);
+    }
+
+    private static OrderBookEntry entry(OrderBook book, String orderId, boolean buy, long price) {
+        OrderBookEntry entry = book.acquireEntry();
+        entry.setOrderId(orderId);
+        entry.setClOrdId("CL-" + orderId);
+        entry.setClientId("A");
+        entry.setInstrumentId("TEST");
+        entry.setSide(buy ? "BUY" : "SELL");
+        entry.setOriginalQuantity(10);
+        entry.setRemainingQuantity(10);
+        entry.setPrice(price);
+        entry.setOrderType("LIMIT");
+        entry.setTimeInForce("GTC");
+        return entry;
+    }
+}
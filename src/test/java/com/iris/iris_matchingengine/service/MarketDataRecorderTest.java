@@ -0,0 +1,159 @@
+package com.iris.iris_matchingengine.service;
+
+import com.iris.common.id.IdGenerator;
+import com.iris.iris_matchingengine.model.MarketDataUpdate;
+import com.iris.iris_matchingengine.model.OrderBook;
+import com.iris.iris_matchingengine.model.OrderBookEntry;
+import com.iris.iris_matchingengine.model.TickLadderOrderBook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MarketDataRecorderTest {
+    private final MarketDataRecorder recorder = new MarketDataRecorder();
+    private OrderBook book;
+
+    @BeforeEach
+    void setUp() {
+        book = new TickLadderOrderBook("AAPL", "PRICE_TIME_PRIORITY", 2, 0, 1, 64, 1 << 20, new IdGenerator(0));
+        book.setListener(recorder);
+    }
+
+    @Test
+    void recordsEachRestingOrderAsOneUpdatePerCommand() {
+        MarketDataUpdate first = apply(() -> book.addOrder(entry("O-1", "BUY", 9_990, 10)));
+        MarketDataUpdate second = apply(() -> book.addOrder(entry("O-2", "BUY", 9_990, 5)));
+        MarketDataUpdate third = apply(() -> book.addOrder(entry("O-3", "SELL", 10_010, 7)));
+
+        assertEquals(List.of("NEW B 9990x10/1"), entries(first));
+        assertEquals(List.of("CHANGE B 9990x15/2"), entries(second));
+        assertEquals(List.of("NEW S 10010x7/1"), entries(third));
+        assertEquals(1, first.getSequence());
+        assertEquals(2, second.getSequence());
+        assertEquals(3, third.getSequence());
+        assertEquals("AAPL", third.getInstrumentId());
+        assertEquals(2, third.getPriceScale());
+        assertFalse(third.isSnapshot());
+    }
+
+    @Test
+    void recordsCancelsAsChangesUntilTheLevelEmpties() {
+        apply(() -> book.addOrder(entry("O-1", "SELL", 10_010, 10)));
+        apply(() -> book.addOrder(entry("O-2", "SELL", 10_010, 4)));
+
+        MarketDataUpdate partial = apply(() -> book.cancelOrder("O-1"));
+        MarketDataUpdate emptied = apply(() -> book.cancelOrder("O-2"));
+        MarketDataUpdate missing = apply(() -> book.cancelOrder("O-9"));
+
+        assertEquals(List.of("CHANGE S 10010x4/1"), entries(partial));
+        // The emptied level is reported before it goes, so its price is still there
+        assertEquals(List.of("DELETE S 10010x0/0"), entries(emptied));
+        assertEquals(4, emptied.getSequence());
+        // A command that changes nothing takes no sequence
+        assertFalse(missing.isStarted());
+        assertEquals(4, book.getMarketDataSequence());
+    }
+
+    @Test
+    void recordsASweepAsTradesAndLevelChangesUnderOneSequence() {
+        apply(() -> book.addOrder(entry("O-1", "SELL", 10_010, 10)));
+        apply(() -> book.addOrder(entry("O-2", "SELL", 10_020, 10)));
+        apply(() -> book.addOrder(entry("O-3", "SELL", 10_020, 5)));
+        apply(() -> book.addOrder(entry("O-4", "SELL", 10_050, 8)));
+
+        OrderBookEntry incoming = entry("O-5", "BUY", 10_020, 22);
+        MarketDataUpdate sweep = apply(() -> book.matchBuyOrder(incoming, match -> { }));
+
+        assertEquals(List.of(
+                "TRADE B 10010x10/0",
+                "DELETE S 10010x0/0",
+                "TRADE B 10020x10/0",
+                "TRADE B 10020x2/0",
+                "CHANGE S 10020x3/1"), entries(sweep));
+        assertEquals(5, sweep.getSequence());
+        assertEquals(0, incoming.getRemainingQuantity());
+    }
+
+    @Test
+    void leavesChangesOutsideACommandUnrecorded() {
+        book.addOrder(entry("O-1", "BUY", 9_990, 10));
+        assertEquals(0, book.getMarketDataSequence());
+
+        MarketDataUpdate update = apply(() -> book.addOrder(entry("O-2", "BUY", 9_980, 1)));
+        assertEquals(1, update.getSequence());
+    }
+
+    @Test
+    void snapshotCopiesEveryLevelAtTheLastSequence() {
+        apply(() -> book.addOrder(entry("O-1", "BUY", 9_990, 10)));
+        apply(() -> book.addOrder(entry("O-2", "BUY", 9_990, 5)));
+        apply(() -> book.addOrder(entry("O-3", "BUY", 9_950, 3)));
+        apply(() -> book.addOrder(entry("O-4", "SELL", 10_010, 7)));
+        apply(() -> book.cancelOrder("O-2"));
+
+        MarketDataUpdate snapshot = new MarketDataUpdate();
+        recorder.snapshot(book, snapshot);
+
+        assertTrue(snapshot.isSnapshot());
+        assertEquals(5, snapshot.getSequence());
+        assertEquals(List.of("NEW B 9990x10/1", "NEW B 9950x3/1", "NEW S 10010x7/1"), entries(snapshot));
+        // Taking a snapshot does not move the sequence on
+        assertEquals(5, book.getMarketDataSequence());
+    }
+
+    @Test
+    void carriesTheSequenceThroughAnImage() {
+        apply(() -> book.addOrder(entry("O-1", "BUY", 9_990, 10)));
+        apply(() -> book.addOrder(entry("O-2", "SELL", 10_010, 7)));
+
+        OrderBook restored = new TickLadderOrderBook("AAPL", "PRICE_TIME_PRIORITY", 2, 0, 1, 64, 1 << 20, new IdGenerator(0));
+        restored.setListener(recorder);
+        restored.restore(book.image());
+        book = restored;
+
+        MarketDataUpdate next = apply(() -> book.cancelOrder("O-1"));
+        assertEquals(3, next.getSequence());
+        assertEquals(List.of("DELETE B 9990x0/0"), entries(next));
+    }
+
+    private MarketDataUpdate apply(Runnable command) {
+        MarketDataUpdate update = new MarketDataUpdate();
+        recorder.begin(update);
+        try {
+            command.run();
+        } finally {
+            recorder.end();
+        }
+        return update;
+    }
+
+    private static List<String> entries(MarketDataUpdate update) {
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < update.getCount(); i++) {
+            entries.add(update.getAction(i) + " " + (update.isBuy(i) ? "B" : "S") + " " + update.getPrice(i) + "x"
+                    + update.getQuantity(i) + "/" + update.getOrderCount(i));
+        }
+        return entries;
+    }
+
+    private OrderBookEntry entry(String orderId, String side, long price, long quantity) {
+        OrderBookEntry entry = book.acquireEntry();
+        entry.setOrderId(orderId);
+        entry.setClOrdId("CL-" + orderId);
+        entry.setClientId("C-1");
+        entry.setInstrumentId(book.getInstrumentId());
+        entry.setSide(side);
+        entry.setOriginalQuantity(quantity);
+        entry.setRemainingQuantity(quantity);
+        entry.setPrice(price);
+        entry.setOrderType("LIMIT");
+        entry.setTimeInForce("GTC");
+        return entry;
+    }
+}
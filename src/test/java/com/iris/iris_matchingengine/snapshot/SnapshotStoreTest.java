@@ -0,0 +1,119 @@
+package com.iris.iris_matchingengine.snapshot;
+
+import com.iris.common.id.IdGenerator;
+import com.iris.iris_matchingengine.model.BookImage;
+import com.iris.iris_matchingengine.model.OrderBook;
+import com.iris.iris_matchingengine.model.OrderBookEntry;
+import com.iris.iris_matchingengine.model.TickLadderOrderBook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SnapshotStoreTest {
+    @TempDir
+    Path directory;
+
+    private final SnapshotStore store = new SnapshotStore();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(store, "directory", directory.toString());
+        ReflectionTestUtils.setField(store, "retain", 2);
+    }
+
+    @Test
+    void readsBackEverythingACutHolds() throws IOException {
+        OrderBook aapl = book("AAPL");
+        aapl.addOrder(entry(aapl, "O-1", "Zoë", "BUY", 9_990, Instant.ofEpochMilli(1_700_000_000_000L), "10.0.0.1"));
+        aapl.addOrder(entry(aapl, "O-2", "C-2", "SELL", 10_010, null, null));
+        aapl.addOrder(entry(aapl, "O-3", "C-2", "BUY", 9_990, null, "::1"));
+        OrderBook empty = book("MSFT");
+
+        Path cut = store.write(new ShardSnapshot(1, 4_242, 77, List.of(aapl.image(), empty.image()),
+                Map.of("IBM", 2, "日本株", 0), Map.of(0, 1_000L, 2, 12_345_678_901L)));
+
+        assertEquals(cut, store.latestCut(1));
+        assertEquals(4_242, store.journalSequence(cut));
+        assertEquals(77, store.idCounter(cut));
+        assertEquals(Map.of("IBM", 2, "日本株", 0), store.handedOff(cut));
+        assertEquals(Map.of(0, 1_000L, 2, 12_345_678_901L), store.sourceOffsets(cut));
+
+        List<Path> files = store.bookFiles(cut);
+        assertEquals(2, files.size());
+        OrderBook restored = book("AAPL");
+        restored.restore(store.readBook(files.get(0)));
+        assertEquals(3, restored.getOrderCount());
+        assertSameOrder(aapl.getOrderById("O-1"), restored.getOrderById("O-1"));
+        assertSameOrder(aapl.getOrderById("O-2"), restored.getOrderById("O-2"));
+        assertSameOrder(aapl.getOrderById("O-3"), restored.getOrderById("O-3"));
+        assertEquals(20, restored.getVolumeAt(true, 9_990));
+        assertEquals(2, restored.getClientOrderCount("C-2"));
+
+        BookImage emptyImage = store.readBook(files.get(1));
+        assertEquals("MSFT", emptyImage.getInstrumentId());
+        assertEquals(0, emptyImage.getCount());
+    }
+
+    @Test
+    void ignoresIncompleteCutsAndKeepsOnlyTheNewest() throws IOException {
+        for (long sequence = 10; sequence <= 30; sequence += 10) {
+            store.write(new ShardSnapshot(0, sequence, 0, List.of(), Map.of(), Map.of()));
+        }
+        // A cut whose manifest never made it
+        Files.createDirectories(store.shardDirectory(0).resolve(String.format("%020d", 40)));
+
+        assertEquals(30, store.journalSequence(store.latestCut(0)));
+        try (var cuts = Files.list(store.shardDirectory(0))) {
+            assertEquals(2, cuts.filter(cut -> Files.exists(cut.resolve("manifest"))).count());
+        }
+        assertNull(store.latestCut(5));
+    }
+
+    private static void assertSameOrder(OrderBookEntry expected, OrderBookEntry actual) {
+        assertEquals(expected.getOrderId(), actual.getOrderId());
+        assertEquals(expected.getClOrdId(), actual.getClOrdId());
+        assertEquals(expected.getClientId(), actual.getClientId());
+        assertEquals(expected.getSide(), actual.getSide());
+        assertEquals(expected.getPrice(), actual.getPrice());
+        assertEquals(expected.getOriginalQuantity(), actual.getOriginalQuantity());
+        assertEquals(expected.getRemainingQuantity(), actual.getRemainingQuantity());
+        assertEquals(expected.getOrderType(), actual.getOrderType());
+        assertEquals(expected.getTimeInForce(), actual.getTimeInForce());
+        assertEquals(expected.getEntryTime(), actual.getEntryTime());
+        assertEquals(expected.getSourceIp(), actual.getSourceIp());
+        assertEquals(expected.getSequenceNumber(), actual.getSequenceNumber());
+    }
+
+    private static OrderBook book(String instrumentId) {
+        return new TickLadderOrderBook(instrumentId, "PRICE_TIME_PRIORITY", 2, 0, 1, 64, 1 << 20, new IdGenerator(0));
+    }
+
+    private static OrderBookEntry entry(OrderBook book, String orderId, String clientId, String side, long price,
+                                        Instant entryTime, String sourceIp) {
+        OrderBookEntry entry = book.acquireEntry();
+        entry.setOrderId(orderId);
+        entry.setClOrdId("CL-" + orderId);
+        entry.setClientId(clientId);
+        entry.setInstrumentId(book.getInstrumentId());
+        entry.setSide(side);
+        entry.setOriginalQuantity(15);
+        entry.setRemainingQuantity(10);
+        entry.setPrice(price);
+        entry.setOrderType("LIMIT");
+        entry.setTimeInForce("GTC");
+        entry.setEntryTime(entryTime);
+        entry.setSourceIp(sourceIp);
+        return entry;
+    }
+}